@@ -0,0 +1,76 @@
+package com.example.codec;
+
+import com.example.dto.VersionedMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a versioned state in each wire format, plus the cost of re-encoding
+ * the broker's JSON frame as STOMP binary subscriptions do. The content is itself a JSON document,
+ * as most namespace states are, so JSON pays for escaping its quotes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    WireFormat format;
+
+    @Param({"64", "1024", "16384"})
+    int contentLength;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private VersionedMessageDto state;
+    private byte[] json;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper jsonMapper = new ObjectMapper();
+        ObjectMapper mapper = format.mapper(jsonMapper);
+        writer = mapper.writer();
+        reader = mapper.readerFor(VersionedMessageDto.class);
+        StringBuilder content = new StringBuilder("{\"items\":[");
+        for (int i = 0; content.length() < contentLength - 2; i++) {
+            content.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"label\":\"item ").append(i).append("\"}");
+        }
+        state = new VersionedMessageDto(content.append("]}").toString(), "cyberpunk", 42);
+        json = jsonMapper.writeValueAsBytes(state);
+        encoded = writer.writeValueAsBytes(state);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(state);
+    }
+
+    @Benchmark
+    public VersionedMessageDto decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+
+    @Benchmark
+    public byte[] transcodeFromJson() {
+        return format.fromJson(json);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.controllers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One round of reading N namespaces through the full HTTP stack, including the JWT filter,
+ * as N single GETs against one batch POST to {@code /api/state/batch}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchThroughputBenchmark {
+
+    @Param({"1", "10", "50"})
+    int namespaces;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private EmbeddedServer server;
+    private HttpRequest[] singles;
+    private HttpRequest batch;
+
+    @Setup
+    public void setUp() {
+        server = EmbeddedServer.start();
+        singles = IntStream.range(0, namespaces)
+                .mapToObj(i -> server.request("/api/state/bench" + i).GET().build())
+                .toArray(HttpRequest[]::new);
+        String body = IntStream.range(0, namespaces)
+                .mapToObj(i -> "\"bench" + i + "\"")
+                .collect(Collectors.joining(",", "[", "]"));
+        batch = server.request("/api/state/batch")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public int singleGets() throws IOException, InterruptedException {
+        int bytes = 0;
+        for (HttpRequest request : singles) {
+            bytes += EmbeddedServer.send(client, request, HttpResponse.BodyHandlers.ofByteArray(), 200).body().length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] batchPost() throws IOException, InterruptedException {
+        return EmbeddedServer.send(client, batch, HttpResponse.BodyHandlers.ofByteArray(), 200).body();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.controllers;
+
+import com.example.dto.MessageDto;
+import com.example.services.SystemStateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One unchanged poll of {@code GET /api/state/{namespace}} through the full HTTP stack,
+ * as a full 200 response and as a 304 answered from If-None-Match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConditionalGetBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    int contentLength;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private EmbeddedServer server;
+    private HttpRequest unconditional;
+    private HttpRequest conditional;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        server = EmbeddedServer.start();
+        server.bean(SystemStateService.class).sendMessage("poll", new MessageDto("x".repeat(contentLength), null));
+        unconditional = server.request("/api/state/poll").GET().build();
+        String eTag = EmbeddedServer.send(client, unconditional, HttpResponse.BodyHandlers.discarding(), 200)
+                .headers().firstValue("ETag").orElseThrow();
+        conditional = server.request("/api/state/poll").header("If-None-Match", eTag).GET().build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public byte[] fullResponse() throws IOException, InterruptedException {
+        return EmbeddedServer.send(client, unconditional, HttpResponse.BodyHandlers.ofByteArray(), 200).body();
+    }
+
+    @Benchmark
+    public byte[] notModified() throws IOException, InterruptedException {
+        return EmbeddedServer.send(client, conditional, HttpResponse.BodyHandlers.ofByteArray(), 304).body();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.controllers;
+
+import com.example.security.JwtUtil;
+import org.ajp.mvp.server.ServerApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * The server on a random port for benchmarks that go through the full HTTP stack,
+ * with a real JWT for the demo user.
+ */
+final class EmbeddedServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final String baseUrl;
+    private final String token;
+
+    private EmbeddedServer(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        this.token = context.getBean(JwtUtil.class).generateToken("user@example.com");
+    }
+
+    /**
+     * Starts the server with the given {@code name=value} properties on top of its defaults.
+     */
+    static EmbeddedServer start(String... properties) {
+        return new EmbeddedServer(new SpringApplicationBuilder(ServerApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .properties(properties)
+                .run());
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    String token() {
+        return token;
+    }
+
+    /**
+     * @return an authenticated request builder for the given path
+     */
+    HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Authorization", "Bearer " + token);
+    }
+
+    /**
+     * Sends the request and fails the benchmark on an unexpected status.
+     */
+    static <T> HttpResponse<T> send(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                    int expectedStatus) throws IOException, InterruptedException {
+        HttpResponse<T> response = client.send(request, handler);
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode() + ", expected " + expectedStatus);
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
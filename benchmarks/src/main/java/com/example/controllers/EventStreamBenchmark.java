@@ -0,0 +1,137 @@
+package com.example.controllers;
+
+import com.example.services.StateEventStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one write takes to reach every idle server-sent event stream following its namespace.
+ * Clients authenticate with the {@code access_token} query parameter, as browser EventSources do,
+ * and read with line subscribers that hold no thread per stream. Setup fails if the open streams
+ * hold a server thread each.
+ * Each stream takes two file descriptors here, client and server being one process, so raise
+ * {@code ulimit -n} before raising the stream count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventStreamBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Param({"1000", "5000"})
+    int streams;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final List<EventCounter> counters = new ArrayList<>();
+
+    private EmbeddedServer server;
+    private HttpRequest write;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        server = EmbeddedServer.start();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        HttpRequest stream = server.request("/api/state/fanout/stream?access_token=" + server.token())
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        for (int i = 0; i < streams; i++) {
+            EventCounter counter = new EventCounter();
+            counters.add(counter);
+            client.sendAsync(stream, HttpResponse.BodyHandlers.fromLineSubscriber(counter));
+        }
+        for (EventCounter counter : counters) {
+            counter.awaitNext(); // The initial state
+        }
+        if (server.bean(StateEventStreams.class).openStreams() != streams) {
+            throw new IllegalStateException("Expected " + streams + " open streams");
+        }
+        // Growth is Tomcat's worker pool and the client's selector, bounded however many streams are open
+        if (threads.getThreadCount() - threadsBefore >= streams / 2) {
+            throw new IllegalStateException("Streams should not hold a thread each");
+        }
+        write = server.request("/api/message/fanout")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"content\":\"tick\"}"))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public int fanOut() throws IOException, InterruptedException {
+        EmbeddedServer.send(client, write, HttpResponse.BodyHandlers.discarding(), 200);
+        for (EventCounter counter : counters) {
+            counter.awaitNext();
+        }
+        return counters.size();
+    }
+
+    /**
+     * Counts the events a stream has received, without a thread of its own.
+     */
+    private static final class EventCounter implements Flow.Subscriber<String> {
+
+        private final Semaphore received = new Semaphore(0);
+        private final CompletableFuture<Void> ended = new CompletableFuture<>();
+
+        void awaitNext() throws InterruptedException {
+            if (!received.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Event not received" + (ended.isDone() ? ": stream ended" : ""));
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith("data:")) {
+                received.release();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            ended.complete(null);
+        }
+
+        @Override
+        public void onComplete() {
+            ended.complete(null);
+        }
+    }
+}
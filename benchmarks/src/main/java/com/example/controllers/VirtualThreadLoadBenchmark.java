@@ -0,0 +1,106 @@
+package com.example.controllers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Request latency with platform and virtual request threads for the heartbeat, state and message
+ * endpoints. The server runs in WAL mode with {@code fsync-policy=always}, so message writes block
+ * on disk the way production writes do. 400 closed-loop clients, more than Tomcat's 200 platform
+ * threads, drive each endpoint; override with {@code -t}. The virtual case needs a Java 21 runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(400)
+public class VirtualThreadLoadBenchmark {
+
+    private static final int NAMESPACES = 64;
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private Path directory;
+    private EmbeddedServer server;
+    private HttpRequest heartbeat;
+    private HttpRequest[] states;
+
+    @Setup
+    public void setUp() throws IOException {
+        boolean virtual = threads.equals("virtual");
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime");
+        }
+        directory = Files.createTempDirectory("virtual-thread-bench");
+        server = EmbeddedServer.start(
+                "spring.threads.virtual.enabled=" + virtual,
+                "mvp.state.storage=wal",
+                "mvp.state.wal.fsync-policy=always",
+                "mvp.state.wal.segment-size-bytes=16777216",
+                "mvp.state.wal.directory=" + directory.resolve("wal"),
+                "mvp.state.snapshot.directory=" + directory.resolve("snapshots"));
+        heartbeat = server.request("/api/heartbeat").GET().build();
+        states = new HttpRequest[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            states[i] = server.request("/api/state/load" + i).GET().build();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int heartbeat() throws IOException, InterruptedException {
+        return EmbeddedServer.send(client, heartbeat, HttpResponse.BodyHandlers.discarding(), 200).statusCode();
+    }
+
+    @Benchmark
+    public int state() throws IOException, InterruptedException {
+        HttpRequest request = states[ThreadLocalRandom.current().nextInt(NAMESPACES)];
+        return EmbeddedServer.send(client, request, HttpResponse.BodyHandlers.discarding(), 200).statusCode();
+    }
+
+    @Benchmark
+    public int message() throws IOException, InterruptedException {
+        int n = ThreadLocalRandom.current().nextInt();
+        HttpRequest request = server.request("/api/message/load" + Math.floorMod(n, NAMESPACES))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"content\":\"payload " + n + "\"}"))
+                .build();
+        return EmbeddedServer.send(client, request, HttpResponse.BodyHandlers.discarding(), 200).statusCode();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization and deserialization of the payloads every REST and STOMP call carries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDtoJsonBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    int contentLength;
+
+    private ObjectWriter writer;
+    private ObjectReader messageReader;
+    private ObjectReader versionedReader;
+    private MessageDto message;
+    private VersionedMessageDto versioned;
+    private byte[] messageJson;
+    private byte[] versionedJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        writer = objectMapper.writer();
+        messageReader = objectMapper.readerFor(MessageDto.class);
+        versionedReader = objectMapper.readerFor(VersionedMessageDto.class);
+        String content = "x".repeat(contentLength);
+        message = new MessageDto(content, "cyberpunk");
+        versioned = new VersionedMessageDto(content, "cyberpunk", 42);
+        messageJson = writer.writeValueAsBytes(message);
+        versionedJson = writer.writeValueAsBytes(versioned);
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() throws IOException {
+        return writer.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public MessageDto deserializeMessage() throws IOException {
+        return messageReader.readValue(messageJson);
+    }
+
+    @Benchmark
+    public byte[] serializeVersionedMessage() throws IOException {
+        return writer.writeValueAsBytes(versioned);
+    }
+
+    @Benchmark
+    public VersionedMessageDto deserializeVersionedMessage() throws IOException {
+        return versionedReader.readValue(versionedJson);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.metrics;
+
+import com.example.controllers.MvpController;
+import com.example.dto.MessageDto;
+import com.example.services.SystemStateServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of per-namespace metrics, with metrics off, sampling one call in sixteen (the default)
+ * and timing every call. The service benchmarks show the absolute cost on bare in-memory calls;
+ * the request benchmarks add the controller and JSON work every REST request does, which is the
+ * baseline the overhead should be judged against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamespaceMetricsBenchmark {
+
+    private static final int NAMESPACES = 64;
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog";
+
+    @Param({"off", "sampled", "every-call"})
+    public String metrics;
+
+    private SystemStateServiceImpl service;
+    private MvpController controller;
+    private ObjectMapper objectMapper;
+    private String[] namespaces;
+    private byte[] requestBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new SystemStateServiceImpl();
+        if (!metrics.equals("off")) {
+            service.setMetrics(new NamespaceMetrics(new SimpleMeterRegistry(), 100, metrics.equals("sampled") ? 16 : 1));
+        }
+        objectMapper = new ObjectMapper();
+        controller = new MvpController();
+        ReflectionTestUtils.setField(controller, "stateService", service);
+        ReflectionTestUtils.setField(controller, "objectMapper", objectMapper);
+        namespaces = new String[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            namespaces[i] = "ns" + i;
+            service.sendMessage(namespaces[i], new MessageDto(CONTENT, null));
+        }
+        requestBody = objectMapper.writeValueAsBytes(new MessageDto(CONTENT, null));
+    }
+
+    private String randomNamespace() {
+        return namespaces[ThreadLocalRandom.current().nextInt(NAMESPACES)];
+    }
+
+    @Benchmark
+    public MessageDto getState() {
+        return service.getState(randomNamespace());
+    }
+
+    @Benchmark
+    public MessageDto sendMessage() {
+        return service.sendMessage(randomNamespace(), new MessageDto(CONTENT, null));
+    }
+
+    @Benchmark
+    public byte[] getStateRequest() throws IOException {
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/state"),
+                new MockHttpServletResponse());
+        return objectMapper.writeValueAsBytes(controller.getState(randomNamespace(), request).getBody());
+    }
+
+    @Benchmark
+    public byte[] sendMessageRequest() throws IOException {
+        MessageDto message = objectMapper.readValue(requestBody, MessageDto.class);
+        return objectMapper.writeValueAsBytes(controller.sendMessage(randomNamespace(), message).join().getBody());
+    }
+}
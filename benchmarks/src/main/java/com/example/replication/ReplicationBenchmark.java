@@ -0,0 +1,112 @@
+package com.example.replication;
+
+import com.example.dto.MessageDto;
+import com.example.services.SystemStateServiceImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write latency of one node with no replication, and with async and sync replication to a peer over
+ * loopback TCP. Writes go to 1,000 namespaces in turn. The {@code sentBatches} and {@code droppedWrites}
+ * counters report the writer's replication traffic alongside the latency samples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplicationBenchmark {
+
+    private static final int NAMESPACES = 1_000;
+    private static final InetSocketAddress ANY_PORT = new InetSocketAddress("127.0.0.1", 0);
+    private static final byte[] SECRET = "replication-benchmark-secret".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"none", "async", "sync"})
+    String mode;
+
+    private SystemStateServiceImpl writer;
+    private StateReplicator writerReplicator;
+    private StateReplicator peerReplicator;
+    private String[] namespaces;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        writer = new SystemStateServiceImpl();
+        if (!mode.equals("none")) {
+            TcpReplicationTransport writerTransport = new TcpReplicationTransport("writer", ANY_PORT, SECRET);
+            TcpReplicationTransport peerTransport = new TcpReplicationTransport("peer", ANY_PORT, SECRET);
+            peerReplicator = new StateReplicator(new SystemStateServiceImpl(), peerTransport,
+                    StateReplicator.Mode.ASYNC, 256, 100_000, 1_000);
+            writerReplicator = new StateReplicator(writer, writerTransport,
+                    StateReplicator.Mode.valueOf(mode.toUpperCase(Locale.ROOT)), 256, 100_000, 1_000);
+            writerTransport.addPeer("peer", new InetSocketAddress("127.0.0.1", peerTransport.localPort()));
+        }
+        namespaces = new String[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            namespaces[i] = "ns" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (writerReplicator != null) {
+            writerReplicator.close();
+            peerReplicator.close();
+        }
+    }
+
+    /**
+     * The writer's batches sent and writes dropped per iteration, summed over the measured iterations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Traffic {
+
+        public long sentBatches;
+        public long droppedWrites;
+
+        private ReplicationStats before;
+        private ReplicationBenchmark benchmark;
+
+        @Setup(Level.Iteration)
+        public void setUp(ReplicationBenchmark benchmark) {
+            this.benchmark = benchmark;
+            before = benchmark.writerReplicator == null ? null : benchmark.writerReplicator.getStats();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            if (before != null) {
+                ReplicationStats after = benchmark.writerReplicator.getStats();
+                sentBatches = after.sentBatches() - before.sentBatches();
+                droppedWrites = after.droppedWrites() - before.droppedWrites();
+            }
+        }
+    }
+
+    @Benchmark
+    public MessageDto sendMessage(Traffic traffic) {
+        int n = next++;
+        return writer.sendMessage(namespaces[n % NAMESPACES], new MessageDto("write " + n, null));
+    }
+}
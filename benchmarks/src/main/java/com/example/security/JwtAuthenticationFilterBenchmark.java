@@ -0,0 +1,75 @@
+package com.example.security;
+
+import com.example.services.UserServiceImpl;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pass of an authenticated request through JwtAuthenticationFilter: header parsing, token
+ * verification, user lookup and security context setup. The cached case is the steady state of
+ * a client reusing its token; the uncached case is a first request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private JwtAuthenticationFilter cachedFilter;
+    private JwtAuthenticationFilter uncachedFilter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        JwtUtil cached = new JwtUtil();
+        authorization = "Bearer " + cached.generateToken("user@example.com");
+        UserServiceImpl userService = new UserServiceImpl();
+        cachedFilter = filter(cached, userService);
+        uncachedFilter = filter(new JwtUtil(0), userService);
+    }
+
+    private static JwtAuthenticationFilter filter(JwtUtil jwtUtil, UserServiceImpl userService) {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userService", userService);
+        return filter;
+    }
+
+    @Benchmark
+    public Object filterCachedToken() throws ServletException, IOException {
+        return authenticate(cachedFilter);
+    }
+
+    @Benchmark
+    public Object filterUncachedToken() throws ServletException, IOException {
+        return authenticate(uncachedFilter);
+    }
+
+    private Object authenticate(JwtAuthenticationFilter filter) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/state/bench");
+        request.addHeader("Authorization", authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.security;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and validation in JwtUtil, with the verification cache both warm and disabled, against
+ * the filter's original path that rebuilt the key and parser and parsed the token three times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String USERNAME = "user@example.com";
+    private static final String SECRET = "mySecretKeyForJwtTokensThatIsLongEnoughForHS256Algorithm"; // JwtUtil's default
+
+    private JwtUtil cached;
+    private JwtUtil uncached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cached = new JwtUtil();
+        uncached = new JwtUtil(0);
+        token = cached.generateToken(USERNAME);
+        cached.verify(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cached.generateToken(USERNAME);
+    }
+
+    @Benchmark
+    public Boolean validateTokenCached() {
+        return cached.validateToken(token, USERNAME);
+    }
+
+    @Benchmark
+    public Boolean validateTokenUncached() {
+        return uncached.validateToken(token, USERNAME);
+    }
+
+    /**
+     * The filter's original path: extractUsername, then validateToken parsing twice more,
+     * with every parse deriving the key and building a parser.
+     */
+    @Benchmark
+    public boolean previousFilterPath() {
+        String username = rebuiltParser().parseSignedClaims(token).getPayload().getSubject();
+        String extracted = rebuiltParser().parseSignedClaims(token).getPayload().getSubject();
+        boolean expired = rebuiltParser().parseSignedClaims(token).getPayload().getExpiration().before(new Date());
+        return extracted.equals(username) && !expired;
+    }
+
+    private static JwtParser rebuiltParser() {
+        return Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8))).build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.services;
+
+import com.example.codec.EncodedState;
+import com.example.codec.WireFormat;
+import com.example.dto.MessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One read of an unchanged state into a response body: read and serialized with Jackson, as
+ * {@code GET /api/state/{namespace}} did before, against written from the {@link EncodedStateCache}.
+ * The body is a reused in-memory stream, so only the CPU per read is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodedStateBenchmark {
+
+    private static final String NAMESPACE = "read-heavy";
+
+    @Param({"64", "1024", "65536"})
+    int contentLength;
+
+    private SystemStateServiceImpl service;
+    private EncodedStateCache cache;
+    private ObjectWriter writer;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        writer = objectMapper.writer();
+        service = new SystemStateServiceImpl();
+        cache = new EncodedStateCache(service, objectMapper, 64 << 20);
+        String sentence = "The quick brown fox jumps over the \"lazy\" dog. ";
+        service.sendMessage(NAMESPACE, new MessageDto(sentence.repeat(contentLength / sentence.length() + 1).substring(0, contentLength), null));
+    }
+
+    @Benchmark
+    public int serialized() throws IOException {
+        body.reset();
+        writer.writeValue(body, service.getState(NAMESPACE));
+        return body.size();
+    }
+
+    @Benchmark
+    public int preEncoded() throws IOException {
+        body.reset();
+        body.write(((EncodedState) cache.getBody(NAMESPACE)).encoded(WireFormat.JSON));
+        return body.size();
+    }
+}
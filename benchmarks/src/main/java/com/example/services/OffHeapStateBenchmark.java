@@ -0,0 +1,93 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.storage.OffHeapStateStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewriting and reading back large namespace states held on heap and off heap. Both modes allocate the
+ * same transient strings; what differs is the live state each collection has to trace and copy, so run
+ * with {@code -prof gc} to compare collection counts and times. Both modes keep no history, which would
+ * otherwise hold content on heap in either. Setup fails if off-heap states leave much on the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OffHeapStateBenchmark {
+
+    private static final int NAMESPACES = 400;
+    private static final int CONTENT_LENGTH = 128 * 1024;
+
+    @Param({"heap", "offHeap"})
+    String storage;
+
+    private SystemStateServiceImpl service;
+    private String[] namespaces;
+    private String[] contents;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        long heapBefore = collectedHeap();
+        if (storage.equals("offHeap")) {
+            OffHeapStateStore offHeap = new OffHeapStateStore(2L * NAMESPACES * CONTENT_LENGTH, 1 << 20, 4096, 0);
+            service = new SystemStateServiceImpl(null, null, StateStoreLimits.NONE, offHeap);
+        } else {
+            service = new SystemStateServiceImpl() {
+                @Override
+                protected int getHistoryCapacity() {
+                    return 0;
+                }
+            };
+        }
+        namespaces = new String[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            namespaces[i] = "large-" + i;
+        }
+        // Two alternating contents, so every write replaces a state with a different one
+        contents = new String[2];
+        char[] fill = new char[CONTENT_LENGTH];
+        for (int i = 0; i < contents.length; i++) {
+            Arrays.fill(fill, (char) ('a' + i));
+            contents[i] = new String(fill);
+        }
+        for (String namespace : namespaces) {
+            service.sendMessage(namespace, new MessageDto(contents[0], null));
+        }
+        long retained = collectedHeap() - heapBefore;
+        if (storage.equals("offHeap") && retained > (long) NAMESPACES * CONTENT_LENGTH / 4) {
+            throw new IllegalStateException("Off-heap states left " + retained + " bytes on the heap");
+        }
+    }
+
+    private static long collectedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public String rewriteAndRead() {
+        int n = next++;
+        String namespace = namespaces[n % NAMESPACES];
+        // A fresh string per write, as a request body would be
+        service.sendMessage(namespace, new MessageDto(new String(contents[(n / NAMESPACES) % 2]), null));
+        return service.getState(namespace).getContent();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of the in-memory SystemStateServiceImpl with and without namespace shards.
+ * Writers pick random namespaces; set the writer count with JMH's {@code -t} option, for example
+ * {@code -t 32} on a 32-core machine, to see how throughput scales with cores.
+ * A shard count of 0 runs every write on its calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedWriteBenchmark {
+
+    private static final int NAMESPACES = 1_024;
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog";
+
+    @Param({"0", "1", "4", "16", "32"})
+    int shardCount;
+
+    private SystemStateServiceImpl service;
+    private ShardedExecutor shards;
+    private String[] namespaces;
+
+    @Setup
+    public void setUp() {
+        service = new SystemStateServiceImpl();
+        if (shardCount > 0) {
+            shards = new ShardedExecutor(shardCount, "bench-shard-");
+            service.setShards(shards);
+        }
+        namespaces = new String[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            namespaces[i] = "ns" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (shards != null) {
+            shards.close();
+        }
+    }
+
+    @Benchmark
+    public MessageDto sendMessage() {
+        String namespace = namespaces[ThreadLocalRandom.current().nextInt(NAMESPACES)];
+        return service.sendMessage(namespace, new MessageDto(CONTENT, null));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.services;
+
+import com.example.dto.VersionedMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing one broadcast frame for a large state in which a single field changes:
+ * serializing the full state, as non-delta namespaces do, against diffing it with the previous
+ * state and serializing the delta. The delta frame's size does not grow with the state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateDeltaEncoderBenchmark {
+
+    @Param({"1024", "16384", "65536"})
+    int contentLength;
+
+    private ObjectWriter writer;
+    private StateDeltaEncoder encoder;
+    private String[] contents;
+    private long version;
+
+    @Setup
+    public void setUp() {
+        writer = new ObjectMapper().writer();
+        encoder = new StateDeltaEncoder(512);
+        String padding = "x".repeat(contentLength / 2 - 16);
+        contents = new String[] {
+                "{\"a\":\"" + padding + "\",\"status\":\"draft\",\"b\":\"" + padding + "\"}",
+                "{\"a\":\"" + padding + "\",\"status\":\"review\",\"b\":\"" + padding + "\"}"};
+    }
+
+    @Benchmark
+    public byte[] fullFrame() throws IOException {
+        version++;
+        return writer.writeValueAsBytes(new VersionedMessageDto(contents[(int) (version & 1)], "doc", version));
+    }
+
+    @Benchmark
+    public byte[] deltaFrame() {
+        version++;
+        byte[][] frame = new byte[1][];
+        encoder.encode("doc", new VersionedMessageDto(contents[(int) (version & 1)], "doc", version), delta -> {
+            try {
+                frame[0] = writer.writeValueAsBytes(delta);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return frame[0];
+    }
+}
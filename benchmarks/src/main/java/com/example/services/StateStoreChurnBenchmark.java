@@ -0,0 +1,87 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes under namespace churn with a 32 MB memory budget: every write goes to a namespace never
+ * seen before, as a service keyed by session or request would. Next to the write rate, the
+ * {@code heapGrowth} counter sums how much the heap in use after a full collection grew over each
+ * measured iteration, and {@code evictions} counts the namespaces evicted. Once the budget is reached
+ * the heap growth is close to zero; without a budget it would grow by every iteration's namespaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StateStoreChurnBenchmark {
+
+    private static final long MAX_BYTES = 32L << 20;
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog";
+
+    private SystemStateServiceImpl service;
+    private long next;
+    private long heapBytes;
+    private long evictions;
+
+    @Setup
+    public void setUp() {
+        service = new SystemStateServiceImpl(new StateStoreLimits(MAX_BYTES, "", 0));
+        heapBytes = collectedHeap();
+    }
+
+    private static long collectedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Heap growth and evictions per iteration, summed over the measured iterations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+
+        public long heapGrowth;
+        public long evictions;
+
+        private StateStoreChurnBenchmark benchmark;
+
+        @Setup(Level.Iteration)
+        public void setUp(StateStoreChurnBenchmark benchmark) {
+            this.benchmark = benchmark;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            long heapBytes = collectedHeap();
+            heapGrowth = heapBytes - benchmark.heapBytes;
+            benchmark.heapBytes = heapBytes;
+            long evicted = benchmark.service.getStoreStats().sizeEvictions();
+            evictions = evicted - benchmark.evictions;
+            benchmark.evictions = evicted;
+        }
+    }
+
+    @Benchmark
+    public MessageDto sendMessage(Retained retained) {
+        return service.sendMessage("churn-" + next++, new MessageDto(CONTENT, null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message processing and state access in the in-memory SystemStateServiceImpl.
+ * The contended group runs readers and a writer against the same namespaces at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemStateServiceBenchmark {
+
+    private static final int NAMESPACES = 1_024;
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog";
+
+    private SystemStateServiceImpl service;
+    private String[] namespaces;
+
+    @Setup
+    public void setUp() {
+        service = new SystemStateServiceImpl();
+        namespaces = new String[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            namespaces[i] = "ns" + i;
+            service.sendMessage(namespaces[i], new MessageDto(CONTENT, null));
+        }
+    }
+
+    private String randomNamespace() {
+        return namespaces[ThreadLocalRandom.current().nextInt(NAMESPACES)];
+    }
+
+    @Benchmark
+    public MessageDto processMessage() {
+        return service.processMessage("bench", new MessageDto(CONTENT, null));
+    }
+
+    @Benchmark
+    public MessageDto sendMessage() {
+        return service.sendMessage(randomNamespace(), new MessageDto(CONTENT, null));
+    }
+
+    @Benchmark
+    public MessageDto getStateUncontended() {
+        return service.getState(randomNamespace());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public MessageDto contendedGetState() {
+        return service.getState(randomNamespace());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public MessageDto contendedSendMessage() {
+        return service.sendMessage(randomNamespace(), new MessageDto(CONTENT, null));
+    }
+}
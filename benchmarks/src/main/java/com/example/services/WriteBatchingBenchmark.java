@@ -0,0 +1,131 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.storage.FsyncPolicy;
+import com.example.storage.WriteAheadLog;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Durable write throughput of SystemStateServiceImpl on a write-ahead log with {@code fsync-policy=always},
+ * with each write stored on its own and with concurrent writes coalesced by a WriteBatcher.
+ * The {@code storageCalls} counter reports storage operations per second alongside the write rate.
+ * Runs 32 writers by default, as many concurrent REST clients would; override with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class WriteBatchingBenchmark {
+
+    private static final int NAMESPACES = 1_024;
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog";
+
+    @Param({"off", "on"})
+    String batching;
+
+    private final LongAdder storageCalls = new LongAdder();
+
+    private Path directory;
+    private WriteAheadLog wal;
+    private WriteBatcher batcher;
+    private SystemStateServiceImpl service;
+    private String[] namespaces;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal-bench");
+        wal = new WriteAheadLog(directory, 64 << 20, FsyncPolicy.ALWAYS, 0);
+        service = new SystemStateServiceImpl(wal) {
+            @Override
+            protected void storeMessage(String namespace, MessageDto message) {
+                storageCalls.increment();
+                super.storeMessage(namespace, message);
+            }
+
+            @Override
+            protected void storeMessages(List<VersionedMessageDto> messages) {
+                storageCalls.increment();
+                super.storeMessages(messages);
+            }
+        };
+        if (batching.equals("on")) {
+            batcher = new WriteBatcher(256, 0, "bench-batcher");
+            service.setBatcher(batcher);
+        }
+        namespaces = new String[NAMESPACES];
+        for (int i = 0; i < NAMESPACES; i++) {
+            namespaces[i] = "ns" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (batcher != null) {
+            batcher.close();
+        }
+        wal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Storage operations, reported per second next to the benchmark's own write rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class StorageCalls {
+
+        public long storageCalls;
+
+        private WriteBatchingBenchmark benchmark;
+
+        @Setup(Level.Iteration)
+        public void setUp(WriteBatchingBenchmark benchmark) {
+            this.benchmark = benchmark;
+            storageCalls = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            // The first thread to finish takes the whole count, so the per-thread values sum to the total
+            storageCalls = benchmark.storageCalls.sumThenReset();
+        }
+    }
+
+    @Benchmark
+    public MessageDto sendMessage(StorageCalls calls) {
+        String namespace = namespaces[ThreadLocalRandom.current().nextInt(NAMESPACES)];
+        return service.sendMessage(namespace, new MessageDto(CONTENT, null));
+    }
+}
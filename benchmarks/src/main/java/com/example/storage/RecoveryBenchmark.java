@@ -0,0 +1,90 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.services.SystemStateServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup recovery time of SystemStateServiceImpl against namespace count, replaying the whole log
+ * against loading a snapshot and replaying the tail. Each namespace is written five times, the
+ * snapshot is taken, and 500 more writes form the tail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RecoveryBenchmark {
+
+    private static final int WRITES_PER_NAMESPACE = 5;
+    private static final int TAIL_WRITES = 500;
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    @Param({"1000", "10000", "100000"})
+    int namespaces;
+
+    @Param({"fullReplay", "snapshot"})
+    String recovery;
+
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recovery-bench");
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), SEGMENT_SIZE, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl service = open(wal);
+            for (int round = 0; round < WRITES_PER_NAMESPACE; round++) {
+                for (int ns = 0; ns < namespaces; ns++) {
+                    service.sendMessage("ns" + ns, new MessageDto("payload " + round + " for namespace " + ns, null));
+                }
+            }
+            if (recovery.equals("snapshot")) {
+                service.takeSnapshot();
+            }
+            for (int i = 0; i < TAIL_WRITES; i++) {
+                service.sendMessage("ns" + i % namespaces, new MessageDto("tail " + i, null));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public String recover() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), SEGMENT_SIZE, FsyncPolicy.OS, 0)) {
+            return open(wal).getState("ns0").getContent();
+        }
+    }
+
+    private SystemStateServiceImpl open(WriteAheadLog wal) throws IOException {
+        return recovery.equals("snapshot")
+                ? new SystemStateServiceImpl(wal, new SnapshotStore(directory.resolve("snapshots"), 1))
+                : new SystemStateServiceImpl(wal);
+    }
+}
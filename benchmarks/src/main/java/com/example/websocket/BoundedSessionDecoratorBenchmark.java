@@ -0,0 +1,58 @@
+package com.example.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing one broadcast frame to a client that keeps up, through Spring's default
+ * session decorator and through {@link BoundedSessionDecorator}. The bounded queue should add
+ * no more than a lock and a deque operation to the path every broadcast takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundedSessionDecoratorBenchmark {
+
+    private WebSocketSession springDefault;
+    private WebSocketSession bounded;
+    private TextMessage frame;
+
+    @Setup
+    public void setUp() {
+        WebSocketSession client = (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {WebSocketSession.class}, (proxy, method, args) -> method.getName().equals("getId") ? "bench" : null);
+        springDefault = new ConcurrentWebSocketSessionDecorator(client, 10_000, 65_536);
+        bounded = new BoundedSessionDecorator(client, new OutboundLimits(128, 65_536, 10_000, SlowConsumerPolicy.CONFLATE),
+                new OutboundSessions());
+        frame = new TextMessage("MESSAGE\ndestination:/topic/state/bench\ncontent-type:application/json\nsubscription:0\n"
+                + "message-id:1\ncontent-length:60\n\n{\"content\":\"The quick brown fox jumps over the lazy dog\"}\0");
+    }
+
+    @Benchmark
+    public void springDefaultDecorator() throws IOException {
+        springDefault.sendMessage(frame);
+    }
+
+    @Benchmark
+    public void boundedDecorator() throws IOException {
+        bounded.sendMessage(frame);
+    }
+}
@@ -1,6 +1,8 @@
 import { useState, useEffect, useRef } from 'react';
 import { apiService } from '@/services/apiService'; // Adjusted import to match object export
 import type { MessageDto } from '@/types/MessageDto'; // Assume existing DTO type
+import type { StateDeltaDto } from '@/types/StateDeltaDto';
+import { applyStateFrame } from '@/services/stateDelta';
 import SockJS from 'sockjs-client';
 import * as StompJs from 'stompjs';
 
@@ -23,14 +25,27 @@ export const useSystemState = (namespace: string): SystemState => {
   const [isConnected, setIsConnected] = useState<boolean>(false);
 
   const stompClientRef = useRef<any>(null);
+  const currentRef = useRef<MessageDto | null>(null); // Latest state, which deltas apply to
   const reconnectTimeoutRef = useRef<NodeJS.Timeout | null>(null);
+  const eventSourceRef = useRef<EventSource | null>(null); // SSE fallback while STOMP is down
+
+  // Applies a full state unless a newer one has already been shown
+  const applyState = (dto: MessageDto, append: boolean) => {
+    if (currentRef.current?.version !== undefined && dto.version !== undefined && dto.version < currentRef.current.version) {
+      return;
+    }
+    currentRef.current = dto;
+    setState(dto.content);
+    setMessages(prev => append ? [...prev.slice(-9), dto] : [dto]); // Keep last 10 messages
+  };
 
   const loadData = async () => {
+    const source = eventSourceRef.current;
+    if (source && source.readyState === source.OPEN) return; // The stream is already current
     setLoading(true);
     try {
       const dto = await apiService.getState(namespace);
-      setState(dto.content);
-      setMessages([dto]); // Current state as the latest message
+      applyState(dto, false); // Current state as the latest message
     } catch (err) {
       setError((err as Error).message);
     } finally {
@@ -38,6 +53,26 @@ export const useSystemState = (namespace: string): SystemState => {
     }
   };
 
+  // Server-sent events pass through proxies that break SockJS; EventSource reconnects and resumes by itself
+  const openEventStream = () => {
+    if (eventSourceRef.current || typeof EventSource === 'undefined') return;
+    const source = new EventSource(apiService.stateStreamUrl(namespace));
+    source.addEventListener('state', (event: MessageEvent) => {
+      try {
+        applyState(JSON.parse(event.data), true);
+        setLoading(false);
+      } catch (err) {
+        console.error('Error parsing state event:', err);
+      }
+    });
+    eventSourceRef.current = source;
+  };
+
+  const closeEventStream = () => {
+    eventSourceRef.current?.close();
+    eventSourceRef.current = null;
+  };
+
   const connectWebSocket = () => {
     if (stompClientRef.current?.connected) return;
 
@@ -55,11 +90,22 @@ export const useSystemState = (namespace: string): SystemState => {
         console.log(`WebSocket connected successfully for namespace: ${namespace}`);
         setIsConnected(true);
         setError(null);
+        closeEventStream();
 
-        // Subscribe to namespace-specific state updates
+        // Subscribe to namespace-specific state updates; delta-encoded namespaces send a full state first, then deltas
         stompClient.subscribe(`/topic/state/${namespace}`, (message: any) => {
           try {
-            const dto: MessageDto = JSON.parse(message.body);
+            const frame: MessageDto | StateDeltaDto = JSON.parse(message.body);
+            const applied = applyStateFrame(currentRef.current, frame);
+            if (applied.resync) {
+              // A delta was missed; ask for the full state the next delta will apply to
+              stompClient.send(`/app/state/${namespace}/request`, {}, '');
+            }
+            if (!applied.changed || applied.state === null) {
+              return;
+            }
+            const dto = applied.state;
+            currentRef.current = dto;
             setState(dto.content);
             setMessages(prev => [...prev.slice(-9), dto]); // Keep last 10 messages
           } catch (err) {
@@ -69,9 +115,10 @@ export const useSystemState = (namespace: string): SystemState => {
         console.log(`Subscribed to /topic/state/${namespace}`);
       }, (error: any) => {
         // Only log error, don't set error state - this allows HTTP fallback to work
-        console.warn('WebSocket STOMP connection failed, falling back to HTTP polling:', error);
+        console.warn('WebSocket STOMP connection failed, falling back to server-sent events:', error);
         setIsConnected(false);
         // Don't set error state here - let HTTP API handle errors
+        openEventStream();
 
         // Attempt to reconnect after 10 seconds (longer delay to avoid spam)
         reconnectTimeoutRef.current = setTimeout(connectWebSocket, 10000);
@@ -83,6 +130,7 @@ export const useSystemState = (namespace: string): SystemState => {
       console.warn('WebSocket setup failed, will use HTTP fallback:', err);
       setIsConnected(false);
       // Don't set error state - allow HTTP API to work
+      openEventStream();
     }
   };
 
@@ -91,6 +139,7 @@ export const useSystemState = (namespace: string): SystemState => {
       stompClientRef.current.disconnect();
     }
     stompClientRef.current = null;
+    closeEventStream();
     if (reconnectTimeoutRef.current) {
       clearTimeout(reconnectTimeoutRef.current);
       reconnectTimeoutRef.current = null;
@@ -107,7 +156,7 @@ export const useSystemState = (namespace: string): SystemState => {
       connectWebSocket();
     }
 
-    // Fallback polling every 30 seconds (reduced frequency since we have WebSocket)
+    // Fallback polling every 30 seconds, skipped while the event stream is open
     // Use more frequent polling in test mode to simulate real-time behavior
     const pollInterval = import.meta.env.MODE === 'test' ? 1000 : 30000;
     const interval = setInterval(loadData, pollInterval);
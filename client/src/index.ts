@@ -9,7 +9,9 @@ export type { TabConfig } from './types/TabConfig';
 export type { TabRegistry } from './types/TabRegistry';
 export type { TabLifecycleHooks } from './types/TabLifecycleHooks';
 export type { MessageDto } from './types/MessageDto';
+export type { StateDeltaDto } from './types/StateDeltaDto';
 export type { HeartbeatDto } from './types/HeartbeatDto';
 export { useSystemState } from './hooks/useSystemState';
 export { apiService } from './services/apiService';
+export { applyStateFrame } from './services/stateDelta';
 export { AuthProvider, useAuth } from './contexts/AuthContext';
\ No newline at end of file
@@ -62,6 +62,17 @@ describe('apiService', () => {
     });
   });
 
+  describe('stateStreamUrl', () => {
+    it('should pass a stored token as a query parameter', () => {
+      localStorage.setItem('token', 'a.b.c');
+
+      expect(apiService.stateStreamUrl('test')).toBe('http://localhost:8080/api/state/test/stream?access_token=a.b.c');
+
+      localStorage.removeItem('token');
+      expect(apiService.stateStreamUrl('test')).toBe('http://localhost:8080/api/state/test/stream');
+    });
+  });
+
   describe('heartbeat', () => {
     it('should return HeartbeatDto on successful heartbeat', async () => {
       const mockResponse: HeartbeatDto = { status: 'alive', timestamp: '2023-01-01T00:00:00Z' };
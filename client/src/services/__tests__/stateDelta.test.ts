@@ -0,0 +1,40 @@
+import { describe, it, expect } from 'vitest';
+import { applyStateFrame } from '../stateDelta';
+import type { MessageDto } from '@/types/MessageDto';
+import type { StateDeltaDto } from '@/types/StateDeltaDto';
+
+const state: MessageDto = { content: '{"status":"draft"}', namespace: 'doc', version: 3 };
+const delta = (baseVersion: number, version: number): StateDeltaDto =>
+  ({ namespace: 'doc', baseVersion, version, offset: 11, deleteCount: 5, insert: 'published' });
+
+describe('applyStateFrame', () => {
+  it('should apply a delta to the version it was computed against', () => {
+    const applied = applyStateFrame(state, delta(3, 4));
+
+    expect(applied).toEqual({
+      state: { content: '{"status":"published"}', namespace: 'doc', version: 4 },
+      changed: true,
+      resync: false,
+    });
+  });
+
+  it('should request a resync when a delta was missed', () => {
+    const applied = applyStateFrame(state, delta(4, 5));
+
+    expect(applied.resync).toBe(true);
+    expect(applied.state).toBe(state);
+  });
+
+  it('should ignore stale frames and deltas received before any state', () => {
+    expect(applyStateFrame(state, delta(2, 3)).changed).toBe(false);
+    expect(applyStateFrame(state, { ...state, content: 'old', version: 2 }).changed).toBe(false);
+    expect(applyStateFrame(null, delta(3, 4))).toEqual({ state: null, changed: false, resync: false });
+  });
+
+  it('should replace the state with a newer or unversioned full state', () => {
+    const newer: MessageDto = { content: 'new', namespace: 'doc', version: 9 };
+
+    expect(applyStateFrame(state, newer).state).toBe(newer);
+    expect(applyStateFrame(null, { content: 'plain', namespace: 'doc' }).changed).toBe(true);
+  });
+});
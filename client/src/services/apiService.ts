@@ -38,6 +38,18 @@ export const apiService = {
     return response.json();
   },
 
+  /**
+   * URL of the server-sent event stream of a namespace's state, for an EventSource.
+   * EventSource cannot set headers, so a stored token is passed as a query parameter.
+   * @param namespace The namespace identifier
+   * @returns string
+   */
+  stateStreamUrl: (namespace: string): string => {
+    const token = localStorage.getItem('token');
+    const url = `${BASE_URL}/state/${encodeURIComponent(namespace)}/stream`;
+    return token ? `${url}?access_token=${encodeURIComponent(token)}` : url;
+  },
+
   /**
    * Health check to verify server availability.
    * @returns Promise<HeartbeatDto>
@@ -0,0 +1,35 @@
+import type { MessageDto } from '@/types/MessageDto';
+import type { StateDeltaDto } from '@/types/StateDeltaDto';
+
+export interface AppliedFrame {
+  state: MessageDto | null; // The state after the frame, unchanged if the frame was ignored
+  changed: boolean; // Whether the frame moved the state forward
+  resync: boolean; // Whether a delta was missed and the full state must be requested again
+}
+
+const isDelta = (frame: MessageDto | StateDeltaDto): frame is StateDeltaDto =>
+  (frame as StateDeltaDto).baseVersion !== undefined;
+
+// Applies a frame received on /topic/state/{namespace}. Full states replace the current one unless
+// they are older; deltas apply only to the version they were computed against, anything else is a gap.
+export const applyStateFrame = (current: MessageDto | null, frame: MessageDto | StateDeltaDto): AppliedFrame => {
+  const currentVersion = current?.version;
+  if (!isDelta(frame)) {
+    if (currentVersion !== undefined && frame.version !== undefined && frame.version <= currentVersion) {
+      return { state: current, changed: false, resync: false };
+    }
+    return { state: frame, changed: true, resync: false };
+  }
+  if (current === null || currentVersion === undefined) {
+    // Deltas that arrive before the subscription snapshot are covered by it
+    return { state: current, changed: false, resync: false };
+  }
+  if (frame.version <= currentVersion) {
+    return { state: current, changed: false, resync: false };
+  }
+  if (frame.baseVersion !== currentVersion || frame.offset + frame.deleteCount > current.content.length) {
+    return { state: current, changed: false, resync: true };
+  }
+  const content = current.content.slice(0, frame.offset) + frame.insert + current.content.slice(frame.offset + frame.deleteCount);
+  return { state: { content, namespace: frame.namespace, version: frame.version }, changed: true, resync: false };
+};
@@ -2,4 +2,5 @@
 export interface MessageDto {
     content: string; // The message content to be exchanged or rendered
     namespace: string; // The namespace for scoping the message
+    version?: number; // Per-namespace version, present on stored states
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+// Delta frame broadcast on /topic/state/{namespace} for delta-encoded namespaces
+export interface StateDeltaDto {
+    namespace: string;
+    baseVersion: number; // The version this delta applies to
+    version: number; // The version it produces
+    offset: number; // UTF-16 offset of the changed region
+    deleteCount: number; // Characters removed at offset
+    insert: string; // Text put in their place
+}
@@ -0,0 +1,176 @@
+package org.ajp.mvp.loadgen;
+
+import com.example.dto.MessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Drives a configurable mix of REST and STOMP traffic against a running server and reports
+ * throughput, latency percentiles and fan-out delivery lag.
+ * <p>
+ * Each client is a closed loop: it issues one request of the mix, waits for it to complete and issues
+ * the next. REST requests go through the asynchronous JDK HTTP client and STOMP traffic through NIO
+ * WebSocket connections, so neither clients nor subscribers hold a thread while waiting.
+ * <p>
+ * Run against a server with {@code mvn compile exec:java -Dloadgen.args="--target=http://host:8080"};
+ * see {@link LoadProfile} for the other settings.
+ */
+public class LoadGenerator {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DRAIN_LIMIT = Duration.ofSeconds(5);
+
+    private final LoadProfile profile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Operation[] weightedOperations;
+    private final String messageBody;
+
+    public LoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+        try {
+            this.messageBody = objectMapper.writeValueAsString(new MessageDto("x".repeat(profile.payloadBytes()), null));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.weightedOperations = profile.mix().entrySet().stream()
+                .flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+                .toArray(Operation[]::new);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromArgs(args);
+        System.out.printf("Load on %s: %d clients, %d namespaces x %d subscribers, mix %s, %ds warmup, %ds measured%n",
+                profile.target(), profile.clients(), profile.namespaces(), profile.subscribers(), profile.mix(),
+                profile.warmup().toSeconds(), profile.duration().toSeconds());
+        new LoadGenerator(profile).run().print(System.out);
+    }
+
+    /**
+     * Logs in, connects the STOMP subscribers and publishers, runs the clients through warmup and
+     * the measured window, and waits for the last broadcasts to be delivered.
+     * @return the measurements of the window
+     */
+    public LoadReport run() throws Exception {
+        LoadReport report = new LoadReport(profile.duration(), profile.subscribers());
+        String token = login();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "loadgen-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (StompFleet fleet = new StompFleet(profile, report)) {
+            fleet.connect();
+            long measureStart = System.nanoTime() + profile.warmup().toNanos();
+            Window window = new Window(measureStart, measureStart + profile.duration().toNanos());
+            CountDownLatch finished = new CountDownLatch(profile.clients());
+            for (int client = 0; client < profile.clients(); client++) {
+                int id = client;
+                executor.execute(() -> next(id, token, fleet, report, window, executor, finished));
+            }
+            finished.await();
+            fleet.awaitQuiet(DRAIN_LIMIT);
+        } finally {
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    /** The measured window, in {@link System#nanoTime()} terms. */
+    private record Window(long start, long end) {
+        boolean contains(long from, long to) {
+            return from >= start && to <= end;
+        }
+    }
+
+    /**
+     * Issues a client's next request, or finishes the client once the window has passed.
+     * Completion continues on the executor rather than the completing thread, so loops never recurse.
+     */
+    private void next(int client, String token, StompFleet fleet, LoadReport report, Window window,
+                      ExecutorService executor, CountDownLatch finished) {
+        long start = System.nanoTime();
+        if (start >= window.end()) {
+            finished.countDown();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+        String namespace = profile.namespace(random.nextInt(profile.namespaces()));
+        CompletableFuture<?> request;
+        try {
+            request = switch (operation) {
+                case STATE -> send(get("/api/state/" + namespace, token));
+                case MESSAGE -> send(post("/api/message/" + namespace, token));
+                case HEARTBEAT -> send(get("/api/heartbeat", token));
+                case STOMP -> fleet.publish(client, namespace, start >= window.start());
+            };
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenCompleteAsync((ignored, failure) -> {
+            long end = System.nanoTime();
+            if (window.contains(start, end)) {
+                if (failure == null) {
+                    report.recordLatency(operation, end - start);
+                } else {
+                    report.recordError(operation);
+                }
+            }
+            next(client, token, fleet, report, window, executor, finished);
+        }, executor);
+    }
+
+    private CompletableFuture<Void> send(HttpRequest request) {
+        return http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+            }
+        });
+    }
+
+    private HttpRequest get(String path, String token) {
+        return request(path, token).GET().build();
+    }
+
+    private HttpRequest post(String path, String token) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(messageBody))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        return HttpRequest.newBuilder(profile.target().resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private String login() throws IOException, InterruptedException {
+        String credentials = objectMapper.writeValueAsString(
+                Map.of("username", profile.username(), "password", profile.password()));
+        HttpRequest request = HttpRequest.newBuilder(profile.target().resolve("/auth/login"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login as " + profile.username() + " failed with " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("token").asText();
+    }
+}
@@ -0,0 +1,166 @@
+package org.ajp.mvp.loadgen;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings for one load generator run. Every setting has a default and can be overridden by name,
+ * either as {@code --name=value} command line arguments or as {@code loadgen.name} system properties.
+ *
+ * @param target base URL of the server under load
+ * @param username login used to obtain a token for the REST endpoints
+ * @param password password for {@code username}
+ * @param warmup time spent under load before measuring starts; also lets subscriptions settle
+ * @param duration length of the measured window
+ * @param namespaces number of namespaces the load is spread over, named {@code load-0}, {@code load-1}, ...
+ * @param subscribers STOMP subscriber connections per namespace, which measure fan-out delivery lag
+ * @param clients closed-loop clients issuing the request mix, each with at most one request in flight
+ * @param publishers STOMP connections shared by the clients for {@link Operation#STOMP} requests
+ * @param mix relative weight of each operation in the clients' request mix
+ * @param payloadBytes content length of published messages
+ */
+public record LoadProfile(URI target, String username, String password, Duration warmup, Duration duration,
+                          int namespaces, int subscribers, int clients, int publishers,
+                          Map<Operation, Integer> mix, int payloadBytes) {
+
+    /** Prefix of the system properties read by {@link #fromSystemProperties()}. */
+    public static final String PROPERTY_PREFIX = "loadgen.";
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("target", "http://localhost:8080"),
+            Map.entry("username", "user@example.com"),
+            Map.entry("password", "656frfRRf"),
+            Map.entry("warmup-seconds", "5"),
+            Map.entry("duration-seconds", "30"),
+            Map.entry("namespaces", "4"),
+            Map.entry("subscribers", "1000"),
+            Map.entry("clients", "64"),
+            Map.entry("publishers", "4"),
+            Map.entry("mix", "state=60,message=20,heartbeat=10,stomp=10"),
+            Map.entry("payload-bytes", "256"));
+
+    public LoadProfile {
+        if (namespaces < 1 || clients < 0 || subscribers < 0 || publishers < 1 || payloadBytes < 0) {
+            throw new IllegalArgumentException("namespaces and publishers must be positive; clients, subscribers"
+                    + " and payload-bytes must not be negative");
+        }
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+            throw new IllegalArgumentException("duration must be positive and warmup must not be negative");
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("mix needs at least one operation with a positive weight");
+        }
+        mix = Collections.unmodifiableMap(new EnumMap<>(mix));
+    }
+
+    /**
+     * @return the profile with every setting at its default
+     */
+    public static LoadProfile defaults() {
+        return of(Map.of());
+    }
+
+    /**
+     * Builds a profile from named settings, using defaults for any not given.
+     * @param settings setting values by name, e.g. {@code subscribers -> 2000}
+     * @return the profile
+     * @throws IllegalArgumentException for an unknown setting or a malformed value
+     */
+    public static LoadProfile of(Map<String, String> settings) {
+        Map<String, String> values = new HashMap<>(DEFAULTS);
+        settings.forEach((name, value) -> {
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown setting: " + name + "; expected one of " + DEFAULTS.keySet());
+            }
+            values.put(name, value);
+        });
+        try {
+            return new LoadProfile(
+                    URI.create(values.get("target")),
+                    values.get("username"),
+                    values.get("password"),
+                    Duration.ofSeconds(Long.parseLong(values.get("warmup-seconds"))),
+                    Duration.ofSeconds(Long.parseLong(values.get("duration-seconds"))),
+                    Integer.parseInt(values.get("namespaces")),
+                    Integer.parseInt(values.get("subscribers")),
+                    Integer.parseInt(values.get("clients")),
+                    Integer.parseInt(values.get("publishers")),
+                    parseMix(values.get("mix")),
+                    Integer.parseInt(values.get("payload-bytes")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed number in " + settings, e);
+        }
+    }
+
+    /**
+     * @param args command line arguments of the form {@code --name=value}
+     * @return the profile
+     * @throws IllegalArgumentException for a malformed argument or setting
+     */
+    public static LoadProfile fromArgs(String... args) {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            settings.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return of(settings);
+    }
+
+    /**
+     * @return the profile given by {@code loadgen.*} system properties
+     */
+    public static LoadProfile fromSystemProperties() {
+        Map<String, String> settings = new HashMap<>();
+        Properties properties = System.getProperties();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_PREFIX)) {
+                settings.put(name.substring(PROPERTY_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        return of(settings);
+    }
+
+    /**
+     * @param target base URL of another server
+     * @return this profile aimed at that server
+     */
+    public LoadProfile withTarget(URI target) {
+        return new LoadProfile(target, username, password, warmup, duration, namespaces, subscribers, clients,
+                publishers, mix, payloadBytes);
+    }
+
+    /**
+     * @param index a namespace index below {@link #namespaces()}
+     * @return the namespace name
+     */
+    public String namespace(int index) {
+        return "load-" + index;
+    }
+
+    /**
+     * Parses a mix such as {@code state=60,message=20,stomp=20}; operations left out get no weight.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in mix but got: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in mix: " + entry);
+            }
+            weights.put(Operation.fromLabel(parts[0].trim()), weight);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,151 @@
+package org.ajp.mvp.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of a load generator run: per-operation latency histograms and error counts, and the
+ * delivery lag of every broadcast a subscriber received for a publish made in the measured window.
+ * Latencies are recorded in microseconds. Safe for concurrent recording.
+ */
+public class LoadReport {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Duration duration;
+    private final int subscribers;
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Histogram deliveryLag = histogram();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder transportErrors = new LongAdder();
+
+    /**
+     * @param duration length of the measured window, used to compute throughput
+     * @param subscribers subscribers per namespace, so each publish should be delivered this many times
+     */
+    public LoadReport(Duration duration, int subscribers) {
+        this.duration = duration;
+        this.subscribers = subscribers;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, histogram());
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    void recordLatency(Operation operation, long nanos) {
+        latencies.get(operation).recordValue(micros(nanos));
+    }
+
+    void recordError(Operation operation) {
+        errors.get(operation).increment();
+    }
+
+    void recordPublished() {
+        published.increment();
+    }
+
+    void recordTransportError() {
+        transportErrors.increment();
+    }
+
+    void recordDelivery(long lagNanos) {
+        deliveryLag.recordValue(micros(lagNanos));
+    }
+
+    /**
+     * @return latencies in microseconds of the successful requests of one operation
+     */
+    public Histogram latencies(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    public long errors(Operation operation) {
+        return errors.get(operation).sum();
+    }
+
+    /**
+     * @return STOMP messages published in the measured window
+     */
+    public long published() {
+        return published.sum();
+    }
+
+    /**
+     * @return delivery lag in microseconds of each subscriber delivery of a measured publish
+     */
+    public Histogram deliveryLag() {
+        return deliveryLag;
+    }
+
+    /**
+     * @return STOMP connections that failed after connecting, e.g. dropped by the server
+     */
+    public long transportErrors() {
+        return transportErrors.sum();
+    }
+
+    /**
+     * @return the fraction of expected subscriber deliveries that arrived, or 1 if none were expected
+     */
+    public double deliveryRatio() {
+        long expected = published() * subscribers;
+        return expected == 0 ? 1 : (double) deliveryLag.getTotalCount() / expected;
+    }
+
+    /**
+     * @param operation the operation
+     * @return successful requests per second over the measured window
+     */
+    public double throughput(Operation operation) {
+        return latencies.get(operation).getTotalCount() / (duration.toNanos() / 1e9);
+    }
+
+    /**
+     * Prints throughput, latency percentiles and fan-out figures as fixed-width tables.
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out) {
+        out.printf("%-10s %12s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "requests/s", "errors", "p50 (ms)", "p90 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() > 0 || errors(operation) > 0) {
+                out.printf("%-10s %12.0f %8d %s%n", operation.label(), throughput(operation), errors(operation),
+                        percentiles(histogram));
+            }
+        }
+        if (published() > 0) {
+            out.printf("%n%-10s %12s %8s %10s %10s %10s %10s %10s%n",
+                    "fan-out", "delivered/s", "ratio", "p50 (ms)", "p90 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)");
+            out.printf("%-10s %12.0f %8.3f %s%n", "lag", deliveryLag.getTotalCount() / (duration.toNanos() / 1e9),
+                    deliveryRatio(), percentiles(deliveryLag));
+        }
+        if (transportErrors() > 0) {
+            out.printf("%nSTOMP transport errors: %d%n", transportErrors());
+        }
+    }
+
+    private static String percentiles(Histogram histogram) {
+        return String.format("%10.2f %10.2f %10.2f %10.2f %10.2f",
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMaxValue() / 1e3);
+    }
+
+    private static long micros(long nanos) {
+        // Clamp rather than fail on outliers beyond the trackable range
+        return Math.min(HIGHEST_MICROS, Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    private static Histogram histogram() {
+        return new ConcurrentHistogram(1, HIGHEST_MICROS, 3);
+    }
+}
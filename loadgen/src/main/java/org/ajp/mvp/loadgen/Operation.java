@@ -0,0 +1,42 @@
+package org.ajp.mvp.loadgen;
+
+import java.util.Locale;
+
+/**
+ * The kinds of request a load generator client can issue.
+ */
+public enum Operation {
+
+    /** {@code GET /api/state/{namespace}}. */
+    STATE,
+
+    /** {@code POST /api/message/{namespace}}. */
+    MESSAGE,
+
+    /** {@code GET /api/heartbeat}. */
+    HEARTBEAT,
+
+    /** STOMP SEND to {@code /app/state/{namespace}}, complete once the broadcast comes back. */
+    STOMP;
+
+    /**
+     * @return the lower-case name used in request mixes and reports
+     */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param label a lower-case operation name
+     * @return the matching operation
+     * @throws IllegalArgumentException if no operation has that name
+     */
+    public static Operation fromLabel(String label) {
+        for (Operation operation : values()) {
+            if (operation.label().equals(label)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + label);
+    }
+}
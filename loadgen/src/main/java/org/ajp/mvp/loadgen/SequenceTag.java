@@ -0,0 +1,60 @@
+package org.ajp.mvp.loadgen;
+
+/**
+ * Tags published message content with a sequence number, so subscribers can tell which publish a
+ * broadcast belongs to and measure its delivery lag. The content is a palindrome, so the tag survives
+ * the default message processor, which reverses content before storing and broadcasting it.
+ */
+final class SequenceTag {
+
+    private static final char MARK = '#';
+    private static final char PADDING = 'x';
+
+    private SequenceTag() {
+    }
+
+    /**
+     * @param sequence the non-negative sequence number to embed
+     * @param length the minimum content length, reached by padding; may be exceeded by one
+     * @return palindromic content carrying the sequence number
+     */
+    static String content(long sequence, int length) {
+        String digits = Long.toHexString(sequence);
+        String tag = MARK + digits + new StringBuilder(digits).reverse() + MARK;
+        // Equal padding either side keeps the whole content a palindrome, so odd lengths round up
+        String padding = String.valueOf(PADDING).repeat((Math.max(0, length - tag.length()) + 1) / 2);
+        return padding + tag + padding;
+    }
+
+    /**
+     * Finds the sequence number in a message, which may be a raw JSON frame holding the content.
+     * @param bytes the message bytes
+     * @return the sequence number, or -1 if the message carries none
+     */
+    static long parse(byte[] bytes) {
+        int start = indexOf(bytes, 0);
+        int end = start < 0 ? -1 : indexOf(bytes, start + 1);
+        int length = end - start - 1;
+        if (end < 0 || length < 2 || length % 2 != 0 || length / 2 > 16) {
+            return -1;
+        }
+        long sequence = 0;
+        for (int i = start + 1; i <= start + length / 2; i++) {
+            int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            sequence = (sequence << 4) | digit;
+        }
+        return sequence;
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == MARK) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,213 @@
+package org.ajp.mvp.loadgen;
+
+import com.example.dto.MessageDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * STOMP connections of a load generator run: the subscribers, which measure fan-out delivery lag on
+ * {@code /topic/state/{namespace}}, and the publishers, which send to {@code /app/state/{namespace}} for
+ * the clients and complete each publish when its broadcast comes back. Connections use the Tomcat
+ * WebSocket client, which runs on NIO channels, so thousands of subscribers need no thread each.
+ */
+final class StompFleet implements AutoCloseable {
+
+    /** Publishes remembered for lag lookup; far more than can be in flight at once. */
+    private static final int RING_SIZE = 1 << 16;
+    private static final int CONNECT_CONCURRENCY = 256;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration ECHO_TIMEOUT = Duration.ofSeconds(10);
+
+    private final LoadProfile profile;
+    private final LoadReport report;
+    private final String url;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WebSocketStompClient client;
+    private final List<StompSession> subscribers = new ArrayList<>();
+    private final List<StompSession> publishers = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // A slot holds the sequence number of a measured publish, or its complement for a warmup publish
+    private final AtomicLongArray sentSequences = new AtomicLongArray(RING_SIZE);
+    private final AtomicLongArray sentAt = new AtomicLongArray(RING_SIZE);
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> echoes = new ConcurrentHashMap<>();
+
+    StompFleet(LoadProfile profile, LoadReport report) {
+        this.profile = profile;
+        this.report = report;
+        String base = profile.target().toString().replaceFirst("^http", "ws").replaceAll("/+$", "");
+        this.url = base + "/ws/websocket"; // Raw WebSocket transport of the SockJS endpoint
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(Math.max(8192, 2 * profile.payloadBytes() + 1024));
+        this.client = new WebSocketStompClient(new StandardWebSocketClient(container));
+        client.setDefaultHeartbeat(new long[] {0, 0});
+        client.setInboundMessageSizeLimit(Math.max(64 * 1024, 2 * profile.payloadBytes() + 1024));
+    }
+
+    /**
+     * Opens and subscribes every subscriber and publisher connection, a bounded number at a time.
+     * Subscriptions take effect asynchronously, so the run's warmup should cover the first broadcasts.
+     */
+    void connect() throws InterruptedException, ExecutionException, TimeoutException {
+        Semaphore permits = new Semaphore(CONNECT_CONCURRENCY);
+        List<CompletableFuture<StompSession>> connections = new ArrayList<>();
+        for (int n = 0; n < profile.namespaces(); n++) {
+            List<String> namespace = List.of(profile.namespace(n));
+            for (int s = 0; s < profile.subscribers(); s++) {
+                connections.add(open(permits, namespace, this::delivered));
+            }
+        }
+        List<String> namespaces = new ArrayList<>();
+        for (int n = 0; n < profile.namespaces(); n++) {
+            namespaces.add(profile.namespace(n));
+        }
+        List<CompletableFuture<StompSession>> publisherConnections = new ArrayList<>();
+        for (int p = 0; p < profile.publishers(); p++) {
+            publisherConnections.add(open(permits, namespaces, this::echoed));
+        }
+        long timeout = CONNECT_TIMEOUT.toMillis();
+        for (CompletableFuture<StompSession> connection : connections) {
+            subscribers.add(connection.get(timeout, TimeUnit.MILLISECONDS));
+        }
+        for (CompletableFuture<StompSession> connection : publisherConnections) {
+            publishers.add(connection.get(timeout, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Publishes a tagged message through one of the publisher connections.
+     * @param client the publishing client, which picks the connection
+     * @param namespace the namespace to publish to
+     * @param measured whether the publish falls in the measured window, so its deliveries are recorded
+     * @return completes when the broadcast of this publish reaches the publisher connection
+     */
+    CompletableFuture<Void> publish(int client, String namespace, boolean measured) {
+        long seq = sequence.getAndIncrement();
+        byte[] body = json(new MessageDto(SequenceTag.content(seq, profile.payloadBytes()), namespace));
+        CompletableFuture<Void> echo = new CompletableFuture<>();
+        echoes.put(seq, echo);
+        int slot = (int) (seq & (RING_SIZE - 1));
+        sentAt.set(slot, System.nanoTime());
+        sentSequences.set(slot, measured ? seq : ~seq);
+        if (measured) {
+            report.recordPublished();
+        }
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/state/" + namespace);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        StompSession session = publishers.get(client % publishers.size());
+        try {
+            // A WebSocket session allows one sender at a time
+            synchronized (session) {
+                session.send(headers, body);
+            }
+        } catch (RuntimeException e) {
+            echo.completeExceptionally(e);
+        }
+        return echo.orTimeout(ECHO_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, failure) -> echoes.remove(seq));
+    }
+
+    /**
+     * Waits until subscribers stop receiving, so deliveries of the last measured publishes are counted.
+     * @param limit the longest to wait
+     */
+    void awaitQuiet(Duration limit) throws InterruptedException {
+        long deadline = System.nanoTime() + limit.toNanos();
+        long delivered = -1;
+        while (System.nanoTime() < deadline && delivered != report.deliveryLag().getTotalCount()) {
+            delivered = report.deliveryLag().getTotalCount();
+            Thread.sleep(200);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (StompSession session : subscribers) {
+            session.disconnect();
+        }
+        for (StompSession session : publishers) {
+            session.disconnect();
+        }
+        client.stop();
+    }
+
+    private CompletableFuture<StompSession> open(Semaphore permits, List<String> namespaces, Consumer<byte[]> consumer)
+            throws InterruptedException {
+        permits.acquire();
+        StompFrameHandler frames = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class; // Raw frames; parsing JSON per delivery would load the generator, not the server
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                consumer.accept((byte[]) payload);
+            }
+        };
+        return client.connectAsync(url, new StompSessionHandlerAdapter() {
+                    @Override
+                    public void handleTransportError(StompSession session, Throwable exception) {
+                        report.recordTransportError();
+                    }
+                })
+                .thenApply(session -> {
+                    for (String namespace : namespaces) {
+                        session.subscribe("/topic/state/" + namespace, frames);
+                    }
+                    return session;
+                })
+                .whenComplete((session, failure) -> permits.release());
+    }
+
+    private void delivered(byte[] payload) {
+        long now = System.nanoTime();
+        long seq = SequenceTag.parse(payload);
+        if (seq < 0) {
+            return; // Not a load generator publish, e.g. a state request broadcast
+        }
+        int slot = (int) (seq & (RING_SIZE - 1));
+        if (sentSequences.get(slot) == seq) {
+            report.recordDelivery(now - sentAt.get(slot));
+        }
+    }
+
+    private void echoed(byte[] payload) {
+        CompletableFuture<Void> echo = echoes.get(SequenceTag.parse(payload));
+        if (echo != null) {
+            echo.complete(null);
+        }
+    }
+
+    private byte[] json(MessageDto message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
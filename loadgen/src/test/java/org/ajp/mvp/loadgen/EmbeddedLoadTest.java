@@ -0,0 +1,64 @@
+package org.ajp.mvp.loadgen;
+
+import org.ajp.mvp.server.ServerApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Full-size load run against the server embedded in this JVM, by default 4 namespaces with 1000
+ * subscribers each. Any {@link LoadProfile} setting can be overridden as a {@code loadgen.*} system
+ * property, and server properties can be passed as usual, for example
+ * {@code mvn test -Pload -Dloadgen.subscribers=2500 -Dspring.threads.virtual.enabled=true}.
+ * Each subscriber holds a socket at both ends, so raise {@code ulimit -n} for large runs.
+ * The run fails on any request or transport error, or if subscribers miss more than 1% of deliveries.
+ * Excluded from the default build; run with {@code mvn test -Pload}.
+ */
+@Tag("load")
+class EmbeddedLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedLoadTest.class);
+
+    private static final double MIN_DELIVERY_RATIO = 0.99;
+
+    @Test
+    void embeddedServerUnderLoad() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ServerApplication.class)
+                .properties("server.port=0",
+                        "server.tomcat.max-connections=65536",
+                        "logging.level.root=WARN",
+                        "logging.level.org.ajp.mvp.loadgen=INFO")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadProfile profile = LoadProfile.fromSystemProperties().withTarget(URI.create("http://localhost:" + port));
+            logger.info("Load: {} clients, {} namespaces x {} subscribers, mix {}",
+                    profile.clients(), profile.namespaces(), profile.subscribers(), profile.mix());
+            LoadReport report = new LoadGenerator(profile).run();
+            logger.info("Results:{}{}", System.lineSeparator(), format(report));
+
+            for (Operation operation : Operation.values()) {
+                assertEquals(0, report.errors(operation), operation + " errors");
+            }
+            assertEquals(0, report.transportErrors());
+            assertTrue(report.deliveryRatio() >= MIN_DELIVERY_RATIO, "delivery ratio " + report.deliveryRatio());
+        }
+    }
+
+    private static String format(LoadReport report) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        report.print(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+}
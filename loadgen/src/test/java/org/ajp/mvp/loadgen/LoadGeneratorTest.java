@@ -0,0 +1,47 @@
+package org.ajp.mvp.loadgen;
+
+import org.ajp.mvp.server.ServerApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A short, small run against the server embedded on a random port, checking that every kind of
+ * request succeeds and that subscribers receive nearly every measured publish. Deliveries still in
+ * flight when the window closes are not counted, so the ratio is only bounded from below.
+ */
+@SpringBootTest(classes = ServerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "logging.level.root=WARN")
+class LoadGeneratorTest {
+
+    private static final double MIN_DELIVERY_RATIO = 0.99;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void run_MeasuresEveryOperationAndFanOut() throws Exception {
+        LoadProfile profile = LoadProfile.of(Map.of(
+                "target", "http://localhost:" + port,
+                "warmup-seconds", "1",
+                "duration-seconds", "2",
+                "namespaces", "2",
+                "subscribers", "10",
+                "clients", "4",
+                "mix", "state=1,message=1,heartbeat=1,stomp=1"));
+
+        LoadReport report = new LoadGenerator(profile).run();
+
+        for (Operation operation : Operation.values()) {
+            assertTrue(report.latencies(operation).getTotalCount() > 0, operation + " measured");
+            assertEquals(0, report.errors(operation), operation + " errors");
+        }
+        assertTrue(report.published() > 0);
+        assertTrue(report.deliveryRatio() >= MIN_DELIVERY_RATIO, "delivery ratio " + report.deliveryRatio());
+        assertEquals(0, report.transportErrors());
+    }
+}
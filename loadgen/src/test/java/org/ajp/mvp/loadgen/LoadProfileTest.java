@@ -0,0 +1,50 @@
+package org.ajp.mvp.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadProfileTest {
+
+    @Test
+    void fromArgs_OverridesOnlyGivenSettings() {
+        LoadProfile profile = LoadProfile.fromArgs("--target=http://server:9090", "--subscribers=2500",
+                "--mix=state=3,stomp=1");
+
+        assertEquals(URI.create("http://server:9090"), profile.target());
+        assertEquals(2500, profile.subscribers());
+        assertEquals(Map.of(Operation.STATE, 3, Operation.STOMP, 1), profile.mix());
+        assertEquals(LoadProfile.defaults().clients(), profile.clients());
+        assertEquals(Duration.ofSeconds(30), profile.duration());
+    }
+
+    @Test
+    void fromArgs_RejectsMalformedArgument() {
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.fromArgs("subscribers=10"));
+    }
+
+    @Test
+    void of_RejectsUnknownSettingAndBadValues() {
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.of(Map.of("subscriber", "10")));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.of(Map.of("clients", "many")));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.of(Map.of("mix", "state=0")));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.of(Map.of("mix", "delete=5")));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.of(Map.of("duration-seconds", "0")));
+    }
+
+    @Test
+    void sequenceTag_SurvivesReversalAndJsonFraming() {
+        for (long sequence : new long[] {0, 7, 0xabcdef, Long.MAX_VALUE}) {
+            String content = SequenceTag.content(sequence, 64);
+            String frame = "{\"content\":\"" + new StringBuilder(content).reverse() + "\",\"namespace\":\"load-0\",\"version\":3}";
+
+            assertTrue(content.length() >= 64);
+            assertEquals(sequence, SequenceTag.parse(frame.getBytes()));
+        }
+        assertEquals(-1, SequenceTag.parse("{\"content\":\"Default state for load-0\"}".getBytes()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Compact update of a namespace state from one version to a later one.
+ * The content at {@code version} is the content at {@code baseVersion} with {@code deleteCount}
+ * characters removed at {@code offset} and {@code insert} put in their place; offsets count UTF-16
+ * code units, as Java and JavaScript strings do. A client holding any version other than
+ * {@code baseVersion} has missed an update and must resynchronize from a full state.
+ */
+public class StateDeltaDto {
+
+    private String namespace;
+    private long baseVersion;
+    private long version;
+    private int offset;
+    private int deleteCount;
+    private String insert;
+
+    public StateDeltaDto() {
+    }
+
+    @JsonCreator
+    public StateDeltaDto(@JsonProperty("namespace") String namespace, @JsonProperty("baseVersion") long baseVersion,
+                         @JsonProperty("version") long version, @JsonProperty("offset") int offset,
+                         @JsonProperty("deleteCount") int deleteCount, @JsonProperty("insert") String insert) {
+        this.namespace = namespace;
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.offset = offset;
+        this.deleteCount = deleteCount;
+        this.insert = insert;
+    }
+
+    /**
+     * Applies this delta to the content it was computed against.
+     * @param baseContent the content at {@link #getBaseVersion()}
+     * @return the content at {@link #getVersion()}
+     * @throws IllegalArgumentException if the delta does not fit the given content
+     */
+    public String applyTo(String baseContent) {
+        if (offset < 0 || deleteCount < 0 || offset + deleteCount > baseContent.length()) {
+            throw new IllegalArgumentException("Delta to version " + version + " does not fit content of length "
+                    + baseContent.length());
+        }
+        return baseContent.substring(0, offset) + insert + baseContent.substring(offset + deleteCount);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getDeleteCount() {
+        return deleteCount;
+    }
+
+    public void setDeleteCount(int deleteCount) {
+        this.deleteCount = deleteCount;
+    }
+
+    public String getInsert() {
+        return insert;
+    }
+
+    public void setInsert(String insert) {
+        this.insert = insert;
+    }
+}
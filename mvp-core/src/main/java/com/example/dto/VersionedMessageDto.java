@@ -0,0 +1,31 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * MessageDto stamped with the namespace version it was stored at.
+ * Versions increase monotonically per namespace, starting at 1 for the first stored message.
+ */
+public class VersionedMessageDto extends MessageDto {
+
+    private long version;
+
+    public VersionedMessageDto() {
+    }
+
+    @JsonCreator
+    public VersionedMessageDto(@JsonProperty("content") String content, @JsonProperty("namespace") String namespace,
+                               @JsonProperty("version") long version) {
+        super(content, namespace);
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
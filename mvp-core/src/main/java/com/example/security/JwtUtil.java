@@ -0,0 +1,153 @@
+package com.example.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Issues and verifies the HS256 JWTs every MVP server accepts. It lives in mvp-core so the servlet and
+ * reactive servers share one implementation and one key, set with {@code mvp.security.jwt.secret}.
+ */
+@Component
+public class JwtUtil {
+
+    // Used when mvp.security.jwt.secret is not set; in production, set the property from an env var
+    private static final String DEFAULT_SECRET = "mySecretKeyForJwtTokensThatIsLongEnoughForHS256Algorithm";
+    private static final int JWT_EXPIRATION = 86400000; // 24 hours
+
+    /**
+     * Default number of verified tokens kept in the verification cache.
+     */
+    public static final long DEFAULT_CACHE_SIZE = 10_000;
+
+    /**
+     * The outcome of verifying a token: who it belongs to and when it stops being valid.
+     */
+    public record VerifiedToken(String username, long expiresAtMillis) {
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAtMillis;
+        }
+    }
+
+    // Derived once; building the key and parser per call dominated the cost of a verification
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    // Keyed by the full token rather than a digest of it, so a colliding forged token can never hit
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtUtil() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the maximum number of verified tokens to remember; 0 disables the cache
+     */
+    public JwtUtil(long cacheSize) {
+        this("", cacheSize);
+    }
+
+    /**
+     * @param secret the HS256 signing key, at least 32 bytes of UTF-8; blank uses the built-in development key
+     * @param cacheSize the maximum number of verified tokens to remember; 0 disables the cache
+     * @throws io.jsonwebtoken.security.WeakKeyException if the secret is too short for HS256
+     */
+    @Autowired
+    public JwtUtil(@Value("${mvp.security.jwt.secret:}") String secret,
+                   @Value("${mvp.security.jwt.cache-size:" + DEFAULT_CACHE_SIZE + "}") long cacheSize) {
+        this.signingKey = Keys.hmacShaKeyFor((secret.isBlank() ? DEFAULT_SECRET : secret).getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.verifiedTokens = cacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        // Entries leave the cache when the token itself expires
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verified.expiresAtMillis() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public String generateToken(String username) {
+        return Jwts.builder()
+                .subject(username)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + JWT_EXPIRATION))
+                .signWith(signingKey)
+                .compact();
+    }
+
+    /**
+     * Verifies a token's signature and expiry.
+     * A token seen before is answered from the cache without any cryptography; a new token is
+     * parsed and verified exactly once. Tokens that fail verification are never cached.
+     * @param token the compact JWT
+     * @return the verified token, or null if it is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken verified = verifiedTokens == null ? null : verifiedTokens.getIfPresent(token);
+        if (verified == null) {
+            try {
+                Claims claims = parser.parseSignedClaims(token).getPayload();
+                verified = new VerifiedToken(claims.getSubject(), claims.getExpiration().getTime());
+            } catch (RuntimeException e) {
+                return null;
+            }
+            if (verifiedTokens != null) {
+                verifiedTokens.put(token, verified);
+            }
+        }
+        return verified.isExpired() ? null : verified;
+    }
+
+    public String extractUsername(String token) {
+        return extractClaim(token, Claims::getSubject);
+    }
+
+    public Date extractExpiration(String token) {
+        return extractClaim(token, Claims::getExpiration);
+    }
+
+    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+        final Claims claims = extractAllClaims(token);
+        return claimsResolver.apply(claims);
+    }
+
+    private Claims extractAllClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    public Boolean isTokenExpired(String token) {
+        return extractExpiration(token).before(new Date());
+    }
+
+    public Boolean validateToken(String token, String username) {
+        VerifiedToken verified = verify(token);
+        return verified != null && verified.username().equals(username);
+    }
+}
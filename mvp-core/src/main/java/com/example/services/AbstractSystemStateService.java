@@ -1,21 +1,76 @@
 package com.example.services;
 
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Abstract base class for SystemStateService implementations.
  * Provides extension points for customizing state processing and storage.
+ * Every stored message is stamped with a per-namespace version and kept in a
+ * bounded history, so subclasses get version tracking and history queries automatically.
+ * Operation counts and timings are reported to a {@link StateMetrics} once one is set.
+ * With a {@link ShardedExecutor} set, each namespace has a single writer: processing, versioning
+ * and storage of its messages run one at a time on the namespace's shard, in arrival order,
+ * and {@link #sendMessageAsync} returns without waiting for storage.
+ * With a {@link WriteBatcher} set, concurrent writes are stored together through {@link #storeMessages}.
+ * With both, a shard only processes, versions and queues each message, and its caller waits for the batch,
+ * so a shard can have many writes waiting on storage at once.
  */
 public abstract class AbstractSystemStateService implements SystemStateService {
 
+    private static final Logger log = LoggerFactory.getLogger(AbstractSystemStateService.class);
+
+    /**
+     * Default number of versions retained per namespace.
+     */
+    public static final int DEFAULT_HISTORY_CAPACITY = 32;
+
+    private final ConcurrentHashMap<String, NamespaceHistory> histories = new ConcurrentHashMap<>();
+
+    // Every version handed out by a discarded history; new histories number above it
+    private final AtomicLong versionFloor = new AtomicLong();
+
+    private volatile StateMetrics metrics = StateMetrics.NONE;
+
+    private volatile ShardedExecutor shards;
+
+    private volatile MessagePipeline pipeline;
+
+    private volatile WriteBatcher batcher;
+
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
+
+    // One instance, so the batcher stores consecutive messages of this service together
+    private final Consumer<List<VersionedMessageDto>> batchStore = this::storeMessages;
+
     /**
      * Template method for processing messages before storage.
+     * Runs the {@link MessagePipeline} once one is set; without one, reverses the content as an example.
      * Subclasses can override to add custom logic.
      * @param namespace The namespace.
      * @param message The incoming message.
      * @return The processed message.
      */
     protected MessageDto processMessage(String namespace, MessageDto message) {
+        MessagePipeline current = pipeline;
+        if (current != null) {
+            return current.process(namespace, message);
+        }
         // Default: reverse content as example
         message.setContent(new StringBuilder(message.getContent()).reverse().toString());
         return message;
@@ -31,24 +86,358 @@ public abstract class AbstractSystemStateService implements SystemStateService {
         return new MessageDto("Default state for " + namespace, namespace);
     }
 
+    /**
+     * Template method for the number of versions retained per namespace.
+     * Subclasses can override to trade memory for deeper history; 0 disables history
+     * while still versioning stored messages.
+     * @return The history capacity.
+     */
+    protected int getHistoryCapacity() {
+        return DEFAULT_HISTORY_CAPACITY;
+    }
+
+    /**
+     * Sets where operation counts and timings are reported; {@link StateMetrics#NONE} by default.
+     * @param metrics the metrics to report to
+     */
+    public void setMetrics(StateMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the metrics operations are reported to, for subclasses that report their own overrides
+     */
+    protected StateMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the stages that process messages before storage, replacing the default processing.
+     * @param pipeline the pipeline, or null for the default processing
+     */
+    public void setPipeline(MessagePipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Listeners are told after the message is stored, on the thread that stored it: the writer's,
+     * the namespace's shard, or the batcher's.
+     */
+    @Override
+    public boolean addStateListener(StateListener listener) {
+        listeners.add(listener);
+        return true;
+    }
+
+    /**
+     * Sets the batcher that coalesces concurrent writes into {@link #storeMessages} calls;
+     * null, the default, stores each message with its own {@link #storeMessage} call.
+     * The batcher is not closed by this service.
+     * @param batcher the batcher to queue stored messages on
+     */
+    public void setBatcher(WriteBatcher batcher) {
+        this.batcher = batcher;
+    }
+
+    /**
+     * Sets the shards that run writes; null, the default, runs each write on its calling thread.
+     * The executor is not closed by this service.
+     * @param shards the shards to run writes on
+     */
+    public void setShards(ShardedExecutor shards) {
+        this.shards = shards;
+    }
+
     @Override
     public MessageDto getState(String namespace) {
-        return getDefaultState(namespace); // Can be overridden to fetch from custom storage
+        StateMetrics.Recorder recorder = metrics.recorder(namespace);
+        long start = recorder.start(StateMetrics.Operation.GET_STATE);
+        MessageDto state = getDefaultState(namespace); // Can be overridden to fetch from custom storage
+        if (start != StateMetrics.UNTIMED) {
+            recorder.record(StateMetrics.Operation.GET_STATE, System.nanoTime() - start);
+        }
+        return state;
     }
 
     @Override
     public MessageDto sendMessage(String namespace, MessageDto message) {
+        ShardedExecutor executor = shards;
+        if (executor == null) {
+            return ShardedExecutor.join(writeAsync(namespace, message));
+        }
+        // The wait for a batched write's storage happens here, off the shard
+        return ShardedExecutor.join(executor.call(namespace, () -> writeAsync(namespace, message)));
+    }
+
+    /**
+     * With shards set, queues the write on the namespace's shard and returns at once; the future fails at once
+     * if the shard's queue is full. Without a batcher, the future completes on the shard thread once the
+     * message is stored, and the write goes through {@link #sendMessage}, so subclasses overriding it keep
+     * working. With a batcher, the shard processes and queues the message, and the future completes on the
+     * batcher's thread once its batch is stored; without shards, the message is processed on the calling thread.
+     * Otherwise the write runs on the calling thread.
+     */
+    @Override
+    public CompletableFuture<MessageDto> sendMessageAsync(String namespace, MessageDto message) {
+        ShardedExecutor executor = shards;
+        if (executor != null) {
+            try {
+                if (batcher == null) {
+                    return executor.submit(namespace, () -> sendMessage(namespace, message));
+                }
+                return executor.submit(namespace, () -> writeAsync(namespace, message)).thenCompose(Function.identity());
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        WriteBatcher currentBatcher = batcher;
+        if (currentBatcher == null) {
+            return SystemStateService.super.sendMessageAsync(namespace, message);
+        }
+        try {
+            return writeBatched(namespace, message, currentBatcher);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Queues every message on its shard before waiting for the first, so a batch spanning
+     * several shards is written in parallel. Results still reach the sink in request order.
+     * If a message fails, messages already queued behind it are still written, and the failure is
+     * thrown once they all have been, with the results before it already handed to the sink.
+     * A message refused by a full shard fails in the same way, and the messages after it are not queued.
+     */
+    @Override
+    public void sendMessages(Collection<? extends MessageDto> messages, Consumer<? super MessageDto> sink) {
+        ShardedExecutor executor = shards;
+        if (executor == null) {
+            SystemStateService.super.sendMessages(messages, sink);
+            return;
+        }
+        for (MessageDto message : messages) {
+            if (message == null || message.getNamespace() == null || message.getNamespace().isBlank()) {
+                throw new IllegalArgumentException("Every message in a batch must specify a namespace");
+            }
+        }
+        List<CompletableFuture<MessageDto>> pending = new ArrayList<>(messages.size());
+        for (MessageDto message : messages) {
+            String namespace = message.getNamespace();
+            try {
+                pending.add(executor.submit(namespace, () -> writeAsync(namespace, message)).thenCompose(Function.identity()));
+            } catch (RejectedExecutionException e) {
+                pending.add(CompletableFuture.failedFuture(e));
+                break;
+            }
+        }
+        RuntimeException failure = null;
+        for (CompletableFuture<MessageDto> result : pending) {
+            if (failure != null) {
+                result.exceptionally(e -> null).join(); // Settles the rest of the batch before the failure is thrown
+                continue;
+            }
+            try {
+                sink.accept(ShardedExecutor.join(result));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the stored message, already complete unless a batcher is set, in which case the message
+     *         has been processed, versioned and queued, and the future completes once its batch is stored
+     */
+    private CompletableFuture<MessageDto> writeAsync(String namespace, MessageDto message) {
+        WriteBatcher currentBatcher = batcher;
+        return currentBatcher != null ? writeBatched(namespace, message, currentBatcher)
+                : CompletableFuture.completedFuture(write(namespace, message));
+    }
+
+    private MessageDto write(String namespace, MessageDto message) {
+        StateMetrics.Recorder recorder = metrics.recorder(namespace);
+        long start = recorder.start(StateMetrics.Operation.SEND_MESSAGE);
+        boolean timed = start != StateMetrics.UNTIMED;
         MessageDto processed = processMessage(namespace, message);
+        long processedAt = timed ? System.nanoTime() : 0;
         processed.setNamespace(namespace);
-        storeMessage(namespace, processed); // Call protected method
-        return processed;
+        NamespaceHistory history;
+        long version;
+        do {
+            history = history(namespace); // A history discarded meanwhile hands out no version
+            version = history.nextVersion();
+        } while (version < 0);
+        VersionedMessageDto versioned = new VersionedMessageDto(processed.getContent(), namespace, version);
+        history.record(version, versioned.getContent());
+        storeMessage(namespace, versioned); // Call protected method
+        notifyListeners(versioned);
+        if (timed) {
+            // The store phase includes versioning, so three clock reads cover all three timings
+            long end = System.nanoTime();
+            recorder.record(StateMetrics.Operation.PROCESS_MESSAGE, processedAt - start);
+            recorder.record(StateMetrics.Operation.STORE_MESSAGE, end - processedAt);
+            recorder.record(StateMetrics.Operation.SEND_MESSAGE, end - start);
+        }
+        return versioned;
+    }
+
+    private CompletableFuture<MessageDto> writeBatched(String namespace, MessageDto message, WriteBatcher currentBatcher) {
+        StateMetrics.Recorder recorder = metrics.recorder(namespace);
+        long start = recorder.start(StateMetrics.Operation.SEND_MESSAGE);
+        boolean timed = start != StateMetrics.UNTIMED;
+        MessageDto processed = processMessage(namespace, message);
+        long processedAt = timed ? System.nanoTime() : 0;
+        processed.setNamespace(namespace);
+        VersionedMessageDto queued = null;
+        CompletableFuture<Void> stored = null;
+        while (queued == null) {
+            NamespaceHistory history = history(namespace);
+            // Versions are queued in the order they are assigned, so storage sees each namespace in version order.
+            // submit may block on a full batcher, so this is not a monitor, which would pin a virtual thread.
+            ReentrantLock queueLock = history.queueLock();
+            queueLock.lock();
+            try {
+                long version = history.nextVersion();
+                if (version > 0) { // Otherwise the history was discarded meanwhile; take the new one
+                    queued = new VersionedMessageDto(processed.getContent(), namespace, version);
+                    history.record(version, queued.getContent());
+                    stored = currentBatcher.submit(queued, batchStore);
+                }
+            } finally {
+                queueLock.unlock();
+            }
+        }
+        VersionedMessageDto versioned = queued;
+        return stored.thenApply(ignored -> {
+            notifyListeners(versioned);
+            if (timed) {
+                long end = System.nanoTime();
+                recorder.record(StateMetrics.Operation.PROCESS_MESSAGE, processedAt - start);
+                recorder.record(StateMetrics.Operation.STORE_MESSAGE, end - processedAt);
+                recorder.record(StateMetrics.Operation.SEND_MESSAGE, end - start);
+            }
+            return versioned;
+        });
+    }
+
+    /**
+     * Stores content that was processed elsewhere, such as a write replicated from another node.
+     * It is versioned, recorded and announced to listeners like any write, but not processed again,
+     * and it is stored on the calling thread rather than through shards or the batcher.
+     * @param namespace The namespace.
+     * @param content The content to store as is.
+     * @param store Stores the versioned message and returns whether it was kept; a message it rejects
+     *              is neither recorded in history nor announced to listeners.
+     * @return the stored message, or null if it was rejected
+     */
+    protected VersionedMessageDto storeProcessed(String namespace, String content, Predicate<VersionedMessageDto> store) {
+        NamespaceHistory history;
+        long version;
+        do {
+            history = history(namespace);
+            version = history.nextVersion();
+        } while (version < 0);
+        VersionedMessageDto versioned = new VersionedMessageDto(content, namespace, version);
+        if (!store.test(versioned)) {
+            return null;
+        }
+        history.record(version, content);
+        notifyListeners(versioned);
+        return versioned;
+    }
+
+    private void notifyListeners(VersionedMessageDto stored) {
+        for (StateListener listener : listeners) {
+            try {
+                listener.stateChanged(stored);
+            } catch (RuntimeException e) {
+                // The message is already stored; a failing listener must not fail the write
+                log.warn("State listener failed for namespace {}", stored.getNamespace(), e);
+            }
+        }
+    }
+
+    @Override
+    public List<VersionedMessageDto> getHistory(String namespace, long sinceVersion, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        NamespaceHistory history = histories.get(namespace);
+        return history == null ? List.of() : history.read(sinceVersion, limit);
+    }
+
+    /**
+     * Restores a message read back from storage into the version history.
+     * Subclasses that persist state call this while recovering, so versions continue
+     * from where they left off rather than restarting at 1.
+     * @param message The recovered message.
+     */
+    protected void restoreHistory(VersionedMessageDto message) {
+        history(message.getNamespace()).restore(message.getVersion(), message.getContent());
+    }
+
+    /**
+     * @param namespace The namespace.
+     * @return the number of versions its history holds, for subclasses estimating its size
+     */
+    protected int getRetainedVersions(String namespace) {
+        NamespaceHistory history = histories.get(namespace);
+        return history == null ? 0 : history.retainedVersions();
+    }
+
+    /**
+     * Forgets the version history and metrics of a namespace and tells listeners it is gone,
+     * for subclasses that evict namespaces from storage.
+     * Versions keep rising across the eviction: the next write to the namespace is numbered above every
+     * version handed out so far, so a client holding an old version never mistakes new state for it.
+     * @param namespace The evicted namespace.
+     */
+    protected void discardHistory(String namespace) {
+        metrics.forget(namespace);
+        for (StateListener listener : listeners) {
+            try {
+                listener.namespaceDiscarded(namespace);
+            } catch (RuntimeException e) {
+                log.warn("State listener failed to discard namespace {}", namespace, e);
+            }
+        }
+        NamespaceHistory history = histories.get(namespace);
+        if (history == null) {
+            return;
+        }
+        // Raise the floor before the history can be replaced, so its successor starts above it
+        versionFloor.accumulateAndGet(history.retire(), Math::max);
+        histories.remove(namespace, history);
     }
 
     /**
      * Protected method for storing the message.
      * Subclasses must implement this to define storage mechanism.
+     * The message is a {@link VersionedMessageDto}. Without shards or a batcher, concurrent writers to one
+     * namespace may arrive out of version order, so storage should keep the highest version it has seen.
      * @param namespace The namespace.
      * @param message The message to store.
      */
     protected abstract void storeMessage(String namespace, MessageDto message);
-}
\ No newline at end of file
+
+    /**
+     * Template method for storing a batch of messages collected by the {@link WriteBatcher}.
+     * Messages of one namespace are in version order. The default stores them one by one with
+     * {@link #storeMessage}; subclasses override it to store the whole batch in one operation.
+     * @param messages The messages to store, each carrying its namespace.
+     */
+    protected void storeMessages(List<VersionedMessageDto> messages) {
+        for (VersionedMessageDto message : messages) {
+            storeMessage(message.getNamespace(), message);
+        }
+    }
+
+    private NamespaceHistory history(String namespace) {
+        NamespaceHistory history = histories.get(namespace);
+        return history != null ? history
+                : histories.computeIfAbsent(namespace, ns -> new NamespaceHistory(ns, getHistoryCapacity(), versionFloor.get()));
+    }
+}
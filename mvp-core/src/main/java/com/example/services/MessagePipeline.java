@@ -0,0 +1,146 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ordered {@link MessageProcessor} stages, each registered for a namespace pattern.
+ * A pattern is a namespace name, a {@code prefix*} pattern, or {@code *} for every namespace.
+ * A message runs through the stages matching its namespace one after another, in registration order,
+ * on the writer's thread; each stage gets the previous stage's result.
+ * <p>
+ * The first message to a namespace compiles its matching stages into one fused processor, which
+ * later messages reuse, so the hot path does not match patterns or walk the stage list.
+ * A stage added with {@link Builder#stage} may be processing several writers' messages at the same
+ * time, so it must be stateless or thread-safe. Stages added with {@link Builder#serialStage} see one
+ * message at a time.
+ */
+public final class MessagePipeline {
+
+    /**
+     * Number of namespaces whose compiled chains are kept; beyond it, those least likely to be used again are dropped.
+     */
+    static final int CHAIN_CACHE_LIMIT = 10_000;
+
+    private final List<Stage> stages;
+
+    private final Cache<String, MessageProcessor> chains;
+
+    private MessagePipeline(List<Stage> stages) {
+        this.stages = List.copyOf(stages);
+        // Evictions run on the caller, as the cache is small and only touched on writes
+        this.chains = Caffeine.newBuilder()
+                .maximumSize(CHAIN_CACHE_LIMIT)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs a message through the stages registered for its namespace.
+     * @param namespace the namespace the message is sent to
+     * @param message the incoming message
+     * @return the processed message
+     */
+    public MessageDto process(String namespace, MessageDto message) {
+        return chain(namespace).process(namespace, message);
+    }
+
+    /**
+     * @param namespace the namespace identifier
+     * @return the fused processor for the namespace, {@link MessageProcessor#IDENTITY} if no stage matches
+     */
+    MessageProcessor chain(String namespace) {
+        return chains.get(namespace, this::compile);
+    }
+
+    /**
+     * @return the number of namespaces whose compiled chains are cached
+     */
+    long cachedChains() {
+        chains.cleanUp();
+        return chains.estimatedSize();
+    }
+
+    private MessageProcessor compile(String namespace) {
+        MessageProcessor chain = MessageProcessor.IDENTITY;
+        for (Stage stage : stages) {
+            if (stage.matches(namespace)) {
+                chain = chain.andThen(stage.processor());
+            }
+        }
+        return chain;
+    }
+
+    private record Stage(String pattern, MessageProcessor processor) {
+
+        boolean matches(String namespace) {
+            return pattern.endsWith("*")
+                    ? namespace.startsWith(pattern.substring(0, pattern.length() - 1))
+                    : namespace.equals(pattern);
+        }
+    }
+
+    /**
+     * Collects stages in the order they run.
+     */
+    public static final class Builder {
+
+        private final List<Stage> stages = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a stage that may be processing several writers' messages at the same time.
+         * @param pattern the namespaces the stage applies to: a name, {@code prefix*}, or {@code *}
+         * @param processor a stateless or thread-safe processor
+         * @return this builder
+         */
+        public Builder stage(String pattern, MessageProcessor processor) {
+            if (pattern == null || pattern.isBlank()) {
+                throw new IllegalArgumentException("Stage pattern must not be blank");
+            }
+            if (processor == null) {
+                throw new IllegalArgumentException("Stage processor must not be null");
+            }
+            stages.add(new Stage(pattern.trim(), processor));
+            return this;
+        }
+
+        /**
+         * Adds a stage that processes one message at a time, across all namespaces it applies to,
+         * so it may keep unsynchronized state. Writers queue for it, so keep it short.
+         * @param pattern the namespaces the stage applies to: a name, {@code prefix*}, or {@code *}
+         * @param processor the processor
+         * @return this builder
+         */
+        public Builder serialStage(String pattern, MessageProcessor processor) {
+            if (processor == null) {
+                throw new IllegalArgumentException("Stage processor must not be null");
+            }
+            // A ReentrantLock rather than a monitor, so a waiting virtual thread does not pin its carrier
+            ReentrantLock lock = new ReentrantLock();
+            return stage(pattern, (namespace, message) -> {
+                lock.lock();
+                try {
+                    return processor.process(namespace, message);
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+
+        public MessagePipeline build() {
+            return new MessagePipeline(stages);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+
+/**
+ * One stage of a {@link MessagePipeline}: validation, enrichment, compression, redaction and the like.
+ * A stage returns the message to hand to the next stage, which may be the one it was given.
+ * To reject a message, throw {@link IllegalArgumentException}; nothing is stored in that case.
+ */
+@FunctionalInterface
+public interface MessageProcessor {
+
+    /**
+     * A processor that returns every message unchanged.
+     */
+    MessageProcessor IDENTITY = (namespace, message) -> message;
+
+    /**
+     * Processes a message on its way to storage.
+     * @param namespace the namespace the message is sent to
+     * @param message the message from the previous stage
+     * @return the message for the next stage
+     */
+    MessageDto process(String namespace, MessageDto message);
+
+    /**
+     * @param next the processor to run on this one's result
+     * @return a processor that runs this one, then {@code next}
+     */
+    default MessageProcessor andThen(MessageProcessor next) {
+        if (this == IDENTITY) {
+            return next;
+        }
+        if (next == IDENTITY) {
+            return this;
+        }
+        return (namespace, message) -> next.process(namespace, process(namespace, message));
+    }
+}
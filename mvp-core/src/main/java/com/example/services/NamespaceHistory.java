@@ -0,0 +1,156 @@
+package com.example.services;
+
+import com.example.dto.VersionedMessageDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-capacity, lock-free ring of recent versions for one namespace.
+ * Slots are preallocated as a flat array of versions and a flat array of content references,
+ * so recording a version allocates nothing and the namespace is not repeated per entry.
+ * <p>
+ * Each slot is guarded by its version: a writer marks the slot as in progress (negated version),
+ * stores the content and then publishes the version. Readers accept a slot only if it carries the
+ * expected version both before and after reading the content.
+ */
+final class NamespaceHistory {
+
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final String namespace;
+    private final long startVersion;
+    private final AtomicLong latestVersion = new AtomicLong();
+    private final AtomicLongArray versions;
+    private final AtomicReferenceArray<String> contents;
+    // A ReentrantLock rather than a monitor, so a writer blocked while holding it does not pin its carrier
+    private final ReentrantLock queueLock = new ReentrantLock();
+
+    NamespaceHistory(String namespace, int capacity) {
+        this(namespace, capacity, 0);
+    }
+
+    /**
+     * @param namespace the namespace
+     * @param capacity the number of versions retained
+     * @param startVersion the version after which numbering starts
+     */
+    NamespaceHistory(String namespace, int capacity, long startVersion) {
+        this.namespace = namespace;
+        this.startVersion = startVersion;
+        this.versions = new AtomicLongArray(capacity);
+        this.contents = new AtomicReferenceArray<>(capacity);
+        this.latestVersion.set(startVersion);
+    }
+
+    /**
+     * Claims the next version for this namespace.
+     * @return the new version, or -1 if the history is retired and the caller should fetch the namespace's new one
+     */
+    long nextVersion() {
+        long version = latestVersion.incrementAndGet();
+        return version > 0 ? version : -1;
+    }
+
+    /**
+     * @return the highest version claimed so far, or 0 if none
+     */
+    long latestVersion() {
+        return Math.max(latestVersion.get(), 0);
+    }
+
+    /**
+     * @return the number of versions claimed since the history started, at most its capacity
+     */
+    int retainedVersions() {
+        return (int) Math.min(Math.max(latestVersion() - startVersion, 0), versions.length());
+    }
+
+    /**
+     * @return the lock held by writers that claim a version and queue the message for storage,
+     *         so the namespace's messages are queued in version order
+     */
+    ReentrantLock queueLock() {
+        return queueLock;
+    }
+
+    /**
+     * Stops handing out versions.
+     * @return the highest version claimed before retirement
+     */
+    long retire() {
+        return Math.max(latestVersion.getAndSet(RETIRED), 0);
+    }
+
+    /**
+     * Records content at a version previously claimed or restored.
+     * A slot already holding a newer version is left untouched.
+     * @param version the version
+     * @param content the content stored at that version
+     */
+    void record(long version, String content) {
+        int capacity = versions.length();
+        if (capacity == 0) {
+            return;
+        }
+        int slot = (int) ((version - 1) % capacity);
+        while (true) {
+            long current = versions.get(slot);
+            if (current >= version || -current > version) {
+                return; // A newer write already owns the slot
+            }
+            if (current < 0) {
+                Thread.onSpinWait(); // An older write is mid-update
+                continue;
+            }
+            if (versions.compareAndSet(slot, current, -version)) {
+                break;
+            }
+        }
+        contents.set(slot, content);
+        versions.set(slot, version);
+    }
+
+    /**
+     * Restores a version read back from storage, advancing the counter past it.
+     * @param version the stored version
+     * @param content the stored content
+     */
+    void restore(long version, String content) {
+        latestVersion.accumulateAndGet(version, (current, restored) -> current < 0 ? current : Math.max(current, restored));
+        record(version, content);
+    }
+
+    /**
+     * Reads retained versions newer than {@code sinceVersion}, oldest first.
+     * Only the requested range is copied; versions already overwritten are skipped.
+     * @param sinceVersion the exclusive lower bound
+     * @param limit the maximum number of entries to return
+     * @return the matching entries
+     */
+    List<VersionedMessageDto> read(long sinceVersion, int limit) {
+        int capacity = versions.length();
+        long latest = latestVersion();
+        long from = Math.max(Math.max(sinceVersion + 1, latest - capacity + 1), 1);
+        long to = Math.min(latest, from + limit - 1);
+        if (capacity == 0 || from > to) {
+            return List.of();
+        }
+        List<VersionedMessageDto> entries = new ArrayList<>((int) (to - from + 1));
+        for (long version = from; version <= to; version++) {
+            int slot = (int) ((version - 1) % capacity);
+            if (versions.get(slot) != version) {
+                continue;
+            }
+            String content = contents.get(slot);
+            if (versions.get(slot) == version) {
+                entries.add(new VersionedMessageDto(content, namespace, version));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Non-blocking counterpart of {@link SystemStateService} for reactive servers.
+ * Every method returns a lazy publisher, so nothing happens until it is subscribed to.
+ */
+public interface ReactiveSystemStateService {
+
+    /**
+     * Retrieves the current state for the given namespace.
+     * @param namespace the namespace identifier
+     * @return a Mono emitting the state information
+     */
+    Mono<MessageDto> getState(String namespace);
+
+    /**
+     * Sends a message to the specified namespace.
+     * @param namespace the namespace identifier
+     * @param message the message to send
+     * @return a Mono emitting the processed MessageDto
+     */
+    Mono<MessageDto> sendMessage(String namespace, MessageDto message);
+
+    /**
+     * Streams every message processed for the namespace from the time of subscription.
+     * Subscribers that cannot keep up miss updates rather than slowing down writers.
+     * @param namespace the namespace identifier
+     * @return a hot Flux of processed messages
+     */
+    Flux<MessageDto> updates(String namespace);
+
+    /**
+     * Returns the version of the current state without materializing it.
+     * @param namespace the namespace identifier
+     * @return a Mono emitting the current version, 0 for the default state, or -1 if versions are not tracked
+     * @see SystemStateService#getVersion(String)
+     */
+    default Mono<Long> getVersion(String namespace) {
+        return Mono.just(-1L);
+    }
+
+    /**
+     * Retrieves retained versions of the namespace state newer than the given version, oldest first.
+     * @param namespace the namespace identifier
+     * @param sinceVersion only versions greater than this are returned
+     * @param limit the maximum number of versions to return
+     * @return a Flux of the matching versions, empty if the implementation keeps no history
+     */
+    default Flux<VersionedMessageDto> getHistory(String namespace, long sinceVersion, int limit) {
+        return Flux.empty();
+    }
+
+    /**
+     * Retrieves the current state for many namespaces, in request order.
+     * @param namespaces the namespace identifiers
+     * @return a Flux emitting the state of each namespace
+     */
+    default Flux<MessageDto> getStates(Collection<String> namespaces) {
+        return Flux.fromIterable(namespaces).concatMap(this::getState);
+    }
+
+    /**
+     * Sends many messages, each to the namespace it names, in order.
+     * @param messages the messages to send; each must carry its target namespace
+     * @return a Flux emitting each processed message, or an IllegalArgumentException
+     *         before anything is sent if any message has no namespace
+     */
+    default Flux<MessageDto> sendMessages(Collection<? extends MessageDto> messages) {
+        return Flux.defer(() -> {
+            for (MessageDto message : messages) {
+                if (message == null || message.getNamespace() == null || message.getNamespace().isBlank()) {
+                    return Flux.error(new IllegalArgumentException("Every message in a batch must specify a namespace"));
+                }
+            }
+            return Flux.fromIterable(messages).concatMap(message -> sendMessage(message.getNamespace(), message));
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exposes a {@link SystemStateService}, typically an {@link AbstractSystemStateService} subclass,
+ * as a {@link ReactiveSystemStateService}, so reactive servers keep the same processing,
+ * versioning and history semantics as the servlet server.
+ * <p>
+ * Delegates that only touch memory are called directly on the subscribing thread, which keeps
+ * event loops free of thread hops. Delegates that block, for example on a durable log, should be
+ * given a scheduler such as {@link Schedulers#boundedElastic()} to run on instead.
+ */
+public class ReactiveSystemStateServiceAdapter implements ReactiveSystemStateService {
+
+    private static final Duration EMIT_CONTENTION_TIMEOUT = Duration.ofMillis(100);
+
+    private final SystemStateService delegate;
+    private final Scheduler scheduler;
+    // Only namespaces with a live subscriber have a sink; the last one to leave removes it
+    private final ConcurrentHashMap<String, UpdateSink> updateSinks = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate a non-blocking state service
+     */
+    public ReactiveSystemStateServiceAdapter(SystemStateService delegate) {
+        this(delegate, Schedulers.immediate());
+    }
+
+    /**
+     * @param delegate the state service to adapt
+     * @param scheduler where delegate calls run
+     */
+    public ReactiveSystemStateServiceAdapter(SystemStateService delegate, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Mono<MessageDto> getState(String namespace) {
+        return call(() -> delegate.getState(namespace));
+    }
+
+    @Override
+    public Mono<MessageDto> sendMessage(String namespace, MessageDto message) {
+        return call(() -> {
+            MessageDto processed = delegate.sendMessage(namespace, message);
+            UpdateSink updates = updateSinks.get(namespace);
+            if (updates != null) {
+                // Concurrent emitters to one namespace retry briefly instead of failing with FAIL_NON_SERIALIZED;
+                // the handler's deadline starts when it is created, so it is created per emission
+                updates.sink.emitNext(processed, Sinks.EmitFailureHandler.busyLooping(EMIT_CONTENTION_TIMEOUT));
+            }
+            return processed;
+        });
+    }
+
+    /**
+     * The namespace's sink is created by its first subscriber and removed when its last subscriber
+     * cancels or the stream ends, so namespaces nobody follows any more hold no memory.
+     */
+    @Override
+    public Flux<MessageDto> updates(String namespace) {
+        return Flux.defer(() -> {
+            UpdateSink updates = updateSinks.compute(namespace, (ns, current) -> {
+                UpdateSink joined = current != null ? current : new UpdateSink();
+                joined.subscribers++;
+                return joined;
+            });
+            return updates.sink.asFlux().doFinally(signal -> updateSinks.computeIfPresent(namespace,
+                    (ns, current) -> --current.subscribers == 0 ? null : current));
+        });
+    }
+
+    /**
+     * @return the number of namespaces with a live update subscriber
+     */
+    int updateSinkCount() {
+        return updateSinks.size();
+    }
+
+    @Override
+    public Mono<Long> getVersion(String namespace) {
+        return call(() -> delegate.getVersion(namespace));
+    }
+
+    @Override
+    public Flux<VersionedMessageDto> getHistory(String namespace, long sinceVersion, int limit) {
+        return call(() -> delegate.getHistory(namespace, sinceVersion, limit)).flatMapIterable(versions -> versions);
+    }
+
+    private <T> Mono<T> call(Callable<T> callable) {
+        Mono<T> mono = Mono.fromCallable(callable);
+        return scheduler == Schedulers.immediate() ? mono : mono.subscribeOn(scheduler);
+    }
+
+    /**
+     * A namespace's sink and how many subscribers share it; the count only changes inside map computations.
+     */
+    private static final class UpdateSink {
+
+        private final Sinks.Many<MessageDto> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks on a fixed set of single-threaded shards chosen by key hash.
+ * Tasks for one key therefore run one at a time, in submission order, on the same thread,
+ * while keys on different shards run in parallel. No locks are needed to order writes to a key.
+ * Each shard queues at most a fixed number of tasks. A task submitted to a full shard is rejected with a
+ * {@link RejectedExecutionException}, so callers faster than a shard are pushed back instead of queueing
+ * without limit; running it on the caller's thread would break the shard's ordering.
+ */
+public class ShardedExecutor implements AutoCloseable {
+
+    /**
+     * Default for the most tasks queued on one shard.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    /**
+     * Queue capacity for shards that must never refuse a task.
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final Shard[] shards;
+
+    /**
+     * @param shardCount the number of shards, each with its own thread
+     * @param threadNamePrefix prefix for the shard thread names, followed by the shard index
+     */
+    public ShardedExecutor(int shardCount, String threadNamePrefix) {
+        this(shardCount, threadNamePrefix, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param shardCount the number of shards, each with its own thread
+     * @param threadNamePrefix prefix for the shard thread names, followed by the shard index
+     * @param queueCapacity the most tasks queued on one shard, or {@link #UNBOUNDED}
+     */
+    public ShardedExecutor(int shardCount, String threadNamePrefix, int queueCapacity) {
+        if (shardCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Shard count and queue capacity must be positive");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(threadNamePrefix + i, queueCapacity);
+        }
+    }
+
+    /**
+     * @return one shard per available processor
+     */
+    public static int defaultShardCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param key the task key
+     * @return the index of the shard that runs tasks for the key
+     */
+    public int shardOf(String key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Queues a task on the key's shard.
+     * @param key the task key
+     * @param task the task to run
+     * @return a future completed with the task's result on the shard thread
+     * @throws RejectedExecutionException if the shard's queue is full or the executor is closed
+     */
+    public <T> CompletableFuture<T> submit(String key, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, shards[shardOf(key)].executor);
+    }
+
+    /**
+     * Queues a task on a shard chosen by index, for callers that spread their own work across shards.
+     * @param shard the shard index, from 0 to {@link #shardCount()} - 1
+     * @param task the task to run
+     * @throws RejectedExecutionException if the shard's queue is full or the executor is closed
+     */
+    public void execute(int shard, Runnable task) {
+        shards[shard].executor.execute(task);
+    }
+
+    /**
+     * Runs a task on the key's shard and waits for it. A task already running on that shard
+     * runs the nested one inline, since queueing it behind itself would never complete.
+     * @param key the task key
+     * @param task the task to run
+     * @return the task's result
+     * @throws RuntimeException the exception thrown by the task, unwrapped
+     * @throws RejectedExecutionException if the shard's queue is full or the executor is closed
+     */
+    public <T> T call(String key, Supplier<T> task) {
+        Shard shard = shards[shardOf(key)];
+        if (Thread.currentThread() == shard.thread) {
+            return task.get();
+        }
+        return join(CompletableFuture.supplyAsync(task, shard.executor));
+    }
+
+    /**
+     * Waits for a task submitted with {@link #submit}.
+     * @param future the task's future
+     * @return the task's result
+     * @throws RuntimeException the exception thrown by the task, unwrapped
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops accepting tasks and waits for queued ones to finish.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** One single-writer thread and its queue. */
+    private static final class Shard {
+
+        final ThreadPoolExecutor executor;
+        volatile Thread thread;
+
+        Shard(String name, int queueCapacity) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    queueCapacity == UNBOUNDED ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread created = new Thread(runnable, name);
+                        created.setDaemon(true);
+                        thread = created;
+                        return created;
+                    },
+                    (task, pool) -> {
+                        throw new RejectedExecutionException(pool.isShutdown()
+                                ? name + " is closed" : name + " has " + queueCapacity + " tasks queued");
+                    });
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.StateDeltaDto;
+import com.example.dto.VersionedMessageDto;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Turns the successive states broadcast for each namespace into a stream of compact deltas.
+ * Every frame after the first is a {@link StateDeltaDto} against the previous frame's version,
+ * so versions double as sequence numbers: a client applies a delta only if its
+ * {@code baseVersion} is the version it holds, and otherwise resynchronizes from a full state.
+ * <p>
+ * Any {@link SystemStateService} whose {@code sendMessage} returns {@link VersionedMessageDto},
+ * including every {@link AbstractSystemStateService} subclass, can be encoded without changes.
+ * Each delta is a single splice between the common prefix and suffix of the two contents, which is
+ * linear in their length and compact when a change is local, such as one field of a large document.
+ * A full state is sent instead when the state is small or the splice would not be much smaller.
+ */
+public class StateDeltaEncoder {
+
+    /**
+     * Rough size of a delta's JSON fields other than the inserted text.
+     */
+    static final int DELTA_OVERHEAD = 96;
+
+    private final int minContentLength;
+    private final ConcurrentHashMap<String, Stream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * @param minContentLength states shorter than this are always sent in full
+     */
+    public StateDeltaEncoder(int minContentLength) {
+        this.minContentLength = minContentLength;
+    }
+
+    /**
+     * Encodes the next state of a namespace and hands the frame to the sink, holding the
+     * namespace's lock so that frames reach the sink in version order.
+     * @param namespace the namespace
+     * @param state the state to broadcast
+     * @param sink receives the frame: a {@link StateDeltaDto}, or the state itself
+     * @return false if nothing was sent because a newer version was already encoded
+     */
+    public boolean encode(String namespace, MessageDto state, Consumer<Object> sink) {
+        if (!(state instanceof VersionedMessageDto versioned)) {
+            sink.accept(state);
+            return true;
+        }
+        Stream stream = streams.computeIfAbsent(namespace, ns -> new Stream());
+        synchronized (stream) {
+            VersionedMessageDto previous = stream.last;
+            if (previous != null && versioned.getVersion() <= previous.getVersion()) {
+                return false; // Writers raced and a newer state has gone out already
+            }
+            StateDeltaDto delta = previous == null ? null : diff(namespace, previous, versioned);
+            stream.last = versioned;
+            sink.accept(delta != null ? delta : versioned);
+        }
+        return true;
+    }
+
+    /**
+     * @param namespace the namespace
+     * @return the last state encoded for the namespace, from which its next delta will be computed,
+     *         or null if none has been
+     */
+    public VersionedMessageDto lastEncoded(String namespace) {
+        Stream stream = streams.get(namespace);
+        return stream == null ? null : stream.last;
+    }
+
+    /**
+     * Drops the stream of a namespace that no longer exists, so its next state is sent in full.
+     * @param namespace the namespace
+     */
+    public void forget(String namespace) {
+        streams.remove(namespace);
+    }
+
+    /**
+     * Computes the splice turning one state into the next.
+     * @return the delta, or null if sending the new state in full is about as cheap
+     */
+    StateDeltaDto diff(String namespace, VersionedMessageDto base, VersionedMessageDto target) {
+        String from = base.getContent();
+        String to = target.getContent();
+        if (from == null || to == null || to.length() < minContentLength) {
+            return null;
+        }
+        int limit = Math.min(from.length(), to.length());
+        int prefix = 0;
+        while (prefix < limit && from.charAt(prefix) == to.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix > 0 && Character.isHighSurrogate(to.charAt(prefix - 1))) {
+            prefix--; // Never split a surrogate pair, so the inserted text is valid UTF-16
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(to.charAt(to.length() - suffix))) {
+            suffix--;
+        }
+        String insert = to.substring(prefix, to.length() - suffix);
+        if (insert.length() + DELTA_OVERHEAD >= to.length()) {
+            return null;
+        }
+        return new StateDeltaDto(namespace, base.getVersion(), target.getVersion(), prefix,
+                from.length() - prefix - suffix, insert);
+    }
+
+    private static final class Stream {
+        private volatile VersionedMessageDto last;
+    }
+}
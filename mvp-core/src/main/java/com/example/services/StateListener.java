@@ -0,0 +1,24 @@
+package com.example.services;
+
+import com.example.dto.VersionedMessageDto;
+
+/**
+ * Told of every state a {@link SystemStateService} stores, once it is stored, and of namespaces it discards.
+ * Listeners run on the writer's thread, so they should hand slow work off rather than do it inline.
+ */
+@FunctionalInterface
+public interface StateListener {
+
+    /**
+     * @param state the stored state, carrying its namespace and version
+     */
+    void stateChanged(VersionedMessageDto state);
+
+    /**
+     * Told when a namespace no longer exists, such as one evicted from storage, so that whatever
+     * is kept for it can be dropped. A later state of the namespace starts it afresh.
+     * @param namespace the namespace identifier
+     */
+    default void namespaceDiscarded(String namespace) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.services;
+
+import java.util.Locale;
+
+/**
+ * Receives per-namespace counts and timings of state service operations.
+ * {@link AbstractSystemStateService} reports {@code sendMessage}, {@code processMessage},
+ * {@code storeMessage} and its default {@code getState}; hosts may report the rest.
+ * <p>
+ * Recording is on the hot path, so implementations decide per call whether to time it
+ * and may keep timings for a sample of calls only, while still counting every call.
+ */
+public interface StateMetrics {
+
+    /**
+     * Returned by {@link Recorder#start} for a call that is counted but not timed.
+     */
+    long UNTIMED = Long.MIN_VALUE;
+
+    /**
+     * Metrics that record nothing.
+     */
+    StateMetrics NONE = namespace -> Recorder.NONE;
+
+    /**
+     * The operations reported. {@link #PROCESS_MESSAGE} and {@link #STORE_MESSAGE} are phases of
+     * {@link #SEND_MESSAGE}, timed on the calls it times and never counted separately.
+     */
+    enum Operation {
+        GET_STATE,
+        SEND_MESSAGE,
+        PROCESS_MESSAGE,
+        STORE_MESSAGE,
+        BROADCAST;
+
+        /**
+         * @return the operation's name as a metric tag value, e.g. {@code send-message}
+         */
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    /**
+     * Returns the recorder for a namespace. Implementations may share one recorder among
+     * namespaces, for example to bound the number of distinct namespaces they track.
+     * @param namespace the namespace identifier
+     * @return the recorder, never null
+     */
+    Recorder recorder(String namespace);
+
+    /**
+     * Drops whatever is kept for a namespace that no longer exists, such as one evicted from storage.
+     * A later call to {@link #recorder} for the namespace starts it afresh.
+     * @param namespace the namespace identifier
+     */
+    default void forget(String namespace) {
+    }
+
+    /**
+     * Records operations of one namespace.
+     */
+    interface Recorder {
+
+        Recorder NONE = new Recorder() {
+            @Override
+            public long start(Operation operation) {
+                return UNTIMED;
+            }
+
+            @Override
+            public void record(Operation operation, long nanos) {
+            }
+        };
+
+        /**
+         * Counts a call and decides whether to time it.
+         * @param operation the operation starting
+         * @return {@link System#nanoTime()} if the call should be timed, otherwise {@link #UNTIMED}
+         */
+        long start(Operation operation);
+
+        /**
+         * Records the duration of a timed call or phase.
+         * @param operation the operation or phase
+         * @param nanos the duration in nanoseconds
+         */
+        void record(Operation operation, long nanos);
+    }
+}
@@ -1,6 +1,12 @@
 package com.example.services;
 
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Interface for system state management services.
@@ -15,6 +21,17 @@ public interface SystemStateService {
      */
     MessageDto getState(String namespace);
 
+    /**
+     * Returns the version of the current state for the given namespace without materializing it.
+     * Callers use this to validate cached copies cheaply; the version changes whenever the state does.
+     * Implementations whose default state is not fixed per namespace should not report a version for it.
+     * @param namespace the namespace identifier
+     * @return the current version, 0 for the default state, or -1 if the implementation does not track versions
+     */
+    default long getVersion(String namespace) {
+        return -1;
+    }
+
     /**
      * Sends a message to the specified namespace.
      * @param namespace the namespace identifier
@@ -22,4 +39,73 @@ public interface SystemStateService {
      * @return the processed MessageDto
      */
     MessageDto sendMessage(String namespace, MessageDto message);
-}
\ No newline at end of file
+
+    /**
+     * Sends a message to the specified namespace without waiting for it to be stored.
+     * The default implementation calls {@link #sendMessage} on the calling thread and returns a completed future;
+     * implementations that can run writes elsewhere override it so callers do not block on slow storage.
+     * @param namespace the namespace identifier
+     * @param message the message to send
+     * @return a future completed with the processed MessageDto, or completed exceptionally with the exception
+     *         {@link #sendMessage} would have thrown
+     */
+    default CompletableFuture<MessageDto> sendMessageAsync(String namespace, MessageDto message) {
+        try {
+            return CompletableFuture.completedFuture(sendMessage(namespace, message));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Registers a listener told of every state stored from now on.
+     * Listeners of one namespace may be told out of version order when writers to it race.
+     * @param listener the listener to add
+     * @return false if the implementation does not report state changes, in which case the listener is not added
+     */
+    default boolean addStateListener(StateListener listener) {
+        return false;
+    }
+
+    /**
+     * Retrieves retained versions of the namespace state newer than the given version, oldest first.
+     * @param namespace the namespace identifier
+     * @param sinceVersion only versions greater than this are returned; 0 returns all retained versions
+     * @param limit the maximum number of versions to return
+     * @return the matching versions, empty if the implementation keeps no history
+     */
+    default List<VersionedMessageDto> getHistory(String namespace, long sinceVersion, int limit) {
+        return List.of();
+    }
+
+    /**
+     * Retrieves the current state for many namespaces in one call.
+     * Results are handed to the sink one at a time, in request order, so callers can
+     * stream them out without collecting an intermediate list.
+     * @param namespaces the namespace identifiers
+     * @param sink receives the state of each namespace
+     */
+    default void getStates(Collection<String> namespaces, Consumer<? super MessageDto> sink) {
+        for (String namespace : namespaces) {
+            sink.accept(getState(namespace));
+        }
+    }
+
+    /**
+     * Sends many messages in one call, each to the namespace it names.
+     * Messages are processed in order and every processed result is handed to the sink as soon as it is stored.
+     * @param messages the messages to send; each must carry its target namespace
+     * @param sink receives each processed message
+     * @throws IllegalArgumentException if any message has no namespace; no message is sent in that case
+     */
+    default void sendMessages(Collection<? extends MessageDto> messages, Consumer<? super MessageDto> sink) {
+        for (MessageDto message : messages) {
+            if (message == null || message.getNamespace() == null || message.getNamespace().isBlank()) {
+                throw new IllegalArgumentException("Every message in a batch must specify a namespace");
+            }
+        }
+        for (MessageDto message : messages) {
+            sink.accept(sendMessage(message.getNamespace(), message));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.services;
+
+import com.example.dto.VersionedMessageDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces concurrent writes into batches handed to storage in one call.
+ * A single flusher thread takes the first queued message, collects whatever else is queued up to the
+ * maximum batch size, optionally waiting up to the window for more, and passes the batch to the
+ * message's store. While one batch is being stored the next one fills, so batches grow with load
+ * even with no window. Messages reach their store in submission order, and each submitter gets
+ * its own completion. At most a fixed number of messages wait at once; once that many are queued,
+ * submitters block until the flusher makes room, so writers slow to the pace storage keeps.
+ */
+public class WriteBatcher implements AutoCloseable {
+
+    /**
+     * Default for the most messages waiting to be stored.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private static final Pending SHUTDOWN = new Pending(null, null, null);
+
+    private final int maxBatchSize;
+
+    private final long windowNanos;
+
+    private final LinkedBlockingQueue<Pending> queue;
+
+    private final Thread flusher;
+
+    private volatile boolean closed;
+
+    /**
+     * @param maxBatchSize the most messages handed to storage at once
+     * @param windowMicros how long to wait for more messages once one arrives; 0 stores whatever is queued
+     * @param threadName the name of the flusher thread
+     */
+    public WriteBatcher(int maxBatchSize, long windowMicros, String threadName) {
+        this(maxBatchSize, windowMicros, DEFAULT_QUEUE_CAPACITY, threadName);
+    }
+
+    /**
+     * @param maxBatchSize the most messages handed to storage at once
+     * @param windowMicros how long to wait for more messages once one arrives; 0 stores whatever is queued
+     * @param queueCapacity the most messages waiting to be stored; further submitters block
+     * @param threadName the name of the flusher thread
+     */
+    public WriteBatcher(int maxBatchSize, long windowMicros, int queueCapacity, String threadName) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        if (windowMicros < 0) {
+            throw new IllegalArgumentException("Batch window must not be negative");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        flusher = new Thread(this::run, threadName);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a message for the next batch, waiting for room while the queue is full.
+     * Consecutive messages with the same store are stored together, so callers should pass the same
+     * store instance every time.
+     * @param message the message to store
+     * @param store stores a batch of messages, in order, on the flusher thread
+     * @return a future completed once the message's batch is stored, or completed exceptionally with
+     *         the exception the store threw
+     * @throws IllegalStateException if the batcher is closed, or the thread is interrupted while waiting for room
+     */
+    public CompletableFuture<Void> submit(VersionedMessageDto message, Consumer<List<VersionedMessageDto>> store) {
+        if (closed) {
+            throw new IllegalStateException("Write batcher is closed");
+        }
+        Pending pending = new Pending(message, store, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room in the write batcher", e);
+        }
+        // Queued after the flusher's final drain: nothing will store it
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("Write batcher is closed");
+        }
+        return pending.stored;
+    }
+
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return the number of messages waiting to be stored
+     */
+    public int queuedMessages() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting messages and waits for queued ones to be stored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (!queue.offer(SHUTDOWN)) {
+            flusher.interrupt(); // The queue is full; the flusher stores what it can drain and stops
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Pending first = queue.take();
+                if (first == SHUTDOWN) {
+                    stopping = true;
+                } else {
+                    batch.add(first);
+                    stopping = collect(batch);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            if (stopping) {
+                queue.drainTo(batch);
+                batch.remove(SHUTDOWN);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return true if the shutdown marker was reached
+     */
+    private boolean collect(List<Pending> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            int before = batch.size();
+            queue.drainTo(batch, maxBatchSize - before);
+            if (batch.subList(before, batch.size()).remove(SHUTDOWN)) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == SHUTDOWN) {
+                return true;
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return false;
+    }
+
+    private static void flush(List<Pending> batch) {
+        int start = 0;
+        for (int i = 1; i <= batch.size(); i++) {
+            if (i == batch.size() || batch.get(i).store != batch.get(start).store) {
+                store(batch.subList(start, i));
+                start = i;
+            }
+        }
+    }
+
+    private static void store(List<Pending> run) {
+        List<VersionedMessageDto> messages = new ArrayList<>(run.size());
+        for (Pending pending : run) {
+            messages.add(pending.message);
+        }
+        try {
+            run.get(0).store.accept(messages);
+        } catch (Throwable e) {
+            for (Pending pending : run) {
+                pending.stored.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Pending pending : run) {
+            pending.stored.complete(null);
+        }
+    }
+
+    private record Pending(VersionedMessageDto message, Consumer<List<VersionedMessageDto>> store,
+                           CompletableFuture<Void> stored) {
+    }
+}
@@ -124,6 +124,31 @@ export interface UserDto {
      */
     'name'?: string;
 }
+/**
+ * 
+ * @export
+ * @interface VersionedMessageDto
+ */
+export interface VersionedMessageDto {
+    /**
+     * The message content to be exchanged or rendered
+     * @type {string}
+     * @memberof VersionedMessageDto
+     */
+    'content': string;
+    /**
+     * The namespace for scoping the message
+     * @type {string}
+     * @memberof VersionedMessageDto
+     */
+    'namespace': string;
+    /**
+     * Per-namespace version the message was stored at, increasing monotonically from 1
+     * @type {number}
+     * @memberof VersionedMessageDto
+     */
+    'version': number;
+}
 
 /**
  * DefaultApi - axios parameter creator
@@ -161,6 +186,42 @@ export const DefaultApiAxiosParamCreator = function (configuration?: Configurati
                 options: localVarRequestOptions,
             };
         },
+        /**
+         * 
+         * @summary Send messages to many namespaces in one request
+         * @param {Array<MessageDto>} messageDto 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        apiMessageBatchPost: async (messageDto: Array<MessageDto>, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'messageDto' is not null or undefined
+            assertParamExists('apiMessageBatchPost', 'messageDto', messageDto)
+            const localVarPath = `/api/message/batch`;
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'POST', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+
+    
+            localVarHeaderParameter['Content-Type'] = 'application/json';
+
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+            localVarRequestOptions.data = serializeDataIfNeeded(messageDto, localVarRequestOptions, configuration)
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
         /**
          * 
          * @summary Send a message to a specific namespace
@@ -201,14 +262,51 @@ export const DefaultApiAxiosParamCreator = function (configuration?: Configurati
                 options: localVarRequestOptions,
             };
         },
+        /**
+         * 
+         * @summary Retrieve the current state for many namespaces in one request
+         * @param {Array<string>} requestBody 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        apiStateBatchPost: async (requestBody: Array<string>, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'requestBody' is not null or undefined
+            assertParamExists('apiStateBatchPost', 'requestBody', requestBody)
+            const localVarPath = `/api/state/batch`;
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'POST', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+
+    
+            localVarHeaderParameter['Content-Type'] = 'application/json';
+
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+            localVarRequestOptions.data = serializeDataIfNeeded(requestBody, localVarRequestOptions, configuration)
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
         /**
          * 
          * @summary Retrieve the current state for a specific namespace
          * @param {string} namespace The namespace identifier for themed or isolated state
+         * @param {string} [ifNoneMatch] ETag of a previously fetched state; an unchanged state is answered with 304
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        apiStateNamespaceGet: async (namespace: string, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+        apiStateNamespaceGet: async (namespace: string, ifNoneMatch?: string, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
             // verify required parameter 'namespace' is not null or undefined
             assertParamExists('apiStateNamespaceGet', 'namespace', namespace)
             const localVarPath = `/api/state/{namespace}`
@@ -224,6 +322,54 @@ export const DefaultApiAxiosParamCreator = function (configuration?: Configurati
             const localVarHeaderParameter = {} as any;
             const localVarQueryParameter = {} as any;
 
+            if (ifNoneMatch != null) {
+                localVarHeaderParameter['If-None-Match'] = String(ifNoneMatch);
+            }
+
+
+    
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
+        /**
+         * 
+         * @summary Retrieve recent versions of the state for a namespace, oldest first
+         * @param {string} namespace The namespace identifier
+         * @param {number} [since] Only versions greater than this are returned
+         * @param {number} [limit] Maximum number of versions to return
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        apiStateNamespaceHistoryGet: async (namespace: string, since?: number, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'namespace' is not null or undefined
+            assertParamExists('apiStateNamespaceHistoryGet', 'namespace', namespace)
+            const localVarPath = `/api/state/{namespace}/history`
+                .replace(`{${"namespace"}}`, encodeURIComponent(String(namespace)));
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'GET', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+            if (since !== undefined) {
+                localVarQueryParameter['since'] = since;
+            }
+
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
 
     
             setSearchParams(localVarUrlObj, localVarQueryParameter);
@@ -391,6 +537,19 @@ export const DefaultApiFp = function(configuration?: Configuration) {
             const localVarOperationServerBasePath = operationServerMap['DefaultApi.apiHeartbeatGet']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
         },
+        /**
+         * 
+         * @summary Send messages to many namespaces in one request
+         * @param {Array<MessageDto>} messageDto 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async apiMessageBatchPost(messageDto: Array<MessageDto>, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<VersionedMessageDto>>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.apiMessageBatchPost(messageDto, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['DefaultApi.apiMessageBatchPost']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
         /**
          * 
          * @summary Send a message to a specific namespace
@@ -399,25 +558,54 @@ export const DefaultApiFp = function(configuration?: Configuration) {
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async apiMessageNamespacePost(namespace: string, messageDto: MessageDto, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<MessageDto>> {
+        async apiMessageNamespacePost(namespace: string, messageDto: MessageDto, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<VersionedMessageDto>> {
             const localVarAxiosArgs = await localVarAxiosParamCreator.apiMessageNamespacePost(namespace, messageDto, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['DefaultApi.apiMessageNamespacePost']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
         },
+        /**
+         * 
+         * @summary Retrieve the current state for many namespaces in one request
+         * @param {Array<string>} requestBody 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async apiStateBatchPost(requestBody: Array<string>, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<MessageDto>>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.apiStateBatchPost(requestBody, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['DefaultApi.apiStateBatchPost']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
         /**
          * 
          * @summary Retrieve the current state for a specific namespace
          * @param {string} namespace The namespace identifier for themed or isolated state
+         * @param {string} [ifNoneMatch] ETag of a previously fetched state; an unchanged state is answered with 304
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async apiStateNamespaceGet(namespace: string, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<MessageDto>> {
-            const localVarAxiosArgs = await localVarAxiosParamCreator.apiStateNamespaceGet(namespace, options);
+        async apiStateNamespaceGet(namespace: string, ifNoneMatch?: string, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<MessageDto>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.apiStateNamespaceGet(namespace, ifNoneMatch, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['DefaultApi.apiStateNamespaceGet']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
         },
+        /**
+         * 
+         * @summary Retrieve recent versions of the state for a namespace, oldest first
+         * @param {string} namespace The namespace identifier
+         * @param {number} [since] Only versions greater than this are returned
+         * @param {number} [limit] Maximum number of versions to return
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async apiStateNamespaceHistoryGet(namespace: string, since?: number, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<VersionedMessageDto>>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.apiStateNamespaceHistoryGet(namespace, since, limit, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['DefaultApi.apiStateNamespaceHistoryGet']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
         /**
          * 
          * @summary Authenticate user and return JWT token
@@ -486,6 +674,16 @@ export const DefaultApiFactory = function (configuration?: Configuration, basePa
         apiHeartbeatGet(options?: any): AxiosPromise<ApiHeartbeatGet200Response> {
             return localVarFp.apiHeartbeatGet(options).then((request) => request(axios, basePath));
         },
+        /**
+         * 
+         * @summary Send messages to many namespaces in one request
+         * @param {Array<MessageDto>} messageDto 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        apiMessageBatchPost(messageDto: Array<MessageDto>, options?: any): AxiosPromise<Array<VersionedMessageDto>> {
+            return localVarFp.apiMessageBatchPost(messageDto, options).then((request) => request(axios, basePath));
+        },
         /**
          * 
          * @summary Send a message to a specific namespace
@@ -494,18 +692,41 @@ export const DefaultApiFactory = function (configuration?: Configuration, basePa
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        apiMessageNamespacePost(namespace: string, messageDto: MessageDto, options?: any): AxiosPromise<MessageDto> {
+        apiMessageNamespacePost(namespace: string, messageDto: MessageDto, options?: any): AxiosPromise<VersionedMessageDto> {
             return localVarFp.apiMessageNamespacePost(namespace, messageDto, options).then((request) => request(axios, basePath));
         },
+        /**
+         * 
+         * @summary Retrieve the current state for many namespaces in one request
+         * @param {Array<string>} requestBody 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        apiStateBatchPost(requestBody: Array<string>, options?: any): AxiosPromise<Array<MessageDto>> {
+            return localVarFp.apiStateBatchPost(requestBody, options).then((request) => request(axios, basePath));
+        },
         /**
          * 
          * @summary Retrieve the current state for a specific namespace
          * @param {string} namespace The namespace identifier for themed or isolated state
+         * @param {string} [ifNoneMatch] ETag of a previously fetched state; an unchanged state is answered with 304
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        apiStateNamespaceGet(namespace: string, options?: any): AxiosPromise<MessageDto> {
-            return localVarFp.apiStateNamespaceGet(namespace, options).then((request) => request(axios, basePath));
+        apiStateNamespaceGet(namespace: string, ifNoneMatch?: string, options?: any): AxiosPromise<MessageDto> {
+            return localVarFp.apiStateNamespaceGet(namespace, ifNoneMatch, options).then((request) => request(axios, basePath));
+        },
+        /**
+         * 
+         * @summary Retrieve recent versions of the state for a namespace, oldest first
+         * @param {string} namespace The namespace identifier
+         * @param {number} [since] Only versions greater than this are returned
+         * @param {number} [limit] Maximum number of versions to return
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        apiStateNamespaceHistoryGet(namespace: string, since?: number, limit?: number, options?: any): AxiosPromise<Array<VersionedMessageDto>> {
+            return localVarFp.apiStateNamespaceHistoryGet(namespace, since, limit, options).then((request) => request(axios, basePath));
         },
         /**
          * 
@@ -565,6 +786,18 @@ export class DefaultApi extends BaseAPI {
         return DefaultApiFp(this.configuration).apiHeartbeatGet(options).then((request) => request(this.axios, this.basePath));
     }
 
+    /**
+     * 
+     * @summary Send messages to many namespaces in one request
+     * @param {Array<MessageDto>} messageDto 
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof DefaultApi
+     */
+    public apiMessageBatchPost(messageDto: Array<MessageDto>, options?: RawAxiosRequestConfig) {
+        return DefaultApiFp(this.configuration).apiMessageBatchPost(messageDto, options).then((request) => request(this.axios, this.basePath));
+    }
+
     /**
      * 
      * @summary Send a message to a specific namespace
@@ -578,16 +811,43 @@ export class DefaultApi extends BaseAPI {
         return DefaultApiFp(this.configuration).apiMessageNamespacePost(namespace, messageDto, options).then((request) => request(this.axios, this.basePath));
     }
 
+    /**
+     * 
+     * @summary Retrieve the current state for many namespaces in one request
+     * @param {Array<string>} requestBody 
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof DefaultApi
+     */
+    public apiStateBatchPost(requestBody: Array<string>, options?: RawAxiosRequestConfig) {
+        return DefaultApiFp(this.configuration).apiStateBatchPost(requestBody, options).then((request) => request(this.axios, this.basePath));
+    }
+
     /**
      * 
      * @summary Retrieve the current state for a specific namespace
      * @param {string} namespace The namespace identifier for themed or isolated state
+     * @param {string} [ifNoneMatch] ETag of a previously fetched state; an unchanged state is answered with 304
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof DefaultApi
+     */
+    public apiStateNamespaceGet(namespace: string, ifNoneMatch?: string, options?: RawAxiosRequestConfig) {
+        return DefaultApiFp(this.configuration).apiStateNamespaceGet(namespace, ifNoneMatch, options).then((request) => request(this.axios, this.basePath));
+    }
+
+    /**
+     * 
+     * @summary Retrieve recent versions of the state for a namespace, oldest first
+     * @param {string} namespace The namespace identifier
+     * @param {number} [since] Only versions greater than this are returned
+     * @param {number} [limit] Maximum number of versions to return
      * @param {*} [options] Override http request option.
      * @throws {RequiredError}
      * @memberof DefaultApi
      */
-    public apiStateNamespaceGet(namespace: string, options?: RawAxiosRequestConfig) {
-        return DefaultApiFp(this.configuration).apiStateNamespaceGet(namespace, options).then((request) => request(this.axios, this.basePath));
+    public apiStateNamespaceHistoryGet(namespace: string, since?: number, limit?: number, options?: RawAxiosRequestConfig) {
+        return DefaultApiFp(this.configuration).apiStateNamespaceHistoryGet(namespace, since, limit, options).then((request) => request(this.axios, this.basePath));
     }
 
     /**
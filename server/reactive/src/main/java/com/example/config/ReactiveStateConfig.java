@@ -0,0 +1,23 @@
+package com.example.config;
+
+import com.example.services.ReactiveSystemStateService;
+import com.example.services.ReactiveSystemStateServiceAdapter;
+import com.example.services.SystemStateService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exposes the SystemStateService to controllers and WebSocket handlers as a ReactiveSystemStateService.
+ */
+@Configuration
+public class ReactiveStateConfig {
+
+    /**
+     * The in-memory service never blocks, so calls run directly on the event loop.
+     * A blocking SystemStateService should be adapted with a scheduler instead.
+     */
+    @Bean
+    public ReactiveSystemStateService reactiveSystemStateService(SystemStateService systemStateService) {
+        return new ReactiveSystemStateServiceAdapter(systemStateService);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.config;
+
+import com.example.websocket.StateWebSocketHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+/**
+ * WebSocket configuration for real-time communication on the reactive server.
+ * Maps /ws/state/{namespace} to the JSON state handler.
+ */
+@Configuration
+public class WebSocketConfig {
+
+    @Bean
+    public HandlerMapping webSocketHandlerMapping(StateWebSocketHandler handler) {
+        // Ordered ahead of annotated controllers
+        return new SimpleUrlHandlerMapping(Map.of("/ws/state/*", handler), Ordered.HIGHEST_PRECEDENCE);
+    }
+}
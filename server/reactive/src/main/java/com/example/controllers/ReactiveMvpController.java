@@ -0,0 +1,125 @@
+package com.example.controllers;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.services.ReactiveSystemStateService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of the servlet server's MvpController.
+ * Serves the same /api contract from an event loop; batch responses are streamed
+ * element by element as the underlying Flux emits.
+ */
+@RestController
+@RequestMapping("/api")
+public class ReactiveMvpController {
+
+    @Autowired
+    private ReactiveSystemStateService stateService;
+
+    private final String eTagPrefix = "\"" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    /**
+     * Retrieves the state for a given namespace.
+     * The response carries the state version as its ETag; a request whose If-None-Match
+     * still matches is answered with 304 before the state is read.
+     * @param namespace the namespace identifier
+     * @param exchange the current exchange, used for conditional GET handling
+     * @return the state, or an empty Mono once a 304 has been prepared
+     */
+    @GetMapping("/state/{namespace}")
+    public Mono<ResponseEntity<MessageDto>> getState(@PathVariable String namespace, ServerWebExchange exchange) {
+        return stateService.getVersion(namespace).flatMap(version -> {
+            if (version >= 0 && exchange.checkNotModified(eTag(version))) {
+                return Mono.empty();
+            }
+            return stateService.getState(namespace).map(dto -> {
+                long bodyVersion = dto instanceof VersionedMessageDto versioned ? versioned.getVersion() : version;
+                if (bodyVersion < 0) {
+                    return ResponseEntity.ok(dto);
+                }
+                return ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(eTag(bodyVersion))
+                        .body(dto);
+            });
+        });
+    }
+
+    /**
+     * Retrieves recent versions of the state for a given namespace, oldest first.
+     * @param namespace the namespace identifier
+     * @param since only versions greater than this are returned
+     * @param limit the maximum number of versions to return
+     * @return the matching versions
+     */
+    @GetMapping("/state/{namespace}/history")
+    public Flux<VersionedMessageDto> getHistory(@PathVariable String namespace,
+                                                @RequestParam(defaultValue = "0") long since,
+                                                @RequestParam(defaultValue = "50") int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return stateService.getHistory(namespace, since, limit);
+    }
+
+    /**
+     * Retrieves the state of many namespaces in one request.
+     * @param namespaces the namespace identifiers
+     * @return a MessageDto per namespace, in request order
+     */
+    @PostMapping("/state/batch")
+    public Flux<MessageDto> getStates(@RequestBody List<String> namespaces) {
+        if (namespaces.stream().anyMatch(namespace -> namespace == null || namespace.isBlank())) {
+            throw new IllegalArgumentException("Namespaces in a batch must not be blank");
+        }
+        return stateService.getStates(namespaces);
+    }
+
+    /**
+     * Sends a message to a specified namespace.
+     * @param namespace the namespace identifier
+     * @param message the message payload
+     * @return the processed MessageDto
+     */
+    @PostMapping("/message/{namespace}")
+    public Mono<MessageDto> sendMessage(@PathVariable String namespace, @RequestBody MessageDto message) {
+        return stateService.sendMessage(namespace, message);
+    }
+
+    /**
+     * Sends many messages in one request, each to the namespace it names.
+     * @param messages the message payloads, each carrying its target namespace
+     * @return the processed MessageDto for each message, in request order
+     */
+    @PostMapping("/message/batch")
+    public Flux<MessageDto> sendMessages(@RequestBody List<MessageDto> messages) {
+        return stateService.sendMessages(messages);
+    }
+
+    /**
+     * Health check endpoint to verify server availability.
+     * @return heartbeat status
+     */
+    @GetMapping("/heartbeat")
+    public Mono<Map<String, Object>> heartbeat() {
+        return Mono.fromSupplier(() -> Map.of(
+            "status", "alive",
+            "timestamp", Instant.now().toString()
+        ));
+    }
+
+    private String eTag(long version) {
+        return eTagPrefix + version + '"';
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory SystemStateService for the reactive server.
+ * Extends AbstractSystemStateService, so messages are processed, versioned and kept in
+ * history exactly as on the servlet server. Every call only touches memory, which makes it
+ * safe to invoke directly from an event loop.
+ */
+@Service
+public class InMemorySystemStateService extends AbstractSystemStateService {
+
+    private final ConcurrentHashMap<String, MessageDto> stateStore = new ConcurrentHashMap<>();
+
+    @Override
+    public MessageDto getState(String namespace) {
+        return stateStore.getOrDefault(namespace, getDefaultState(namespace));
+    }
+
+    @Override
+    public long getVersion(String namespace) {
+        return version(stateStore.get(namespace));
+    }
+
+    @Override
+    protected void storeMessage(String namespace, MessageDto message) {
+        // Racing writers keep the highest version visible
+        stateStore.merge(namespace, message, (current, incoming) -> version(incoming) >= version(current) ? incoming : current);
+    }
+
+    private static long version(MessageDto message) {
+        return message instanceof VersionedMessageDto versioned ? versioned.getVersion() : 0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.websocket;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.services.ReactiveSystemStateService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket endpoint for real-time state updates on the reactive server.
+ * A client connects to /ws/state/{namespace}, immediately receives the current state, and then
+ * every processed message for the namespace as a JSON MessageDto text frame. Text frames sent
+ * by the client are MessageDto JSON and are processed like POST /api/message/{namespace}.
+ * <p>
+ * WebFlux has no STOMP broker, so this is plain JSON over WebSocket rather than the servlet
+ * server's STOMP-over-SockJS endpoint.
+ */
+@Component
+public class StateWebSocketHandler implements WebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(StateWebSocketHandler.class);
+
+    @Autowired
+    private ReactiveSystemStateService stateService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        String path = session.getHandshakeInfo().getUri().getPath();
+        String namespace = path.substring(path.lastIndexOf('/') + 1);
+        if (namespace.isBlank()) {
+            return session.close();
+        }
+
+        // Subscribe to updates before reading the state so nothing falls in between,
+        // then drop anything older than what the client has already been sent
+        AtomicLong lastSentVersion = new AtomicLong(-1);
+        Flux<WebSocketMessage> outbound = Flux.merge(stateService.updates(namespace), stateService.getState(namespace))
+                .filter(dto -> advance(lastSentVersion, version(dto)))
+                .concatMap(dto -> Mono.fromCallable(() -> session.textMessage(objectMapper.writeValueAsString(dto))));
+
+        Mono<Void> inbound = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .concatMap(text -> read(text).flatMap(message -> stateService.sendMessage(namespace, message)))
+                .then();
+
+        return Mono.when(session.send(outbound), inbound);
+    }
+
+    private Mono<MessageDto> read(String text) {
+        try {
+            return Mono.just(objectMapper.readValue(text, MessageDto.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed WebSocket message: {}", e.getOriginalMessage());
+            return Mono.empty();
+        }
+    }
+
+    private static boolean advance(AtomicLong lastSentVersion, long version) {
+        long last;
+        do {
+            last = lastSentVersion.get();
+            if (version <= last) {
+                return false;
+            }
+        } while (!lastSentVersion.compareAndSet(last, version));
+        return true;
+    }
+
+    private static long version(MessageDto message) {
+        return message instanceof VersionedMessageDto versioned ? versioned.getVersion() : 0;
+    }
+}
@@ -0,0 +1,15 @@
+package org.ajp.mvp.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ComponentScan;
+
+@SpringBootApplication
+@ComponentScan(basePackages = {"org.ajp.mvp.reactive", "com.example"})
+public class ReactiveServerApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveServerApplication.class, args);
+    }
+
+}
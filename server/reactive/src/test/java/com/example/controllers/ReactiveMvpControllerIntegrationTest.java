@@ -0,0 +1,128 @@
+package com.example.controllers;
+
+import com.example.dto.MessageDto;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.ajp.mvp.reactive.ReactiveServerApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.not;
+
+@SpringBootTest(classes = ReactiveServerApplication.class)
+@AutoConfigureWebTestClient
+class ReactiveMvpControllerIntegrationTest {
+
+    // Signed with the servlet server's key, as tokens from /auth/login are
+    private static final String TOKEN = Jwts.builder()
+            .subject("user@example.com")
+            .issuedAt(new Date())
+            .expiration(new Date(System.currentTimeMillis() + 60_000))
+            .signWith(Keys.hmacShaKeyFor("mySecretKeyForJwtTokensThatIsLongEnoughForHS256Algorithm".getBytes()))
+            .compact();
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private WebTestClient authorized() {
+        return webTestClient.mutate().defaultHeader("Authorization", "Bearer " + TOKEN).build();
+    }
+
+    @Test
+    void api_RequiresValidToken() {
+        webTestClient.get().uri("/api/state/secured").exchange().expectStatus().isUnauthorized();
+        webTestClient.get().uri("/api/state/secured").header("Authorization", "Bearer not-a-token")
+                .exchange().expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void getState_ReturnsDefaultState() {
+        authorized().get().uri("/api/state/integrationTest").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.content").isEqualTo("Default state for integrationTest")
+                .jsonPath("$.namespace").isEqualTo("integrationTest");
+    }
+
+    @Test
+    void sendMessage_ProcessesLikeServletServer() {
+        authorized().post().uri("/api/message/sendTest")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new MessageDto("Test message", "sendTest"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content").isEqualTo("egassem tseT")
+                .jsonPath("$.namespace").isEqualTo("sendTest")
+                .jsonPath("$.version").isEqualTo(1);
+    }
+
+    @Test
+    void getState_ConditionalGet_Returns304UntilStateChanges() {
+        String eTag = authorized().get().uri("/api/state/etagTest").exchange()
+                .expectStatus().isOk()
+                .returnResult(MessageDto.class).getResponseHeaders().getETag();
+
+        authorized().get().uri("/api/state/etagTest").header("If-None-Match", eTag).exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        authorized().post().uri("/api/message/etagTest")
+                .bodyValue(new MessageDto("changed", "etagTest"))
+                .exchange().expectStatus().isOk();
+
+        authorized().get().uri("/api/state/etagTest").header("If-None-Match", eTag).exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("ETag", not(eTag))
+                .expectBody().jsonPath("$.content").isEqualTo("degnahc");
+    }
+
+    @Test
+    void batch_SendsAndReadsManyNamespaces() {
+        authorized().post().uri("/api/message/batch")
+                .bodyValue(List.of(new MessageDto("alpha", "batchA"), new MessageDto("beta", "batchB")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].content").isEqualTo("ahpla");
+
+        authorized().post().uri("/api/state/batch")
+                .bodyValue(List.of("batchA", "batchB", "batchMissing"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[1].content").isEqualTo("ateb")
+                .jsonPath("$[2].content").isEqualTo("Default state for batchMissing");
+    }
+
+    @Test
+    void batch_RejectsMessageWithoutNamespace() {
+        authorized().post().uri("/api/message/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"content\": \"orphan\"}]")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getHistory_InvalidLimit_Returns400() {
+        authorized().get().uri("/api/state/historyTest/history?limit=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void heartbeat_ReturnsAlive() {
+        authorized().get().uri("/api/heartbeat").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.status").isEqualTo("alive");
+    }
+}
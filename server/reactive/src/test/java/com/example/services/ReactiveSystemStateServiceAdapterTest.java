@@ -0,0 +1,114 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveSystemStateServiceAdapterTest {
+
+    private ReactiveSystemStateServiceAdapter service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ReactiveSystemStateServiceAdapter(new InMemorySystemStateService());
+    }
+
+    @Test
+    void sendMessage_KeepsAbstractServiceProcessing() {
+        StepVerifier.create(service.sendMessage("test", new MessageDto("Hello", null)))
+                .assertNext(processed -> {
+                    assertEquals("olleH", processed.getContent());
+                    assertEquals("test", processed.getNamespace());
+                    assertEquals(1, ((VersionedMessageDto) processed).getVersion());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(service.getState("test").map(MessageDto::getContent))
+                .expectNext("olleH")
+                .verifyComplete();
+        StepVerifier.create(service.getVersion("test")).expectNext(1L).verifyComplete();
+    }
+
+    @Test
+    void sendMessage_IsLazyUntilSubscribed() {
+        service.sendMessage("lazy", new MessageDto("ignored", null));
+
+        StepVerifier.create(service.getVersion("lazy")).expectNext(0L).verifyComplete();
+    }
+
+    @Test
+    void updates_StreamsProcessedMessagesAfterSubscription() {
+        StepVerifier.create(service.updates("live").map(MessageDto::getContent).take(2))
+                .then(() -> {
+                    service.sendMessage("live", new MessageDto("one", null)).block();
+                    service.sendMessage("other", new MessageDto("ignored", null)).block();
+                    service.sendMessage("live", new MessageDto("two", null)).block();
+                })
+                .expectNext("eno", "owt")
+                .verifyComplete();
+    }
+
+    @Test
+    void updates_RemovesANamespacesSinkWithItsLastSubscriber() {
+        Disposable first = service.updates("followed").subscribe();
+        Disposable second = service.updates("followed").subscribe();
+        service.updates("other").take(1).subscribe();
+        assertEquals(2, service.updateSinkCount());
+
+        first.dispose();
+        assertEquals(2, service.updateSinkCount(), "One subscriber still follows the namespace");
+        second.dispose();
+        service.sendMessage("other", new MessageDto("done", null)).block(); // Completes the take(1) subscriber
+        assertEquals(0, service.updateSinkCount());
+
+        StepVerifier.create(service.updates("followed").map(MessageDto::getContent).take(1))
+                .then(() -> service.sendMessage("followed", new MessageDto("again", null)).block())
+                .expectNext("niaga")
+                .verifyComplete();
+    }
+
+    @Test
+    void sendMessages_RejectsBatchWithoutNamespaceBeforeSending() {
+        List<MessageDto> messages = List.of(new MessageDto("ok", "a"), new MessageDto("missing", null));
+
+        StepVerifier.create(service.sendMessages(messages))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(service.getVersion("a")).expectNext(0L).verifyComplete();
+    }
+
+    @Test
+    void getHistory_StreamsVersionsSince() {
+        Flux.range(1, 4)
+                .concatMap(i -> service.sendMessage("history", new MessageDto("v" + i, null)))
+                .blockLast();
+
+        StepVerifier.create(service.getHistory("history", 2, 10).map(VersionedMessageDto::getVersion))
+                .expectNext(3L, 4L)
+                .verifyComplete();
+    }
+
+    @Test
+    void scheduler_MovesDelegateCallsOffTheSubscribingThread() {
+        ReactiveSystemStateServiceAdapter offloaded =
+                new ReactiveSystemStateServiceAdapter(new InMemorySystemStateService(), Schedulers.boundedElastic());
+        String caller = Thread.currentThread().getName();
+
+        String worker = offloaded.getState("test")
+                .map(dto -> Thread.currentThread().getName())
+                .block(Duration.ofSeconds(5));
+
+        assertTrue(!caller.equals(worker) && worker.startsWith("boundedElastic"), worker);
+    }
+}
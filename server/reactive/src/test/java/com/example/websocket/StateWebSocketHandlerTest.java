@@ -0,0 +1,53 @@
+package com.example.websocket;
+
+import com.example.dto.MessageDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.ajp.mvp.reactive.ReactiveServerApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = ReactiveServerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StateWebSocketHandlerTest {
+
+    @LocalServerPort
+    private int port;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void connect_ReceivesCurrentStateThenProcessedMessages() throws Exception {
+        String outgoing = objectMapper.writeValueAsString(new MessageDto("Hello", null));
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        new ReactorNettyWebSocketClient()
+                .execute(URI.create("ws://localhost:" + port + "/ws/state/socketTest"), session -> session.receive()
+                        .map(WebSocketMessage::getPayloadAsText)
+                        .doOnNext(received::add)
+                        // Send only once the initial state has arrived, then wait for the broadcast
+                        .concatMap(frame -> received.size() == 1
+                                ? session.send(Mono.just(session.textMessage(outgoing))).thenReturn(frame)
+                                : Mono.just(frame))
+                        .take(2)
+                        .then())
+                .block(Duration.ofSeconds(10));
+
+        JsonNode initial = objectMapper.readTree(received.get(0));
+        JsonNode update = objectMapper.readTree(received.get(1));
+        assertEquals("Default state for socketTest", initial.get("content").asText());
+        assertEquals("olleH", update.get("content").asText());
+        assertEquals("socketTest", update.get("namespace").asText());
+        assertEquals(1, update.get("version").asLong());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.codec;
+
+import com.example.dto.VersionedMessageDto;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A stored state together with its wire encodings, so reads of an unchanged state skip Jackson.
+ * Each encoding is built on first use and shared by every later read of the same version;
+ * {@link EncodedStateHttpMessageConverter} and {@link EncodedStateMessageConverter} write it as is.
+ * It wraps a private copy of the state and has no setters, so it never changes version: a new write
+ * gets a new instance. Code that needs the DTO itself takes a copy with {@link #toMessageDto()}.
+ */
+public final class EncodedState {
+
+    /**
+     * Serializes a state in one wire format.
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode(VersionedMessageDto state, WireFormat format);
+    }
+
+    private final VersionedMessageDto state;
+    private final Encoder encoder;
+    private final AtomicReferenceArray<byte[]> encodings = new AtomicReferenceArray<>(WireFormat.values().length);
+
+    /**
+     * @param state the state to encode; it is copied, so later changes to it are not seen
+     * @param encoder builds each encoding the first time it is asked for
+     */
+    public EncodedState(VersionedMessageDto state, Encoder encoder) {
+        this.state = new VersionedMessageDto(state.getContent(), state.getNamespace(), state.getVersion());
+        this.encoder = encoder;
+    }
+
+    public String getContent() {
+        return state.getContent();
+    }
+
+    public String getNamespace() {
+        return state.getNamespace();
+    }
+
+    public long getVersion() {
+        return state.getVersion();
+    }
+
+    /**
+     * @return a new DTO holding the state, which the caller may change freely
+     */
+    public VersionedMessageDto toMessageDto() {
+        return new VersionedMessageDto(state.getContent(), state.getNamespace(), state.getVersion());
+    }
+
+    /**
+     * Concurrent first reads may both encode; one result is kept and returned to both afterwards.
+     * @param format the wire format
+     * @return the state's encoding in that format; callers must not modify it
+     */
+    public byte[] encoded(WireFormat format) {
+        byte[] encoded = encodings.get(format.ordinal());
+        if (encoded == null) {
+            encodings.compareAndSet(format.ordinal(), null, encoder.encode(state, format));
+            encoded = encodings.get(format.ordinal());
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.codec;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Writes an {@link EncodedState} response body by copying its stored encoding for the negotiated
+ * format to the response, with a Content-Length and no serialization. Registered ahead of the Jackson
+ * converters, which still write every other body and any state that is not pre-encoded.
+ */
+public class EncodedStateHttpMessageConverter extends AbstractHttpMessageConverter<EncodedState> {
+
+    public EncodedStateHttpMessageConverter() {
+        super(WireFormat.JSON.mediaType(), WireFormat.CBOR.mediaType(), WireFormat.SMILE.mediaType());
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EncodedState.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(@Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected EncodedState readInternal(Class<? extends EncodedState> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Encoded states are only written", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(EncodedState state, @Nullable MediaType contentType) {
+        return (long) state.encoded(format(contentType)).length;
+    }
+
+    @Override
+    protected void writeInternal(EncodedState state, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(state.encoded(format(outputMessage.getHeaders().getContentType())));
+    }
+
+    private static WireFormat format(@Nullable MediaType contentType) {
+        WireFormat format = WireFormat.of(contentType);
+        return format != null ? format : WireFormat.JSON;
+    }
+}
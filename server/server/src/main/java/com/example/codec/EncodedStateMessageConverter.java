@@ -0,0 +1,33 @@
+package com.example.codec;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+
+/**
+ * Writes an {@link EncodedState} STOMP payload as its stored JSON encoding. The same array is shared
+ * by every send of that version, so subscriptions that asked for a binary format are transcoded
+ * once per version by {@link com.example.websocket.SubscriptionFormatInterceptor}'s identity cache.
+ */
+public class EncodedStateMessageConverter extends AbstractMessageConverter {
+
+    public EncodedStateMessageConverter() {
+        super(WireFormat.JSON.mediaType());
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EncodedState.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canConvertFrom(Message<?> message, Class<?> targetClass) {
+        return false;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, @Nullable MessageHeaders headers, @Nullable Object conversionHint) {
+        return ((EncodedState) payload).encoded(WireFormat.JSON);
+    }
+}
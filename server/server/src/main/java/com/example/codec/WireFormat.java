@@ -0,0 +1,120 @@
+package com.example.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Encodings a client can negotiate for {@code MessageDto} payloads over REST and STOMP.
+ * JSON is the default; CBOR and Smile carry the same Jackson data model in a compact binary
+ * form, so anything that maps to JSON maps to them without annotations of its own.
+ */
+public enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON, new JsonFactory()),
+    CBOR(MediaType.APPLICATION_CBOR, new CBORFactory()),
+    SMILE(new MediaType("application", "x-jackson-smile"), new SmileFactory());
+
+    private final MediaType mediaType;
+    private final JsonFactory factory;
+
+    WireFormat(MediaType mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.factory = factory;
+    }
+
+    /** @return the media type clients use to ask for, or send, this format */
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /** @return whether payloads in this format are binary rather than UTF-8 text */
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    /**
+     * Creates a mapper writing this format with the configuration and modules of the given one.
+     * @param base the application's JSON mapper
+     * @return the base mapper itself for JSON, otherwise a copy bound to this format
+     */
+    public ObjectMapper mapper(ObjectMapper base) {
+        return this == JSON ? base : base.copyWith(factory.copy());
+    }
+
+    /**
+     * Re-encodes a JSON document in this format, token by token, without binding it to objects.
+     * @param json a complete UTF-8 JSON document
+     * @return the same document in this format; the argument itself for JSON
+     */
+    public byte[] fromJson(byte[] json) {
+        if (this == JSON) {
+            return json;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON.factory.createParser(json);
+             JsonGenerator generator = factory.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param mimeType a content type or accept entry
+     * @return the format with exactly that type and subtype, or null if there is none
+     */
+    @Nullable
+    public static WireFormat of(@Nullable MimeType mimeType) {
+        if (mimeType != null) {
+            for (WireFormat format : values()) {
+                if (format.mediaType.equalsTypeAndSubtype(mimeType)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Picks the format for an Accept header: the highest-quality entry that names a format, where
+     * wildcards covering JSON choose JSON and earlier entries win ties.
+     * @param accept the header value, possibly null or malformed
+     * @return the negotiated format, JSON when nothing else was asked for
+     */
+    public static WireFormat negotiate(@Nullable String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        WireFormat best = JSON;
+        double bestQuality = 0;
+        for (MediaType mediaType : mediaTypes) {
+            WireFormat format = mediaType.includes(MediaType.APPLICATION_JSON) ? JSON : of(mediaType);
+            if (format != null && mediaType.getQualityValue() > bestQuality) {
+                best = format;
+                bestQuality = mediaType.getQualityValue();
+            }
+        }
+        return best;
+    }
+}
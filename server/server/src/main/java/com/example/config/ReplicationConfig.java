@@ -0,0 +1,73 @@
+package com.example.config;
+
+import com.example.replication.ReplicationEndpoint;
+import com.example.replication.StateReplicator;
+import com.example.replication.TcpReplicationTransport;
+import com.example.services.StateBroadcaster;
+import com.example.services.SystemStateServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replication of namespace state between server nodes, enabled with {@code mvp.replication.enabled}.
+ * Each node needs a unique {@code mvp.replication.node-id}, lists the others in
+ * {@code mvp.replication.peers} and shares {@code mvp.replication.secret} with them; states received
+ * from peers are broadcast to local STOMP subscribers as well as being stored.
+ */
+@Configuration
+@ConditionalOnBooleanProperty(name = "mvp.replication.enabled")
+public class ReplicationConfig {
+
+    /**
+     * Accepts connections from peers and writes to each of them on its own thread.
+     */
+    @Bean(destroyMethod = "")
+    public TcpReplicationTransport replicationTransport(
+            @Value("${mvp.replication.node-id:}") String nodeId,
+            @Value("${mvp.replication.bind-address:127.0.0.1}") String bindAddress,
+            @Value("${mvp.replication.port:7400}") int port,
+            @Value("${mvp.replication.peers:}") String peers,
+            @Value("${mvp.replication.secret:}") String secret,
+            @Value("${mvp.replication.peer-queue-capacity:1024}") int peerQueueCapacity,
+            @Value("${mvp.replication.write-timeout-ms:5000}") long writeTimeoutMillis) {
+        if (nodeId.isBlank()) {
+            throw new IllegalArgumentException("mvp.replication.node-id must name this node when replication is enabled");
+        }
+        if (secret.isBlank()) {
+            throw new IllegalArgumentException("mvp.replication.secret must be set, the same on every node, when replication is enabled");
+        }
+        TcpReplicationTransport transport = new TcpReplicationTransport(nodeId.trim(), new InetSocketAddress(bindAddress, port),
+                secret.getBytes(StandardCharsets.UTF_8), peerQueueCapacity, writeTimeoutMillis);
+        TcpReplicationTransport.parsePeers(peers).forEach(transport::addPeer);
+        return transport;
+    }
+
+    /**
+     * Sends this node's writes to its peers and stores theirs; closing it closes the transport.
+     */
+    @Bean(destroyMethod = "close")
+    public StateReplicator stateReplicator(SystemStateServiceImpl stateService, TcpReplicationTransport transport,
+                                           StateBroadcaster stateBroadcaster,
+                                           @Value("${mvp.replication.mode:async}") String mode,
+                                           @Value("${mvp.replication.batch.max-size:256}") int maxBatchSize,
+                                           @Value("${mvp.replication.queue-capacity:100000}") int queueCapacity,
+                                           @Value("${mvp.replication.sync-timeout-ms:1000}") long syncTimeoutMillis,
+                                           @Value("${mvp.replication.max-clock-skew-ms:60000}") long maxClockSkewMillis,
+                                           @Value("${mvp.replication.anti-entropy-interval-ms:10000}") long antiEntropyIntervalMillis) {
+        StateReplicator replicator = new StateReplicator(stateService, transport,
+                StateReplicator.Mode.valueOf(mode.trim().toUpperCase()), maxBatchSize, queueCapacity, syncTimeoutMillis,
+                maxClockSkewMillis, antiEntropyIntervalMillis);
+        replicator.setApplyListener(state -> stateBroadcaster.broadcast(state.getNamespace(), state));
+        return replicator;
+    }
+
+    @Bean
+    public ReplicationEndpoint replicationEndpoint(StateReplicator stateReplicator) {
+        return new ReplicationEndpoint(stateReplicator);
+    }
+}
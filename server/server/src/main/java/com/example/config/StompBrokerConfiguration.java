@@ -0,0 +1,59 @@
+package com.example.config;
+
+import com.example.websocket.BoundedSubProtocolWebSocketHandler;
+import com.example.websocket.OutboundLimits;
+import com.example.websocket.OutboundSessions;
+import com.example.websocket.SlowConsumerPolicy;
+import com.example.websocket.StompSessionsEndpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+/**
+ * Enables STOMP messaging over WebSocket, in place of {@code @EnableWebSocketMessageBroker}, so that
+ * the sub-protocol handler can bound each session's outbound queue. Broker, endpoint and channel
+ * settings still come from {@link WebSocketConfig}.
+ */
+@Configuration
+public class StompBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Value("${mvp.stomp.outbound.queue-limit:128}")
+    private int queueLimit;
+
+    @Value("${mvp.stomp.outbound.buffer-size-limit-bytes:65536}")
+    private int bufferSizeLimit;
+
+    @Value("${mvp.stomp.outbound.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${mvp.stomp.outbound.slow-consumer-policy:conflate}")
+    private String slowConsumerPolicy;
+
+    @Bean
+    public OutboundLimits outboundLimits() {
+        return new OutboundLimits(queueLimit, bufferSizeLimit, sendTimeLimit, SlowConsumerPolicy.fromProperty(slowConsumerPolicy));
+    }
+
+    @Bean
+    public OutboundSessions outboundSessions() {
+        return new OutboundSessions();
+    }
+
+    @Bean
+    public StompSessionsEndpoint stompSessionsEndpoint() {
+        return new StompSessionsEndpoint(outboundSessions(), outboundLimits());
+    }
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                        AbstractSubscribableChannel clientOutboundChannel) {
+        BoundedSubProtocolWebSocketHandler handler = new BoundedSubProtocolWebSocketHandler(
+                clientInboundChannel, clientOutboundChannel, outboundLimits(), outboundSessions());
+        handler.setPhase(getPhase());
+        return handler;
+    }
+}
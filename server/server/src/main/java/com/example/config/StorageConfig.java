@@ -0,0 +1,115 @@
+package com.example.config;
+
+import com.example.services.ShardedExecutor;
+import com.example.services.StateStoreEndpoint;
+import com.example.services.StateStoreLimits;
+import com.example.services.SystemStateServiceImpl;
+import com.example.services.WriteBatcher;
+import com.example.storage.FsyncPolicy;
+import com.example.storage.OffHeapStateStore;
+import com.example.storage.SnapshotStore;
+import com.example.storage.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Storage configuration for namespace state.
+ * Persistent mode is enabled with {@code mvp.state.storage=wal}; the default keeps state in memory only.
+ * Scheduling drives the background snapshot task in persistent mode.
+ * Namespace writes run on single-writer shards when {@code mvp.state.shards} is set, and concurrent
+ * writes are stored in batches when {@code mvp.state.batch.enabled} is true.
+ * Namespaces are evicted by TTL or beyond a memory budget when {@code mvp.state.ttl.*} or
+ * {@code mvp.state.max-bytes} are set, and large contents are held in direct memory when
+ * {@code mvp.state.off-heap.enabled} is true.
+ */
+@Configuration
+@EnableScheduling
+public class StorageConfig {
+
+    /**
+     * Durable write-ahead log backing SystemStateServiceImpl in persistent mode.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mvp.state.storage", havingValue = "wal")
+    public WriteAheadLog writeAheadLog(
+            @Value("${mvp.state.wal.directory:data/wal}") String directory,
+            @Value("${mvp.state.wal.segment-size-bytes:67108864}") int segmentSize,
+            @Value("${mvp.state.wal.fsync-policy:interval}") String fsyncPolicy,
+            @Value("${mvp.state.wal.fsync-interval-ms:50}") long fsyncIntervalMillis) throws IOException {
+        return new WriteAheadLog(Path.of(directory), segmentSize,
+                FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase(Locale.ROOT)), fsyncIntervalMillis);
+    }
+
+    /**
+     * Compacted snapshots that bound startup replay to the log tail in persistent mode.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mvp.state.storage", havingValue = "wal")
+    @ConditionalOnBooleanProperty(name = "mvp.state.snapshot.enabled", matchIfMissing = true)
+    public SnapshotStore snapshotStore(
+            @Value("${mvp.state.snapshot.directory:data/snapshots}") String directory,
+            @Value("${mvp.state.snapshot.retain:2}") int retainCount) throws IOException {
+        return new SnapshotStore(Path.of(directory), retainCount);
+    }
+
+    /**
+     * Single-writer shards for namespace writes, sized to the processor count by {@code auto}.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("'${mvp.state.shards:0}'.trim() != '0'")
+    public ShardedExecutor stateShards(@Value("${mvp.state.shards}") String shards,
+                                       @Value("${mvp.state.shard-queue-capacity:10000}") int queueCapacity) {
+        int shardCount = shards.trim().equalsIgnoreCase("auto") ? ShardedExecutor.defaultShardCount() : Integer.parseInt(shards.trim());
+        return new ShardedExecutor(shardCount, "state-shard-", queueCapacity);
+    }
+
+    /**
+     * Coalesces concurrent writes into one storage call, one log append and one fsync wait per batch.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnBooleanProperty(name = "mvp.state.batch.enabled")
+    public WriteBatcher stateWriteBatcher(
+            @Value("${mvp.state.batch.max-size:256}") int maxBatchSize,
+            @Value("${mvp.state.batch.window-us:0}") long windowMicros,
+            @Value("${mvp.state.batch.queue-capacity:10000}") int queueCapacity) {
+        return new WriteBatcher(maxBatchSize, windowMicros, queueCapacity, "state-batcher");
+    }
+
+    /**
+     * TTLs and a memory budget for the namespaces kept in memory; none unless configured.
+     */
+    @Bean
+    public StateStoreLimits stateStoreLimits(
+            @Value("${mvp.state.max-bytes:0}") long maxBytes,
+            @Value("${mvp.state.ttl.namespaces:}") String ttlNamespaces,
+            @Value("${mvp.state.ttl.default-ms:0}") long defaultTtlMillis) {
+        return new StateStoreLimits(maxBytes, ttlNamespaces, defaultTtlMillis);
+    }
+
+    /**
+     * Direct memory for the content of large states, keeping it out of the garbage-collected heap.
+     */
+    @Bean
+    @ConditionalOnBooleanProperty(name = "mvp.state.off-heap.enabled")
+    public OffHeapStateStore offHeapStateStore(
+            @Value("${mvp.state.off-heap.max-bytes:268435456}") long maxBytes,
+            @Value("${mvp.state.off-heap.slab-bytes:1048576}") int slabBytes,
+            @Value("${mvp.state.off-heap.min-content-length:4096}") int minContentLength,
+            @Value("${mvp.state.off-heap.history-capacity:0}") int historyCapacity) {
+        return new OffHeapStateStore(maxBytes, slabBytes, minContentLength, historyCapacity);
+    }
+
+    @Bean
+    public StateStoreEndpoint stateStoreEndpoint(SystemStateServiceImpl stateService) {
+        return new StateStoreEndpoint(stateService);
+    }
+}
@@ -1,19 +1,45 @@
 package com.example.config;
 
+import com.example.codec.EncodedStateMessageConverter;
+import com.example.codec.WireFormat;
+import com.example.metrics.BroadcastMetricsInterceptor;
+import com.example.services.StateMetrics;
+import com.example.websocket.SubscriptionFormatInterceptor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 /**
  * WebSocket configuration for real-time communication.
- * Enables STOMP messaging protocol over WebSocket for client-server state synchronization.
+ * Configures the STOMP broker, endpoints and channels used for client-server state synchronization;
+ * messaging itself is enabled by {@link StompBrokerConfiguration}.
  */
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ObjectProvider<StateMetrics> metrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final SubscriptionFormatInterceptor subscriptionFormats = new SubscriptionFormatInterceptor();
+
     /**
      * Configure message broker for pub/sub messaging.
      */
@@ -24,6 +50,14 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
         // Prefix for messages sent from client to server
         config.setApplicationDestinationPrefixes("/app");
+
+        // Deltas only apply in version order, so keep each session's messages in publish order
+        if (!environment.getProperty("mvp.broadcast.delta.namespaces", "").isBlank()) {
+            config.setPreservePublishOrder(true);
+        }
+
+        // Count and time broadcasts per namespace when metrics are enabled
+        metrics.ifAvailable(stateMetrics -> config.configureBrokerChannel().interceptors(new BroadcastMetricsInterceptor(stateMetrics)));
     }
 
     /**
@@ -36,4 +70,47 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*") // Allow connections from any origin for development
                 .withSockJS(); // Enable SockJS fallback
     }
-}
\ No newline at end of file
+
+    /**
+     * Accept CBOR and Smile message bodies alongside JSON. The binary converters only match their
+     * own content type, so broadcasts without one are still written as JSON. Pre-encoded states
+     * are written from their stored JSON.
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new EncodedStateMessageConverter());
+        for (WireFormat format : WireFormat.values()) {
+            if (format.isBinary()) {
+                MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(format.mediaType());
+                converter.setObjectMapper(format.mapper(objectMapper));
+                converter.setStrictContentTypeMatch(true);
+                messageConverters.add(converter);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the format each subscription accepts, and run inbound STOMP messages on virtual
+     * threads when virtual-thread mode is active, instead of the default bounded platform thread pool.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(subscriptionFormats);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("stomp-inbound-"));
+        }
+    }
+
+    /**
+     * Re-encode broadcasts for subscriptions that accept a binary format, and deliver outbound
+     * STOMP messages on virtual threads when virtual-thread mode is active.
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(subscriptionFormats);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("stomp-outbound-"));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.config;
+
+import com.example.codec.EncodedStateHttpMessageConverter;
+import com.example.codec.WireFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * HTTP message converters for the binary wire formats.
+ * They replace Spring's defaults for CBOR and Smile, which use a plain mapper, so binary REST bodies
+ * are written with the same modules and features as JSON ones. JSON stays first and is the
+ * default; a client opts in with {@code Accept} or {@code Content-Type}.
+ * Pre-encoded states are written ahead of all of them, from their stored bytes.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public EncodedStateHttpMessageConverter encodedStateHttpMessageConverter() {
+        return new EncodedStateHttpMessageConverter();
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(ObjectMapper objectMapper) {
+        return new MappingJackson2CborHttpMessageConverter(WireFormat.CBOR.mapper(objectMapper));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(ObjectMapper objectMapper) {
+        return new MappingJackson2SmileHttpMessageConverter(WireFormat.SMILE.mapper(objectMapper));
+    }
+}
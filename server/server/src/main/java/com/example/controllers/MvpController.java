@@ -1,17 +1,41 @@
 package com.example.controllers;
 
+import com.example.codec.EncodedState;
+import com.example.codec.WireFormat;
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.services.EncodedStateCache;
+import com.example.services.StateEventStreams;
 import com.example.services.SystemStateService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * REST Controller for MVP API endpoints.
  * Handles state retrieval, message sending, and heartbeat for extensible namespaces.
+ * Bodies are JSON unless the client asks for a binary {@link WireFormat} with Accept or Content-Type.
  */
 @RestController
 @RequestMapping("/api")
@@ -20,27 +44,151 @@ public class MvpController {
     @Autowired
     private SystemStateService stateService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StateEventStreams eventStreams;
+
+    // Absent in tests that build the controller without it; reads then serialize every time
+    @Autowired(required = false)
+    private EncodedStateCache encodedStates;
+
+    private final String eTagPrefix = "\"" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    private final Map<WireFormat, ObjectMapper> mappers = new ConcurrentHashMap<>();
+
     /**
      * Retrieves the state for a given namespace.
+     * The response carries the state version as its ETag; a request whose If-None-Match
+     * still matches is answered with 304 before the state is read or serialized.
+     * Each wire format gets its own tag, since the representations differ byte for byte.
+     * A state read before at the same version is written from its stored encoding, without serialization.
      * @param namespace the namespace identifier
-     * @return ResponseEntity with MessageDto containing state info
+     * @param request the current request, used for conditional GET handling and the Accept header
+     * @return ResponseEntity with the state as a MessageDto, or as an {@link EncodedState} written from its
+     *         stored encoding; null once a 304 has been prepared
      */
     @GetMapping("/state/{namespace}")
-    public ResponseEntity<MessageDto> getState(@PathVariable String namespace) {
-        MessageDto dto = stateService.getState(namespace);
-        return ResponseEntity.ok(dto); // Supports themed client rendering
+    public ResponseEntity<Object> getState(@PathVariable String namespace, WebRequest request) {
+        WireFormat format = WireFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        long version = stateService.getVersion(namespace);
+        if (version >= 0 && request.checkNotModified(eTag(version, format))) {
+            return null; // 304 with ETag already written
+        }
+        Object body = encodedStates != null ? encodedStates.getBody(namespace) : stateService.getState(namespace);
+        // Tag the body actually returned, which may be newer than the version checked above
+        long bodyVersion = body instanceof EncodedState encoded ? encoded.getVersion()
+                : body instanceof VersionedMessageDto versioned ? versioned.getVersion() : version;
+        if (bodyVersion < 0) {
+            return ResponseEntity.ok(body);
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag(bodyVersion, format))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body); // Supports themed client rendering
+    }
+
+    /**
+     * Retrieves recent versions of the state for a given namespace, oldest first.
+     * @param namespace the namespace identifier
+     * @param since only versions greater than this are returned
+     * @param limit the maximum number of versions to return
+     * @return ResponseEntity with the matching versions
+     */
+    @GetMapping("/state/{namespace}/history")
+    public ResponseEntity<List<VersionedMessageDto>> getHistory(@PathVariable String namespace,
+                                                                @RequestParam(defaultValue = "0") long since,
+                                                                @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(stateService.getHistory(namespace, since, limit));
+    }
+
+    /**
+     * Streams the state of a namespace as server-sent events, one {@code state} event per change.
+     * Further namespaces may be multiplexed onto the same stream; each event's data carries its namespace.
+     * A client reconnecting with {@code Last-Event-ID} is sent what it missed, as far as history allows.
+     * @param namespace the namespace identifier
+     * @param namespaces further namespaces to follow on the same stream
+     * @param lastEventId the id of the last event received before reconnecting
+     * @return ResponseEntity with the open stream, or 503 if the server holds as many streams as it allows
+     */
+    @GetMapping(path = "/state/{namespace}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamState(@PathVariable String namespace,
+                                                  @RequestParam(required = false) List<String> namespaces,
+                                                  @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        List<String> followed = new ArrayList<>();
+        followed.add(namespace);
+        if (namespaces != null) {
+            followed.addAll(namespaces);
+        }
+        SseEmitter emitter = eventStreams.open(followed, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(emitter);
     }
 
     /**
      * Sends a message to a specified namespace.
+     * The request thread is released while the service stores the message; the response is written
+     * on an async dispatch once it completes.
      * @param namespace the namespace identifier
      * @param message the message payload
-     * @return ResponseEntity with processed MessageDto
+     * @return future of the ResponseEntity with processed MessageDto
      */
     @PostMapping("/message/{namespace}")
-    public ResponseEntity<MessageDto> sendMessage(@PathVariable String namespace, @RequestBody MessageDto message) {
-        MessageDto processed = stateService.sendMessage(namespace, message);
-        return ResponseEntity.ok(processed);
+    public CompletableFuture<ResponseEntity<MessageDto>> sendMessage(@PathVariable String namespace, @RequestBody MessageDto message) {
+        return stateService.sendMessageAsync(namespace, message).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the state of many namespaces in one request.
+     * The response is an array in the negotiated format, streamed element by element as each state is read.
+     * @param namespaces the namespace identifiers
+     * @param accept the Accept header, which may ask for a binary format
+     * @return ResponseEntity streaming a MessageDto per namespace, in request order
+     */
+    @PostMapping("/state/batch")
+    public ResponseEntity<StreamingResponseBody> getStates(@RequestBody List<String> namespaces,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (namespaces.stream().anyMatch(namespace -> namespace == null || namespace.isBlank())) {
+            throw new IllegalArgumentException("Namespaces in a batch must not be blank");
+        }
+        return streamArray(WireFormat.negotiate(accept), sink -> stateService.getStates(namespaces, sink));
+    }
+
+    /**
+     * Sends many messages in one request, each to the namespace it names.
+     * The response is an array in the negotiated format, streamed element by element as each message is stored.
+     * A client that disconnects part way cannot stop the batch: the remaining messages are still sent
+     * and their results discarded. If a message fails after others were stored, the array ends with an
+     * error element whose {@code index} is that of the failed message.
+     * @param messages the message payloads, each carrying its target namespace
+     * @param accept the Accept header, which may ask for a binary format
+     * @return ResponseEntity streaming the processed MessageDto for each stored message, in request order
+     */
+    @PostMapping("/message/batch")
+    public ResponseEntity<StreamingResponseBody> sendMessages(@RequestBody List<MessageDto> messages,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (messages.stream().anyMatch(message -> message == null || message.getNamespace() == null || message.getNamespace().isBlank())) {
+            throw new IllegalArgumentException("Every message in a batch must specify a namespace");
+        }
+        WireFormat format = WireFormat.negotiate(accept);
+        ObjectMapper mapper = mapper(format);
+        StreamingResponseBody body = outputStream -> {
+            BatchResults results = new BatchResults(mapper, outputStream);
+            try {
+                stateService.sendMessages(messages, results);
+            } catch (RuntimeException e) {
+                if (results.count == 0) {
+                    throw e; // Nothing was written, so the usual error response tells the whole story
+                }
+                results.accept(Map.of("error", "Batch failed", "message", String.valueOf(e.getMessage()), "index", results.count));
+            }
+            results.close();
+        };
+        return ResponseEntity.ok().contentType(format.mediaType()).varyBy(HttpHeaders.ACCEPT).body(body);
     }
 
     /**
@@ -55,4 +203,83 @@ public class MvpController {
         );
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Versions restart from zero when in-memory state is lost, so tags are scoped to this
+     * server instance to keep a stale client copy from matching a reused version.
+     */
+    private String eTag(long version, WireFormat format) {
+        String suffix = format.isBinary() ? "-" + format.name().toLowerCase(Locale.ROOT) : "";
+        return eTagPrefix + version + suffix + '"';
+    }
+
+    private ObjectMapper mapper(WireFormat format) {
+        return mappers.computeIfAbsent(format, f -> f.mapper(objectMapper));
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamArray(WireFormat format, Consumer<Consumer<Object>> producer) {
+        ObjectMapper mapper = mapper(format);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                producer.accept(dto -> {
+                    try {
+                        generator.writeObject(dto);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(format.mediaType()).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+
+    /**
+     * Writes batch results to the response as they arrive. The array is opened with the first result,
+     * so a batch that fails before any can still be answered with an error status. Once the client has
+     * gone, further results are dropped rather than failing the writes still to come.
+     */
+    private static final class BatchResults implements Consumer<Object> {
+
+        private final ObjectMapper mapper;
+        private final OutputStream outputStream;
+        private JsonGenerator generator;
+        private boolean disconnected;
+        int count;
+
+        BatchResults(ObjectMapper mapper, OutputStream outputStream) {
+            this.mapper = mapper;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void accept(Object result) {
+            count++;
+            if (disconnected) {
+                return;
+            }
+            try {
+                if (generator == null) {
+                    generator = mapper.getFactory().createGenerator(outputStream);
+                    generator.writeStartArray();
+                }
+                generator.writeObject(result);
+            } catch (IOException e) {
+                disconnected = true;
+            }
+        }
+
+        void close() throws IOException {
+            if (disconnected) {
+                return;
+            }
+            if (generator == null) {
+                generator = mapper.getFactory().createGenerator(outputStream);
+                generator.writeStartArray();
+            }
+            generator.writeEndArray();
+            generator.close();
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.controllers;
 
+import com.example.codec.EncodedState;
 import com.example.dto.MessageDto;
+import com.example.services.ConflatingBroadcaster;
+import com.example.services.EncodedStateCache;
+import com.example.services.StateBroadcaster;
 import com.example.services.SystemStateService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
@@ -8,6 +12,8 @@ import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.stereotype.Controller;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * WebSocket controller for real-time state updates using STOMP messaging.
  * Handles incoming messages and broadcasts state changes to subscribed clients.
@@ -18,35 +24,63 @@ public class WebSocketController {
     @Autowired
     private SystemStateService stateService;
 
+    @Autowired
+    private ConflatingBroadcaster broadcaster;
+
+    @Autowired
+    private StateBroadcaster stateBroadcaster;
+
+    @Autowired
+    private EncodedStateCache encodedStates;
+
     /**
      * Handle state update messages from clients.
-     * Clients send messages to /app/state/{namespace} and receive broadcasts on /topic/state/{namespace}
+     * Clients send messages to /app/state/{namespace} and receive broadcasts on /topic/state/{namespace}.
+     * Updates to conflated namespaces are broadcast by the {@link ConflatingBroadcaster} instead,
+     * once per window with the latest state, and updates to delta-encoded namespaces by the
+     * {@link StateBroadcaster}, which keeps their frames in version order.
+     * The inbound thread is released while the service stores the message, and the broadcast
+     * is sent once the write completes.
      *
      * @param namespace the namespace identifier
      * @param message the incoming message
-     * @return the processed message to broadcast to all subscribers
+     * @return future of the processed message to broadcast to all subscribers, or of null if another broadcaster sends it
      */
     @MessageMapping("/state/{namespace}")
     @SendTo("/topic/state/{namespace}")
-    public MessageDto handleStateUpdate(@DestinationVariable String namespace, MessageDto message) {
+    public CompletableFuture<MessageDto> handleStateUpdate(@DestinationVariable String namespace, MessageDto message) {
         // Process the message through the service
-        MessageDto processed = stateService.sendMessage(namespace, message);
+        return stateService.sendMessageAsync(namespace, message).thenApply(processed -> broadcast(namespace, processed));
+    }
 
-        // Broadcast the updated state to all subscribers of this namespace
+    private MessageDto broadcast(String namespace, MessageDto processed) {
+        // Broadcast the updated state to all subscribers of this namespace, unless conflation takes it over
+        if (broadcaster.conflate(namespace, processed)) {
+            return null;
+        }
+        if (stateBroadcaster.isDeltaEncoded(namespace)) {
+            stateBroadcaster.broadcast(namespace, processed);
+            return null;
+        }
         return processed;
     }
 
     /**
      * Handle state request messages from clients.
      * Clients can request current state via WebSocket for real-time sync.
+     * Clients of a delta-encoded namespace request it after missing a delta; they are sent the state
+     * the next delta will apply to, which subscribers that are up to date already hold and ignore.
      *
      * @param namespace the namespace identifier
-     * @return the current state to broadcast
+     * @return the current state to broadcast, as a MessageDto or an {@link EncodedState}
      */
     @MessageMapping("/state/{namespace}/request")
     @SendTo("/topic/state/{namespace}")
-    public MessageDto handleStateRequest(@DestinationVariable String namespace) {
-        // Return current state for the namespace
-        return stateService.getState(namespace);
+    public Object handleStateRequest(@DestinationVariable String namespace) {
+        if (stateBroadcaster.isDeltaEncoded(namespace)) {
+            return stateBroadcaster.snapshot(namespace);
+        }
+        // Return current state for the namespace, from its stored encoding if it is unchanged since the last read
+        return encodedStates.getBody(namespace);
     }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.metrics;
+
+import com.example.services.StateMetrics;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * Counts and times STOMP broadcasts to {@code /topic/state/{namespace}} on the broker channel.
+ * The broker channel hands each message to the broker on the sending thread, so the time from
+ * send to completion is the broker's cost of dispatching the message to every subscriber.
+ */
+public class BroadcastMetricsInterceptor implements ChannelInterceptor {
+
+    private static final String STATE_TOPIC = "/topic/state/";
+
+    private final StateMetrics metrics;
+
+    private final ThreadLocal<Timing> timings = ThreadLocal.withInitial(Timing::new);
+
+    public BroadcastMetricsInterceptor(StateMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && destination.startsWith(STATE_TOPIC)) {
+            Timing timing = timings.get();
+            timing.recorder = metrics.recorder(destination.substring(STATE_TOPIC.length()));
+            timing.start = timing.recorder.start(StateMetrics.Operation.BROADCAST);
+        }
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        Timing timing = timings.get();
+        if (timing.recorder != null) {
+            if (timing.start != StateMetrics.UNTIMED) {
+                timing.recorder.record(StateMetrics.Operation.BROADCAST, System.nanoTime() - timing.start);
+            }
+            timing.recorder = null;
+        }
+    }
+
+    /** The broadcast in progress on a thread; reused so timing allocates nothing. */
+    private static final class Timing {
+        StateMetrics.Recorder recorder;
+        long start;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.metrics;
+
+import com.example.services.StateMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-namespace operation counts and latencies, published as Micrometer meters:
+ * <ul>
+ *   <li>{@code mvp.state.operations}: calls of {@code get-state}, {@code send-message} and {@code broadcast}</li>
+ *   <li>{@code mvp.state.latency}: a {@link Timer} per counted operation, with the 50th, 90th, 99th and
+ *   99.9th percentiles over a sliding window of {@code interval-ms}</li>
+ *   <li>{@code mvp.state.latency.all}: a {@link Timer} per operation across all namespaces, including the
+ *   {@code process-message} and {@code store-message} phases, with a percentile histogram</li>
+ * </ul>
+ * Counters cover every call. Latencies cover a random sample of one call in {@code sample-every}.
+ * Only {@code namespace-limit} namespaces have meters of their own at a time; others are recorded together
+ * under the namespace {@value #OTHER_NAMESPACE}, so the registry stays bounded. Histogram buckets are
+ * kept on the aggregate timers only, so their number does not grow with the namespaces tracked. A namespace's meters are
+ * removed when it is evicted from storage or goes a whole interval without a call, which frees its slot.
+ */
+@Component
+@ConditionalOnProperty(name = "mvp.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class NamespaceMetrics implements StateMetrics {
+
+    /**
+     * Namespace tag shared by all namespaces beyond the limit.
+     */
+    public static final String OTHER_NAMESPACE = "_other";
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final Set<Operation> COUNTED = EnumSet.of(Operation.GET_STATE, Operation.SEND_MESSAGE, Operation.BROADCAST);
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final MeterRegistry registry;
+    private final int namespaceLimit;
+    private final int sampleEvery;
+    private final Duration interval;
+    private final ConcurrentHashMap<String, NamespaceRecorder> recorders = new ConcurrentHashMap<>();
+    private final NamespaceRecorder other;
+    private final Timer[] aggregates = new Timer[OPERATIONS.length];
+
+    /**
+     * @param registry the registry meters are published to
+     * @param namespaceLimit the number of namespaces that get meters of their own
+     * @param sampleEvery time one call in this many; 1 times every call
+     */
+    public NamespaceMetrics(MeterRegistry registry, int namespaceLimit, int sampleEvery) {
+        this(registry, namespaceLimit, sampleEvery, 60_000);
+    }
+
+    /**
+     * @param registry the registry meters are published to
+     * @param namespaceLimit the number of namespaces that get meters of their own
+     * @param sampleEvery time one call in this many; 1 times every call
+     * @param intervalMillis the window percentiles cover, and how long a namespace may go without a call
+     */
+    @Autowired
+    public NamespaceMetrics(MeterRegistry registry,
+                            @Value("${mvp.metrics.namespace-limit:100}") int namespaceLimit,
+                            @Value("${mvp.metrics.sample-every:16}") int sampleEvery,
+                            @Value("${mvp.metrics.interval-ms:60000}") long intervalMillis) {
+        if (namespaceLimit < 0 || sampleEvery < 1 || intervalMillis < 1) {
+            throw new IllegalArgumentException("namespace-limit must not be negative and sample-every and interval-ms must be positive");
+        }
+        this.registry = registry;
+        this.namespaceLimit = namespaceLimit;
+        this.sampleEvery = sampleEvery;
+        this.interval = Duration.ofMillis(intervalMillis);
+        for (Operation operation : OPERATIONS) {
+            aggregates[operation.ordinal()] = Timer.builder("mvp.state.latency.all")
+                    .tags("operation", operation.tag())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .distributionStatisticExpiry(interval)
+                    .register(registry);
+        }
+        this.other = new NamespaceRecorder(OTHER_NAMESPACE);
+    }
+
+    @Override
+    public Recorder recorder(String namespace) {
+        NamespaceRecorder recorder = recorders.get(namespace);
+        return recorder != null ? recorder : register(namespace);
+    }
+
+    /**
+     * Removes the namespace's meters, for instance once it has been evicted from storage.
+     */
+    @Override
+    public synchronized void forget(String namespace) {
+        NamespaceRecorder recorder = recorders.remove(namespace);
+        if (recorder != null) {
+            recorder.remove();
+        }
+    }
+
+    /**
+     * Removes the meters of every namespace that had no call since the previous sweep.
+     */
+    @Scheduled(fixedRateString = "${mvp.metrics.interval-ms:60000}", initialDelayString = "${mvp.metrics.interval-ms:60000}")
+    public void expireIdle() {
+        List<String> idle = new ArrayList<>();
+        recorders.forEach((namespace, recorder) -> {
+            if (recorder.idleSinceLastSweep()) {
+                idle.add(namespace);
+            }
+        });
+        idle.forEach(this::forget);
+    }
+
+    /**
+     * @return the number of namespaces with meters of their own
+     */
+    public int trackedNamespaces() {
+        return recorders.size();
+    }
+
+    private synchronized Recorder register(String namespace) {
+        NamespaceRecorder recorder = recorders.get(namespace);
+        if (recorder != null) {
+            return recorder;
+        }
+        if (recorders.size() >= namespaceLimit || OTHER_NAMESPACE.equals(namespace)) {
+            return other;
+        }
+        recorder = new NamespaceRecorder(namespace);
+        recorders.put(namespace, recorder);
+        return recorder;
+    }
+
+    private final class NamespaceRecorder implements Recorder {
+
+        private final LongAdder[] counts = new LongAdder[OPERATIONS.length];
+        private final Timer[] timers = new Timer[OPERATIONS.length];
+        private final List<Meter> meters = new ArrayList<>();
+        private long callsAtLastSweep;
+
+        NamespaceRecorder(String namespace) {
+            for (Operation operation : OPERATIONS) {
+                int i = operation.ordinal();
+                counts[i] = new LongAdder();
+                if (!COUNTED.contains(operation)) {
+                    continue; // Phases are timed in the aggregate only
+                }
+                meters.add(FunctionCounter.builder("mvp.state.operations", counts[i], LongAdder::sum)
+                        .tags("namespace", namespace, "operation", operation.tag())
+                        .register(registry));
+                timers[i] = Timer.builder("mvp.state.latency")
+                        .tags("namespace", namespace, "operation", operation.tag())
+                        .publishPercentiles(PERCENTILES)
+                        .distributionStatisticExpiry(interval)
+                        .register(registry);
+                meters.add(timers[i]);
+            }
+        }
+
+        @Override
+        public long start(Operation operation) {
+            counts[operation.ordinal()].increment();
+            return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0 ? System.nanoTime() : UNTIMED;
+        }
+
+        @Override
+        public void record(Operation operation, long nanos) {
+            int i = operation.ordinal();
+            aggregates[i].record(nanos, TimeUnit.NANOSECONDS);
+            if (timers[i] != null) {
+                timers[i].record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        boolean idleSinceLastSweep() {
+            long calls = 0;
+            for (Operation operation : COUNTED) {
+                calls += counts[operation.ordinal()].sum();
+            }
+            boolean idle = calls == callsAtLastSweep;
+            callsAtLastSweep = calls;
+            return idle;
+        }
+
+        void remove() {
+            // Removing a timer also removes the percentile gauges it registered
+            meters.forEach(registry::remove);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.replication;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hybrid logical clock: timestamps that follow wall-clock time but never go backwards and always
+ * order a write after every write its node had seen. A timestamp packs milliseconds since the epoch
+ * into its upper 48 bits and a logical counter into the lower 16; the counter advances when the
+ * wall clock has not, or lags behind a timestamp received from another node.
+ * <p>
+ * A received timestamp more than the maximum skew ahead of the wall clock is refused: merged, it would
+ * carry every later timestamp of this node with it, and a write stamped with it would win over every
+ * write made before the wall clock caught up.
+ */
+public class HybridLogicalClock {
+
+    static final int LOGICAL_BITS = 16;
+
+    /**
+     * Default for how far ahead of the wall clock a received timestamp may be.
+     */
+    public static final long DEFAULT_MAX_SKEW_MILLIS = 60_000;
+
+    private final LongSupplier wallMillis;
+    private final long maxSkewMillis;
+    private final AtomicLong last = new AtomicLong();
+
+    public HybridLogicalClock() {
+        this(DEFAULT_MAX_SKEW_MILLIS);
+    }
+
+    /**
+     * @param maxSkewMillis how far ahead of the wall clock a received timestamp may be
+     */
+    public HybridLogicalClock(long maxSkewMillis) {
+        this(System::currentTimeMillis, maxSkewMillis);
+    }
+
+    HybridLogicalClock(LongSupplier wallMillis) {
+        this(wallMillis, DEFAULT_MAX_SKEW_MILLIS);
+    }
+
+    HybridLogicalClock(LongSupplier wallMillis, long maxSkewMillis) {
+        if (maxSkewMillis < 0) {
+            throw new IllegalArgumentException("The maximum clock skew must not be negative");
+        }
+        this.wallMillis = wallMillis;
+        this.maxSkewMillis = maxSkewMillis;
+    }
+
+    /**
+     * @return a timestamp above every one this clock has issued or received
+     */
+    public long now() {
+        long wall = wallMillis.getAsLong() << LOGICAL_BITS;
+        return last.updateAndGet(previous -> Math.max(previous + 1, wall));
+    }
+
+    /**
+     * @param remote a timestamp received from another node
+     * @return false if it is more than the maximum skew ahead of the wall clock
+     */
+    public boolean accepts(long remote) {
+        return millis(remote) - wallMillis.getAsLong() <= maxSkewMillis;
+    }
+
+    /**
+     * Merges a timestamp received from another node, so later local timestamps order after it.
+     * @param remote the received timestamp
+     * @return a timestamp above both the received one and every one this clock has issued
+     * @throws IllegalArgumentException if the timestamp is not {@linkplain #accepts accepted}
+     */
+    public long update(long remote) {
+        if (!accepts(remote)) {
+            throw new IllegalArgumentException("Timestamp is " + (millis(remote) - wallMillis.getAsLong())
+                    + " ms ahead of the wall clock, more than the " + maxSkewMillis + " ms allowed");
+        }
+        long wall = wallMillis.getAsLong() << LOGICAL_BITS;
+        return last.updateAndGet(previous -> Math.max(Math.max(previous, remote) + 1, wall));
+    }
+
+    /**
+     * @param timestamp a timestamp of this clock
+     * @return its wall-clock part in milliseconds since the epoch
+     */
+    public static long millis(long timestamp) {
+        return timestamp >>> LOGICAL_BITS;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.replication;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * An in-process stand-in for a network transport, for tests and benchmarks that run several nodes in
+ * one JVM. Nodes joined to the same {@link Network} reach each other; messages go through
+ * {@link ReplicationCodec} as they would on the wire and are delivered on the receiving node's own
+ * thread. The network can be partitioned, dropping messages between two groups of nodes until healed.
+ */
+public class LocalReplicationTransport implements ReplicationTransport {
+
+    private final Network network;
+    private final String nodeId;
+    private final ExecutorService delivery;
+    private volatile Consumer<ReplicationMessage> receiver;
+
+    /**
+     * Joins a node to the network.
+     * @param network the network the node's peers are joined to
+     * @param nodeId the id of the node, unique on the network
+     */
+    public LocalReplicationTransport(Network network, String nodeId) {
+        this.network = network;
+        this.nodeId = nodeId;
+        this.delivery = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-local-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (network.nodes.putIfAbsent(nodeId, this) != null) {
+            delivery.shutdown();
+            throw new IllegalArgumentException("Node " + nodeId + " is already on the network");
+        }
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Set<String> peers() {
+        Set<String> peers = new TreeSet<>(network.nodes.keySet());
+        peers.remove(nodeId);
+        return peers;
+    }
+
+    @Override
+    public void start(Consumer<ReplicationMessage> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public boolean send(String peer, ReplicationMessage message) {
+        return deliver(peer, ReplicationCodec.encode(message));
+    }
+
+    @Override
+    public int broadcast(ReplicationMessage message) {
+        byte[] bytes = ReplicationCodec.encode(message);
+        int sent = 0;
+        for (String peer : peers()) {
+            if (deliver(peer, bytes)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    @Override
+    public void close() {
+        network.nodes.remove(nodeId, this);
+        delivery.shutdown();
+    }
+
+    private boolean deliver(String peer, byte[] bytes) {
+        LocalReplicationTransport target = network.nodes.get(peer);
+        if (target == null || network.isPartitioned(nodeId, peer)) {
+            return false;
+        }
+        return target.receive(bytes);
+    }
+
+    private boolean receive(byte[] bytes) {
+        Consumer<ReplicationMessage> current = receiver;
+        if (current == null) {
+            return false;
+        }
+        try {
+            delivery.execute(() -> current.accept(ReplicationCodec.decode(ByteBuffer.wrap(bytes))));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false; // Closed meanwhile
+        }
+    }
+
+    /**
+     * The nodes one group of local transports can reach, and the partitions between them.
+     */
+    public static class Network {
+
+        private final Map<String, LocalReplicationTransport> nodes = new ConcurrentHashMap<>();
+
+        // The side of the partition each node is on; nodes on different sides cannot reach each other
+        private final Map<String, Integer> sides = new ConcurrentHashMap<>();
+
+        /**
+         * Cuts the given nodes off from all others until {@link #heal()}; the nodes still reach each other.
+         * @param isolated the ids of the nodes on one side of the partition
+         */
+        public void partition(Set<String> isolated) {
+            int side = sides.values().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+            for (String node : isolated) {
+                sides.put(node, side);
+            }
+        }
+
+        /**
+         * Removes every partition.
+         */
+        public void heal() {
+            sides.clear();
+        }
+
+        private boolean isPartitioned(String from, String to) {
+            return !sides.getOrDefault(from, 0).equals(sides.getOrDefault(to, 0));
+        }
+    }
+}
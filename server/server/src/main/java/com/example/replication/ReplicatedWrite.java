@@ -0,0 +1,27 @@
+package com.example.replication;
+
+/**
+ * A namespace state as one node sends it to others, stamped with the hybrid logical clock time of the
+ * write and the node it was made on. Of two writes to a namespace the later stamp wins; equal times,
+ * which only writes made on different nodes can have, are ordered by node id.
+ * @param namespace the namespace written
+ * @param content the state's content, already processed
+ * @param time the write's {@link HybridLogicalClock} timestamp
+ * @param origin the id of the node that made the write
+ */
+public record ReplicatedWrite(String namespace, String content, long time, String origin) {
+
+    /**
+     * @return true if this write wins over one stamped with the given time and origin
+     */
+    public boolean isAfter(long otherTime, String otherOrigin) {
+        return isAfter(time, origin, otherTime, otherOrigin);
+    }
+
+    /**
+     * @return true if a write stamped with the first time and origin wins over one stamped with the others
+     */
+    public static boolean isAfter(long time, String origin, long otherTime, String otherOrigin) {
+        return time != otherTime ? time > otherTime : origin.compareTo(otherOrigin) > 0;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of {@link ReplicationMessage}s for network transports.
+ * Layout: [byte type][string from][body], where a string is [int length][UTF-8], -1 encoding null, and
+ * a list is [int count] followed by its elements. Bodies are, by type:
+ * <ul>
+ *   <li>writes: a list of [string namespace][string content][long time][string origin]</li>
+ *   <li>digest: [int count] followed by that many longs</li>
+ *   <li>entries: [int count] followed by that many int buckets, then a list of [string namespace][long time][string origin]</li>
+ *   <li>request: a list of strings</li>
+ * </ul>
+ */
+public final class ReplicationCodec {
+
+    private static final byte WRITES = 1;
+    private static final byte DIGEST = 2;
+    private static final byte ENTRIES = 3;
+    private static final byte REQUEST = 4;
+
+    private static final int NULL_LENGTH = -1;
+
+    private ReplicationCodec() {
+    }
+
+    /**
+     * @param message the message to encode
+     * @return the encoded bytes
+     */
+    public static byte[] encode(ReplicationMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (message instanceof ReplicationMessage.Writes writes) {
+                header(out, WRITES, writes.from());
+                out.writeInt(writes.writes().size());
+                for (ReplicatedWrite write : writes.writes()) {
+                    putString(out, write.namespace());
+                    putString(out, write.content());
+                    out.writeLong(write.time());
+                    putString(out, write.origin());
+                }
+            } else if (message instanceof ReplicationMessage.Digest digest) {
+                header(out, DIGEST, digest.from());
+                out.writeInt(digest.buckets().length);
+                for (long bucket : digest.buckets()) {
+                    out.writeLong(bucket);
+                }
+            } else if (message instanceof ReplicationMessage.Entries entries) {
+                header(out, ENTRIES, entries.from());
+                out.writeInt(entries.buckets().length);
+                for (int bucket : entries.buckets()) {
+                    out.writeInt(bucket);
+                }
+                out.writeInt(entries.stamps().size());
+                for (ReplicationMessage.Stamp stamp : entries.stamps()) {
+                    putString(out, stamp.namespace());
+                    out.writeLong(stamp.time());
+                    putString(out, stamp.origin());
+                }
+            } else if (message instanceof ReplicationMessage.Request request) {
+                header(out, REQUEST, request.from());
+                out.writeInt(request.namespaces().size());
+                for (String namespace : request.namespaces()) {
+                    putString(out, namespace);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A byte array stream does not throw
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a message filling the buffer from its position to its limit.
+     * @param buffer the encoded message, in a heap buffer
+     * @return the decoded message
+     * @throws IllegalArgumentException if the bytes are not a well-formed message
+     */
+    public static ReplicationMessage decode(ByteBuffer buffer) {
+        try {
+            byte type = buffer.get();
+            String from = getString(buffer);
+            return switch (type) {
+                case WRITES -> {
+                    int count = getCount(buffer);
+                    List<ReplicatedWrite> writes = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        writes.add(new ReplicatedWrite(getString(buffer), getString(buffer), buffer.getLong(), getString(buffer)));
+                    }
+                    yield new ReplicationMessage.Writes(from, writes);
+                }
+                case DIGEST -> {
+                    long[] buckets = new long[getCount(buffer)];
+                    for (int i = 0; i < buckets.length; i++) {
+                        buckets[i] = buffer.getLong();
+                    }
+                    yield new ReplicationMessage.Digest(from, buckets);
+                }
+                case ENTRIES -> {
+                    int[] buckets = new int[getCount(buffer)];
+                    for (int i = 0; i < buckets.length; i++) {
+                        buckets[i] = buffer.getInt();
+                    }
+                    int count = getCount(buffer);
+                    List<ReplicationMessage.Stamp> stamps = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        stamps.add(new ReplicationMessage.Stamp(getString(buffer), buffer.getLong(), getString(buffer)));
+                    }
+                    yield new ReplicationMessage.Entries(from, buckets, stamps);
+                }
+                case REQUEST -> {
+                    int count = getCount(buffer);
+                    List<String> namespaces = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        namespaces.add(getString(buffer));
+                    }
+                    yield new ReplicationMessage.Request(from, namespaces);
+                }
+                default -> throw new IllegalArgumentException("Unknown replication message type: " + type);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated replication message", e);
+        }
+    }
+
+    private static void header(DataOutputStream out, byte type, String from) throws IOException {
+        out.writeByte(type);
+        putString(out, from);
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt string length: " + length);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int getCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        // Every element takes at least four bytes, so a larger count cannot be genuine
+        if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("Corrupt element count: " + count);
+        }
+        return count;
+    }
+}
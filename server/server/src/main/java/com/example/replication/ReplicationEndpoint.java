@@ -0,0 +1,22 @@
+package com.example.replication;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * {@code /actuator/replication}: this node's peers and the writes it has sent, received and repaired.
+ */
+@Endpoint(id = "replication")
+public class ReplicationEndpoint {
+
+    private final StateReplicator replicator;
+
+    public ReplicationEndpoint(StateReplicator replicator) {
+        this.replicator = replicator;
+    }
+
+    @ReadOperation
+    public ReplicationStats stats() {
+        return replicator.getStats();
+    }
+}
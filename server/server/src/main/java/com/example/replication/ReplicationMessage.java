@@ -0,0 +1,46 @@
+package com.example.replication;
+
+import java.util.List;
+
+/**
+ * Messages nodes exchange. Writes carry namespace states; the others make up anti-entropy, in which a
+ * node sends a digest of everything it holds, its peer answers with the stamps of the buckets that
+ * differ, and each side then sends the other the writes it is missing.
+ */
+public sealed interface ReplicationMessage {
+
+    /**
+     * @return the id of the node that sent the message
+     */
+    String from();
+
+    /**
+     * Namespace states to apply, newer than the receiver's or not.
+     */
+    record Writes(String from, List<ReplicatedWrite> writes) implements ReplicationMessage {
+    }
+
+    /**
+     * A hash per bucket of the stamps a node holds, namespaces being spread over the buckets by name.
+     */
+    record Digest(String from, long[] buckets) implements ReplicationMessage {
+    }
+
+    /**
+     * The stamps a node holds in the buckets whose hash differed from a digest it received.
+     */
+    record Entries(String from, int[] buckets, List<Stamp> stamps) implements ReplicationMessage {
+    }
+
+    /**
+     * Namespaces whose writes a node asks a peer to send.
+     */
+    record Request(String from, List<String> namespaces) implements ReplicationMessage {
+    }
+
+    /**
+     * The stamp of a namespace's stored write, without its content.
+     */
+    record Stamp(String namespace, long time, String origin) {
+    }
+}
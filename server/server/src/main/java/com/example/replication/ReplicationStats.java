@@ -0,0 +1,24 @@
+package com.example.replication;
+
+import java.util.Set;
+
+/**
+ * What a node's StateReplicator has sent and received.
+ * @param nodeId the id of this node
+ * @param peers the ids of the nodes it replicates to
+ * @param mode when writes return relative to their replication
+ * @param stampedNamespaces the namespaces with a replication stamp
+ * @param queuedWrites the writes waiting to be sent
+ * @param sentWrites the writes sent to peers, each counted once however many peers it went to
+ * @param sentBatches the messages those writes were sent in
+ * @param droppedWrites the writes not sent because the queue was full or replication was stopping
+ * @param appliedWrites the received writes stored
+ * @param supersededWrites the received writes not stored, the namespace holding a later write
+ * @param rejectedWrites the received writes not stored, being stamped too far ahead of the wall clock
+ * @param repairedWrites the writes sent to peers by anti-entropy
+ */
+public record ReplicationStats(String nodeId, Set<String> peers, StateReplicator.Mode mode, long stampedNamespaces,
+                               long queuedWrites, long sentWrites, long sentBatches, long droppedWrites,
+                               long appliedWrites, long supersededWrites, long rejectedWrites,
+                               long repairedWrites) {
+}
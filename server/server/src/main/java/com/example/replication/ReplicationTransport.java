@@ -0,0 +1,62 @@
+package com.example.replication;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Carries replication messages between nodes. Delivery is best effort: a message to a peer that is down
+ * or unreachable is dropped, and anti-entropy repairs what it carried once the peer is back. Messages
+ * from one node to another arrive in the order they were sent.
+ */
+public interface ReplicationTransport extends AutoCloseable {
+
+    /**
+     * @return the id of this node
+     */
+    String nodeId();
+
+    /**
+     * @return the ids of the nodes messages can be sent to
+     */
+    Set<String> peers();
+
+    /**
+     * Starts receiving messages. The receiver is called on the transport's own thread, one message at a
+     * time, and should hand slow work off rather than run it there.
+     * @param receiver takes each message received
+     */
+    void start(Consumer<ReplicationMessage> receiver);
+
+    /**
+     * Sends a message to one peer.
+     * @param peer the id of the peer
+     * @param message the message
+     * @return false if the message was dropped, the peer being unknown or unreachable
+     */
+    boolean send(String peer, ReplicationMessage message);
+
+    /**
+     * Sends a message to every peer, encoding it once.
+     * @param message the message
+     * @return the number of peers it was sent to
+     */
+    int broadcast(ReplicationMessage message);
+
+    /**
+     * Sends a message to every peer, encoding it once, and tells when it has gone. The default sends it
+     * with {@link #broadcast} and returns a completed future.
+     * @param message the message
+     * @return completes once the message has been written to, or dropped for, every peer
+     */
+    default CompletableFuture<Void> broadcastAsync(ReplicationMessage message) {
+        broadcast(message);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Stops receiving and releases connections.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,580 @@
+package com.example.replication;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.services.SystemStateServiceImpl;
+import com.example.storage.OffHeapStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the namespace states of several SystemStateServiceImpl nodes in step, last writer wins.
+ * <p>
+ * Every stored write is stamped with this node's {@link HybridLogicalClock} and queued; a sender thread
+ * broadcasts the queue to all peers in batches, sending only the latest write of a namespace written
+ * several times in one batch. A received write is stored unless the namespace already holds a later
+ * stamp, so nodes that see the same writes in any order end with the same state. Writes are not
+ * forwarded, each node sending only its own. A received write stamped further ahead of this node's wall
+ * clock than the clock allows is rejected, so a skewed or forged stamp cannot win over later writes.
+ * <p>
+ * In {@link Mode#ASYNC} mode a write returns as soon as it is queued, and a write that finds the queue
+ * full is not sent at all. In {@link Mode#SYNC} mode it returns once its batch has been written to every
+ * reachable peer, or the sync timeout has passed. Either way, writes a peer missed while down or cut off
+ * are repaired by anti-entropy: each node periodically sends its peers a digest of its stamps in
+ * {@value #DIGEST_BUCKETS} buckets, and the namespaces of buckets that differ are exchanged. The sender
+ * thread sends the digest whenever the interval has passed, so anti-entropy never runs on a shared
+ * scheduler thread.
+ * <p>
+ * Stamps are kept in memory only. A restarted node holds its recovered states without stamps, so any
+ * peer's write to them wins and anti-entropy brings them back in line with the rest of the cluster.
+ */
+public class StateReplicator implements AutoCloseable {
+
+    static final int DIGEST_BUCKETS = 256;
+
+    // Writes are split into messages of at most this many content chars, well below the transport's frame limit
+    static final int MAX_BATCH_CHARS = 4 << 20;
+
+    private static final Logger log = LoggerFactory.getLogger(StateReplicator.class);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * How often a digest is sent to the peers by default.
+     */
+    public static final long DEFAULT_ANTI_ENTROPY_INTERVAL_MILLIS = 10_000;
+
+    private static final Pending SHUTDOWN = new Pending(null, null);
+
+    /**
+     * When a write returns relative to its replication.
+     */
+    public enum Mode {
+        /**
+         * Once the write is queued for its peers.
+         */
+        ASYNC,
+        /**
+         * Once the write has been sent to every reachable peer.
+         */
+        SYNC
+    }
+
+    private final SystemStateServiceImpl stateService;
+    private final ReplicationTransport transport;
+    private final String nodeId;
+    private final Mode mode;
+    private final int maxBatchSize;
+    private final long syncTimeoutMillis;
+    private final long antiEntropyIntervalNanos;
+    private final HybridLogicalClock clock;
+
+    // The stamp of each namespace's stored state, updated with the state itself
+    private final ConcurrentHashMap<String, Stamped> stamps = new ConcurrentHashMap<>();
+
+    private final LinkedBlockingQueue<Pending> outbound;
+    private final Thread sender;
+    private final ExecutorService inbound;
+
+    private final LongAdder sentWrites = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder droppedWrites = new LongAdder();
+    private final LongAdder appliedWrites = new LongAdder();
+    private final LongAdder supersededWrites = new LongAdder();
+    private final LongAdder rejectedWrites = new LongAdder();
+    private final LongAdder repairedWrites = new LongAdder();
+
+    private volatile Consumer<VersionedMessageDto> applyListener = state -> {
+    };
+    private volatile boolean closed;
+
+    /**
+     * Starts replicating the service's writes over the transport and applying those it receives.
+     * @param stateService the service whose states are replicated
+     * @param transport carries messages to and from the peers
+     * @param mode when writes return relative to their replication
+     * @param maxBatchSize the most writes sent in one message
+     * @param queueCapacity the most writes waiting to be sent; further writes are dropped in async mode
+     * @param syncTimeoutMillis the longest a write waits for its batch to be sent in sync mode
+     */
+    public StateReplicator(SystemStateServiceImpl stateService, ReplicationTransport transport, Mode mode,
+                           int maxBatchSize, int queueCapacity, long syncTimeoutMillis) {
+        this(stateService, transport, mode, maxBatchSize, queueCapacity, syncTimeoutMillis, new HybridLogicalClock());
+    }
+
+    /**
+     * Starts replicating the service's writes over the transport and applying those it receives.
+     * @param stateService the service whose states are replicated
+     * @param transport carries messages to and from the peers
+     * @param mode when writes return relative to their replication
+     * @param maxBatchSize the most writes sent in one message
+     * @param queueCapacity the most writes waiting to be sent; further writes are dropped in async mode
+     * @param syncTimeoutMillis the longest a write waits for its batch to be sent in sync mode
+     * @param maxClockSkewMillis how far ahead of the wall clock a received write's stamp may be
+     */
+    public StateReplicator(SystemStateServiceImpl stateService, ReplicationTransport transport, Mode mode,
+                           int maxBatchSize, int queueCapacity, long syncTimeoutMillis, long maxClockSkewMillis) {
+        this(stateService, transport, mode, maxBatchSize, queueCapacity, syncTimeoutMillis, maxClockSkewMillis,
+                DEFAULT_ANTI_ENTROPY_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Starts replicating the service's writes over the transport and applying those it receives.
+     * @param stateService the service whose states are replicated
+     * @param transport carries messages to and from the peers
+     * @param mode when writes return relative to their replication
+     * @param maxBatchSize the most writes sent in one message
+     * @param queueCapacity the most writes waiting to be sent; further writes are dropped in async mode
+     * @param syncTimeoutMillis the longest a write waits for its batch to be sent in sync mode
+     * @param maxClockSkewMillis how far ahead of the wall clock a received write's stamp may be
+     * @param antiEntropyIntervalMillis how often the peers are sent a digest of this node's stamps
+     */
+    public StateReplicator(SystemStateServiceImpl stateService, ReplicationTransport transport, Mode mode,
+                           int maxBatchSize, int queueCapacity, long syncTimeoutMillis, long maxClockSkewMillis,
+                           long antiEntropyIntervalMillis) {
+        this(stateService, transport, mode, maxBatchSize, queueCapacity, syncTimeoutMillis,
+                new HybridLogicalClock(maxClockSkewMillis), antiEntropyIntervalMillis);
+    }
+
+    StateReplicator(SystemStateServiceImpl stateService, ReplicationTransport transport, Mode mode,
+                    int maxBatchSize, int queueCapacity, long syncTimeoutMillis, HybridLogicalClock clock) {
+        this(stateService, transport, mode, maxBatchSize, queueCapacity, syncTimeoutMillis, clock,
+                DEFAULT_ANTI_ENTROPY_INTERVAL_MILLIS);
+    }
+
+    StateReplicator(SystemStateServiceImpl stateService, ReplicationTransport transport, Mode mode,
+                    int maxBatchSize, int queueCapacity, long syncTimeoutMillis, HybridLogicalClock clock,
+                    long antiEntropyIntervalMillis) {
+        if (maxBatchSize <= 0 || queueCapacity <= 0 || syncTimeoutMillis < 0 || antiEntropyIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Replication batch size, queue capacity and anti-entropy interval must be positive, "
+                    + "sync timeout not negative");
+        }
+        this.stateService = stateService;
+        this.transport = transport;
+        this.nodeId = transport.nodeId();
+        this.mode = mode;
+        this.maxBatchSize = maxBatchSize;
+        this.syncTimeoutMillis = syncTimeoutMillis;
+        this.antiEntropyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(antiEntropyIntervalMillis);
+        this.clock = clock;
+        this.outbound = new LinkedBlockingQueue<>(queueCapacity);
+        this.inbound = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-apply");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender = new Thread(this::send, "replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+        transport.start(this::receive);
+        stateService.setReplicator(this);
+    }
+
+    /**
+     * Sets what is told of each received write once stored, such as a broadcast to local subscribers.
+     * @param applyListener called on the replication thread with each stored write
+     */
+    public void setApplyListener(Consumer<VersionedMessageDto> applyListener) {
+        this.applyListener = applyListener;
+    }
+
+    /**
+     * @return the id of this node
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Stamps a local write as the namespace's latest. Called by the state service while the namespace's
+     * entry is locked, so the stamp and the stored state change together.
+     * @param namespace the namespace written
+     * @param stored what the service stores for the namespace: its DTO, or the handle of its off-heap content
+     * @param content the write's content
+     * @return the write as sent to peers
+     */
+    public ReplicatedWrite stamp(String namespace, Object stored, String content) {
+        long time = clock.now();
+        stamps.put(namespace, new Stamped(time, nodeId, stored));
+        return new ReplicatedWrite(namespace, content, time, nodeId);
+    }
+
+    /**
+     * Decides whether a received write is later than the namespace's stored state, and stamps it as the
+     * latest if so. Called by the state service while the namespace's entry is locked.
+     * @param namespace the namespace written
+     * @param write the received write
+     * @param stored what the service stores for the namespace if the write is later
+     * @return true if the write is later and the service should store it
+     */
+    public boolean accept(String namespace, ReplicatedWrite write, Object stored) {
+        Stamped current = stamps.get(namespace);
+        if (current != null && !write.isAfter(current.time(), current.origin())) {
+            return false;
+        }
+        stamps.put(namespace, new Stamped(write.time(), write.origin(), stored));
+        return true;
+    }
+
+    /**
+     * Forgets the stamp of a namespace the service evicted, unless it was written again meanwhile.
+     * @param namespace the evicted namespace
+     * @param stored the state that was evicted
+     */
+    public void forget(String namespace, Object stored) {
+        stamps.computeIfPresent(namespace, (ns, stamped) -> stamped.state() == stored ? null : stamped);
+    }
+
+    /**
+     * Queues stored writes for the peers. In sync mode, waits until they have been sent.
+     * @param writes the writes, as returned by {@link #stamp}
+     */
+    public void replicate(Collection<ReplicatedWrite> writes) {
+        CompletableFuture<Void> last = null;
+        for (ReplicatedWrite write : writes) {
+            Pending pending = new Pending(write, mode == Mode.SYNC ? new CompletableFuture<>() : null);
+            if (closed || !outbound.offer(pending)) {
+                droppedWrites.increment(); // Anti-entropy sends it later
+            } else if (pending.sent != null) {
+                last = pending.sent;
+            }
+        }
+        if (last != null) {
+            await(last); // Batches are sent in queue order, so the last write's completes after the others'
+        }
+    }
+
+    /**
+     * Sends every peer a digest of this node's stamps, starting a repair of whatever differs. Called on
+     * the sender thread every anti-entropy interval.
+     */
+    public void antiEntropy() {
+        if (!closed) {
+            transport.broadcast(new ReplicationMessage.Digest(nodeId, digest()));
+        }
+    }
+
+    /**
+     * @return counts of the writes sent, received and repaired so far
+     */
+    public ReplicationStats getStats() {
+        return new ReplicationStats(nodeId, transport.peers(), mode, stamps.size(), outbound.size(),
+                sentWrites.sum(), sentBatches.sum(), droppedWrites.sum(),
+                appliedWrites.sum(), supersededWrites.sum(), rejectedWrites.sum(), repairedWrites.sum());
+    }
+
+    /**
+     * Stops sending and applying, sending what is already queued first, and closes the transport.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        stateService.setReplicator(null);
+        if (!outbound.offer(SHUTDOWN)) {
+            sender.interrupt(); // The queue is full; the sender sends what it can drain and stops
+        }
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        transport.close();
+        inbound.shutdown();
+    }
+
+    private void await(CompletableFuture<Void> sent) {
+        try {
+            sent.get(syncTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Replication did not complete within {} ms", syncTimeoutMillis);
+        } catch (ExecutionException e) {
+            log.warn("Replication failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+        long nextAntiEntropy = System.nanoTime() + antiEntropyIntervalNanos;
+        while (!stopping) {
+            try {
+                long untilAntiEntropy = nextAntiEntropy - System.nanoTime();
+                Pending first = untilAntiEntropy > 0 ? outbound.poll(untilAntiEntropy, TimeUnit.NANOSECONDS) : null;
+                if (first == null) {
+                    runAntiEntropy();
+                    nextAntiEntropy = System.nanoTime() + antiEntropyIntervalNanos;
+                    continue;
+                }
+                batch.add(first);
+                outbound.drainTo(batch, maxBatchSize - 1);
+            } catch (InterruptedException e) {
+                outbound.drainTo(batch);
+                stopping = true;
+            }
+            stopping |= batch.remove(SHUTDOWN);
+            CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+            try {
+                written = sendBatch(batch);
+            } catch (RuntimeException e) {
+                log.warn("Failed to send {} replicated writes", batch.size(), e);
+            }
+            for (Pending pending : batch) {
+                if (pending.sent != null) {
+                    written.whenComplete((ignored, failure) -> pending.sent.complete(null));
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void runAntiEntropy() {
+        try {
+            antiEntropy();
+        } catch (RuntimeException e) {
+            log.warn("Failed to send the anti-entropy digest", e);
+        }
+    }
+
+    /**
+     * Queues the batch for every peer.
+     * @return completes once the batch has been written to every peer in sync mode; already complete in async mode
+     */
+    private CompletableFuture<Void> sendBatch(List<Pending> batch) {
+        // Of several writes to a namespace, only the latest matters to a peer
+        Map<String, ReplicatedWrite> latest = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            latest.merge(pending.write.namespace(), pending.write,
+                    (earlier, later) -> later.isAfter(earlier.time(), earlier.origin()) ? later : earlier);
+        }
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (List<ReplicatedWrite> writes : split(latest.values())) {
+            ReplicationMessage.Writes message = new ReplicationMessage.Writes(nodeId, writes);
+            if (mode == Mode.SYNC) {
+                written.add(transport.broadcastAsync(message));
+            } else {
+                transport.broadcast(message);
+            }
+            sentWrites.add(writes.size());
+            sentBatches.increment();
+        }
+        return CompletableFuture.allOf(written.toArray(CompletableFuture[]::new));
+    }
+
+    private void receive(ReplicationMessage message) {
+        try {
+            inbound.execute(() -> handle(message));
+        } catch (RejectedExecutionException e) {
+            log.debug("Dropping replication message from {} after close", message.from());
+        }
+    }
+
+    private void handle(ReplicationMessage message) {
+        try {
+            if (message instanceof ReplicationMessage.Writes writes) {
+                for (ReplicatedWrite write : writes.writes()) {
+                    apply(write);
+                }
+            } else if (message instanceof ReplicationMessage.Digest digest) {
+                compare(digest);
+            } else if (message instanceof ReplicationMessage.Entries entries) {
+                reconcile(entries);
+            } else if (message instanceof ReplicationMessage.Request request) {
+                sendWrites(request.from(), request.namespaces());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to handle replication message from {}", message.from(), e);
+        }
+    }
+
+    private void apply(ReplicatedWrite write) {
+        if (!clock.accepts(write.time())) {
+            rejectedWrites.increment();
+            log.warn("Rejecting a write to namespace {} from {} stamped {} ms ahead of the wall clock", write.namespace(),
+                    write.origin(), HybridLogicalClock.millis(write.time()) - System.currentTimeMillis());
+            return;
+        }
+        clock.update(write.time()); // Before storing, so a local write after this one is stamped later
+        Stamped current = stamps.get(write.namespace());
+        if (current != null && !write.isAfter(current.time(), current.origin())) {
+            supersededWrites.increment();
+            return;
+        }
+        VersionedMessageDto stored = stateService.applyReplicated(write);
+        if (stored == null) {
+            supersededWrites.increment(); // A later write was stored meanwhile
+            return;
+        }
+        appliedWrites.increment();
+        try {
+            applyListener.accept(stored);
+        } catch (RuntimeException e) {
+            log.warn("Replication apply listener failed for namespace {}", write.namespace(), e);
+        }
+    }
+
+    /**
+     * Answers a peer's digest with the stamps of every bucket that differs.
+     */
+    private void compare(ReplicationMessage.Digest digest) {
+        long[] local = digest();
+        List<Integer> differing = new ArrayList<>();
+        for (int bucket = 0; bucket < DIGEST_BUCKETS; bucket++) {
+            if (bucket >= digest.buckets().length || digest.buckets()[bucket] != local[bucket]) {
+                differing.add(bucket);
+            }
+        }
+        if (differing.isEmpty()) {
+            return;
+        }
+        int[] buckets = differing.stream().mapToInt(Integer::intValue).toArray();
+        transport.send(digest.from(), new ReplicationMessage.Entries(nodeId, buckets, stampsIn(buckets)));
+    }
+
+    /**
+     * Compares a peer's stamps with this node's, asking for the namespaces the peer has later writes
+     * of and sending those this node has later writes of.
+     */
+    private void reconcile(ReplicationMessage.Entries entries) {
+        Map<String, ReplicationMessage.Stamp> remote = new HashMap<>();
+        for (ReplicationMessage.Stamp stamp : entries.stamps()) {
+            remote.put(stamp.namespace(), stamp);
+        }
+        List<String> wanted = new ArrayList<>();
+        for (ReplicationMessage.Stamp theirs : entries.stamps()) {
+            Stamped ours = stamps.get(theirs.namespace());
+            if (!clock.accepts(theirs.time())) {
+                continue; // It would be rejected on arrival
+            }
+            if (ours == null || ReplicatedWrite.isAfter(theirs.time(), theirs.origin(), ours.time(), ours.origin())) {
+                wanted.add(theirs.namespace());
+            }
+        }
+        List<String> offered = new ArrayList<>();
+        for (ReplicationMessage.Stamp ours : stampsIn(entries.buckets())) {
+            ReplicationMessage.Stamp theirs = remote.get(ours.namespace());
+            if (theirs == null || ReplicatedWrite.isAfter(ours.time(), ours.origin(), theirs.time(), theirs.origin())) {
+                offered.add(ours.namespace());
+            }
+        }
+        if (!wanted.isEmpty()) {
+            transport.send(entries.from(), new ReplicationMessage.Request(nodeId, wanted));
+        }
+        sendWrites(entries.from(), offered);
+    }
+
+    private void sendWrites(String peer, List<String> namespaces) {
+        List<ReplicatedWrite> writes = new ArrayList<>(namespaces.size());
+        for (String namespace : namespaces) {
+            ReplicatedWrite write = current(namespace);
+            if (write != null) {
+                writes.add(write);
+            }
+        }
+        for (List<ReplicatedWrite> chunk : split(writes)) {
+            if (transport.send(peer, new ReplicationMessage.Writes(nodeId, chunk))) {
+                repairedWrites.add(chunk.size());
+            }
+        }
+    }
+
+    /**
+     * @return the namespace's stored state with its stamp, or null if it has none
+     */
+    private ReplicatedWrite current(String namespace) {
+        Stamped stamped = stamps.get(namespace);
+        while (stamped != null) {
+            MessageDto state = stamped.state() instanceof OffHeapStateStore.Handle handle
+                    ? handle.toMessageDto() : (MessageDto) stamped.state();
+            if (state == null) {
+                stamped = stamps.get(namespace); // Replaced and released while being read; read its successor
+                continue;
+            }
+            return new ReplicatedWrite(namespace, state.getContent(), stamped.time(), stamped.origin());
+        }
+        return null;
+    }
+
+    private List<ReplicationMessage.Stamp> stampsIn(int[] buckets) {
+        boolean[] selected = new boolean[DIGEST_BUCKETS];
+        for (int bucket : buckets) {
+            if (bucket >= 0 && bucket < DIGEST_BUCKETS) {
+                selected[bucket] = true;
+            }
+        }
+        List<ReplicationMessage.Stamp> selectedStamps = new ArrayList<>();
+        stamps.forEach((namespace, stamped) -> {
+            if (selected[bucket(namespace)]) {
+                selectedStamps.add(new ReplicationMessage.Stamp(namespace, stamped.time(), stamped.origin()));
+            }
+        });
+        return selectedStamps;
+    }
+
+    long[] digest() {
+        long[] buckets = new long[DIGEST_BUCKETS];
+        // A sum, so the hash of a bucket does not depend on the order its namespaces are visited in
+        stamps.forEach((namespace, stamped) -> buckets[bucket(namespace)] += hash(namespace, stamped));
+        return buckets;
+    }
+
+    private static int bucket(String namespace) {
+        return Math.floorMod(namespace.hashCode(), DIGEST_BUCKETS);
+    }
+
+    private static long hash(String namespace, Stamped stamped) {
+        long hash = namespace.hashCode() * 0x9E3779B97F4A7C15L ^ stamped.time() ^ stamped.origin().hashCode() * 0xC2B2AE3D27D4EB4FL;
+        // MurmurHash3's 64-bit finalizer, so nearby times spread over all bits
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private List<List<ReplicatedWrite>> split(Collection<ReplicatedWrite> writes) {
+        List<List<ReplicatedWrite>> chunks = new ArrayList<>();
+        List<ReplicatedWrite> chunk = new ArrayList<>();
+        long chars = 0;
+        for (ReplicatedWrite write : writes) {
+            int length = write.content() == null ? 0 : write.content().length();
+            if (!chunk.isEmpty() && (chunk.size() >= maxBatchSize || chars + length > MAX_BATCH_CHARS)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chars = 0;
+            }
+            chunk.add(write);
+            chars += length;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // The state is what the service stores: a DTO, or the handle of content held off heap
+    private record Stamped(long time, String origin, Object state) {
+    }
+
+    private record Pending(ReplicatedWrite write, CompletableFuture<Void> sent) {
+    }
+}
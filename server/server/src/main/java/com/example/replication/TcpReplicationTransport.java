@@ -0,0 +1,625 @@
+package com.example.replication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Replication over TCP. Each message is a frame of [int length][{@link ReplicationCodec} bytes].
+ * <p>
+ * Inbound connections are read by one selector thread, however many peers connect. Outbound, each peer
+ * has one connection, opened on first use, and its own writer thread with a bounded queue: sending only
+ * queues a frame, so a slow or unreachable peer never holds up the sender or the other peers. A frame
+ * that finds its peer's queue full is dropped, and a write that makes no progress for the write timeout
+ * drops the connection. A peer that cannot be reached is not dialled again for a second, and messages to
+ * it meanwhile are dropped.
+ * Connections only ever carry messages one way, so a node sends replies over its own connection to the
+ * peer, which it finds by the message's {@link ReplicationMessage#from()} id.
+ * <p>
+ * Every node shares a secret. A node accepting a connection sends a random challenge, and the first frame
+ * it reads must be the dialling node's id with an HMAC-SHA256 of the challenge and the id under the secret.
+ * Until then frames are limited to {@value #MAX_HANDSHAKE_BYTES} bytes, and afterwards a message claiming
+ * to come from another node drops the connection. Frames are authenticated but not encrypted, so peers
+ * should still talk over a private network.
+ */
+public class TcpReplicationTransport implements ReplicationTransport {
+
+    static final int MAX_FRAME_BYTES = 64 << 20;
+
+    static final int MAX_HANDSHAKE_BYTES = 1 << 10;
+
+    /**
+     * The fewest bytes a shared secret may have.
+     */
+    public static final int MIN_SECRET_BYTES = 16;
+
+    private static final int CHALLENGE_BYTES = 32;
+    private static final int MAC_BYTES = 32;
+    private static final String HMAC = "HmacSHA256";
+
+    private static final Logger log = LoggerFactory.getLogger(TcpReplicationTransport.class);
+
+    /**
+     * The most frames queued for one peer by default.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1_024;
+
+    /**
+     * How long a write may make no progress by default before the connection is dropped.
+     */
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 5_000;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+    private static final long RECONNECT_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String nodeId;
+    private final InetSocketAddress bindAddress;
+    private final SecretKeySpec secret;
+    private final int queueCapacity;
+    private final long writeTimeoutNanos;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+    private ServerSocketChannel server;
+    private Selector selector;
+    private Thread reader;
+    private volatile boolean closed;
+
+    /**
+     * @param nodeId the id of this node, as its peers know it
+     * @param bindAddress the address to accept peer connections on; port 0 picks a free port
+     * @param secret the secret shared by every node, at least {@value #MIN_SECRET_BYTES} bytes
+     */
+    public TcpReplicationTransport(String nodeId, InetSocketAddress bindAddress, byte[] secret) {
+        this(nodeId, bindAddress, secret, DEFAULT_QUEUE_CAPACITY, DEFAULT_WRITE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param nodeId the id of this node, as its peers know it
+     * @param bindAddress the address to accept peer connections on; port 0 picks a free port
+     * @param secret the secret shared by every node, at least {@value #MIN_SECRET_BYTES} bytes
+     * @param queueCapacity the most frames queued for one peer; further frames are dropped
+     * @param writeTimeoutMillis how long a write to a peer may make no progress before its connection is dropped
+     */
+    public TcpReplicationTransport(String nodeId, InetSocketAddress bindAddress, byte[] secret,
+                                   int queueCapacity, long writeTimeoutMillis) {
+        if (secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("The replication secret must have at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        if (queueCapacity <= 0 || writeTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Replication peer queue capacity and write timeout must be positive");
+        }
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.secret = new SecretKeySpec(secret, HMAC);
+        this.queueCapacity = queueCapacity;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+    }
+
+    /**
+     * Parses a peer list of the form {@code node-b@10.0.0.2:7400,node-c@10.0.0.3:7400}.
+     * @param peers the comma-separated peers, each an id, {@code @}, a host and a port
+     * @return the address of each peer by id, in the order given
+     */
+    public static Map<String, InetSocketAddress> parsePeers(String peers) {
+        Map<String, InetSocketAddress> parsed = new LinkedHashMap<>();
+        for (String entry : peers.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String peer = entry.trim();
+            int at = peer.indexOf('@');
+            int colon = peer.lastIndexOf(':');
+            if (at <= 0 || colon < at + 2 || colon == peer.length() - 1) {
+                throw new IllegalArgumentException("Peer needs an id, a host and a port, as id@host:port: " + peer);
+            }
+            int port;
+            try {
+                port = Integer.parseInt(peer.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed port in peer: " + peer, e);
+            }
+            parsed.put(peer.substring(0, at), InetSocketAddress.createUnresolved(peer.substring(at + 1, colon), port));
+        }
+        return parsed;
+    }
+
+    /**
+     * Adds a node messages can be sent to, starting its writer thread.
+     * @param peerId the peer's node id
+     * @param address the address the peer accepts connections on
+     */
+    public void addPeer(String peerId, InetSocketAddress address) {
+        if (peerId.equals(nodeId)) {
+            throw new IllegalArgumentException("A node cannot be its own peer: " + peerId);
+        }
+        Peer previous = peers.put(peerId, new Peer(peerId, address));
+        if (previous != null) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * @return the port connections are accepted on, once started
+     */
+    public int localPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Set<String> peers() {
+        return new TreeSet<>(peers.keySet());
+    }
+
+    /**
+     * Binds the listening socket and starts the selector thread.
+     * @throws UncheckedIOException if the address cannot be bound
+     */
+    @Override
+    public synchronized void start(Consumer<ReplicationMessage> receiver) {
+        try {
+            selector = Selector.open();
+            server = ServerSocketChannel.open();
+            server.bind(bindAddress);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot accept replication connections on " + bindAddress, e);
+        }
+        reader = new Thread(() -> run(receiver), "replication-io");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Queues a message for the peer's writer thread.
+     * @return false if the message was dropped, the peer being unknown or unreachable or its queue full
+     */
+    @Override
+    public boolean send(String peer, ReplicationMessage message) {
+        Peer target = peers.get(peer);
+        return target != null && target.offer(frame(ReplicationCodec.encode(message)), null);
+    }
+
+    /**
+     * Queues a message for every peer's writer thread, encoding it once.
+     * @return the number of peers it was queued for
+     */
+    @Override
+    public int broadcast(ReplicationMessage message) {
+        ByteBuffer frame = frame(ReplicationCodec.encode(message));
+        int queued = 0;
+        for (Peer peer : peers.values()) {
+            if (peer.offer(frame.duplicate(), null)) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    @Override
+    public CompletableFuture<Void> broadcastAsync(ReplicationMessage message) {
+        ByteBuffer frame = frame(ReplicationCodec.encode(message));
+        List<CompletableFuture<Void>> written = new ArrayList<>(peers.size());
+        for (Peer peer : peers.values()) {
+            CompletableFuture<Void> peerWritten = new CompletableFuture<>();
+            if (peer.offer(frame.duplicate(), peerWritten)) {
+                written.add(peerWritten);
+            }
+        }
+        return CompletableFuture.allOf(written.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Stops receiving, gives each peer's writer up to the write timeout to send what it has queued,
+     * and closes the connections.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Peer peer : peers.values()) {
+            peer.stop();
+        }
+        if (selector != null) {
+            selector.wakeup();
+            try {
+                reader.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Failed to close replication selector", e);
+            }
+        }
+        long deadline = System.nanoTime() + writeTimeoutNanos;
+        for (Peer peer : peers.values()) {
+            peer.awaitStopped(deadline);
+        }
+    }
+
+    private void run(Consumer<ReplicationMessage> receiver) {
+        while (!closed) {
+            try {
+                selector.select();
+                for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key, receiver);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Replication selector failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        byte[] challenge = new byte[CHALLENGE_BYTES];
+        random.nextBytes(challenge);
+        channel.configureBlocking(false);
+        channel.write(ByteBuffer.wrap(challenge)); // Fits an empty socket buffer, so one write sends it all
+        channel.register(selector, SelectionKey.OP_READ, new FrameReader(challenge));
+    }
+
+    private void read(SelectionKey key, Consumer<ReplicationMessage> receiver) {
+        try {
+            if (!((FrameReader) key.attachment()).read((SocketChannel) key.channel(), receiver)) {
+                closeQuietly(key); // The peer closed its connection
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Dropping replication connection from {}: {}", remoteAddress(key), e.getMessage());
+            closeQuietly(key);
+        }
+    }
+
+    /**
+     * @return the HMAC proving a node that holds the secret answered the challenge as {@code id}
+     */
+    private byte[] sign(byte[] challenge, byte[] id) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(secret);
+            mac.update(challenge);
+            return mac.doFinal(id);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC + " is not available", e);
+        }
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        return frame;
+    }
+
+    private static Object remoteAddress(SelectionKey key) {
+        try {
+            return ((SocketChannel) key.channel()).getRemoteAddress();
+        } catch (IOException e) {
+            return "a closed connection";
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Failed to close replication connection", e);
+        }
+    }
+
+    /**
+     * Reassembles frames from a non-blocking connection, however the bytes are split across reads.
+     * The first frame is the handshake; only the frames after it are passed on.
+     */
+    private final class FrameReader {
+
+        private final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        private final byte[] challenge;
+        private ByteBuffer body;
+        private String peerId;
+
+        FrameReader(byte[] challenge) {
+            this.challenge = challenge;
+        }
+
+        /**
+         * Reads what is available, passing each complete frame on.
+         * @return false once the peer has closed the connection
+         */
+        boolean read(SocketChannel channel, Consumer<ReplicationMessage> receiver) throws IOException {
+            while (true) {
+                if (body == null) {
+                    if (channel.read(header) < 0) {
+                        return false;
+                    }
+                    if (header.hasRemaining()) {
+                        return true;
+                    }
+                    int length = header.flip().getInt();
+                    if (length <= 0 || length > (peerId == null ? MAX_HANDSHAKE_BYTES : MAX_FRAME_BYTES)) {
+                        throw new IllegalArgumentException("Bad replication frame length: " + length);
+                    }
+                    body = ByteBuffer.allocate(length);
+                }
+                if (channel.read(body) < 0) {
+                    return false;
+                }
+                if (body.hasRemaining()) {
+                    return true;
+                }
+                body.flip();
+                header.clear();
+                if (peerId == null) {
+                    peerId = verify(body);
+                    body = null;
+                    continue;
+                }
+                ReplicationMessage message = ReplicationCodec.decode(body);
+                body = null;
+                if (!peerId.equals(message.from())) {
+                    throw new IllegalArgumentException("Node " + peerId + " sent a message from " + message.from());
+                }
+                try {
+                    receiver.accept(message);
+                } catch (RuntimeException e) {
+                    log.warn("Replication receiver failed for a message from {}", message.from(), e);
+                }
+            }
+        }
+
+        /**
+         * @return the id the handshake proves the connecting node holds the secret for
+         */
+        private String verify(ByteBuffer handshake) {
+            if (handshake.remaining() <= MAC_BYTES) {
+                throw new IllegalArgumentException("Malformed replication handshake");
+            }
+            byte[] mac = new byte[MAC_BYTES];
+            byte[] id = new byte[handshake.remaining() - MAC_BYTES];
+            handshake.get(mac).get(id);
+            if (!MessageDigest.isEqual(mac, sign(challenge, id))) {
+                throw new IllegalArgumentException("Replication handshake failed; check mvp.replication.secret");
+            }
+            return new String(id, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A frame queued for a peer, and what to complete once it is written or dropped.
+     */
+    private record Outgoing(ByteBuffer frame, CompletableFuture<Void> written) {
+    }
+
+    private static final Outgoing STOP = new Outgoing(null, null);
+
+    /**
+     * The outbound connection to one peer and the thread that writes it, which answers the peer's
+     * challenge before sending anything else. Only the writer thread touches the connection.
+     */
+    private final class Peer {
+
+        private final InetSocketAddress address;
+        private final BlockingQueue<Outgoing> queue;
+        private final Thread writer;
+        private SocketChannel channel;
+        private Selector writable;
+        private volatile long retryAt;
+        private volatile boolean stopping;
+
+        private Peer(String peerId, InetSocketAddress address) {
+            this.address = address;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.retryAt = System.nanoTime();
+            this.writer = new Thread(this::run, "replication-writer-" + peerId);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /**
+         * @return false if the frame was dropped: the peer is unreachable, its queue is full or it is stopping
+         */
+        boolean offer(ByteBuffer frame, CompletableFuture<Void> written) {
+            if (stopping || System.nanoTime() - retryAt < 0
+                    || !queue.offer(new Outgoing(frame, written))) {
+                if (written != null) {
+                    written.complete(null);
+                }
+                return false;
+            }
+            return true;
+        }
+
+        void stop() {
+            stopping = true;
+            queue.offer(STOP); // A full queue needs no wake-up; the writer drains it and then stops
+        }
+
+        /**
+         * Waits for the writer to send what is queued, until the deadline, then interrupts it.
+         */
+        void awaitStopped(long deadline) {
+            try {
+                writer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                if (writer.isAlive()) {
+                    writer.interrupt();
+                    writer.join(TimeUnit.SECONDS.toMillis(1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    Outgoing next = stopping ? queue.poll() : queue.take();
+                    if (next == null || next == STOP) {
+                        return;
+                    }
+                    write(next.frame());
+                    if (next.written() != null) {
+                        next.written().complete(null);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Stopped while waiting for frames or blocked on the peer
+            } finally {
+                for (Outgoing dropped; (dropped = queue.poll()) != null; ) {
+                    if (dropped.written() != null) {
+                        dropped.written().complete(null);
+                    }
+                }
+                disconnect();
+            }
+        }
+
+        private void write(ByteBuffer frame) throws InterruptedException {
+            if (channel == null) {
+                if (System.nanoTime() - retryAt < 0) {
+                    return; // Queued before the connection failed; dropped like the frames offered since
+                }
+                try {
+                    connect();
+                } catch (IOException e) {
+                    log.debug("Cannot connect to replication peer {}: {}", address, e.getMessage());
+                    failed();
+                    return;
+                }
+            }
+            try {
+                long deadline = System.nanoTime() + writeTimeoutNanos;
+                while (frame.hasRemaining()) {
+                    if (channel.write(frame) > 0) {
+                        deadline = System.nanoTime() + writeTimeoutNanos;
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new IOException("No progress writing for " + TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos) + " ms");
+                    }
+                    writable.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                    writable.selectedKeys().clear();
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Lost replication connection to {}: {}", address, e.getMessage());
+                failed();
+            }
+        }
+
+        /**
+         * Dials the peer and answers its challenge in blocking mode, then switches the connection to
+         * non-blocking mode so that writes can time out.
+         */
+        private void connect() throws IOException {
+            channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            InetSocketAddress resolved = address.isUnresolved()
+                    ? new InetSocketAddress(address.getHostString(), address.getPort()) : address;
+            channel.socket().connect(resolved, CONNECT_TIMEOUT_MILLIS);
+            handshake();
+            channel.configureBlocking(false);
+            writable = Selector.open();
+            channel.register(writable, SelectionKey.OP_WRITE);
+        }
+
+        private void handshake() throws IOException {
+            channel.socket().setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            byte[] challenge = channel.socket().getInputStream().readNBytes(CHALLENGE_BYTES);
+            if (challenge.length < CHALLENGE_BYTES) {
+                throw new IOException("Connection closed during the replication handshake");
+            }
+            byte[] id = nodeId.getBytes(StandardCharsets.UTF_8);
+            byte[] mac = sign(challenge, id);
+            byte[] handshake = Arrays.copyOf(mac, mac.length + id.length);
+            System.arraycopy(id, 0, handshake, mac.length, id.length);
+            ByteBuffer frame = frame(handshake);
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+
+        private void disconnect() {
+            if (writable != null) {
+                try {
+                    writable.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close replication write selector for {}", address, e);
+                }
+                writable = null;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close replication connection to {}", address, e);
+                }
+                channel = null;
+            }
+        }
+
+        private void failed() {
+            disconnect();
+            retryAt = System.nanoTime() + RECONNECT_DELAY_NANOS;
+        }
+    }
+}
@@ -14,9 +14,17 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Authenticates requests carrying a valid JWT as an {@code Authorization: Bearer} header.
+ * Event stream requests may pass it as an {@code access_token} query parameter instead, since
+ * browsers' EventSource cannot set headers; query strings can end up in access logs, so clients
+ * that can send the header should.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    static final String ACCESS_TOKEN_PARAMETER = "access_token";
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -26,27 +34,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String username;
-
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
+        final String token = token(request);
 
-        jwt = authHeader.substring(7);
-        try {
-            username = jwtUtil.extractUsername(jwt);
-        } catch (Exception e) {
-            // Invalid token, continue without authentication
+        if (token == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            if (jwtUtil.validateToken(jwt, username)) {
-                UserDetails userDetails = userService.loadUserByUsername(username);
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // One cached verification per request; invalid tokens simply continue unauthenticated
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
+            if (verified != null) {
+                UserDetails userDetails = userService.loadUserByUsername(verified.username());
                 if (userDetails != null) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
@@ -57,4 +56,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private static String token(HttpServletRequest request) {
+        final String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        if ("GET".equals(request.getMethod()) && request.getRequestURI().endsWith("/stream")) {
+            return request.getParameter(ACCESS_TOKEN_PARAMETER);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses bursts of updates to configured namespaces into one broadcast of the latest state.
+ * The first update to a conflated namespace opens a window of the namespace's interval; updates
+ * inside the window replace one another, and when it closes only the newest is sent to
+ * {@code /topic/state/{namespace}}. Each conflated namespace is therefore broadcast at most once
+ * per interval, however fast it is written, and subscribers that only render the latest value
+ * are not sent the states in between.
+ * <p>
+ * Namespaces are opted in with {@code mvp.broadcast.conflation.namespaces}, a comma-separated list
+ * of names or {@code prefix*} patterns, each optionally followed by {@code :interval-ms}; others use
+ * {@code mvp.broadcast.conflation.interval-ms}. All other namespaces are broadcast on every update.
+ */
+@Service
+public class ConflatingBroadcaster implements DisposableBean {
+
+    private final StateBroadcaster stateBroadcaster;
+    private final Map<String, Long> exactIntervals = new HashMap<>();
+    private final List<Map.Entry<String, Long>> prefixIntervals = new ArrayList<>();
+    private final ConcurrentHashMap<String, MessageDto> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param messagingTemplate sends broadcasts to the broker, none of them delta-encoded
+     * @param namespaces the conflated namespaces, e.g. {@code prices,ticker-*:250}
+     * @param intervalMillis the window for namespaces listed without their own
+     */
+    public ConflatingBroadcaster(SimpMessageSendingOperations messagingTemplate, String namespaces, long intervalMillis) {
+        this(new StateBroadcaster(messagingTemplate, "", 0), namespaces, intervalMillis);
+    }
+
+    /**
+     * @param stateBroadcaster sends each window's latest state, delta-encoded if its namespace is
+     * @param namespaces the conflated namespaces, e.g. {@code prices,ticker-*:250}
+     * @param intervalMillis the window for namespaces listed without their own
+     */
+    @Autowired
+    public ConflatingBroadcaster(StateBroadcaster stateBroadcaster,
+                                 @Value("${mvp.broadcast.conflation.namespaces:}") String namespaces,
+                                 @Value("${mvp.broadcast.conflation.interval-ms:100}") long intervalMillis) {
+        this.stateBroadcaster = stateBroadcaster;
+        for (String entry : namespaces.split(",")) {
+            if (!entry.isBlank()) {
+                addRule(entry.trim(), intervalMillis);
+            }
+        }
+        this.scheduler = exactIntervals.isEmpty() && prefixIntervals.isEmpty() ? null
+                : Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "broadcast-conflation");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Takes over the broadcast of an update if its namespace is conflated.
+     * @param namespace the namespace updated
+     * @param message the processed update
+     * @return true if the update will be broadcast at the end of the current window,
+     *         false if the namespace is not conflated and the caller should broadcast it now
+     */
+    public boolean conflate(String namespace, MessageDto message) {
+        long interval = intervalMillis(namespace);
+        if (interval <= 0) {
+            return false;
+        }
+        pending.compute(namespace, (ns, previous) -> {
+            if (previous == null) {
+                // First update of a new window; later ones in the window only replace the pending state
+                scheduler.schedule(() -> flush(namespace), interval, TimeUnit.MILLISECONDS);
+                return message;
+            }
+            return newer(previous, message);
+        });
+        return true;
+    }
+
+    /**
+     * @param namespace the namespace identifier
+     * @return the conflation window of the namespace in milliseconds, or 0 if it is not conflated
+     */
+    public long intervalMillis(String namespace) {
+        Long interval = exactIntervals.get(namespace);
+        if (interval != null) {
+            return interval;
+        }
+        for (Map.Entry<String, Long> prefix : prefixIntervals) {
+            if (namespace.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of namespaces with a window open
+     */
+    public int pendingNamespaces() {
+        return pending.size();
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void flush(String namespace) {
+        // Removing the entry closes the window, so idle namespaces leave nothing behind
+        MessageDto message = pending.remove(namespace);
+        if (message != null) {
+            stateBroadcaster.broadcast(namespace, message);
+        }
+    }
+
+    private void addRule(String entry, long defaultInterval) {
+        int colon = entry.lastIndexOf(':');
+        String pattern = colon < 0 ? entry : entry.substring(0, colon).trim();
+        long interval;
+        try {
+            interval = colon < 0 ? defaultInterval : Long.parseLong(entry.substring(colon + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed conflation interval in: " + entry, e);
+        }
+        if (interval <= 0 || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Conflation needs a namespace and a positive interval: " + entry);
+        }
+        if (pattern.endsWith("*")) {
+            prefixIntervals.add(Map.entry(pattern.substring(0, pattern.length() - 1), interval));
+        } else {
+            exactIntervals.put(pattern, interval);
+        }
+    }
+
+    /**
+     * Keeps the higher version when writers race, so a window never ends on an older state.
+     */
+    private static MessageDto newer(MessageDto current, MessageDto incoming) {
+        if (current instanceof VersionedMessageDto a && incoming instanceof VersionedMessageDto b) {
+            return b.getVersion() >= a.getVersion() ? incoming : current;
+        }
+        return incoming;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.services;
+
+import com.example.codec.EncodedState;
+import com.example.codec.WireFormat;
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Keeps the last state read from each namespace as an {@link EncodedState}, so repeated reads of an
+ * unchanged state write stored bytes instead of serializing it again. An entry is reused while its
+ * version is current and replaced on the first read after a write, so each format is encoded at most
+ * once per write. Entries are weighed by an estimate of their content and encodings and evicted beyond
+ * {@code mvp.state.encoded-cache.max-bytes}; 0 disables the cache and every read goes to the service.
+ */
+@Service
+public class EncodedStateCache {
+
+    // Entry, state and encoding objects; every encoding is counted at the content's length
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final SystemStateService stateService;
+    private final Cache<String, EncodedState> cache;
+    private final Map<WireFormat, ObjectWriter> writers = new EnumMap<>(WireFormat.class);
+
+    @Autowired
+    public EncodedStateCache(SystemStateService stateService, ObjectMapper objectMapper,
+                             @Value("${mvp.state.encoded-cache.max-bytes:67108864}") long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Encoded state cache size must not be negative");
+        }
+        this.stateService = stateService;
+        this.cache = maxBytes == 0 ? null : Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .maximumWeight(maxBytes)
+                .weigher((String namespace, EncodedState state) -> weigh(state))
+                .build();
+        for (WireFormat format : WireFormat.values()) {
+            writers.put(format, format.mapper(objectMapper).writerFor(VersionedMessageDto.class));
+        }
+    }
+
+    /**
+     * Reads a namespace's state as a response body or message payload, which the message converters
+     * write from its stored encoding when it is an {@link EncodedState}.
+     * @param namespace the namespace identifier
+     * @return the namespace's state, as an {@link EncodedState} once it has been written to;
+     *         the default state of a namespace never written to is returned as the {@link MessageDto}
+     *         the service builds
+     */
+    public Object getBody(String namespace) {
+        if (cache == null) {
+            return stateService.getState(namespace);
+        }
+        EncodedState cached = cache.getIfPresent(namespace);
+        // Equal, not at least: an evicted namespace reads as its default state at version 0
+        if (cached != null && cached.getVersion() == stateService.getVersion(namespace)) {
+            return cached;
+        }
+        MessageDto state = stateService.getState(namespace);
+        if (!(state instanceof VersionedMessageDto versioned)) {
+            return state;
+        }
+        EncodedState encoded = new EncodedState(versioned, this::encode);
+        // Racing reads may find different versions; keep the newest
+        return cache.asMap().merge(namespace, encoded, (current, read) -> read.getVersion() > current.getVersion() ? read : current);
+    }
+
+    /**
+     * @return the number of namespaces whose state is cached
+     */
+    public long size() {
+        return cache == null ? 0 : cache.estimatedSize();
+    }
+
+    private byte[] encode(VersionedMessageDto state, WireFormat format) {
+        try {
+            return writers.get(format).writeValueAsBytes(state);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int weigh(EncodedState state) {
+        String content = state.getContent();
+        long length = content == null ? 0 : content.length();
+        return (int) Math.min(ENTRY_OVERHEAD + (2L + WireFormat.values().length) * length, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends namespace states to {@code /topic/state/{namespace}}. Namespaces listed in
+ * {@code mvp.broadcast.delta.namespaces} (names or {@code prefix*} patterns) are delta-encoded:
+ * each new subscriber is first sent the namespace's full state, and every broadcast after that is a
+ * {@link com.example.dto.StateDeltaDto} against the previous one, so a change to one field of a
+ * large state costs about the size of that field. Clients that detect a gap in the version chain
+ * resynchronize through {@code /app/state/{namespace}/request}.
+ * All other namespaces are broadcast in full, as before.
+ */
+@Service
+public class StateBroadcaster {
+
+    private static final String STATE_TOPIC = "/topic/state/";
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final StateDeltaEncoder encoder;
+    private final Set<String> exactNamespaces = new HashSet<>();
+    private final List<String> prefixes = new ArrayList<>();
+
+    @Autowired
+    private SystemStateService stateService;
+
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    @Autowired
+    @Qualifier("brokerMessageConverter")
+    private MessageConverter brokerMessageConverter;
+
+    private volatile SimpMessagingTemplate subscriberTemplate;
+
+    /**
+     * @param messagingTemplate sends broadcasts to the broker
+     * @param namespaces the delta-encoded namespaces, e.g. {@code documents,board-*}
+     * @param minContentLength states shorter than this are broadcast in full even in delta namespaces
+     */
+    @Autowired
+    public StateBroadcaster(SimpMessageSendingOperations messagingTemplate,
+                            @Value("${mvp.broadcast.delta.namespaces:}") String namespaces,
+                            @Value("${mvp.broadcast.delta.min-content-length:512}") int minContentLength) {
+        this.messagingTemplate = messagingTemplate;
+        this.encoder = new StateDeltaEncoder(minContentLength);
+        for (String entry : namespaces.split(",")) {
+            String pattern = entry.trim();
+            if (pattern.endsWith("*")) {
+                prefixes.add(pattern.substring(0, pattern.length() - 1));
+            } else if (!pattern.isEmpty()) {
+                exactNamespaces.add(pattern);
+            }
+        }
+    }
+
+    @PostConstruct
+    void subscribe() {
+        stateService.addStateListener(new StateListener() {
+            @Override
+            public void stateChanged(VersionedMessageDto state) {
+                // Writers broadcast their own states; only discards matter here
+            }
+
+            @Override
+            public void namespaceDiscarded(String namespace) {
+                // An evicted namespace must not be resynchronized from, or diffed against, its old state
+                encoder.forget(namespace);
+            }
+        });
+    }
+
+    /**
+     * @param namespace the namespace identifier
+     * @return whether broadcasts to the namespace are delta-encoded
+     */
+    public boolean isDeltaEncoded(String namespace) {
+        if (exactNamespaces.contains(namespace)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (namespace.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Broadcasts a state to every subscriber of its namespace, as a delta if the namespace is
+     * delta-encoded. A state older than one already broadcast is skipped in that case.
+     * @param namespace the namespace identifier
+     * @param state the state to broadcast
+     */
+    public void broadcast(String namespace, MessageDto state) {
+        if (isDeltaEncoded(namespace)) {
+            encoder.encode(namespace, state, frame -> messagingTemplate.convertAndSend(STATE_TOPIC + namespace, frame));
+        } else {
+            messagingTemplate.convertAndSend(STATE_TOPIC + namespace, state);
+        }
+    }
+
+    /**
+     * @param namespace the namespace identifier
+     * @return the full state a client should resynchronize from: the last state delta-encoded for
+     *         the namespace, so the next delta applies to it, or else the current state
+     */
+    public MessageDto snapshot(String namespace) {
+        MessageDto last = encoder.lastEncoded(namespace);
+        return last != null ? last : stateService.getState(namespace);
+    }
+
+    /**
+     * Sends a new subscriber of a delta-encoded namespace its full state, to that session only,
+     * so the deltas that follow have something to apply to.
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = subscribe.getDestination();
+        if (destination == null || !destination.startsWith(STATE_TOPIC)) {
+            return;
+        }
+        String namespace = destination.substring(STATE_TOPIC.length());
+        if (!isDeltaEncoded(namespace)) {
+            return;
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(subscribe.getSessionId());
+        headers.setSubscriptionId(subscribe.getSubscriptionId());
+        headers.setLeaveMutable(true);
+        subscriberTemplate().convertAndSend(destination, snapshot(namespace), headers.getMessageHeaders());
+    }
+
+    private SimpMessagingTemplate subscriberTemplate() {
+        SimpMessagingTemplate template = subscriberTemplate;
+        if (template == null) {
+            template = new SimpMessagingTemplate(clientOutboundChannel);
+            template.setMessageConverter(brokerMessageConverter);
+            subscriberTemplate = template;
+        }
+        return template;
+    }
+}
@@ -0,0 +1,568 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-sent event streams of namespace state.
+ * Each stream follows one or more namespaces and is sent an event named {@code state} with the
+ * namespace's state as JSON every time it changes. Streams hold no thread while idle: the servlet
+ * request is async, a few dispatcher threads, each owning a share of the streams, queue each change
+ * on the streams following its namespace, and a pool of writer threads writes the queued events.
+ * A state is serialized once however many streams follow its namespace.
+ * <p>
+ * A stream queues at most one live state per namespace: a change to a namespace whose previous
+ * state is still queued replaces it, so a slow client skips to the latest state instead of
+ * building a backlog. One writer flushes a stream at a time, and the other threads queue and
+ * return. A write blocked for longer than the send-time limit closes the stream, as does a change
+ * its dispatcher has no room to queue, so a stalled client holds neither a dispatcher nor the
+ * streams it shares one with.
+ * <p>
+ * Every event id lists the last version sent for each namespace of the stream, e.g.
+ * {@code k3x9a:orders=12,prices=40}, so a client reconnecting with it as {@code Last-Event-ID} resumes
+ * each namespace where it left off: versions still retained are replayed, then the current state
+ * is sent if it is newer. Without one, a stream starts with each namespace's current state.
+ * Ids are scoped to this server instance, as ETags are, since in-memory versions restart from zero;
+ * an id from another instance starts the stream afresh.
+ * A stream is only sent versions newer than the last one it queued for the namespace, so racing
+ * writers may skip a version but never move a client backwards.
+ */
+@Service
+public class StateEventStreams implements DisposableBean {
+
+    /**
+     * The most namespaces one stream may follow, which also bounds the size of its event ids.
+     */
+    public static final int MAX_NAMESPACES_PER_STREAM = 64;
+
+    /**
+     * The most retained versions replayed, across all its namespaces, when a stream resumes.
+     */
+    static final int REPLAY_LIMIT = 256;
+
+    private static final String EVENT_NAME = "state";
+
+    private static final Logger log = LoggerFactory.getLogger(StateEventStreams.class);
+
+    private final SystemStateService stateService;
+    private final ObjectMapper objectMapper;
+    private final int maxStreams;
+    private final long sendTimeLimitMillis;
+    private final ShardedExecutor dispatcher;
+    private final ThreadPoolExecutor writers;
+    // Per dispatcher shard
+    private final List<ConcurrentMap<String, Set<Stream>>> subscribers = new ArrayList<>();
+    private final List<Set<Stream>> streams = new ArrayList<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong nextId = new AtomicLong();
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * @param stateService the state service whose changes are streamed
+     * @param objectMapper serializes states as event data
+     * @param dispatchThreads the number of threads queueing changes on streams
+     * @param dispatchQueueCapacity the most changes and heartbeats queued on one dispatcher thread
+     * @param writeThreads the number of threads writing queued events
+     * @param sendTimeLimitMillis the longest a single write may block before its stream is closed
+     * @param maxStreams the most streams open at once; further ones are refused
+     */
+    @Autowired
+    public StateEventStreams(SystemStateService stateService,
+                             ObjectMapper objectMapper,
+                             @Value("${mvp.sse.dispatch-threads:2}") int dispatchThreads,
+                             @Value("${mvp.sse.dispatch-queue-capacity:10000}") int dispatchQueueCapacity,
+                             @Value("${mvp.sse.write-threads:8}") int writeThreads,
+                             @Value("${mvp.sse.send-time-limit-ms:10000}") long sendTimeLimitMillis,
+                             @Value("${mvp.sse.max-streams:50000}") int maxStreams) {
+        if (sendTimeLimitMillis < 1) {
+            throw new IllegalArgumentException("mvp.sse.send-time-limit-ms must be at least 1, got " + sendTimeLimitMillis);
+        }
+        this.stateService = stateService;
+        this.objectMapper = objectMapper;
+        this.maxStreams = maxStreams;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.dispatcher = new ShardedExecutor(dispatchThreads, "sse-dispatch-", dispatchQueueCapacity);
+        // A stream has at most one flush queued, so the queue never holds more than the open streams
+        AtomicInteger writerCount = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(writeThreads, writeThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxStreams)), runnable -> {
+                    Thread writer = new Thread(runnable, "sse-writer-" + writerCount.getAndIncrement());
+                    writer.setDaemon(true);
+                    return writer;
+                });
+        for (int i = 0; i < dispatchThreads; i++) {
+            subscribers.add(new ConcurrentHashMap<>());
+            streams.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @PostConstruct
+    void subscribe() {
+        if (!stateService.addStateListener(this::publish)) {
+            log.warn("{} does not report state changes; event streams will only carry the state at connection time",
+                    stateService.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Opens a stream of the given namespaces' states.
+     * @param namespaces the namespaces to follow, in the order their initial states are sent
+     * @param lastEventId the id of the last event a reconnecting client received, or null
+     * @return the stream, or null if the maximum number of streams is already open
+     * @throws IllegalArgumentException if a namespace is blank, there are too many, or the event id is malformed
+     */
+    public SseEmitter open(List<String> namespaces, String lastEventId) {
+        Set<String> followed = new LinkedHashSet<>();
+        for (String namespace : namespaces) {
+            if (namespace == null || namespace.isBlank()) {
+                throw new IllegalArgumentException("Streamed namespaces must not be blank");
+            }
+            followed.add(namespace);
+        }
+        if (followed.isEmpty() || followed.size() > MAX_NAMESPACES_PER_STREAM) {
+            throw new IllegalArgumentException("A stream follows between 1 and " + MAX_NAMESPACES_PER_STREAM + " namespaces");
+        }
+        Map<String, Long> resumeFrom = parseEventId(lastEventId);
+        if (openStreams.incrementAndGet() > maxStreams) {
+            openStreams.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = newEmitter();
+        long id = nextId.getAndIncrement();
+        Stream stream = new Stream((int) (id % dispatcher.shardCount()), emitter, List.copyOf(followed));
+        for (String namespace : followed) {
+            Long version = resumeFrom.get(namespace);
+            if (version != null) {
+                stream.lastSent.put(namespace, version);
+                stream.lastQueued.put(namespace, version);
+            }
+        }
+        emitter.onCompletion(() -> close(stream));
+        emitter.onTimeout(() -> {
+            // Only on server shutdown, as streams have no timeout; ends the response quietly
+            close(stream);
+            emitter.complete();
+        });
+        emitter.onError(e -> close(stream));
+        start(stream);
+        return emitter;
+    }
+
+    /**
+     * @return a response with no timeout: idle streams stay open until the client leaves
+     */
+    SseEmitter newEmitter() {
+        return new SseEmitter(0L);
+    }
+
+    /**
+     * @return the number of streams currently open
+     */
+    public int openStreams() {
+        return openStreams.get();
+    }
+
+    /**
+     * @return the number of streams closed because a write stalled or their dispatcher was full
+     */
+    public long overflowedStreams() {
+        return overflowed.get();
+    }
+
+    /**
+     * Queues a state on every stream following its namespace. Called by the state service once the
+     * state is stored; the dispatcher threads queue it and the writer threads write it.
+     * @param state the new state of its namespace
+     */
+    void publish(VersionedMessageDto state) {
+        String namespace = state.getNamespace();
+        String data = null;
+        for (int shard = 0; shard < subscribers.size(); shard++) {
+            Map<String, Set<Stream>> shardSubscribers = subscribers.get(shard);
+            if (!shardSubscribers.containsKey(namespace)) {
+                continue;
+            }
+            if (data == null) {
+                data = toJson(state);
+            }
+            String json = data;
+            try {
+                dispatcher.execute(shard, () -> {
+                    Set<Stream> followers = shardSubscribers.get(namespace);
+                    if (followers != null) {
+                        for (Stream stream : followers) {
+                            offer(stream, namespace, state.getVersion(), json, true);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // These streams would silently miss the state; closing them makes their clients resume
+                Set<Stream> followers = shardSubscribers.get(namespace);
+                if (followers != null) {
+                    for (Stream stream : followers) {
+                        overflow(stream, "its dispatcher queue is full");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a comment on every open stream, so proxies keep idle connections open and streams
+     * whose client has gone are found and closed, and closes streams whose write has stalled.
+     */
+    @Scheduled(fixedRateString = "${mvp.sse.heartbeat-ms:15000}", initialDelayString = "${mvp.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (int shard = 0; shard < streams.size(); shard++) {
+            Set<Stream> shardStreams = streams.get(shard);
+            try {
+                dispatcher.execute(shard, () -> {
+                    for (Stream stream : shardStreams) {
+                        if (!stalled(stream)) {
+                            offerHeartbeat(stream);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The dispatcher is busy with changes, which keep its streams alive anyway
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.close();
+        writers.shutdownNow();
+        for (Set<Stream> shardStreams : streams) {
+            for (Stream stream : shardStreams) {
+                stream.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Registers the stream before reading state, so a change stored meanwhile is either read here
+     * or published to the stream afterwards.
+     */
+    private void start(Stream stream) {
+        streams.get(stream.shard).add(stream);
+        Map<String, Set<Stream>> shardSubscribers = subscribers.get(stream.shard);
+        for (String namespace : stream.namespaces) {
+            shardSubscribers.compute(namespace, (ns, followers) -> {
+                Set<Stream> updated = followers == null ? ConcurrentHashMap.newKeySet() : followers;
+                updated.add(stream);
+                return updated;
+            });
+        }
+        try {
+            int replayed = 0;
+            for (String namespace : stream.namespaces) {
+                Long since = stream.lastSent.get(namespace);
+                if (since != null && replayed < REPLAY_LIMIT) {
+                    for (VersionedMessageDto version : stateService.getHistory(namespace, since, REPLAY_LIMIT - replayed)) {
+                        offer(stream, namespace, version.getVersion(), toJson(version), false);
+                        replayed++;
+                    }
+                }
+                MessageDto current = stateService.getState(namespace);
+                long version = current instanceof VersionedMessageDto versioned ? versioned.getVersion() : -1;
+                offer(stream, namespace, version, toJson(current), true);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to start event stream for {}", stream.namespaces, e);
+            stream.emitter.completeWithError(e);
+            close(stream);
+        }
+    }
+
+    /**
+     * Queues a state on the stream, replacing a live state of the namespace still queued, and
+     * schedules a flush unless one is already due.
+     * @param live whether later states of the namespace may replace it; false for replayed versions
+     */
+    private void offer(Stream stream, String namespace, long version, String json, boolean live) {
+        if (stalled(stream)) {
+            return;
+        }
+        stream.queueLock.lock();
+        try {
+            Long lastQueued = stream.lastQueued.get(namespace);
+            if (stream.closed.get() || lastQueued != null && version <= lastQueued) {
+                return;
+            }
+            stream.lastQueued.put(namespace, version);
+            Event queued = live ? stream.queuedLive.get(namespace) : null;
+            if (queued != null) {
+                queued.version = version;
+                queued.json = json;
+                return;
+            }
+            Event event = new Event(namespace, version, json, live);
+            stream.queue.add(event);
+            if (live) {
+                stream.queuedLive.put(namespace, event);
+            }
+            if (stream.flushing) {
+                return;
+            }
+            stream.flushing = true;
+        } finally {
+            stream.queueLock.unlock();
+        }
+        scheduleFlush(stream);
+    }
+
+    private void offerHeartbeat(Stream stream) {
+        stream.queueLock.lock();
+        try {
+            if (stream.closed.get() || stream.flushing) {
+                // Queued events keep the connection alive just as well
+                return;
+            }
+            stream.heartbeatDue = true;
+            stream.flushing = true;
+        } finally {
+            stream.queueLock.unlock();
+        }
+        scheduleFlush(stream);
+    }
+
+    private void scheduleFlush(Stream stream) {
+        try {
+            writers.execute(() -> flush(stream));
+        } catch (RejectedExecutionException e) {
+            overflow(stream, "the writers are stopped");
+        }
+    }
+
+    /**
+     * Writes the stream's queued events on a writer thread until none are left. Only one flush of a
+     * stream is scheduled at a time, so its events are written in order.
+     */
+    private void flush(Stream stream) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            stream.queueLock.lock();
+            try {
+                Event next = stream.queue.poll();
+                if (stream.closed.get() || next == null && !stream.heartbeatDue) {
+                    stream.flushing = false;
+                    stream.queue.clear();
+                    stream.queuedLive.clear();
+                    break;
+                }
+                if (next == null) {
+                    stream.heartbeatDue = false;
+                    event = SseEmitter.event().comment("");
+                } else {
+                    stream.heartbeatDue = false;
+                    if (next.live) {
+                        stream.queuedLive.remove(next.namespace);
+                    }
+                    stream.lastSent.put(next.namespace, next.version);
+                    event = SseEmitter.event().name(EVENT_NAME).id(stream.eventId()).data(next.json);
+                }
+            } finally {
+                stream.queueLock.unlock();
+            }
+            stream.sendStartTime = System.currentTimeMillis();
+            try {
+                stream.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // The client has gone, or the stream completed meanwhile
+                stream.emitter.completeWithError(e);
+                close(stream);
+            } finally {
+                stream.sendStartTime = 0;
+            }
+        }
+        String reason = stream.overflowReason;
+        if (reason != null && stream.ended.compareAndSet(false, true)) {
+            // Ended here rather than where the overflow was found, as ending waits for a blocked write
+            stream.emitter.completeWithError(new IOException("Event stream closed: " + reason));
+        }
+    }
+
+    /**
+     * Closes the stream if a write to it has been blocked for longer than the send-time limit.
+     * @return whether the stream is closed for stalling
+     */
+    private boolean stalled(Stream stream) {
+        long start = stream.sendStartTime;
+        if (start == 0 || System.currentTimeMillis() - start <= sendTimeLimitMillis) {
+            return false;
+        }
+        overflow(stream, "a write blocked for more than " + sendTimeLimitMillis + " ms");
+        return true;
+    }
+
+    /**
+     * Closes a stream that cannot keep up without waiting on it: the response is ended by the
+     * stream's writer, after the write it may be blocked on returns.
+     */
+    private void overflow(Stream stream, String reason) {
+        if (!close(stream)) {
+            return;
+        }
+        overflowed.incrementAndGet();
+        log.warn("Closed event stream for {}: {}", stream.namespaces, reason);
+        stream.overflowReason = reason;
+        stream.queueLock.lock();
+        try {
+            if (stream.flushing) {
+                return;
+            }
+            stream.flushing = true;
+        } finally {
+            stream.queueLock.unlock();
+        }
+        try {
+            writers.execute(() -> flush(stream));
+        } catch (RejectedExecutionException e) {
+            // Writers already stopped on shutdown, which ends every response
+        }
+    }
+
+    /**
+     * @return whether this call closed the stream
+     */
+    private boolean close(Stream stream) {
+        if (!stream.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        openStreams.decrementAndGet();
+        streams.get(stream.shard).remove(stream);
+        Map<String, Set<Stream>> shardSubscribers = subscribers.get(stream.shard);
+        for (String namespace : stream.namespaces) {
+            shardSubscribers.computeIfPresent(namespace, (ns, followers) -> {
+                followers.remove(stream);
+                return followers.isEmpty() ? null : followers;
+            });
+        }
+        return true;
+    }
+
+    private String toJson(MessageDto state) {
+        try {
+            return objectMapper.writeValueAsString(state);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize state of " + state.getNamespace(), e);
+        }
+    }
+
+    /**
+     * Parses an event id written by {@link Stream#eventId()}.
+     * @return the version last received per namespace, empty if the id is absent or from another instance
+     */
+    Map<String, Long> parseEventId(String lastEventId) {
+        Map<String, Long> versions = new HashMap<>();
+        if (lastEventId == null || !lastEventId.startsWith(instance + ":")) {
+            return versions;
+        }
+        String entries = lastEventId.substring(instance.length() + 1);
+        try {
+            for (String entry : entries.isEmpty() ? new String[0] : entries.split(",")) {
+                int equals = entry.lastIndexOf('=');
+                if (equals <= 0) {
+                    throw new IllegalArgumentException("Malformed Last-Event-ID entry: " + entry);
+                }
+                String namespace = URLDecoder.decode(entry.substring(0, equals), StandardCharsets.UTF_8);
+                versions.put(namespace, Long.parseLong(entry.substring(equals + 1).trim()));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed Last-Event-ID: " + lastEventId, e);
+        }
+        return versions;
+    }
+
+    /**
+     * A queued state; live ones are replaced in place by later states of their namespace.
+     */
+    private static final class Event {
+
+        private final String namespace;
+        private final boolean live;
+        private long version;
+        private String json;
+
+        private Event(String namespace, long version, String json, boolean live) {
+            this.namespace = namespace;
+            this.version = version;
+            this.json = json;
+            this.live = live;
+        }
+    }
+
+    private final class Stream {
+
+        private final int shard;
+        private final SseEmitter emitter;
+        private final List<String> namespaces;
+        // A ReentrantLock rather than a monitor, so a virtual thread queueing an event does not pin its carrier
+        private final ReentrantLock queueLock = new ReentrantLock();
+        // Guarded by queueLock
+        private final Deque<Event> queue = new ArrayDeque<>();
+        private final Map<String, Event> queuedLive = new HashMap<>();
+        private final Map<String, Long> lastQueued = new HashMap<>();
+        private final Map<String, Long> lastSent = new LinkedHashMap<>();
+        private boolean heartbeatDue;
+        private boolean flushing;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile long sendStartTime;
+        private volatile String overflowReason;
+
+        private Stream(int shard, SseEmitter emitter, List<String> namespaces) {
+            this.shard = shard;
+            this.emitter = emitter;
+            this.namespaces = namespaces;
+        }
+
+        private String eventId() {
+            StringBuilder id = new StringBuilder(instance).append(':');
+            for (Map.Entry<String, Long> sent : lastSent.entrySet()) {
+                if (id.length() > instance.length() + 1) {
+                    id.append(',');
+                }
+                id.append(URLEncoder.encode(sent.getKey(), StandardCharsets.UTF_8)).append('=').append(sent.getValue());
+            }
+            return id.toString();
+        }
+    }
+}
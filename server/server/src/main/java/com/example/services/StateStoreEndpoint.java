@@ -0,0 +1,23 @@
+package com.example.services;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * {@code /actuator/statestore}: the namespaces held in memory, their estimated size against the
+ * memory budget, and how many have been evicted by the budget and by TTL.
+ */
+@Endpoint(id = "statestore")
+public class StateStoreEndpoint {
+
+    private final SystemStateServiceImpl stateService;
+
+    public StateStoreEndpoint(SystemStateServiceImpl stateService) {
+        this.stateService = stateService;
+    }
+
+    @ReadOperation
+    public StateStoreStats stats() {
+        return stateService.getStoreStats();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.storage.OffHeapStateStore;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds on the namespaces SystemStateServiceImpl keeps in memory.
+ * <ul>
+ *   <li>A time to live per namespace: a namespace not written for its TTL is evicted. TTLs are given as a
+ *       comma-separated list of names or {@code prefix*} patterns, each followed by {@code :ttl-ms}, e.g.
+ *       {@code scratch-*:60000,session-*:1800000}; an exact name wins over a pattern, and the first matching
+ *       pattern over later ones. Other namespaces use the default TTL. A TTL of 0 never expires.</li>
+ *   <li>A budget for the estimated bytes retained by all namespaces, their states and version histories
+ *       together; beyond it, the namespaces least likely to be used again are evicted. 0 means no budget.</li>
+ * </ul>
+ * An evicted namespace reads as its default state again.
+ */
+public class StateStoreLimits {
+
+    /**
+     * No TTLs and no budget: namespaces are kept until the process ends.
+     */
+    public static final StateStoreLimits NONE = new StateStoreLimits(0, "", 0);
+
+    // Upper-bound estimates for a 64-bit JVM with compressed references
+    private static final int STRING_OVERHEAD = 40;
+    private static final int ENTRY_OVERHEAD = 256; // Store node, state object, history object and its arrays
+    private static final int HISTORY_SLOT = 12;
+
+    private final long maxBytes;
+    private final long defaultTtlMillis;
+    private final Map<String, Long> exactTtls = new HashMap<>();
+    private final List<Map.Entry<String, Long>> prefixTtls = new ArrayList<>();
+    private final Ticker ticker;
+
+    /**
+     * @param maxBytes the budget for retained state in bytes, or 0 for none
+     * @param ttlNamespaces the namespaces with their own TTL, e.g. {@code scratch-*:60000}
+     * @param defaultTtlMillis the TTL of all other namespaces, or 0 for none
+     */
+    public StateStoreLimits(long maxBytes, String ttlNamespaces, long defaultTtlMillis) {
+        this(maxBytes, ttlNamespaces, defaultTtlMillis, Ticker.systemTicker());
+    }
+
+    StateStoreLimits(long maxBytes, String ttlNamespaces, long defaultTtlMillis, Ticker ticker) {
+        if (maxBytes < 0 || defaultTtlMillis < 0) {
+            throw new IllegalArgumentException("State budget and TTL must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.ticker = ticker;
+        for (String entry : ttlNamespaces.split(",")) {
+            if (!entry.isBlank()) {
+                addRule(entry.trim());
+            }
+        }
+    }
+
+    /**
+     * @return the budget for retained state in bytes, or 0 for none
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return true if any namespace can expire
+     */
+    public boolean hasTtls() {
+        return defaultTtlMillis > 0 || exactTtls.values().stream().anyMatch(ttl -> ttl > 0)
+                || prefixTtls.stream().anyMatch(rule -> rule.getValue() > 0);
+    }
+
+    /**
+     * @return true if namespaces can be evicted at all
+     */
+    public boolean isBounded() {
+        return maxBytes > 0 || hasTtls();
+    }
+
+    /**
+     * @param namespace the namespace identifier
+     * @return the namespace's TTL in milliseconds, or 0 if it never expires
+     */
+    public long ttlMillis(String namespace) {
+        Long ttl = exactTtls.get(namespace);
+        if (ttl != null) {
+            return ttl;
+        }
+        for (Map.Entry<String, Long> prefix : prefixTtls) {
+            if (namespace.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        return defaultTtlMillis;
+    }
+
+    Ticker ticker() {
+        return ticker;
+    }
+
+    /**
+     * Estimates the heap a namespace retains: its stored state, the key, and the history of recent
+     * versions, taking every retained version to be the size of the latest one. Characters are counted
+     * at two bytes, so the estimate errs high for Latin-1 content.
+     * @param namespace the namespace identifier
+     * @param state the stored state, a {@link MessageDto} or an {@link OffHeapStateStore.Handle}
+     * @param retainedVersions the number of versions the history holds
+     * @param historyCapacity the number of versions the history can hold
+     * @return the estimate in bytes, at most {@link Integer#MAX_VALUE}
+     */
+    static int estimateBytes(String namespace, Object state, int retainedVersions, int historyCapacity) {
+        // Off-heap content has a budget of its own
+        String content = state instanceof MessageDto message ? message.getContent() : null;
+        long contentBytes = STRING_OVERHEAD + 2L * (content == null ? 0 : content.length());
+        // The history shares the latest content with the state
+        long bytes = ENTRY_OVERHEAD + STRING_OVERHEAD + 2L * namespace.length()
+                + (long) HISTORY_SLOT * historyCapacity + Math.max(1, retainedVersions) * contentBytes;
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private void addRule(String entry) {
+        int colon = entry.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("TTL entry needs a namespace and :ttl-ms: " + entry);
+        }
+        String pattern = entry.substring(0, colon).trim();
+        long ttl;
+        try {
+            ttl = Long.parseLong(entry.substring(colon + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed TTL in: " + entry, e);
+        }
+        if (ttl < 0 || pattern.isEmpty()) {
+            throw new IllegalArgumentException("TTL entry needs a namespace and a TTL of 0 or more: " + entry);
+        }
+        if (pattern.endsWith("*")) {
+            prefixTtls.add(Map.entry(pattern.substring(0, pattern.length() - 1), ttl));
+        } else {
+            exactTtls.put(pattern, ttl);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.services;
+
+/**
+ * Size and eviction counts of SystemStateServiceImpl's in-memory state.
+ * @param namespaces the namespaces currently stored
+ * @param estimatedBytes the estimated bytes they retain, or -1 without a memory budget
+ * @param maxBytes the memory budget, or 0 for none
+ * @param sizeEvictions namespaces evicted to stay within the budget
+ * @param expirations namespaces evicted when their TTL ran out
+ * @param offHeapContents the states whose content is held off heap
+ * @param offHeapBytes the direct memory those contents occupy
+ * @param offHeapReservedBytes the direct memory reserved, used or free
+ * @param offHeapFallbacks the states kept on heap because the off-heap store was full
+ */
+public record StateStoreStats(long namespaces, long estimatedBytes, long maxBytes, long sizeEvictions, long expirations,
+                              long offHeapContents, long offHeapBytes, long offHeapReservedBytes, long offHeapFallbacks) {
+}
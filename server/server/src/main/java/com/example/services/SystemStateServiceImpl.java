@@ -1,26 +1,484 @@
 package com.example.services;
 
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.replication.ReplicatedWrite;
+import com.example.replication.StateReplicator;
+import com.example.storage.MessageDtoCodec;
+import com.example.storage.OffHeapStateStore;
+import com.example.storage.SnapshotStore;
+import com.example.storage.WriteAheadLog;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Implementation of SystemStateService using in-memory persistence.
  * Extends AbstractSystemStateService for customizable processing.
+ * When a WriteAheadLog is configured, every stored message is appended to it
+ * and the log is replayed on startup to rebuild the state store. With a SnapshotStore
+ * as well, recovery loads the newest snapshot and replays only the log tail after it.
+ * Reads never lock: every write publishes a new VersionedMessageDto to a concurrent map.
+ * A MessagePipeline bean, if one is defined, replaces the default message processing.
+ * With {@link StateStoreLimits} set, the map is a Caffeine cache that evicts namespaces whose TTL has run
+ * out and, beyond the memory budget, those its W-TinyLFU policy judges least likely to be used again.
+ * An evicted namespace loses its history and reads as its default state; in persistent mode the eviction
+ * is logged as a tombstone, so recovery does not bring it back, and the next snapshot leaves it out.
+ * With an {@link OffHeapStateStore}, large contents are kept in direct memory and the map holds a handle
+ * to them. Version checks, weighing and snapshots use the handle as is; the content is decoded into a
+ * DTO only when {@link #getState} hands it out.
+ * With a {@link StateReplicator}, every stored write is stamped and sent to the other nodes, and their
+ * writes are stored here unless the namespace holds a later one.
  */
 @Service
 public class SystemStateServiceImpl extends AbstractSystemStateService {
 
-    private final ConcurrentHashMap<String, MessageDto> stateStore = new ConcurrentHashMap<>();
+    // Each namespace's VersionedMessageDto, or its OffHeapStateStore.Handle if the content is held off heap
+    private final ConcurrentMap<String, Object> stateStore;
+
+    // The cache behind stateStore when limits are set, for its policy and maintenance
+    private final Cache<String, Object> boundedStore;
+
+    private final StateStoreLimits limits;
+
+    private final LongAdder sizeEvictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final OffHeapStateStore offHeap;
+
+    private final WriteAheadLog writeAheadLog;
+
+    private final SnapshotStore snapshotStore;
+
+    // Writers share the read side; a snapshot takes the write side only long enough to read the log position
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    private volatile long lastSnapshotSequence;
+
+    private volatile StateReplicator replicator;
+
+    public SystemStateServiceImpl() {
+        this((WriteAheadLog) null, null);
+    }
+
+    public SystemStateServiceImpl(StateStoreLimits limits) {
+        this(null, null, limits);
+    }
+
+    @Autowired
+    public SystemStateServiceImpl(ObjectProvider<WriteAheadLog> writeAheadLog, ObjectProvider<SnapshotStore> snapshotStore,
+                                  ObjectProvider<StateMetrics> metrics, ObjectProvider<ShardedExecutor> shards,
+                                  ObjectProvider<MessagePipeline> pipeline, ObjectProvider<WriteBatcher> batcher,
+                                  ObjectProvider<StateStoreLimits> limits, ObjectProvider<OffHeapStateStore> offHeap) {
+        this(writeAheadLog.getIfAvailable(), snapshotStore.getIfAvailable(), limits.getIfAvailable(() -> StateStoreLimits.NONE),
+                offHeap.getIfAvailable());
+        metrics.ifAvailable(this::setMetrics);
+        shards.ifAvailable(this::setShards);
+        pipeline.ifAvailable(this::setPipeline);
+        batcher.ifAvailable(this::setBatcher);
+    }
+
+    public SystemStateServiceImpl(WriteAheadLog writeAheadLog) {
+        this(writeAheadLog, null);
+    }
+
+    public SystemStateServiceImpl(WriteAheadLog writeAheadLog, SnapshotStore snapshotStore) {
+        this(writeAheadLog, snapshotStore, StateStoreLimits.NONE);
+    }
+
+    public SystemStateServiceImpl(WriteAheadLog writeAheadLog, SnapshotStore snapshotStore, StateStoreLimits limits) {
+        this(writeAheadLog, snapshotStore, limits, null);
+    }
+
+    public SystemStateServiceImpl(WriteAheadLog writeAheadLog, SnapshotStore snapshotStore, StateStoreLimits limits,
+                                  OffHeapStateStore offHeap) {
+        this.limits = limits;
+        this.offHeap = offHeap;
+        this.boundedStore = limits.isBounded() ? buildBoundedStore(limits) : null;
+        this.stateStore = boundedStore != null ? boundedStore.asMap() : new ConcurrentHashMap<>();
+        this.writeAheadLog = writeAheadLog;
+        this.snapshotStore = writeAheadLog != null ? snapshotStore : null;
+        if (this.snapshotStore != null) {
+            lastSnapshotSequence = this.snapshotStore.loadLatest(this::recover);
+        }
+        if (writeAheadLog != null) {
+            if (writeAheadLog.firstSequence() > lastSnapshotSequence + 1) {
+                // Records between the loaded snapshot and the log were truncated; starting would silently drop them
+                throw new IllegalStateException("Write-ahead log starts at sequence " + writeAheadLog.firstSequence()
+                        + " but the newest readable snapshot covers only up to " + lastSnapshotSequence);
+            }
+            writeAheadLog.replay(lastSnapshotSequence, new WriteAheadLog.RecordConsumer() {
+                @Override
+                public void accept(long sequence, VersionedMessageDto message) {
+                    recover(message);
+                }
+
+                @Override
+                public void discard(long sequence, String namespace, long version) {
+                    recoverDiscard(namespace, version);
+                }
+            });
+        }
+    }
 
     @Override
     public MessageDto getState(String namespace) {
-        return stateStore.getOrDefault(namespace, getDefaultState(namespace));
+        StateMetrics.Recorder recorder = getMetrics().recorder(namespace);
+        long start = recorder.start(StateMetrics.Operation.GET_STATE);
+        MessageDto state = current(namespace);
+        if (state == null) {
+            state = getDefaultState(namespace);
+        }
+        if (start != StateMetrics.UNTIMED) {
+            recorder.record(StateMetrics.Operation.GET_STATE, System.nanoTime() - start);
+        }
+        return state;
+    }
+
+    @Override
+    public long getVersion(String namespace) {
+        return version(stateStore.get(namespace));
+    }
+
+    /**
+     * Off-heap mode keeps {@link OffHeapStateStore#historyCapacity()} versions per namespace, since
+     * history holds its content on heap.
+     */
+    @Override
+    protected int getHistoryCapacity() {
+        return offHeap != null ? offHeap.historyCapacity() : super.getHistoryCapacity();
+    }
+
+    /**
+     * Sets the replicator that sends stored writes to other nodes; null, the default, replicates nothing.
+     * The replicator sets itself when created.
+     * @param replicator the replicator to stamp and send writes with
+     */
+    public void setReplicator(StateReplicator replicator) {
+        this.replicator = replicator;
     }
 
     @Override
     protected void storeMessage(String namespace, MessageDto message) {
-        stateStore.put(namespace, message);
+        ReplicatedWrite replicated;
+        if (writeAheadLog == null) {
+            replicated = publish(namespace, message);
+        } else {
+            snapshotLock.readLock().lock();
+            try {
+                // Log before publishing so a visible state is never lost to a crash under ALWAYS
+                writeAheadLog.append(message);
+                replicated = publish(namespace, message);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+        }
+        if (replicated != null) {
+            replicate(List.of(replicated));
+        }
+    }
+
+    /**
+     * Appends a whole batch to the log with one append and one durability wait, then publishes it.
+     */
+    @Override
+    protected void storeMessages(List<VersionedMessageDto> messages) {
+        List<ReplicatedWrite> replicated = new ArrayList<>(replicator == null ? 0 : messages.size());
+        if (writeAheadLog == null) {
+            publishAll(messages, replicated);
+        } else {
+            snapshotLock.readLock().lock();
+            try {
+                writeAheadLog.appendAll(messages);
+                publishAll(messages, replicated);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+        }
+        if (!replicated.isEmpty()) {
+            replicate(replicated);
+        }
+    }
+
+    /**
+     * Stores a write replicated from another node, unless the namespace already holds a later one.
+     * The write is versioned here like a local write and announced to state listeners, but not processed
+     * again. It is published before it is logged: one lost to a crash in between is sent again by
+     * anti-entropy.
+     * @param write the write received
+     * @return the stored message, or null if the namespace holds a later write
+     * @throws IllegalStateException if no replicator is set
+     */
+    public VersionedMessageDto applyReplicated(ReplicatedWrite write) {
+        StateReplicator currentReplicator = replicator;
+        if (currentReplicator == null) {
+            throw new IllegalStateException("Replication is not enabled");
+        }
+        return storeProcessed(write.namespace(), write.content(), message -> {
+            if (!publishReplicated(message, write, currentReplicator)) {
+                return false;
+            }
+            if (writeAheadLog != null) {
+                snapshotLock.readLock().lock();
+                try {
+                    writeAheadLog.append(message);
+                } finally {
+                    snapshotLock.readLock().unlock();
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Writes a compacted snapshot of the current state and drops log segments covered by every snapshot
+     * still retained, so recovery can fall back to the oldest of them without losing writes.
+     * Runs on the scheduler thread; writers are only excluded while the log position is read,
+     * which guarantees every record up to that position is already visible in the state store.
+     * Entries written after that point may also be captured, which is harmless because
+     * replaying the tail re-applies them in order.
+     * @return the log sequence covered by the snapshot, or -1 if nothing was written
+     */
+    @Scheduled(fixedDelayString = "${mvp.state.snapshot.interval-ms:60000}",
+            initialDelayString = "${mvp.state.snapshot.interval-ms:60000}")
+    public long takeSnapshot() {
+        if (snapshotStore == null) {
+            return -1;
+        }
+        long sequence;
+        snapshotLock.writeLock().lock();
+        try {
+            sequence = writeAheadLog.lastSequence();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        if (sequence == lastSnapshotSequence) {
+            return -1;
+        }
+        snapshotStore.writeEncoded(sequence, () -> stateStore.keySet().stream().map(this::encoded).filter(Objects::nonNull).iterator());
+        lastSnapshotSequence = sequence;
+        writeAheadLog.truncateThrough(snapshotStore.oldestSequence());
+        return sequence;
+    }
+
+    /**
+     * Runs pending evictions first, so the counts are current.
+     * @return the number of namespaces stored, their estimated size and the evictions so far
+     */
+    public StateStoreStats getStoreStats() {
+        long estimatedBytes = -1;
+        if (boundedStore != null) {
+            boundedStore.cleanUp();
+            estimatedBytes = boundedStore.policy().eviction()
+                    .flatMap(eviction -> eviction.weightedSize().stream().boxed().findFirst())
+                    .orElse(-1L);
+        }
+        return new StateStoreStats(stateStore.size(), estimatedBytes, limits.maxBytes(),
+                sizeEvictions.sum(), expirations.sum(),
+                offHeap == null ? 0 : offHeap.storedContents(), offHeap == null ? 0 : offHeap.usedBytes(),
+                offHeap == null ? 0 : offHeap.reservedBytes(), offHeap == null ? 0 : offHeap.heapFallbacks());
+    }
+
+    /**
+     * Evictions run on the thread that triggered them, so a namespace's history is discarded
+     * before that thread goes on; TTLs are also enforced by Caffeine's scheduler while idle.
+     */
+    private Cache<String, Object> buildBoundedStore(StateStoreLimits limits) {
+        Caffeine<String, Object> builder = Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .ticker(limits.ticker())
+                .evictionListener((String namespace, Object state, RemovalCause cause) -> evicted(namespace, state, cause));
+        if (limits.maxBytes() > 0) {
+            builder.maximumWeight(limits.maxBytes())
+                    .weigher((String namespace, Object state) -> StateStoreLimits.estimateBytes(namespace, state,
+                            getRetainedVersions(namespace), getHistoryCapacity()));
+        }
+        if (limits.hasTtls()) {
+            builder.scheduler(Scheduler.systemScheduler()).expireAfter(new Expiry<String, Object>() {
+                @Override
+                public long expireAfterCreate(String namespace, Object state, long currentTime) {
+                    long ttl = limits.ttlMillis(namespace);
+                    return ttl > 0 ? TimeUnit.MILLISECONDS.toNanos(ttl) : Long.MAX_VALUE;
+                }
+
+                @Override
+                public long expireAfterUpdate(String namespace, Object state, long currentTime, long currentDuration) {
+                    return expireAfterCreate(namespace, state, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String namespace, Object state, long currentTime, long currentDuration) {
+                    return currentDuration; // Only writes keep a namespace alive
+                }
+            });
+        }
+        return builder.build();
+    }
+
+    private void evicted(String namespace, Object state, RemovalCause cause) {
+        (cause == RemovalCause.EXPIRED ? expirations : sizeEvictions).increment();
+        if (writeAheadLog != null) {
+            snapshotLock.readLock().lock();
+            try {
+                writeAheadLog.appendTombstone(namespace, version(state));
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+        }
+        StateReplicator currentReplicator = replicator;
+        if (currentReplicator != null) {
+            currentReplicator.forget(namespace, state); // Before the release, so no stamp refers to a freed block
+        }
+        release(state);
+        discardHistory(namespace);
+    }
+
+    /**
+     * @return the namespace's stored state, decoded into a DTO if it is held off heap, or null if none
+     */
+    private MessageDto current(String namespace) {
+        Object state = stateStore.get(namespace);
+        while (state instanceof OffHeapStateStore.Handle handle) {
+            MessageDto copy = handle.toMessageDto();
+            if (copy != null) {
+                return copy;
+            }
+            state = stateStore.get(namespace); // Replaced and released while being read; read its successor
+        }
+        return (MessageDto) state;
+    }
+
+    /**
+     * @return the namespace's stored state encoded for a snapshot, off-heap content as its stored bytes, or null if none
+     */
+    private byte[] encoded(String namespace) {
+        Object state = stateStore.get(namespace);
+        while (state instanceof OffHeapStateStore.Handle handle) {
+            byte[] content = handle.contentBytes();
+            if (content != null) {
+                return MessageDtoCodec.encode(handle.getNamespace(), handle.getVersion(), content);
+            }
+            state = stateStore.get(namespace); // Replaced and released while being read; read its successor
+        }
+        return state == null ? null : MessageDtoCodec.encode((MessageDto) state);
+    }
+
+    private void release(Object state) {
+        if (state instanceof OffHeapStateStore.Handle handle) {
+            offHeap.release(handle);
+        }
+    }
+
+    private void recover(VersionedMessageDto message) {
+        publish(message.getNamespace(), message);
+        restoreHistory(message);
+    }
+
+    /**
+     * Replays an eviction: the namespace is dropped unless a later write to it was replayed since.
+     */
+    private void recoverDiscard(String namespace, long version) {
+        Object[] discarded = new Object[1];
+        stateStore.computeIfPresent(namespace, (ns, current) -> {
+            if (version(current) > version) {
+                return current;
+            }
+            discarded[0] = current;
+            return null;
+        });
+        if (discarded[0] != null) {
+            release(discarded[0]);
+            discardHistory(namespace);
+        }
+    }
+
+    /**
+     * Publishes a message unless a newer version of the namespace is already stored,
+     * so racing writers (and replay) always leave the highest version visible.
+     * @return the write to send to other nodes, or null if it was not published or nothing is replicated
+     */
+    private ReplicatedWrite publish(String namespace, MessageDto message) {
+        StateReplicator currentReplicator = replicator;
+        if (offHeap == null && currentReplicator == null) {
+            stateStore.merge(namespace, message, (current, incoming) -> version(incoming) >= version(current) ? incoming : current);
+            return null;
+        }
+        Object incoming = toStored(message);
+        Object[] displaced = new Object[1];
+        ReplicatedWrite[] replicated = new ReplicatedWrite[1];
+        stateStore.compute(namespace, (ns, current) -> {
+            boolean newer = current == null || version(incoming) >= version(current);
+            displaced[0] = newer ? current : incoming;
+            if (newer && currentReplicator != null) {
+                replicated[0] = currentReplicator.stamp(ns, incoming, message.getContent());
+            }
+            return newer ? incoming : current;
+        });
+        release(displaced[0]); // Readers still copying it see its block's generation change and retry
+        return replicated[0];
+    }
+
+    private void publishAll(List<VersionedMessageDto> messages, List<ReplicatedWrite> replicated) {
+        for (VersionedMessageDto message : messages) {
+            ReplicatedWrite write = publish(message.getNamespace(), message);
+            if (write != null) {
+                replicated.add(write);
+            }
+        }
+    }
+
+    /**
+     * Publishes a replicated write if its stamp is later than the namespace's. A later local write is
+     * always stamped later, since receiving the write advanced this node's clock past it.
+     */
+    private boolean publishReplicated(VersionedMessageDto message, ReplicatedWrite write, StateReplicator currentReplicator) {
+        Object incoming = toStored(message);
+        Object[] displaced = new Object[1];
+        stateStore.compute(message.getNamespace(), (ns, current) -> {
+            boolean later = currentReplicator.accept(ns, write, incoming);
+            displaced[0] = later ? current : incoming;
+            return later ? incoming : current;
+        });
+        release(displaced[0]);
+        return displaced[0] != incoming;
+    }
+
+    private void replicate(List<ReplicatedWrite> writes) {
+        StateReplicator currentReplicator = replicator;
+        if (currentReplicator != null) {
+            currentReplicator.replicate(writes); // Outside the snapshot lock: in sync mode this waits on the network
+        }
+    }
+
+    /**
+     * @return the handle of the message's content if the off-heap store takes it, otherwise the message
+     */
+    private Object toStored(MessageDto message) {
+        OffHeapStateStore.Handle handle = offHeap != null && message instanceof VersionedMessageDto versioned
+                && offHeap.accepts(versioned) ? offHeap.store(versioned) : null;
+        return handle != null ? handle : message;
+    }
+
+    private static long version(Object state) {
+        if (state instanceof OffHeapStateStore.Handle handle) {
+            return handle.getVersion();
+        }
+        return state instanceof VersionedMessageDto versioned ? versioned.getVersion() : 0;
     }
-}
\ No newline at end of file
+}
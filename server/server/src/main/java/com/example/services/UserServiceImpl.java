@@ -1,49 +1,171 @@
 package com.example.services;
 
 import com.example.dto.UserDto;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * In-memory implementation of UserService for demo purposes.
+ * In-memory implementation of UserService.
+ * Users live in an immutable map that is replaced as a whole on reload, so lookups never lock
+ * and never see a half-loaded directory. Each entry carries prebuilt UserDetails, so an
+ * authenticated request's lookup allocates nothing.
+ * <p>
+ * Without a users file the service holds only the demo user. With one, the file is a JSON array
+ * of UserDto objects and is reloaded whenever its modification time or size changes.
  */
 @Service
 public class UserServiceImpl implements UserService {
 
-    private final Map<String, UserDto> users = new HashMap<>();
+    /**
+     * Default upper bound on the number of users loaded from a file.
+     */
+    public static final int DEFAULT_MAX_USERS = 500_000;
+
+    private static final Logger log = LoggerFactory.getLogger(UserServiceImpl.class);
+
+    private record Entry(UserDto user, UserDetails details) {
+    }
+
+    private final Path usersFile;
+    private final int maxUsers;
+    private final ObjectReader reader = new ObjectMapper().readerFor(UserDto.class);
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    // Replaced, never mutated, so readers need no synchronization
+    private volatile Map<String, Entry> users;
+    private volatile Object loadedFileVersion;
 
     public UserServiceImpl() {
-        // Demo user
-        users.put("user@example.com", new UserDto(1L, "user@example.com", "Demo User"));
+        this("", DEFAULT_MAX_USERS);
+    }
+
+    /**
+     * @param usersFile the JSON users file to load and watch, or empty for the demo user only
+     * @param maxUsers the maximum number of users a file may hold; larger files are rejected
+     */
+    @Autowired
+    public UserServiceImpl(@Value("${mvp.users.file:}") String usersFile,
+                           @Value("${mvp.users.max:" + DEFAULT_MAX_USERS + "}") int maxUsers) {
+        this.usersFile = usersFile.isBlank() ? null : Path.of(usersFile);
+        this.maxUsers = maxUsers;
+        if (this.usersFile == null) {
+            // Demo user
+            this.users = Map.of("user@example.com", entry(new UserDto(1L, "user@example.com", "Demo User")));
+        } else {
+            this.users = Map.of();
+            if (!reloadIfChanged()) {
+                log.warn("Users file {} could not be loaded; no users are available until it can be", this.usersFile);
+            }
+        }
     }
 
     @Override
     public UserDto authenticate(String username, String password) {
         // Simple check: password is "656frfRRf"
-        if ("656frfRRf".equals(password) && users.containsKey(username)) {
-            return users.get(username);
+        Entry entry = users.get(username);
+        if ("656frfRRf".equals(password) && entry != null) {
+            return entry.user();
         }
         return null;
     }
 
     @Override
     public UserDto getUserByUsername(String username) {
-        return users.get(username);
+        Entry entry = users.get(username);
+        return entry != null ? entry.user() : null;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) {
-        UserDto user = users.get(username);
-        if (user != null) {
-            return org.springframework.security.core.userdetails.User.withUsername(user.getUsername())
-                    .password("") // Not used for JWT
-                    .roles("USER")
-                    .build();
+        Entry entry = users.get(username);
+        return entry != null ? entry.details() : null;
+    }
+
+    /**
+     * @return the number of users currently loaded
+     */
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Reloads the users file if it changed since it was last loaded.
+     * The new directory is built off to the side and published in one write, so readers keep
+     * using the previous one until it is complete. A file that cannot be read or parsed, or that
+     * exceeds the user limit, leaves the previous directory in place.
+     * @return true if the current directory reflects the file
+     */
+    @Scheduled(fixedDelayString = "${mvp.users.reload-interval-ms:5000}",
+            initialDelayString = "${mvp.users.reload-interval-ms:5000}")
+    public boolean reloadIfChanged() {
+        if (usersFile == null) {
+            return true;
         }
-        return null;
+        reloadLock.lock();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(usersFile, BasicFileAttributes.class);
+            Object fileVersion = List.of(attributes.lastModifiedTime(), attributes.size());
+            if (fileVersion.equals(loadedFileVersion)) {
+                return true;
+            }
+            Map<String, Entry> loaded = load();
+            if (loaded == null) {
+                return false;
+            }
+            users = loaded;
+            loadedFileVersion = fileVersion;
+            log.info("Loaded {} users from {}", loaded.size(), usersFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to reload users from {}; keeping the previous {} users", usersFile, users.size(), e);
+            return false;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private Map<String, Entry> load() throws IOException {
+        Map<String, Entry> loaded = new HashMap<>(Math.max(16, (int) (users.size() / 0.75f) + 1));
+        try (MappingIterator<UserDto> iterator = reader.readValues(usersFile.toFile())) {
+            while (iterator.hasNext()) {
+                UserDto user = iterator.next();
+                if (user.getUsername() == null || user.getUsername().isBlank()) {
+                    continue;
+                }
+                if (loaded.size() >= maxUsers && !loaded.containsKey(user.getUsername())) {
+                    log.warn("Users file {} exceeds the limit of {} users; keeping the previous {} users",
+                            usersFile, maxUsers, users.size());
+                    return null;
+                }
+                loaded.put(user.getUsername(), entry(user));
+            }
+        }
+        return loaded;
+    }
+
+    private static Entry entry(UserDto user) {
+        UserDetails details = User.withUsername(user.getUsername())
+                .password("") // Not used for JWT
+                .roles("USER")
+                .build();
+        return new Entry(user, details);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.example.storage;
+
+/**
+ * Controls when appended write-ahead log records are forced to stable storage.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every append waits until its record is durable. Concurrent appenders share a
+     * single force (group commit), so the cost is one sync per batch, not per write.
+     */
+    ALWAYS,
+
+    /**
+     * A background thread forces the log every configured interval.
+     * A crash may lose at most one interval of acknowledged writes.
+     */
+    INTERVAL,
+
+    /**
+     * Never force explicitly; flushing is left to the operating system page cache.
+     */
+    OS
+}
@@ -0,0 +1,124 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Compact binary encoding of MessageDto used by the storage engine.
+ * Layout: [long version][int namespaceLength][namespace UTF-8][int contentLength][content UTF-8],
+ * where a length of -1 encodes a null field and unversioned messages are written as version 0.
+ * A tombstone, marking a namespace discarded up to a version, has a content length of -2 and no content.
+ */
+public final class MessageDtoCodec {
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final int TOMBSTONE_LENGTH = -2;
+
+    private MessageDtoCodec() {
+    }
+
+    /**
+     * Encodes a message into a new byte array.
+     * @param message the message to encode
+     * @return the encoded bytes
+     */
+    public static byte[] encode(MessageDto message) {
+        return encode(message.getNamespace(), message instanceof VersionedMessageDto versioned ? versioned.getVersion() : 0,
+                toBytes(message.getContent()));
+    }
+
+    /**
+     * Encodes a message whose content is already UTF-8, such as one held off heap, without decoding it.
+     * @param namespace the namespace, or null
+     * @param version the version
+     * @param content the content's UTF-8 bytes, or null
+     * @return the encoded bytes
+     */
+    public static byte[] encode(String namespace, long version, byte[] content) {
+        byte[] name = toBytes(namespace);
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + encodedLength(name) + encodedLength(content));
+        buffer.putLong(version);
+        putField(buffer, name);
+        putField(buffer, content);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes a tombstone into a new byte array.
+     * @param namespace the discarded namespace
+     * @param version the version up to which it is discarded
+     * @return the encoded bytes
+     */
+    public static byte[] encodeTombstone(String namespace, long version) {
+        byte[] name = toBytes(Objects.requireNonNull(namespace, "namespace"));
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + encodedLength(name) + Integer.BYTES);
+        buffer.putLong(version);
+        putField(buffer, name);
+        buffer.putInt(TOMBSTONE_LENGTH);
+        return buffer.array();
+    }
+
+    /**
+     * @param buffer a buffer positioned at an encoded record, which is left unchanged
+     * @return whether the record is a tombstone; {@link #decode} reads one as a message without content
+     */
+    public static boolean isTombstone(ByteBuffer buffer) {
+        int position = buffer.position() + Long.BYTES;
+        int namespaceLength = buffer.getInt(position);
+        position += Integer.BYTES + Math.max(namespaceLength, 0);
+        return position + Integer.BYTES <= buffer.limit() && buffer.getInt(position) == TOMBSTONE_LENGTH;
+    }
+
+    /**
+     * Decodes a message from the buffer's current position, advancing it past the record.
+     * @param buffer the source buffer
+     * @return the decoded message
+     */
+    public static VersionedMessageDto decode(ByteBuffer buffer) {
+        long version = buffer.getLong();
+        String namespace = getField(buffer);
+        String content = getField(buffer);
+        return new VersionedMessageDto(content, namespace, version);
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int encodedLength(byte[] field) {
+        return Integer.BYTES + (field == null ? 0 : field.length);
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] field) {
+        if (field == null) {
+            buffer.putInt(NULL_LENGTH);
+        } else {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+    }
+
+    private static String getField(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH || length == TOMBSTONE_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt field length: " + length);
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        // Direct and memory-mapped buffers have no backing array
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pooled direct memory for the content of large namespace states, so payloads of hundreds of KB are
+ * not retained as Java strings between reads.
+ * <p>
+ * Content is stored as UTF-8 in power-of-two blocks, 64 bytes at the smallest. Blocks up to the slab
+ * size are carved from direct slabs; larger ones get a direct buffer of their own. A released block goes
+ * to the free list of its size and is reused by the next content of that size; memory once reserved is
+ * never returned, and no more than {@code maxBytes} is ever reserved.
+ * <p>
+ * A stored content is referenced by a {@link Handle}, which takes the place of the state in the service's
+ * map and costs a few dozen bytes of heap. A handle is not a DTO: it hands out the content's UTF-8 bytes,
+ * and a {@link VersionedMessageDto} only when asked for one at the API boundary. Reads copy the bytes
+ * without locking and are validated against the block's generation, which advances whenever the block is
+ * released, so a read racing a release and reuse of the block is detected and the caller retries with the
+ * namespace's current handle.
+ */
+public class OffHeapStateStore {
+
+    static final int MIN_BLOCK = 64;
+
+    private final long maxBytes;
+    private final int slabBytes;
+    private final int minContentLength;
+    private final int historyCapacity;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentLinkedQueue<Block>[] freeBlocks = new ConcurrentLinkedQueue[Integer.SIZE];
+
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong storedContents = new AtomicLong();
+    private final AtomicLong heapFallbacks = new AtomicLong();
+
+    // The slab blocks are currently carved from; guarded by this
+    private ByteBuffer slab;
+
+    /**
+     * @param maxBytes the most direct memory to reserve
+     * @param slabBytes the size of each slab, a power of two; larger contents get a buffer of their own
+     * @param minContentLength the content length, in chars, from which a state is stored off heap
+     * @param historyCapacity the versions each namespace keeps on heap for history and replay
+     */
+    public OffHeapStateStore(long maxBytes, int slabBytes, int minContentLength, int historyCapacity) {
+        if (maxBytes <= 0 || slabBytes < MIN_BLOCK || Integer.bitCount(slabBytes) != 1) {
+            throw new IllegalArgumentException("Off-heap store needs a positive size and a power-of-two slab of at least " + MIN_BLOCK + " bytes");
+        }
+        if (minContentLength < 0 || historyCapacity < 0) {
+            throw new IllegalArgumentException("Minimum content length and history capacity must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.slabBytes = slabBytes;
+        this.minContentLength = minContentLength;
+        this.historyCapacity = historyCapacity;
+        for (int i = 0; i < freeBlocks.length; i++) {
+            freeBlocks[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @param message a message about to be stored
+     * @return true if its content is large enough to be stored off heap
+     */
+    public boolean accepts(MessageDto message) {
+        String content = message.getContent();
+        return content != null && content.length() >= minContentLength;
+    }
+
+    /**
+     * Copies the message's content into a free block.
+     * @param message the message to store
+     * @return the handle to store in its place, or null if the store is full and the message stays on heap
+     */
+    public Handle store(VersionedMessageDto message) {
+        byte[] bytes = message.getContent().getBytes(StandardCharsets.UTF_8);
+        Block block = allocate(bytes.length);
+        if (block == null) {
+            heapFallbacks.incrementAndGet();
+            return null;
+        }
+        block.memory.put(0, bytes);
+        usedBytes.addAndGet(block.memory.capacity());
+        storedContents.incrementAndGet();
+        return new Handle(block, block.generation, bytes.length, message.getNamespace(), message.getVersion());
+    }
+
+    /**
+     * Returns a handle's block to its free list. Releasing a handle twice has no effect.
+     * @param handle the handle of content no longer referenced
+     */
+    public void release(Handle handle) {
+        if (!handle.released.compareAndSet(false, true)) {
+            return;
+        }
+        Block block = handle.block;
+        block.generation++; // Single writer: only the handle's one release reaches here
+        usedBytes.addAndGet(-block.memory.capacity());
+        storedContents.decrementAndGet();
+        freeBlocks[block.sizeClass].offer(block);
+    }
+
+    /**
+     * @return the versions each namespace keeps on heap for history and replay
+     */
+    public int historyCapacity() {
+        return historyCapacity;
+    }
+
+    /**
+     * @return the number of contents currently stored
+     */
+    public long storedContents() {
+        return storedContents.get();
+    }
+
+    /**
+     * @return the bytes of the blocks holding stored contents
+     */
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return the direct memory reserved so far, used or free
+     */
+    public long reservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * @return the number of messages kept on heap because no block was free
+     */
+    public long heapFallbacks() {
+        return heapFallbacks.get();
+    }
+
+    private Block allocate(int length) {
+        int sizeClass = sizeClass(length);
+        if (sizeClass > 30) {
+            return null; // Beyond the largest direct buffer
+        }
+        Block block = freeBlocks[sizeClass].poll();
+        if (block != null) {
+            return block;
+        }
+        int size = 1 << sizeClass;
+        if (size > slabBytes) {
+            return reserve(size) ? new Block(ByteBuffer.allocateDirect(size), sizeClass) : null;
+        }
+        return carve(size, sizeClass);
+    }
+
+    private synchronized Block carve(int size, int sizeClass) {
+        if (slab == null || slab.remaining() < size) {
+            if (!reserve(slabBytes)) {
+                return null;
+            }
+            if (slab != null) {
+                releaseRemainder(slab);
+            }
+            slab = ByteBuffer.allocateDirect(slabBytes);
+        }
+        ByteBuffer memory = slab.slice(slab.position(), size);
+        slab.position(slab.position() + size);
+        return new Block(memory, sizeClass);
+    }
+
+    /**
+     * Splits what is left of a full slab into the largest blocks it holds and frees them.
+     */
+    private void releaseRemainder(ByteBuffer full) {
+        while (full.remaining() >= MIN_BLOCK) {
+            int sizeClass = 31 - Integer.numberOfLeadingZeros(full.remaining());
+            int size = 1 << sizeClass;
+            freeBlocks[sizeClass].offer(new Block(full.slice(full.position(), size), sizeClass));
+            full.position(full.position() + size);
+        }
+    }
+
+    private boolean reserve(int size) {
+        long reserved;
+        do {
+            reserved = reservedBytes.get();
+            if (reserved + size > maxBytes) {
+                return false;
+            }
+        } while (!reservedBytes.compareAndSet(reserved, reserved + size));
+        return true;
+    }
+
+    static int sizeClass(int length) {
+        return length <= MIN_BLOCK ? Integer.numberOfTrailingZeros(MIN_BLOCK) : 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    private static final class Block {
+
+        private final ByteBuffer memory;
+        private final int sizeClass;
+        private volatile int generation;
+
+        private Block(ByteBuffer memory, int sizeClass) {
+            this.memory = memory;
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    /**
+     * A stored state whose content lives off heap. The version and namespace are on heap, so version
+     * checks never touch the content. It has no setters and is not a DTO, like
+     * {@link com.example.codec.EncodedState}: {@link #contentBytes()} copies the content as stored, and
+     * {@link #toMessageDto()} decodes it into a DTO for callers that need one.
+     */
+    public static final class Handle {
+
+        private final Block block;
+        private final int generation;
+        private final int length;
+        private final String namespace;
+        private final long version;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Handle(Block block, int generation, int length, String namespace, long version) {
+            this.block = block;
+            this.generation = generation;
+            this.length = length;
+            this.namespace = namespace;
+            this.version = version;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the content's size in UTF-8 bytes
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Copies the content's UTF-8 bytes onto the heap without decoding them.
+         * @return the bytes, or null if the handle was released and its block reused meanwhile
+         */
+        public byte[] contentBytes() {
+            byte[] bytes = new byte[length];
+            block.memory.get(0, bytes);
+            VarHandle.loadLoadFence(); // Read the bytes before validating them, as StampedLock.validate does
+            return block.generation == generation ? bytes : null;
+        }
+
+        /**
+         * Decodes the content into a new DTO, which the caller may change freely.
+         * @return the state, or null if the handle was released and its block reused meanwhile
+         */
+        public VersionedMessageDto toMessageDto() {
+            byte[] bytes = contentBytes();
+            return bytes == null ? null : new VersionedMessageDto(new String(bytes, StandardCharsets.UTF_8), namespace, version);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compacted point-in-time snapshots of namespace state.
+ * A snapshot holds the latest MessageDto per namespace together with the write-ahead log
+ * sequence it covers, so recovery only needs to replay the log tail after that sequence.
+ * <p>
+ * File layout: [int magic][int formatVersion][long sequence] followed by one
+ * {@link MessageDtoCodec} entry per namespace and a footer of [int entryCount][int crc32c],
+ * where the checksum covers every preceding byte.
+ */
+public class SnapshotStore {
+
+    static final int MAGIC = 0x4D565053; // "MVPS"
+    static final int FORMAT_VERSION = 2;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int FOOTER_SIZE = 2 * Integer.BYTES;
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private final Path directory;
+    private final int retainCount;
+
+    /**
+     * @param directory the snapshot directory, created if missing
+     * @param retainCount how many of the newest snapshots to keep on disk
+     * @throws IOException if the directory cannot be created
+     */
+    public SnapshotStore(Path directory, int retainCount) throws IOException {
+        if (retainCount < 1) {
+            throw new IllegalArgumentException("At least one snapshot must be retained");
+        }
+        this.directory = directory;
+        this.retainCount = retainCount;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Writes a snapshot covering the log up to the given sequence.
+     * The file is written under a temporary name, forced, and atomically renamed into place,
+     * so a crash never leaves a partial snapshot behind; the directory is forced as well, so the rename
+     * survives one. Older snapshots beyond the retain count are removed.
+     * @param sequence the last write-ahead log sequence reflected in the entries
+     * @param entries the latest message per namespace
+     * @return the path of the new snapshot
+     */
+    public Path write(long sequence, Iterable<MessageDto> entries) {
+        return writeEncoded(sequence, () -> StreamSupport.stream(entries.spliterator(), false)
+                .map(MessageDtoCodec::encode).iterator());
+    }
+
+    /**
+     * Writes a snapshot of entries already encoded with {@link MessageDtoCodec}, so content held as
+     * UTF-8, such as off-heap content, is written without being decoded. Otherwise as {@link #write}.
+     * @param sequence the last write-ahead log sequence reflected in the entries
+     * @param entries the latest message per namespace, each encoded by {@link MessageDtoCodec}
+     * @return the path of the new snapshot
+     */
+    public Path writeEncoded(long sequence, Iterable<byte[]> entries) {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(sequence);
+            int count = 0;
+            for (byte[] entry : entries) {
+                out.write(entry);
+                count++;
+            }
+            out.writeInt(count);
+            out.flush();
+            // The checksum itself is written outside the checked stream
+            new DataOutputStream(Channels.newOutputStream(channel)).writeInt((int) crc.getValue());
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + target, e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // The rename is only durable once the directory entry is, and the log is truncated after this returns
+            try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                directoryChannel.force(true);
+            }
+            prune();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to publish snapshot " + target, e);
+        }
+        return target;
+    }
+
+    /**
+     * Loads the newest intact snapshot through a read-only memory mapping.
+     * Snapshots that fail validation are skipped in favour of the next newest, which only loses nothing
+     * if the log is kept back to {@link #oldestSequence()}.
+     * @param sink receives every entry of the loaded snapshot
+     * @return the log sequence covered by the loaded snapshot, or 0 if there is none
+     */
+    public long loadLatest(Consumer<VersionedMessageDto> sink) {
+        List<Path> snapshots = list();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!isValid(buffer)) {
+                    log.warn("Skipping corrupt snapshot {}", path);
+                    continue;
+                }
+                long sequence = buffer.getLong(2 * Integer.BYTES);
+                ByteBuffer entries = buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE - FOOTER_SIZE);
+                while (entries.hasRemaining()) {
+                    sink.accept(MessageDtoCodec.decode(entries));
+                }
+                return sequence;
+            } catch (IOException e) {
+                log.warn("Skipping unreadable snapshot {}", path, e);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the log sequence covered by the oldest snapshot on disk, or 0 if there is none; the log must be
+     * kept after this sequence for recovery to fall back to that snapshot
+     */
+    public long oldestSequence() {
+        List<Path> snapshots = list();
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        String name = snapshots.get(0).getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    private static boolean isValid(ByteBuffer buffer) {
+        int size = buffer.capacity();
+        if (size < HEADER_SIZE + FOOTER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, size - Integer.BYTES));
+        return (int) crc.getValue() == buffer.getInt(size - Integer.BYTES);
+    }
+
+    private List<Path> list() {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list snapshots in " + directory, e);
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> snapshots = list();
+        for (int i = 0; i < snapshots.size() - retainCount; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+}
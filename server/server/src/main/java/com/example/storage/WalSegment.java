@@ -0,0 +1,111 @@
+package com.example.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single pre-allocated, memory-mapped write-ahead log file.
+ * Files are named after the sequence number of their first record so that
+ * lexical order equals log order. Unwritten space is zero-filled, which the
+ * reader treats as end of segment.
+ */
+final class WalSegment {
+
+    static final String SUFFIX = ".wal";
+
+    private final Path path;
+    private final long firstSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private WalSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a new segment, or maps an existing one at its current size.
+     * @param directory the log directory
+     * @param firstSequence the sequence number of the first record in the segment
+     * @param size the size to pre-allocate for new segments
+     * @return the mapped segment
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static WalSegment open(Path directory, long firstSequence, int size) throws IOException {
+        Path path = directory.resolve(fileName(firstSequence));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long mappedSize = Math.max(channel.size(), size);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+        return new WalSegment(path, firstSequence, channel, buffer);
+    }
+
+    static String fileName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SUFFIX);
+    }
+
+    static long parseFirstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns an independent read view of the mapped region.
+     * @return a duplicate buffer positioned at the start of the segment
+     */
+    ByteBuffer reader() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Writes a record at an absolute offset. Callers serialize writes.
+     * @param index the offset of the record header
+     * @param length the payload length
+     * @param checksum the payload checksum
+     * @param sequence the record sequence number
+     * @param payload the encoded payload
+     */
+    void write(int index, int length, int checksum, long sequence, byte[] payload) {
+        buffer.putInt(index, length);
+        buffer.putInt(index + Integer.BYTES, checksum);
+        buffer.putLong(index + 2 * Integer.BYTES, sequence);
+        buffer.put(index + WriteAheadLog.HEADER_SIZE, payload);
+    }
+
+    /**
+     * Zero-fills the region from the given offset so stale bytes are never re-read as records.
+     * @param from the first offset to clear
+     */
+    void clearFrom(int from) {
+        byte[] zeros = new byte[Math.min(64 * 1024, Math.max(0, buffer.capacity() - from))];
+        for (int index = from; index < buffer.capacity(); index += zeros.length) {
+            buffer.put(index, zeros, 0, Math.min(zeros.length, buffer.capacity() - index));
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmented, memory-mapped, append-only log of stored messages and of tombstones for discarded namespaces.
+ * Each record is laid out as [int payloadLength][int payloadCrc32c][long sequence][payload],
+ * with the payload encoded by {@link MessageDtoCodec}. Appends are a memory copy into the
+ * mapped segment; durability is governed by the configured {@link FsyncPolicy}.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    /**
+     * Receives records in log order during replay.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long sequence, VersionedMessageDto message);
+
+        /**
+         * Receives a tombstone: the namespace was discarded holding the given version, so that version
+         * and older ones must not be restored. Ignored unless overridden.
+         */
+        default void discard(long sequence, String namespace, long version) {
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // A lock rather than a monitor, so a virtual thread waiting on fsync does not pin its carrier
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final List<WalSegment> segments = new ArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    private WalSegment active;
+    private int writePosition;
+    private volatile long lastSequence;
+    private volatile long durableSequence;
+    private boolean closed;
+
+    /**
+     * Opens the log in the given directory, recovering the write position from existing segments.
+     * A torn or corrupt tail is truncated at the last intact record.
+     * @param directory the log directory, created if missing
+     * @param segmentSize the size of each pre-allocated segment in bytes
+     * @param fsyncPolicy when appended records are forced to disk
+     * @param fsyncIntervalMillis the flush interval for {@link FsyncPolicy#INTERVAL}
+     * @throws IOException if the directory or segments cannot be opened
+     */
+    public WriteAheadLog(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size must exceed the record header size");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+        recover();
+        this.durableSequence = lastSequence;
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends a message to the log.
+     * Under {@link FsyncPolicy#ALWAYS} this returns only once the record is durable.
+     * @param message the message to append
+     * @return the sequence number assigned to the record
+     */
+    public long append(MessageDto message) {
+        return appendAll(List.of(message));
+    }
+
+    /**
+     * Appends messages to the log as consecutive records, in order, under one lock acquisition.
+     * Under {@link FsyncPolicy#ALWAYS} this returns only once every record is durable, after a single
+     * wait for the group commit.
+     * @param messages the messages to append
+     * @return the sequence number assigned to the last record, or the last sequence if there are none
+     */
+    public long appendAll(List<? extends MessageDto> messages) {
+        byte[][] payloads = new byte[messages.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = MessageDtoCodec.encode(messages.get(i));
+        }
+        return appendPayloads(payloads);
+    }
+
+    /**
+     * Appends a tombstone recording that a namespace was discarded, such as one evicted from storage,
+     * so that replay does not bring back the version it held or older ones.
+     * Under {@link FsyncPolicy#ALWAYS} this returns only once the record is durable.
+     * @param namespace the discarded namespace
+     * @param version the version it held when discarded
+     * @return the sequence number assigned to the record
+     */
+    public long appendTombstone(String namespace, long version) {
+        return appendPayloads(new byte[][] {MessageDtoCodec.encodeTombstone(namespace, version)});
+    }
+
+    private long appendPayloads(byte[][] payloads) {
+        int[] checksums = new int[payloads.length];
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < payloads.length; i++) {
+            crc.reset();
+            crc.update(payloads[i]);
+            checksums[i] = (int) crc.getValue();
+        }
+
+        long sequence;
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            sequence = lastSequence;
+            for (int i = 0; i < payloads.length; i++) {
+                int recordSize = HEADER_SIZE + payloads[i].length;
+                if (writePosition + recordSize > active.capacity()) {
+                    roll(recordSize);
+                }
+                sequence++;
+                active.write(writePosition, payloads[i].length, checksums[i], sequence, payloads[i]);
+                writePosition += recordSize;
+                lastSequence = sequence;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Replays every intact record with a sequence number greater than the given one, in log order.
+     * @param afterSequence records up to and including this sequence are skipped
+     * @param consumer receives each replayed record, and each tombstone if it overrides {@link RecordConsumer#discard}
+     */
+    public void replay(long afterSequence, RecordConsumer consumer) {
+        List<WalSegment> snapshot;
+        appendLock.lock();
+        try {
+            snapshot = new ArrayList<>(segments);
+        } finally {
+            appendLock.unlock();
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            // Whole segments below the requested sequence are skipped without being read
+            if (i + 1 < snapshot.size() && snapshot.get(i + 1).firstSequence() <= afterSequence + 1) {
+                continue;
+            }
+            scan(snapshot.get(i), afterSequence, consumer);
+        }
+    }
+
+    /**
+     * Deletes segments whose records are all at or below the given sequence,
+     * typically once a snapshot covering them is safely on disk. The active segment is never deleted.
+     * @param sequence the highest sequence that no longer needs to be replayed
+     * @return the number of segments deleted
+     */
+    public int truncateThrough(long sequence) {
+        List<WalSegment> obsolete = new ArrayList<>();
+        appendLock.lock();
+        try {
+            while (segments.size() > 1 && segments.get(1).firstSequence() <= sequence + 1) {
+                obsolete.add(segments.remove(0));
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        for (WalSegment segment : obsolete) {
+            try {
+                segment.close();
+                Files.deleteIfExists(segment.path());
+            } catch (IOException e) {
+                log.warn("Failed to delete obsolete write-ahead log segment {}", segment.path(), e);
+            }
+        }
+        return obsolete.size();
+    }
+
+    /**
+     * Forces all appended records to stable storage.
+     */
+    public void flush() {
+        syncLock.lock();
+        try {
+            if (durableSequence < lastSequence) {
+                sync();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * @return the sequence number of the first record still in the log, or of the next record if none is
+     */
+    public long firstSequence() {
+        appendLock.lock();
+        try {
+            return segments.get(0).firstSequence();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return the sequence number of the last appended record, or 0 if the log is empty
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the sequence number up to which records are known to be on stable storage
+     */
+    public long durableSequence() {
+        return durableSequence;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // A clean shutdown is always durable, whatever the policy
+            active.force();
+            durableSequence = lastSequence;
+            for (WalSegment segment : segments) {
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Group commit: the first waiter forces the log on behalf of every record appended so far;
+     * waiters queued behind it usually find their record already durable and return immediately.
+     */
+    private void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durableSequence < sequence) {
+                sync();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void sync() {
+        long target;
+        WalSegment segment;
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            target = lastSequence;
+            segment = active;
+        } finally {
+            appendLock.unlock();
+        }
+        // Records in earlier segments were forced when the segment was rolled
+        segment.force();
+        durableSequence = target;
+    }
+
+    private void roll(int recordSize) {
+        int size = Math.max(segmentSize, recordSize);
+        try {
+            if (writePosition == 0) {
+                // The active segment is still empty and already named for this record, so it is grown in place
+                // rather than a second segment being opened under the same name
+                WalSegment grown = WalSegment.open(directory, active.firstSequence(), size);
+                active.close();
+                active = grown;
+                segments.set(segments.size() - 1, grown);
+                return;
+            }
+            if (fsyncPolicy != FsyncPolicy.OS) {
+                active.force();
+            }
+            active = WalSegment.open(directory, lastSequence + 1, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll write-ahead log segment", e);
+        }
+        segments.add(active);
+        writePosition = 0;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(WalSegment.SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        long nextSequence = 1;
+        boolean truncated = false;
+        for (Path file : files) {
+            long firstSequence = WalSegment.parseFirstSequence(file);
+            if (truncated || (!segments.isEmpty() && firstSequence != nextSequence)) {
+                // Everything after a break in the log is unreachable
+                log.warn("Discarding write-ahead log segment {} after a gap or corrupt record", file);
+                Files.delete(file);
+                truncated = true;
+                continue;
+            }
+            WalSegment segment = WalSegment.open(directory, firstSequence, segmentSize);
+            segments.add(segment);
+            ScanResult result = scan(segment, Long.MAX_VALUE, null);
+            nextSequence = result.nextSequence();
+            writePosition = result.endPosition();
+            if (!result.clean()) {
+                log.warn("Truncating torn write-ahead log tail in {} at offset {}", file, writePosition);
+                segment.clearFrom(writePosition);
+                truncated = true;
+            }
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(WalSegment.open(directory, nextSequence, segmentSize));
+            writePosition = 0;
+        }
+        active = segments.get(segments.size() - 1);
+        lastSequence = nextSequence - 1;
+    }
+
+    private ScanResult scan(WalSegment segment, long afterSequence, RecordConsumer consumer) {
+        ByteBuffer view = segment.reader();
+        CRC32C crc = new CRC32C();
+        long expected = segment.firstSequence();
+        int position = 0;
+        while (position + HEADER_SIZE <= view.capacity()) {
+            int length = view.getInt(position);
+            if (length == 0) {
+                return new ScanResult(position, expected, true);
+            }
+            if (length < 0 || length > view.capacity() - position - HEADER_SIZE
+                    || view.getLong(position + 2 * Integer.BYTES) != expected) {
+                return new ScanResult(position, expected, false);
+            }
+            ByteBuffer payload = view.slice(position + HEADER_SIZE, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != view.getInt(position + Integer.BYTES)) {
+                return new ScanResult(position, expected, false);
+            }
+            if (consumer != null && expected > afterSequence) {
+                boolean tombstone = MessageDtoCodec.isTombstone(payload);
+                VersionedMessageDto message = MessageDtoCodec.decode(payload);
+                if (tombstone) {
+                    consumer.discard(expected, message.getNamespace(), message.getVersion());
+                } else {
+                    consumer.accept(expected, message);
+                }
+            }
+            position += HEADER_SIZE + length;
+            expected++;
+        }
+        return new ScanResult(position, expected, true);
+    }
+
+    private record ScanResult(int endPosition, long nextSequence, boolean clean) {
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.websocket;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Takes over the outbound queue of Spring's {@link ConcurrentWebSocketSessionDecorator} for STOMP
+ * sessions, keeping the same threading model: one sender writes while the others queue and return.
+ * The queue is bounded by message count as well as bytes, and a full queue is handled by the
+ * configured {@link SlowConsumerPolicy} instead of always closing the session. Like Spring's, the
+ * message callback runs as soon as a message is queued, so with ordered publishing the backlog of a
+ * slow session builds up here, within the limits, rather than in the broker's unbounded queue.
+ * <p>
+ * Only broadcast ({@code MESSAGE}) frames are ever dropped or conflated; {@code CONNECTED},
+ * {@code RECEIPT} and {@code ERROR} frames and heartbeats stay queued. A write blocked for longer
+ * than the send-time limit closes the session whatever the policy, because a stalled client would
+ * otherwise hold a broker thread indefinitely.
+ */
+public class BoundedSessionDecorator extends ConcurrentWebSocketSessionDecorator {
+
+    /** Tomcat's per-session bound on a blocking write, set so that a stalled write gives up at the send-time limit. */
+    static final String TOMCAT_BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private static final String MESSAGE_FRAME = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+    private static final int MAX_HEADER_BYTES = 1024;
+
+    private final OutboundLimits limits;
+    private final OutboundSessions sessions;
+
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final Deque<Queued> queue = new ArrayDeque<>();
+    private int queuedBytes;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile int depth;
+    private volatile int bytes;
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+    private volatile Consumer<WebSocketMessage<?>> messageCallback;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+
+    public BoundedSessionDecorator(WebSocketSession delegate, OutboundLimits limits, OutboundSessions sessions) {
+        super(delegate, limits.sendTimeLimitMillis(), limits.bufferSizeLimit());
+        this.limits = limits;
+        this.sessions = sessions;
+        if (delegate instanceof NativeWebSocketSession nativeSession
+                && nativeSession.getNativeSession() instanceof jakarta.websocket.Session standard) {
+            standard.getUserProperties().put(TOMCAT_BLOCKING_SEND_TIMEOUT, (long) limits.sendTimeLimitMillis());
+        }
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (limitExceeded) {
+            return;
+        }
+        if (!enqueue(message)) {
+            limitExceeded = true;
+            sessions.overflowDisconnect();
+            throw new SessionLimitExceededException("Outbound queue for session " + getId() + " exceeded "
+                    + limits.queueLimit() + " messages or " + limits.bufferSizeLimit() + " bytes",
+                    CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        Consumer<WebSocketMessage<?>> callback = messageCallback;
+        if (callback != null) {
+            callback.accept(message);
+        }
+        do {
+            if (!tryFlush()) {
+                checkSendTime();
+                break;
+            }
+        } while (depth > 0 && !limitExceeded);
+    }
+
+    /**
+     * Queues a message and applies the policy until the queue fits its limits again.
+     * @return {@code false} if the session has to be closed
+     */
+    private boolean enqueue(WebSocketMessage<?> message) {
+        queueLock.lock();
+        try {
+            Queued queued = new Queued(message, message.getPayloadLength());
+            queue.addLast(queued);
+            queuedBytes += queued.length;
+            boolean fits = true;
+            while (queue.size() > limits.queueLimit() || queuedBytes > limits.bufferSizeLimit()) {
+                if (limits.policy() == SlowConsumerPolicy.DISCONNECT) {
+                    fits = false;
+                    break;
+                }
+                if (limits.policy() == SlowConsumerPolicy.CONFLATE && conflate() > 0) {
+                    continue;
+                }
+                if (!dropOldest()) {
+                    fits = false;
+                    break;
+                }
+            }
+            if (!fits) {
+                queuedBytes -= queue.pollLast().length;
+            }
+            depth = queue.size();
+            bytes = queuedBytes;
+            return fits;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /** Removes every queued broadcast that a newer queued broadcast to the same destination supersedes. */
+    private int conflate() {
+        Set<String> latest = new HashSet<>();
+        int removed = 0;
+        for (Iterator<Queued> it = queue.descendingIterator(); it.hasNext(); ) {
+            Queued queued = it.next();
+            String destination = destination(queued.message);
+            if (destination != null && !latest.add(destination)) {
+                it.remove();
+                queuedBytes -= queued.length;
+                removed++;
+            }
+        }
+        conflated.addAndGet(removed);
+        sessions.conflated(removed);
+        return removed;
+    }
+
+    private boolean dropOldest() {
+        for (Iterator<Queued> it = queue.iterator(); it.hasNext(); ) {
+            Queued queued = it.next();
+            if (isBroadcast(queued.message)) {
+                it.remove();
+                queuedBytes -= queued.length;
+                dropped.incrementAndGet();
+                sessions.dropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Queued poll() {
+        queueLock.lock();
+        try {
+            Queued queued = queue.pollFirst();
+            if (queued != null) {
+                queuedBytes -= queued.length;
+                depth = queue.size();
+                bytes = queuedBytes;
+            }
+            return queued;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private boolean tryFlush() throws IOException {
+        if (!flushLock.tryLock()) {
+            return false;
+        }
+        try {
+            while (!limitExceeded) {
+                Queued queued = poll();
+                if (queued == null) {
+                    break;
+                }
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(queued.message);
+                sendStartTime = 0;
+            }
+        } finally {
+            sendStartTime = 0;
+            flushLock.unlock();
+        }
+        return true;
+    }
+
+    private void checkSendTime() {
+        long start = sendStartTime;
+        if (start != 0 && System.currentTimeMillis() - start > limits.sendTimeLimitMillis()) {
+            limitExceeded = true;
+            sessions.sendTimeDisconnect();
+            throw new SessionLimitExceededException("Send to session " + getId() + " blocked for more than "
+                    + limits.sendTimeLimitMillis() + " ms", CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    /** @return the number of messages waiting to be written */
+    public int getQueueDepth() {
+        return depth;
+    }
+
+    /** @return the payload bytes waiting to be written */
+    @Override
+    public int getBufferSize() {
+        return bytes;
+    }
+
+    /** @return broadcasts discarded to make room, not counting conflated ones */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** @return broadcasts discarded because a newer one to the same destination was queued */
+    public long getConflated() {
+        return conflated.get();
+    }
+
+    /** @return how long the write in progress has been blocked, or 0 if none is */
+    @Override
+    public long getTimeSinceSendStarted() {
+        long start = sendStartTime;
+        return start == 0 ? 0 : System.currentTimeMillis() - start;
+    }
+
+    /**
+     * @param callback invoked with each message once it is queued, or dropped to make room for it
+     */
+    @Override
+    public void setMessageCallback(Consumer<WebSocketMessage<?>> callback) {
+        this.messageCallback = callback;
+    }
+
+    /** @return the STOMP destination of a broadcast frame, or {@code null} for any other frame */
+    static String destination(WebSocketMessage<?> message) {
+        String head = head(message);
+        if (head == null || !head.startsWith(MESSAGE_FRAME)) {
+            return null;
+        }
+        int headersEnd = head.indexOf("\n\n");
+        int start = head.indexOf(DESTINATION_HEADER);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = head.indexOf('\n', start);
+        return end < 0 ? null : head.substring(start, end);
+    }
+
+    static boolean isBroadcast(WebSocketMessage<?> message) {
+        String head = head(message);
+        return head != null && head.startsWith(MESSAGE_FRAME);
+    }
+
+    private static String head(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return text.getPayload();
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            byte[] head = new byte[Math.min(payload.remaining(), MAX_HEADER_BYTES)];
+            payload.get(head);
+            return new String(head, StandardCharsets.ISO_8859_1);
+        }
+        return null;
+    }
+
+    private record Queued(WebSocketMessage<?> message, int length) {
+    }
+}
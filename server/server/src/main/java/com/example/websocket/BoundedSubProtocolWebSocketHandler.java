@@ -0,0 +1,45 @@
+package com.example.websocket;
+
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+/**
+ * Spring's STOMP-over-WebSocket handler with every session wrapped in a
+ * {@link BoundedSessionDecorator} instead of the default unbounded-count decorator.
+ * SockJS sessions are marked text-only so {@link SubscriptionFormatInterceptor} keeps them on JSON.
+ */
+public class BoundedSubProtocolWebSocketHandler extends SubProtocolWebSocketHandler {
+
+    private final OutboundLimits limits;
+    private final OutboundSessions sessions;
+
+    public BoundedSubProtocolWebSocketHandler(MessageChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                                              OutboundLimits limits, OutboundSessions sessions) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.limits = limits;
+        this.sessions = sessions;
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        if (session instanceof SockJsSession) {
+            session.getAttributes().put(SubscriptionFormatInterceptor.TEXT_ONLY_ATTRIBUTE, Boolean.TRUE);
+        }
+        return sessions.register(new BoundedSessionDecorator(session, limits, sessions));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        sessions.unregister(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+    }
+
+    /** @return the limits applied to each session */
+    public OutboundLimits getLimits() {
+        return limits;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.websocket;
+
+/**
+ * Per-session limits on messages waiting to be written to a STOMP client.
+ *
+ * @param queueLimit the most messages a session may have queued
+ * @param bufferSizeLimit the most payload bytes a session may have queued
+ * @param sendTimeLimitMillis the longest a single write may block before the session is closed
+ * @param policy what to do when the queue exceeds either limit
+ */
+public record OutboundLimits(int queueLimit, int bufferSizeLimit, int sendTimeLimitMillis, SlowConsumerPolicy policy) {
+
+    public OutboundLimits {
+        if (queueLimit < 1 || bufferSizeLimit < 1 || sendTimeLimitMillis < 1 || policy == null) {
+            throw new IllegalArgumentException("Outbound limits must be positive and a slow-consumer policy given");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The open STOMP sessions and their outbound queues. Per-session figures are available from
+ * {@link #sessions(int)}, which backs the {@code stompsessions} actuator endpoint; the meter
+ * registry only receives aggregates so that tens of thousands of sessions do not each become
+ * a time series.
+ */
+public class OutboundSessions implements MeterBinder {
+
+    private final Map<String, BoundedSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder overflowDisconnects = new LongAdder();
+    private final LongAdder sendTimeDisconnects = new LongAdder();
+
+    BoundedSessionDecorator register(BoundedSessionDecorator session) {
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    void unregister(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    void conflated(int count) {
+        if (count > 0) {
+            conflated.add(count);
+        }
+    }
+
+    void overflowDisconnect() {
+        overflowDisconnects.increment();
+    }
+
+    void sendTimeDisconnect() {
+        sendTimeDisconnects.increment();
+    }
+
+    /** @return the number of open sessions */
+    public int size() {
+        return sessions.size();
+    }
+
+    /** @return messages queued across all sessions */
+    public long queuedMessages() {
+        long total = 0;
+        for (BoundedSessionDecorator session : sessions.values()) {
+            total += session.getQueueDepth();
+        }
+        return total;
+    }
+
+    /** @return payload bytes queued across all sessions */
+    public long queuedBytes() {
+        long total = 0;
+        for (BoundedSessionDecorator session : sessions.values()) {
+            total += session.getBufferSize();
+        }
+        return total;
+    }
+
+    /** @return the deepest queue of any session */
+    public int maxQueueDepth() {
+        int max = 0;
+        for (BoundedSessionDecorator session : sessions.values()) {
+            max = Math.max(max, session.getQueueDepth());
+        }
+        return max;
+    }
+
+    /**
+     * @param limit the most sessions to return
+     * @return the sessions with the deepest queues first
+     */
+    public List<SessionStats> sessions(int limit) {
+        return sessions.values().stream()
+                .map(SessionStats::of)
+                .sorted(Comparator.comparingInt(SessionStats::queueDepth).reversed()
+                        .thenComparing(Comparator.comparingLong(SessionStats::dropped).reversed()))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mvp.stomp.sessions", this, OutboundSessions::size)
+                .description("Open STOMP sessions")
+                .register(registry);
+        Gauge.builder("mvp.stomp.outbound.queued", this, OutboundSessions::queuedMessages)
+                .description("Messages waiting to be written, across all STOMP sessions")
+                .register(registry);
+        Gauge.builder("mvp.stomp.outbound.queued.bytes", this, OutboundSessions::queuedBytes)
+                .description("Payload bytes waiting to be written, across all STOMP sessions")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("mvp.stomp.outbound.queue.max", this, OutboundSessions::maxQueueDepth)
+                .description("Deepest outbound queue of any STOMP session")
+                .register(registry);
+        FunctionCounter.builder("mvp.stomp.outbound.dropped", dropped, LongAdder::sum)
+                .description("Broadcasts discarded from slow sessions' queues")
+                .tag("reason", "overflow")
+                .register(registry);
+        FunctionCounter.builder("mvp.stomp.outbound.dropped", conflated, LongAdder::sum)
+                .description("Broadcasts discarded from slow sessions' queues")
+                .tag("reason", "conflated")
+                .register(registry);
+        FunctionCounter.builder("mvp.stomp.outbound.disconnects", overflowDisconnects, LongAdder::sum)
+                .description("STOMP sessions closed as slow consumers")
+                .tag("reason", "overflow")
+                .register(registry);
+        FunctionCounter.builder("mvp.stomp.outbound.disconnects", sendTimeDisconnects, LongAdder::sum)
+                .description("STOMP sessions closed as slow consumers")
+                .tag("reason", "send-time-limit")
+                .register(registry);
+    }
+
+    /** A point-in-time view of one session's outbound queue. */
+    public record SessionStats(String id, int queueDepth, int queuedBytes, long dropped, long conflated,
+                               long sendInProgressMillis) {
+
+        static SessionStats of(BoundedSessionDecorator session) {
+            return new SessionStats(session.getId(), session.getQueueDepth(), session.getBufferSize(),
+                    session.getDropped(), session.getConflated(), session.getTimeSinceSendStarted());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.websocket;
+
+import java.util.Locale;
+
+/**
+ * What to do when a STOMP session's outbound queue outgrows its limits because the client reads
+ * more slowly than it is sent to.
+ */
+public enum SlowConsumerPolicy {
+
+    /** Discard the oldest queued broadcasts until the queue fits. */
+    DROP_OLDEST,
+
+    /**
+     * Discard queued broadcasts superseded by a newer one to the same destination, so the client
+     * receives only the latest state of each namespace; drop the oldest if that is not enough.
+     */
+    CONFLATE,
+
+    /** Close the session, as Spring's default session decorator does. */
+    DISCONNECT;
+
+    /**
+     * @param value the policy name as written in properties, e.g. {@code drop-oldest}
+     * @return the policy
+     * @throws IllegalArgumentException if no policy has that name
+     */
+    public static SlowConsumerPolicy fromProperty(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.websocket;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/stompsessions}: the outbound queue depth, drops and blocked-send time of each
+ * open STOMP session, deepest queue first. {@code ?limit=} bounds the list, 100 by default.
+ */
+@Endpoint(id = "stompsessions")
+public class StompSessionsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final OutboundSessions sessions;
+    private final OutboundLimits limits;
+
+    public StompSessionsEndpoint(OutboundSessions sessions, OutboundLimits limits) {
+        this.sessions = sessions;
+        this.limits = limits;
+    }
+
+    @ReadOperation
+    public Map<String, Object> sessions(@Nullable Integer limit) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("limits", limits);
+        body.put("open", sessions.size());
+        body.put("queuedMessages", sessions.queuedMessages());
+        body.put("queuedBytes", sessions.queuedBytes());
+        body.put("sessions", sessions.sessions(limit == null ? DEFAULT_LIMIT : Math.max(limit, 0)));
+        return body;
+    }
+}
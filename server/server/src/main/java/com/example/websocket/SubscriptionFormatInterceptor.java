@@ -0,0 +1,123 @@
+package com.example.websocket;
+
+import com.example.codec.WireFormat;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lets STOMP subscribers opt into a binary encoding of their broadcasts.
+ * A SUBSCRIBE frame whose {@code accept} header names CBOR or Smile records that format for the
+ * subscription, and JSON MESSAGE frames for it are re-encoded on the client outbound channel.
+ * The broker encodes a broadcast once and shares the bytes across subscribers, so re-encoded
+ * payloads are cached by identity and each broadcast is transcoded once per format.
+ * Registered on both client channels; SockJS sessions cannot carry binary frames and stay on JSON.
+ */
+public class SubscriptionFormatInterceptor implements ChannelInterceptor {
+
+    /** SUBSCRIBE header naming the media type wanted for the subscription's messages. */
+    public static final String ACCEPT_HEADER = "accept";
+
+    /** Session attribute set on sessions whose transport only carries text frames. */
+    static final String TEXT_ONLY_ATTRIBUTE = SubscriptionFormatInterceptor.class.getName() + ".textOnly";
+
+    private static final int CACHE_SLOTS = 64;
+
+    private final Map<String, Map<String, WireFormat>> formats = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<Transcoded> cache = new AtomicReferenceArray<>(CACHE_SLOTS);
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+        switch (type) {
+            case SUBSCRIBE -> subscribe(sessionId, headers);
+            case UNSUBSCRIBE -> {
+                Map<String, WireFormat> subscriptions = formats.get(sessionId);
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+                if (subscriptions != null && subscriptionId != null) {
+                    subscriptions.remove(subscriptionId);
+                }
+            }
+            case DISCONNECT -> formats.remove(sessionId);
+            case MESSAGE -> {
+                return transcode(message, sessionId);
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private void subscribe(String sessionId, MessageHeaders headers) {
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        String accept = NativeMessageHeaderAccessor.getFirstNativeHeader(ACCEPT_HEADER, headers);
+        if (subscriptionId == null || accept == null) {
+            return;
+        }
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        if (attributes != null && attributes.containsKey(TEXT_ONLY_ATTRIBUTE)) {
+            return;
+        }
+        WireFormat format = WireFormat.negotiate(accept);
+        if (format.isBinary()) {
+            formats.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, format);
+        }
+    }
+
+    private Message<?> transcode(Message<?> message, String sessionId) {
+        Map<String, WireFormat> subscriptions = formats.get(sessionId);
+        if (subscriptions == null) {
+            return message;
+        }
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        WireFormat format = subscriptionId != null ? subscriptions.get(subscriptionId) : null;
+        if (format == null || !(message.getPayload() instanceof byte[] json) || !isJson(message.getHeaders())) {
+            return message;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        accessor.updateStompCommandAsServerMessage();
+        accessor.setContentType(format.mediaType());
+        // The STOMP handler only writes octet-stream payloads as binary WebSocket frames, so the
+        // frame's own content-type header keeps the real type while the transport sees bytes
+        accessor.setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        return MessageBuilder.createMessage(encode(json, format), accessor.getMessageHeaders());
+    }
+
+    private byte[] encode(byte[] json, WireFormat format) {
+        int slot = (System.identityHashCode(json) * 31 + format.ordinal()) & (CACHE_SLOTS - 1);
+        Transcoded cached = cache.get(slot);
+        if (cached != null && cached.source == json && cached.format == format) {
+            return cached.encoded;
+        }
+        byte[] encoded = format.fromJson(json);
+        cache.set(slot, new Transcoded(json, format, encoded));
+        return encoded;
+    }
+
+    private static boolean isJson(MessageHeaders headers) {
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof String value ? MimeTypeUtils.parseMimeType(value) : (MimeType) contentType;
+        return WireFormat.of(mimeType) == WireFormat.JSON;
+    }
+
+    private record Transcoded(byte[] source, WireFormat format, byte[] encoded) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.codec;
+
+import com.example.dto.MessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireFormatTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void negotiate_PrefersHighestQualityFormatAndDefaultsToJson() {
+        assertEquals(WireFormat.JSON, WireFormat.negotiate(null));
+        assertEquals(WireFormat.JSON, WireFormat.negotiate("*/*"));
+        assertEquals(WireFormat.JSON, WireFormat.negotiate("not a media type"));
+        assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor"));
+        assertEquals(WireFormat.SMILE, WireFormat.negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        assertEquals(WireFormat.JSON, WireFormat.negotiate("application/json, application/cbor"));
+        assertEquals(WireFormat.CBOR, WireFormat.negotiate("text/html, application/cbor;q=0.9, */*;q=0.1"));
+    }
+
+    @Test
+    void of_MatchesTypeAndSubtypeOnly() {
+        assertEquals(WireFormat.JSON, WireFormat.of(MediaType.parseMediaType("application/json;charset=UTF-8")));
+        assertEquals(WireFormat.CBOR, WireFormat.of(MediaType.APPLICATION_CBOR));
+        assertNull(WireFormat.of(MediaType.TEXT_PLAIN));
+        assertNull(WireFormat.of(null));
+    }
+
+    @Test
+    void fromJson_ProducesSmallerPayloadThatDecodesToSameMessage() throws Exception {
+        MessageDto message = new MessageDto("payload ".repeat(8), "namespace");
+        byte[] json = objectMapper.writeValueAsBytes(message);
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] encoded = format.fromJson(json);
+            ObjectMapper mapper = format.mapper(objectMapper);
+
+            assertEquals(message.getContent(), mapper.readValue(encoded, MessageDto.class).getContent(), format.name());
+            assertArrayEquals(encoded, mapper.writeValueAsBytes(message), format.name());
+            if (format.isBinary()) {
+                assertTrue(encoded.length < json.length, format.name());
+            }
+        }
+        assertSame(json, WireFormat.JSON.fromJson(json));
+    }
+}
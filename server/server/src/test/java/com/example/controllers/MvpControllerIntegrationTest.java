@@ -1,7 +1,14 @@
 package com.example.controllers;
 
+import com.example.codec.EncodedState;
+import com.example.codec.WireFormat;
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.services.EncodedStateCache;
+import com.example.services.StateEventStreams;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.ajp.mvp.server.ServerApplication;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,9 +17,22 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebM
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -24,6 +44,9 @@ class MvpControllerIntegrationTest {
     @Autowired
     private WebApplicationContext webApplicationContext;
 
+    @Autowired
+    private EncodedStateCache encodedStates;
+
     private MockMvc mockMvc;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -51,19 +74,288 @@ class MvpControllerIntegrationTest {
                 .andExpect(jsonPath("$.namespace").value("nonexistent"));
     }
 
+    @Test
+    void getState_ConditionalGet_Returns304UntilStateChanges() throws Exception {
+        String eTag = mockMvc.perform(get("/api/state/etagTest"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/state/etagTest").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(post("/api/message/etagTest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MessageDto("changed", "etagTest"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/state/etagTest").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("degnahc"))
+                .andExpect(header().string("ETag", not(eTag)));
+    }
+
     @Test
     void sendMessage_Success() throws Exception {
         MessageDto message = new MessageDto("Test message", "sendTest");
 
-        mockMvc.perform(post("/api/message/sendTest")
+        MvcResult sent = mockMvc.perform(post("/api/message/sendTest")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(message)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(sent))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.content").value("egassem tseT")) // Reversed
                 .andExpect(jsonPath("$.namespace").value("sendTest"));
     }
 
+    @Test
+    void getHistory_ReturnsVersionsSince() throws Exception {
+        for (String content : new String[] {"one", "two", "three"}) {
+            mockMvc.perform(post("/api/message/historyTest")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new MessageDto(content, "historyTest"))))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/state/historyTest/history").param("since", "1").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].version").value(2))
+                .andExpect(jsonPath("$[0].content").value("owt"))
+                .andExpect(jsonPath("$[1].version").value(3));
+    }
+
+    @Test
+    void getHistory_InvalidLimit() throws Exception {
+        mockMvc.perform(get("/api/state/historyTest/history").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batch_SendsAndReadsManyNamespaces() throws Exception {
+        MvcResult sent = mockMvc.perform(post("/api/message/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(
+                                new MessageDto("alpha", "batchA"), new MessageDto("beta", "batchB")))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(sent))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].content").value("ahpla"))
+                .andExpect(jsonPath("$[1].namespace").value("batchB"));
+
+        MvcResult read = mockMvc.perform(post("/api/state/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"batchA\", \"batchB\", \"batchMissing\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(read))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].content").value("ahpla"))
+                .andExpect(jsonPath("$[1].content").value("ateb"))
+                .andExpect(jsonPath("$[2].content").value("Default state for batchMissing"));
+    }
+
+    @Test
+    void getState_AcceptCbor_ReturnsCborWithItsOwnETag() throws Exception {
+        mockMvc.perform(post("/api/message/cborTest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MessageDto("binary", "cborTest"))))
+                .andExpect(status().isOk());
+        String jsonETag = mockMvc.perform(get("/api/state/cborTest"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        MvcResult result = mockMvc.perform(get("/api/state/cborTest").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn();
+        VersionedMessageDto state = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), VersionedMessageDto.class);
+        String cborETag = result.getResponse().getHeader("ETag");
+
+        assertEquals("yranib", state.getContent());
+        assertNotEquals(jsonETag, cborETag);
+        mockMvc.perform(get("/api/state/cborTest").accept(MediaType.APPLICATION_CBOR).header("If-None-Match", cborETag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/state/cborTest").header("If-None-Match", cborETag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getState_RepeatReadsWriteTheStoredEncoding() throws Exception {
+        mockMvc.perform(post("/api/message/encodedTest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MessageDto("pre-encoded", "encodedTest"))))
+                .andExpect(status().isOk());
+
+        byte[] first = mockMvc.perform(get("/api/state/encodedTest"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+        MvcResult second = mockMvc.perform(get("/api/state/encodedTest"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.content").value("dedocne-erp"))
+                .andExpect(jsonPath("$.version").value(1))
+                .andReturn();
+        MvcResult cbor = mockMvc.perform(get("/api/state/encodedTest").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        EncodedState cached = (EncodedState) encodedStates.getBody("encodedTest");
+        assertArrayEquals(cached.encoded(WireFormat.JSON), first);
+        assertArrayEquals(first, second.getResponse().getContentAsByteArray());
+        assertEquals(first.length, second.getResponse().getContentLength());
+        assertArrayEquals(cached.encoded(WireFormat.CBOR), cbor.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void sendMessage_SmileBody_ReturnsSmile() throws Exception {
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        SmileMapper smileMapper = new SmileMapper();
+
+        MvcResult sent = mockMvc.perform(post("/api/message/smileTest")
+                        .contentType(smile)
+                        .accept(smile)
+                        .content(smileMapper.writeValueAsBytes(new MessageDto("compact", "smileTest"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(sent))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(smile))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals("tcapmoc", smileMapper.readValue(body, VersionedMessageDto.class).getContent());
+    }
+
+    @Test
+    void batch_AcceptCbor_StreamsCborArray() throws Exception {
+        MvcResult read = mockMvc.perform(post("/api/state/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content("[\"cborBatchA\", \"cborBatchB\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(read))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        VersionedMessageDto[] states = new CBORMapper().readValue(body, VersionedMessageDto[].class);
+        assertEquals(2, states.length);
+        assertEquals("Default state for cborBatchB", states[1].getContent());
+    }
+
+    @Test
+    void batch_RejectsMessageWithoutNamespace() throws Exception {
+        mockMvc.perform(post("/api/message/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"content\": \"orphan\"}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamState_SendsCurrentStateThenEachChange() throws Exception {
+        send("sseLive", "first");
+        MvcResult stream = mockMvc.perform(get("/api/state/sseLive/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(stream, "tsrif");
+        assertTrue(stream.getResponse().getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+
+        send("sseLive", "second");
+
+        String events = awaitEvents(stream, "tsrif", "dnoces");
+        assertTrue(events.contains("event:state"));
+        assertTrue(lastEventId(events).endsWith(":sseLive=2"), events);
+    }
+
+    @Test
+    void streamState_ResumesFromLastEventId() throws Exception {
+        send("sseResume", "seen");
+        MvcResult first = mockMvc.perform(get("/api/state/sseResume/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String lastEventId = lastEventId(awaitEvents(first, "nees"));
+
+        send("sseResume", "missedA");
+        send("sseResume", "missedB");
+        MvcResult resumed = mockMvc.perform(get("/api/state/sseResume/stream").header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = awaitEvents(resumed, "Adessim", "Bdessim");
+        assertFalse(events.contains("nees"));
+        assertTrue(events.indexOf("Adessim") < events.indexOf("Bdessim"));
+    }
+
+    @Test
+    void streamState_MultiplexesNamespaces() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/state/sseA/stream").param("namespaces", "sseB"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(stream, "Default state for sseA", "Default state for sseB");
+
+        send("sseB", "bee");
+
+        String events = awaitEvents(stream, "eeb");
+        String id = lastEventId(events);
+        assertTrue(id.contains("sseA=-1") && id.contains("sseB=1"), id);
+    }
+
+    @Test
+    void streamState_RejectsTooManyNamespaces() throws Exception {
+        String[] namespaces = new String[StateEventStreams.MAX_NAMESPACES_PER_STREAM];
+        for (int i = 0; i < namespaces.length; i++) {
+            namespaces[i] = "sseMany" + i;
+        }
+        mockMvc.perform(get("/api/state/sseMany/stream").param("namespaces", namespaces).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void send(String namespace, String content) throws Exception {
+        MvcResult sent = mockMvc.perform(post("/api/message/" + namespace)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MessageDto(content, namespace))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(sent)).andExpect(status().isOk());
+    }
+
+    /**
+     * Streams never complete, so wait for the events to arrive in the response written so far.
+     */
+    private static String awaitEvents(MvcResult stream, String... fragments) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            String events = stream.getResponse().getContentAsString();
+            if (List.of(fragments).stream().allMatch(events::contains)) {
+                return events;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Stream did not send " + List.of(fragments) + ", only: " + events);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static String lastEventId(String events) {
+        Matcher ids = Pattern.compile("(?m)^id:(.*)$").matcher(events);
+        String last = null;
+        while (ids.find()) {
+            last = ids.group(1);
+        }
+        assertTrue(last != null, "No event ids in: " + events);
+        return last;
+    }
+
     @Test
     void sendMessage_InvalidRequest() throws Exception {
         mockMvc.perform(post("/api/message/invalidTest")
@@ -1,15 +1,31 @@
 package com.example.controllers;
 
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
 import com.example.services.SystemStateService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class MvpControllerTest {
@@ -17,6 +33,9 @@ class MvpControllerTest {
     @Mock
     private SystemStateService stateService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private MvpController controller;
 
@@ -30,26 +49,167 @@ class MvpControllerTest {
         MessageDto expected = new MessageDto("Test state", "test");
         when(stateService.getState("test")).thenReturn(expected);
 
-        ResponseEntity<MessageDto> response = controller.getState("test");
+        ResponseEntity<Object> response = controller.getState("test", webRequest(null));
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(expected, response.getBody());
         verify(stateService).getState("test");
     }
 
+    @Test
+    void getState_MatchingETag_Returns304WithoutReadingState() {
+        when(stateService.getVersion("test")).thenReturn(7L);
+        when(stateService.getState("test")).thenReturn(new VersionedMessageDto("Test state", "test", 7));
+        String eTag = controller.getState("test", webRequest(null)).getHeaders().getETag();
+
+        reset(stateService);
+        when(stateService.getVersion("test")).thenReturn(7L);
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        ResponseEntity<Object> response = controller.getState("test", webRequest(eTag, servletResponse));
+
+        assertNull(response);
+        assertEquals(304, servletResponse.getStatus());
+        assertEquals(eTag, servletResponse.getHeader("ETag"));
+        verify(stateService, never()).getState(any());
+    }
+
+    @Test
+    void getState_StaleETag_ReturnsNewState() {
+        when(stateService.getVersion("test")).thenReturn(7L);
+        when(stateService.getState("test")).thenReturn(new VersionedMessageDto("Test state", "test", 7));
+        String staleETag = controller.getState("test", webRequest(null)).getHeaders().getETag();
+
+        VersionedMessageDto updated = new VersionedMessageDto("Updated", "test", 8);
+        when(stateService.getVersion("test")).thenReturn(8L);
+        when(stateService.getState("test")).thenReturn(updated);
+        ResponseEntity<Object> response = controller.getState("test", webRequest(staleETag));
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(updated, response.getBody());
+        assertNotEquals(staleETag, response.getHeaders().getETag());
+    }
+
+    @Test
+    void getState_UnversionedService_OmitsETag() {
+        when(stateService.getVersion("test")).thenReturn(-1L);
+        when(stateService.getState("test")).thenReturn(new MessageDto("Test state", "test"));
+
+        ResponseEntity<Object> response = controller.getState("test", webRequest(null));
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertNull(response.getHeaders().getETag());
+    }
+
 @Test
 void sendMessage_CallsServiceAndReturnsResult() {
     MessageDto message = new MessageDto("Test message", "test");
     MessageDto processed = new MessageDto("egassem tseT", "test"); // Reversed
-    when(stateService.sendMessage("test", message)).thenReturn(processed);
+    when(stateService.sendMessageAsync("test", message)).thenReturn(CompletableFuture.completedFuture(processed));
 
-    ResponseEntity<MessageDto> response = controller.sendMessage("test", message);
+    ResponseEntity<MessageDto> response = controller.sendMessage("test", message).join();
 
     assertEquals(200, response.getStatusCodeValue());
     assertEquals(processed, response.getBody());
-    verify(stateService).sendMessage("test", message);
+    verify(stateService).sendMessageAsync("test", message);
 }
 
+    @Test
+    void getHistory_ReturnsServiceResult() {
+        List<VersionedMessageDto> expected = List.of(new VersionedMessageDto("v2", "test", 2));
+        when(stateService.getHistory("test", 1, 10)).thenReturn(expected);
+
+        ResponseEntity<List<VersionedMessageDto>> response = controller.getHistory("test", 1, 10);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(expected, response.getBody());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getStates_StreamsServiceResultsAsJsonArray() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<MessageDto> sink = invocation.getArgument(1);
+            sink.accept(new MessageDto("A", "a"));
+            sink.accept(new MessageDto("B", "b"));
+            return null;
+        }).when(stateService).getStates(eq(List.of("a", "b")), any(Consumer.class));
+
+        ResponseEntity<StreamingResponseBody> response = controller.getStates(List.of("a", "b"), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("[{\"content\":\"A\",\"namespace\":\"a\"},{\"content\":\"B\",\"namespace\":\"b\"}]", out.toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendMessages_StreamsResultsAndEndsWithTheFailure() throws Exception {
+        List<MessageDto> messages = List.of(new MessageDto("A", "a"), new MessageDto("B", "b"), new MessageDto("C", "c"));
+        doAnswer(invocation -> {
+            Consumer<MessageDto> sink = invocation.getArgument(1);
+            sink.accept(new MessageDto("A", "a"));
+            throw new IllegalStateException("storage full");
+        }).when(stateService).sendMessages(eq(messages), any(Consumer.class));
+
+        ResponseEntity<StreamingResponseBody> response = controller.sendMessages(messages, null);
+        verifyNoInteractions(stateService); // Messages are sent as the body is written
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        List<java.util.Map<String, Object>> elements = objectMapper.readValue(out.toByteArray(), List.class);
+        assertEquals(2, elements.size());
+        assertEquals("a", elements.get(0).get("namespace"));
+        assertEquals("storage full", elements.get(1).get("message"));
+        assertEquals(1, elements.get(1).get("index"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendMessages_FailureBeforeAnyStore_IsThrown() {
+        List<MessageDto> messages = List.of(new MessageDto("A", "a"));
+        doThrow(new IllegalStateException("storage full")).when(stateService).sendMessages(eq(messages), any(Consumer.class));
+
+        ResponseEntity<StreamingResponseBody> response = controller.sendMessages(messages, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThrows(IllegalStateException.class, () -> response.getBody().writeTo(out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendMessages_ClientGone_SendsTheRestOfTheBatch() throws Exception {
+        List<MessageDto> messages = List.of(new MessageDto("A", "a"), new MessageDto("B", "b"), new MessageDto("C", "c"));
+        List<MessageDto> sent = new java.util.ArrayList<>();
+        doAnswer(invocation -> {
+            Consumer<MessageDto> sink = invocation.getArgument(1);
+            for (MessageDto message : messages) {
+                sent.add(message);
+                sink.accept(message);
+            }
+            return null;
+        }).when(stateService).sendMessages(eq(messages), any(Consumer.class));
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        controller.sendMessages(messages, null).getBody().writeTo(gone);
+
+        assertEquals(messages, sent);
+    }
+
+    @Test
+    void sendMessages_RejectsMessageWithoutNamespace() {
+        List<MessageDto> messages = List.of(new MessageDto("ok", "a"), new MessageDto("missing", null));
+
+        assertThrows(IllegalArgumentException.class, () -> controller.sendMessages(messages, null));
+        verifyNoInteractions(stateService);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     void heartbeat_ReturnsAliveStatus() {
@@ -62,4 +222,16 @@ void sendMessage_CallsServiceAndReturnsResult() {
         assertEquals("alive", body.get("status"));
         assertNotNull(body.get("timestamp"));
     }
-}
\ No newline at end of file
+
+    private static ServletWebRequest webRequest(String ifNoneMatch) {
+        return webRequest(ifNoneMatch, new MockHttpServletResponse());
+    }
+
+    private static ServletWebRequest webRequest(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/state/test");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+}
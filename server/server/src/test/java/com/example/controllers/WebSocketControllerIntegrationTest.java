@@ -0,0 +1,201 @@
+package com.example.controllers;
+
+import com.example.codec.EncodedState;
+import com.example.dto.MessageDto;
+import com.example.dto.StateDeltaDto;
+import com.example.services.EncodedStateCache;
+import com.example.services.SystemStateService;
+import com.example.websocket.OutboundSessions;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.ajp.mvp.server.ServerApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = ServerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"mvp.broadcast.conflation.namespaces=hot:300", "mvp.broadcast.delta.namespaces=doc-*"})
+class WebSocketControllerIntegrationTest {
+
+    private static final int UPDATES = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SystemStateService stateService;
+
+    @Autowired
+    private OutboundSessions outboundSessions;
+
+    @Autowired
+    private EncodedStateCache encodedStates;
+
+    private WebSocketStompClient client;
+
+    private StompSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(MediaType.APPLICATION_CBOR);
+        cbor.setObjectMapper(CBORMapper.builder().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).build());
+        client.setMessageConverter(new CompositeMessageConverter(List.of(new MappingJackson2MessageConverter(), cbor)));
+        session = client.connectAsync("ws://localhost:" + port + "/ws/websocket", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        session.disconnect();
+        client.stop();
+    }
+
+    @Test
+    void updates_AreBroadcastOneForOne() throws Exception {
+        BlockingQueue<MessageDto> received = subscribe("cold");
+
+        for (int i = 0; i < UPDATES; i++) {
+            session.send("/app/state/cold", new MessageDto("update" + i, null));
+        }
+
+        for (int i = 0; i < UPDATES; i++) {
+            assertNotNull(received.poll(5, TimeUnit.SECONDS), "broadcast " + i);
+        }
+    }
+
+    @Test
+    void conflatedNamespace_BroadcastsBurstOnceWithLatestState() throws Exception {
+        BlockingQueue<MessageDto> received = subscribe("hot");
+
+        for (int i = 0; i < UPDATES; i++) {
+            session.send("/app/state/hot", new MessageDto("update" + i, null));
+        }
+
+        MessageDto broadcast = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(broadcast);
+        // Inbound messages are processed concurrently, so the latest state is whichever got the highest version
+        assertEquals(stateService.getState("hot").getContent(), broadcast.getContent());
+        assertNull(received.poll(600, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void connectedSession_IsTrackedWithEmptyOutboundQueue() throws Exception {
+        BlockingQueue<MessageDto> received = subscribe("tracked");
+        session.send("/app/state/tracked", new MessageDto("update", null));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        assertTrue(outboundSessions.size() >= 1);
+        assertEquals(0, outboundSessions.sessions(10).get(0).dropped());
+    }
+
+    @Test
+    void deltaNamespace_SendsSnapshotOnSubscribeThenDeltas() throws Exception {
+        BlockingQueue<JsonNode> received = subscribe("doc-1", JsonNode.class);
+        // The default processing reverses content, so palindromes are stored as sent
+        String draft = "a".repeat(600) + "b" + "a".repeat(600);
+        String revised = "a".repeat(600) + "c" + "a".repeat(600);
+
+        JsonNode snapshot = received.poll(5, TimeUnit.SECONDS);
+        assertEquals("Default state for doc-1", snapshot.get("content").asText());
+
+        session.send("/app/state/doc-1", new MessageDto(draft, null));
+        JsonNode full = received.poll(5, TimeUnit.SECONDS);
+        assertEquals(draft, full.get("content").asText());
+
+        session.send("/app/state/doc-1", new MessageDto(revised, null));
+        StateDeltaDto delta = new ObjectMapper().treeToValue(received.poll(5, TimeUnit.SECONDS), StateDeltaDto.class);
+        assertEquals(full.get("version").asLong(), delta.getBaseVersion());
+        assertEquals("c", delta.getInsert());
+        assertEquals(revised, delta.applyTo(draft));
+    }
+
+    @Test
+    void binarySubscription_ReceivesCborWhileOthersReceiveJson() throws Exception {
+        BlockingQueue<MessageDto> json = subscribe("binary");
+        BlockingQueue<StompHeaders> cborHeaders = new LinkedBlockingQueue<>();
+        BlockingQueue<MessageDto> cbor = new LinkedBlockingQueue<>();
+        StompHeaders subscribe = new StompHeaders();
+        subscribe.setDestination("/topic/state/binary");
+        subscribe.set("accept", "application/cbor");
+        session.subscribe(subscribe, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return MessageDto.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                cborHeaders.add(headers);
+                cbor.add((MessageDto) payload);
+            }
+        });
+        Thread.sleep(200);
+
+        session.send("/app/state/binary", new MessageDto("level", null));
+
+        assertEquals("level", json.poll(5, TimeUnit.SECONDS).getContent());
+        assertEquals("level", cbor.poll(5, TimeUnit.SECONDS).getContent());
+        assertEquals(MediaType.APPLICATION_CBOR, cborHeaders.poll().getContentType());
+    }
+
+    @Test
+    void stateRequest_IsAnsweredFromTheStoredEncoding() throws Exception {
+        stateService.sendMessage("requested", new MessageDto("stored", null));
+        BlockingQueue<MessageDto> received = subscribe("requested");
+
+        session.send("/app/state/requested/request", "");
+        session.send("/app/state/requested/request", "");
+
+        for (int i = 0; i < 2; i++) {
+            MessageDto state = received.poll(5, TimeUnit.SECONDS);
+            assertEquals("derots", state.getContent());
+            assertEquals("requested", state.getNamespace());
+        }
+        assertInstanceOf(EncodedState.class, encodedStates.getBody("requested"));
+    }
+
+    private BlockingQueue<MessageDto> subscribe(String namespace) throws InterruptedException {
+        return subscribe(namespace, MessageDto.class);
+    }
+
+    private <T> BlockingQueue<T> subscribe(String namespace, Class<T> payloadType) throws InterruptedException {
+        BlockingQueue<T> received = new LinkedBlockingQueue<>();
+        session.subscribe("/topic/state/" + namespace, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return payloadType;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add(payloadType.cast(payload));
+            }
+        });
+        // Let the subscription reach the broker before publishing
+        Thread.sleep(200);
+        return received;
+    }
+}
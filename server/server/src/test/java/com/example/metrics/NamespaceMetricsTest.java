@@ -0,0 +1,171 @@
+package com.example.metrics;
+
+import com.example.dto.MessageDto;
+import com.example.services.StateMetrics;
+import com.example.services.StateStoreLimits;
+import com.example.services.SystemStateServiceImpl;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NamespaceMetricsTest {
+
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void stateService_ReportsCountsAndPhaseLatencies() {
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 10, 1);
+        SystemStateServiceImpl service = new SystemStateServiceImpl();
+        service.setMetrics(metrics);
+
+        service.sendMessage("alpha", new MessageDto("hello", null));
+        service.sendMessage("alpha", new MessageDto("again", null));
+        service.getState("alpha");
+
+        assertEquals(2, operations("alpha", "send-message"));
+        assertEquals(1, operations("alpha", "get-state"));
+        for (String operation : new String[] {"send-message", "get-state"}) {
+            assertTrue(registry.get("mvp.state.latency.percentile").tags("namespace", "alpha", "operation", operation, "phi", "0.99")
+                    .gauge().value() > 0, operation);
+        }
+        for (String operation : new String[] {"send-message", "process-message", "store-message", "get-state"}) {
+            assertTrue(registry.get("mvp.state.latency.all").tags("operation", operation).timer().count() > 0, operation);
+        }
+        Timer sends = registry.get("mvp.state.latency").tags("namespace", "alpha", "operation", "send-message").timer();
+        assertEquals(2, sends.count());
+        assertTrue(sends.max(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    void histogramsAreKeptOnTheAggregateTimersOnly() {
+        Map<String, Boolean> histograms = new HashMap<>();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                histograms.put(id.getName() + id.getTags(), Boolean.TRUE.equals(config.isPercentileHistogram()));
+                return config;
+            }
+        });
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 10, 1);
+        metrics.recorder("alpha").record(StateMetrics.Operation.STORE_MESSAGE, 1_000);
+
+        histograms.forEach((meter, histogram) ->
+                assertEquals(meter.startsWith("mvp.state.latency.all"), histogram, meter));
+        assertTrue(histograms.keySet().stream().anyMatch(meter -> meter.contains("namespace")));
+        assertNull(registry.find("mvp.state.latency").tags("namespace", "alpha", "operation", "store-message").meter(),
+                "Phases have no per-namespace timer");
+        assertEquals(1, registry.get("mvp.state.latency.all").tags("operation", "store-message").timer().count());
+    }
+
+    @Test
+    void evictedNamespace_LosesItsMetersAndFreesItsSlot() {
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 1, 1);
+        // A budget smaller than any namespace evicts each one as soon as it is written
+        SystemStateServiceImpl service = new SystemStateServiceImpl(new StateStoreLimits(1, "", 0));
+        service.setMetrics(metrics);
+
+        service.sendMessage("alpha", new MessageDto("hello", null));
+
+        assertEquals(1, service.getStoreStats().sizeEvictions());
+        assertEquals(0, metrics.trackedNamespaces());
+        assertNull(registry.find("mvp.state.operations").tag("namespace", "alpha").meter());
+        assertNull(registry.find("mvp.state.latency").tag("namespace", "alpha").meter());
+        assertNull(registry.find("mvp.state.latency.percentile").tag("namespace", "alpha").meter());
+        metrics.recorder("beta").start(StateMetrics.Operation.GET_STATE);
+        assertEquals(1, operations("beta", "get-state"), "The freed slot goes to the next namespace");
+    }
+
+    @Test
+    void expireIdle_RemovesNamespacesWithoutCallsSinceTheLastSweep() {
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 10, 1);
+        metrics.recorder("busy").start(StateMetrics.Operation.GET_STATE);
+        metrics.recorder("quiet").start(StateMetrics.Operation.GET_STATE);
+        metrics.expireIdle();
+        assertEquals(2, metrics.trackedNamespaces(), "Both had calls since they were registered");
+
+        metrics.recorder("busy").start(StateMetrics.Operation.GET_STATE);
+        metrics.expireIdle();
+
+        assertEquals(1, metrics.trackedNamespaces());
+        assertEquals(2, operations("busy", "get-state"));
+        assertNull(registry.find("mvp.state.operations").tag("namespace", "quiet").meter());
+    }
+
+    @Test
+    void namespacesBeyondTheLimitShareOneSetOfMeters() {
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 2, 1);
+
+        for (int i = 0; i < 50; i++) {
+            metrics.recorder("ns" + i).start(StateMetrics.Operation.GET_STATE);
+        }
+
+        assertEquals(2, metrics.trackedNamespaces());
+        assertEquals(1, operations("ns0", "get-state"));
+        assertEquals(48, operations(NamespaceMetrics.OTHER_NAMESPACE, "get-state"));
+        assertNull(registry.find("mvp.state.operations").tag("namespace", "ns2").meter());
+        assertEquals(3, registry.find("mvp.state.operations").tag("operation", "get-state").meters().size());
+    }
+
+    @Test
+    void sampling_CountsEveryCallButTimesOnlySome() {
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 10, 8);
+        StateMetrics.Recorder recorder = metrics.recorder("alpha");
+
+        int timed = 0;
+        for (int i = 0; i < 8_000; i++) {
+            if (recorder.start(StateMetrics.Operation.GET_STATE) != StateMetrics.UNTIMED) {
+                timed++;
+            }
+        }
+
+        assertEquals(8_000, operations("alpha", "get-state"));
+        assertTrue(timed > 700 && timed < 1_300, "timed " + timed);
+    }
+
+    @Test
+    void broadcastInterceptor_RecordsStateTopicsOnly() {
+        NamespaceMetrics metrics = new NamespaceMetrics(registry, 10, 1);
+        BroadcastMetricsInterceptor interceptor = new BroadcastMetricsInterceptor(metrics);
+
+        for (String destination : new String[] {"/topic/state/alpha", "/topic/other", "/topic/state/alpha"}) {
+            Message<?> message = message(destination);
+            interceptor.preSend(message, null);
+            interceptor.afterSendCompletion(message, null, true, null);
+        }
+
+        assertEquals(2, operations("alpha", "broadcast"));
+        assertEquals(1, metrics.trackedNamespaces());
+        assertEquals(2, registry.get("mvp.state.latency").tags("namespace", "alpha", "operation", "broadcast")
+                .timer().count());
+    }
+
+    private double operations(String namespace, String operation) {
+        return registry.get("mvp.state.operations").tags("namespace", namespace, "operation", operation)
+                .functionCounter().count();
+    }
+
+    private static Message<?> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
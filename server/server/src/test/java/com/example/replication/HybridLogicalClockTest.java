@@ -0,0 +1,48 @@
+package com.example.replication;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HybridLogicalClockTest {
+
+    @Test
+    void now_FollowsTheWallClockAndNeverRepeats() {
+        AtomicLong wall = new AtomicLong(5_000);
+        HybridLogicalClock clock = new HybridLogicalClock(wall::get);
+
+        long first = clock.now();
+        long second = clock.now();
+        assertEquals(5_000, HybridLogicalClock.millis(first));
+        assertEquals(first + 1, second, "A stalled wall clock advances the logical counter");
+
+        wall.set(4_000); // Stepped back, as NTP may
+        assertTrue(clock.now() > second);
+
+        wall.set(6_000);
+        assertEquals(6_000L << HybridLogicalClock.LOGICAL_BITS, clock.now());
+    }
+
+    @Test
+    void update_OrdersLaterTimestampsAfterTheReceivedOne() {
+        HybridLogicalClock clock = new HybridLogicalClock(() -> 1_000);
+        long remote = (9_000L << HybridLogicalClock.LOGICAL_BITS) + 7;
+
+        assertTrue(clock.update(remote) > remote);
+        assertTrue(clock.now() > remote, "A node behind in wall time still stamps its next write later");
+    }
+
+    @Test
+    void update_RefusesTimestampsTooFarAheadOfTheWallClock() {
+        HybridLogicalClock clock = new HybridLogicalClock(() -> 1_000, 500);
+        long withinSkew = 1_500L << HybridLogicalClock.LOGICAL_BITS;
+        long tooFar = 1_501L << HybridLogicalClock.LOGICAL_BITS;
+
+        assertTrue(clock.accepts(withinSkew));
+        assertFalse(clock.accepts(tooFar));
+        assertThrows(IllegalArgumentException.class, () -> clock.update(tooFar));
+        assertEquals(1_000, HybridLogicalClock.millis(clock.now()), "A refused timestamp does not move the clock");
+    }
+}
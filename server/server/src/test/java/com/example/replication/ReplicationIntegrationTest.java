@@ -0,0 +1,47 @@
+package com.example.replication;
+
+import com.example.dto.MessageDto;
+import com.example.services.SystemStateService;
+import org.ajp.mvp.server.ServerApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two server nodes replicating over TCP, configured through {@code mvp.replication.*}.
+ */
+class ReplicationIntegrationTest {
+
+    private static ConfigurableApplicationContext start(String nodeId, String peers) {
+        return new SpringApplicationBuilder(ServerApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                // Arguments, since default properties give way to application.properties
+                .run("--mvp.replication.enabled=true", "--mvp.replication.node-id=" + nodeId,
+                        "--mvp.replication.secret=integration-test-secret", "--mvp.replication.port=0",
+                        "--mvp.replication.peers=" + peers);
+    }
+
+    @Test
+    void writesOnOneNode_AreReadOnTheOther() throws Exception {
+        try (ConfigurableApplicationContext b = start("b", "");
+             ConfigurableApplicationContext a = start("a", "b@127.0.0.1:" + b.getBean(TcpReplicationTransport.class).localPort())) {
+            SystemStateService nodeA = a.getBean(SystemStateService.class);
+            SystemStateService nodeB = b.getBean(SystemStateService.class);
+
+            nodeA.sendMessage("replicated", new MessageDto("across", null));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!nodeB.getState("replicated").getContent().equals("ssorca")) {
+                assertTrue(System.nanoTime() < deadline, "The write should reach node b");
+                Thread.sleep(10);
+            }
+            ReplicationStats stats = b.getBean(ReplicationEndpoint.class).stats();
+            assertEquals("b", stats.nodeId());
+            assertEquals(1, stats.appliedWrites());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.replication;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.services.StateStoreLimits;
+import com.example.services.SystemStateServiceImpl;
+import com.example.storage.OffHeapStateStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateReplicatorTest {
+
+    private final LocalReplicationTransport.Network network = new LocalReplicationTransport.Network();
+    private final List<StateReplicator> replicators = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        replicators.forEach(StateReplicator::close);
+    }
+
+    private SystemStateServiceImpl node(String id) {
+        return node(id, new SystemStateServiceImpl(), new HybridLogicalClock());
+    }
+
+    private SystemStateServiceImpl node(String id, SystemStateServiceImpl service, HybridLogicalClock clock) {
+        replicators.add(new StateReplicator(service, new LocalReplicationTransport(network, id),
+                StateReplicator.Mode.ASYNC, 256, 1_000, 1_000, clock));
+        return service;
+    }
+
+    private static void eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Nodes did not converge");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static String content(SystemStateServiceImpl node, String namespace) {
+        return node.getState(namespace).getContent();
+    }
+
+    @Test
+    void writes_ReachEveryPeerWithoutBeingProcessedAgain() throws Exception {
+        SystemStateServiceImpl a = node("a");
+        SystemStateServiceImpl b = node("b");
+        SystemStateServiceImpl c = node("c");
+        List<MessageDto> announced = new CopyOnWriteArrayList<>();
+        b.addStateListener(announced::add);
+        List<VersionedMessageDto> applied = new CopyOnWriteArrayList<>();
+        replicators.get(1).setApplyListener(applied::add);
+
+        a.sendMessage("shared", new MessageDto("hello", null));
+
+        eventually(() -> content(b, "shared").equals("olleh") && content(c, "shared").equals("olleh"));
+        assertEquals(1, b.getVersion("shared"), "Replicated writes are versioned by the receiving node");
+        assertEquals(List.of("olleh"), announced.stream().map(MessageDto::getContent).toList());
+        assertEquals(1, applied.size());
+        assertEquals(1, replicators.get(0).getStats().sentWrites());
+        assertEquals(1, replicators.get(1).getStats().appliedWrites());
+    }
+
+    @Test
+    void conflictingWrites_ConvergeOnTheLaterStamp() throws Exception {
+        SystemStateServiceImpl a = node("a", new SystemStateServiceImpl(), new HybridLogicalClock(() -> 1_000));
+        SystemStateServiceImpl b = node("b", new SystemStateServiceImpl(), new HybridLogicalClock(() -> 2_000));
+
+        // Neither node sees the other's write before making its own; b's clock is ahead, so b's wins
+        network.partition(Set.of("a"));
+        b.sendMessage("doc", new MessageDto("bbb", null));
+        a.sendMessage("doc", new MessageDto("aaa", null));
+        network.heal();
+        replicators.get(0).antiEntropy();
+
+        eventually(() -> content(a, "doc").equals("bbb"));
+        assertEquals("bbb", content(b, "doc"));
+
+        // Having seen b's write, a stamps its next write later, whatever its own wall clock says
+        a.sendMessage("doc", new MessageDto("ccc", null));
+        eventually(() -> content(b, "doc").equals("ccc"));
+    }
+
+    @Test
+    void writeStampedTooFarAhead_IsRejected() throws Exception {
+        SystemStateServiceImpl ahead = node("a", new SystemStateServiceImpl(),
+                new HybridLogicalClock(() -> 1_000 + HybridLogicalClock.DEFAULT_MAX_SKEW_MILLIS + 1));
+        SystemStateServiceImpl b = node("b", new SystemStateServiceImpl(), new HybridLogicalClock(() -> 1_000));
+
+        ahead.sendMessage("doc", new MessageDto("future", null));
+        eventually(() -> replicators.get(1).getStats().rejectedWrites() == 1);
+        replicators.get(0).antiEntropy(); // Not repaired either
+        b.sendMessage("doc", new MessageDto("now", null));
+
+        assertEquals("won", content(b, "doc"), "The skewed write neither lands nor outranks later writes");
+        assertEquals(0, replicators.get(1).getStats().appliedWrites());
+        assertTrue(replicators.get(1).getStats().rejectedWrites() >= 1);
+    }
+
+    @Test
+    void antiEntropy_RunsOnTheSenderThreadEveryInterval() throws Exception {
+        SystemStateServiceImpl a = new SystemStateServiceImpl();
+        replicators.add(new StateReplicator(a, new LocalReplicationTransport(network, "a"),
+                StateReplicator.Mode.ASYNC, 256, 1_000, 1_000, new HybridLogicalClock(), 50));
+        SystemStateServiceImpl b = node("b");
+
+        network.partition(Set.of("b"));
+        a.sendMessage("missed", new MessageDto("m", null));
+        eventually(() -> replicators.get(0).getStats().sentWrites() == 1);
+        network.heal();
+
+        // Nobody calls antiEntropy; a's sender sends its digest once the interval has passed
+        eventually(() -> content(b, "missed").equals("m") && replicators.get(0).getStats().repairedWrites() == 1);
+    }
+
+    @Test
+    void partition_IsRepairedByAntiEntropy() throws Exception {
+        SystemStateServiceImpl a = node("a");
+        SystemStateServiceImpl b = node("b");
+        SystemStateServiceImpl c = node("c");
+        a.sendMessage("before", new MessageDto("1", null));
+        eventually(() -> content(c, "before").equals("1"));
+
+        network.partition(Set.of("c"));
+        a.sendMessage("before", new MessageDto("21", null));
+        for (int i = 0; i < 50; i++) {
+            b.sendMessage("during-" + i, new MessageDto("b" + i, null));
+        }
+        c.sendMessage("isolated", new MessageDto("c", null));
+        eventually(() -> content(b, "before").equals("12") && content(a, "during-49").equals("94b"));
+        assertEquals("1", content(c, "before"));
+        assertEquals("Default state for during-0", content(c, "during-0"));
+
+        network.heal();
+        replicators.get(2).antiEntropy();
+
+        eventually(() -> content(c, "before").equals("12") && content(c, "during-49").equals("94b")
+                && content(a, "isolated").equals("c") && content(b, "isolated").equals("c"));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(content(b, "during-" + i), content(c, "during-" + i));
+        }
+        for (StateReplicator replicator : replicators) {
+            assertArrayEquals(replicators.get(0).digest(), replicator.digest());
+        }
+    }
+
+    @Test
+    void antiEntropy_SendsOffHeapStatesFromTheirHandles() throws Exception {
+        SystemStateServiceImpl a = node("a", new SystemStateServiceImpl(null, null, StateStoreLimits.NONE,
+                new OffHeapStateStore(1 << 20, 1 << 16, 64, 0)), new HybridLogicalClock());
+        String large = "x".repeat(1_000);
+        a.sendMessage("large", new MessageDto(large, null));
+
+        SystemStateServiceImpl late = node("late"); // Joins after the write was sent
+        replicators.get(0).antiEntropy();
+
+        eventually(() -> content(late, "large").equals(large));
+        assertEquals(1, replicators.get(0).getStats().repairedWrites());
+    }
+
+    @Test
+    void asyncMode_WritesDoNotWaitForTheNetwork() throws Exception {
+        StalledTransport transport = new StalledTransport();
+        SystemStateServiceImpl service = new SystemStateServiceImpl();
+        replicators.add(new StateReplicator(service, transport, StateReplicator.Mode.ASYNC, 1, 2, 1_000));
+
+        for (int i = 0; i < 10; i++) {
+            service.sendMessage("ns" + i, new MessageDto("m", null)); // Would hang if writes waited on the stalled send
+        }
+        assertTrue(transport.sending.await(5, TimeUnit.SECONDS));
+        ReplicationStats stats = replicators.get(0).getStats();
+        assertTrue(stats.droppedWrites() >= 7, "Writes finding the queue full are dropped, not waited for");
+        transport.release.countDown();
+    }
+
+    @Test
+    void syncMode_WritesWaitUntilSent() throws Exception {
+        StalledTransport transport = new StalledTransport();
+        SystemStateServiceImpl service = new SystemStateServiceImpl();
+        replicators.add(new StateReplicator(service, transport, StateReplicator.Mode.SYNC, 256, 1_000, 10_000));
+
+        CompletableFuture<MessageDto> write = CompletableFuture.supplyAsync(
+                () -> service.sendMessage("ns", new MessageDto("m", null)));
+        assertTrue(transport.sending.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(write.isDone());
+
+        transport.release.countDown();
+        assertEquals("m", write.get(5, TimeUnit.SECONDS).getContent());
+        assertEquals("m", service.getState("ns").getContent(), "The state is stored before it is sent");
+    }
+
+    /**
+     * A transport whose first broadcast blocks until released.
+     */
+    private static final class StalledTransport implements ReplicationTransport {
+
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String nodeId() {
+            return "stalled";
+        }
+
+        @Override
+        public Set<String> peers() {
+            return Set.of("peer");
+        }
+
+        @Override
+        public void start(Consumer<ReplicationMessage> receiver) {
+        }
+
+        @Override
+        public boolean send(String peer, ReplicationMessage message) {
+            return true;
+        }
+
+        @Override
+        public int broadcast(ReplicationMessage message) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }
+
+        @Override
+        public void close() {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.replication;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpReplicationTransportTest {
+
+    private static final InetSocketAddress ANY_PORT = new InetSocketAddress("127.0.0.1", 0);
+
+    private static final byte[] SECRET = "replication-test-secret".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void messages_ArriveIntactAndInOrder() throws Exception {
+        BlockingQueue<ReplicationMessage> received = new LinkedBlockingQueue<>();
+        try (TcpReplicationTransport a = new TcpReplicationTransport("a", ANY_PORT, SECRET);
+             TcpReplicationTransport b = new TcpReplicationTransport("b", ANY_PORT, SECRET)) {
+            a.start(message -> fail("a receives nothing"));
+            b.start(received::add);
+            a.addPeer("b", new InetSocketAddress("127.0.0.1", b.localPort()));
+
+            String large = "é".repeat(200_000); // Spans many reads, two bytes a char
+            assertEquals(1, a.broadcast(new ReplicationMessage.Writes("a", List.of(
+                    new ReplicatedWrite("ns", large, 42, "a"), new ReplicatedWrite("empty", null, 43, "a")))));
+            assertTrue(a.send("b", new ReplicationMessage.Digest("a", new long[]{1, -2, Long.MAX_VALUE})));
+            assertTrue(a.send("b", new ReplicationMessage.Entries("a", new int[]{3, 255},
+                    List.of(new ReplicationMessage.Stamp("ns", 42, "a")))));
+            assertTrue(a.send("b", new ReplicationMessage.Request("a", List.of("ns", "other"))));
+
+            ReplicationMessage.Writes writes = (ReplicationMessage.Writes) received.poll(5, TimeUnit.SECONDS);
+            assertEquals("a", writes.from());
+            assertEquals(List.of(new ReplicatedWrite("ns", large, 42, "a"), new ReplicatedWrite("empty", null, 43, "a")),
+                    writes.writes());
+            ReplicationMessage.Digest digest = (ReplicationMessage.Digest) received.poll(5, TimeUnit.SECONDS);
+            assertArrayEquals(new long[]{1, -2, Long.MAX_VALUE}, digest.buckets());
+            ReplicationMessage.Entries entries = (ReplicationMessage.Entries) received.poll(5, TimeUnit.SECONDS);
+            assertArrayEquals(new int[]{3, 255}, entries.buckets());
+            assertEquals(List.of(new ReplicationMessage.Stamp("ns", 42, "a")), entries.stamps());
+            assertEquals(new ReplicationMessage.Request("a", List.of("ns", "other")), received.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void send_ReconnectsOnceAPeerIsBack() throws Exception {
+        BlockingQueue<ReplicationMessage> received = new LinkedBlockingQueue<>();
+        ReplicationMessage request = new ReplicationMessage.Request("a", List.of("ns"));
+        try (TcpReplicationTransport a = new TcpReplicationTransport("a", ANY_PORT, SECRET)) {
+            a.start(message -> { });
+            int port;
+            try (TcpReplicationTransport b = new TcpReplicationTransport("b", ANY_PORT, SECRET)) {
+                b.start(received::add);
+                port = b.localPort();
+                a.addPeer("b", new InetSocketAddress("127.0.0.1", port));
+                assertTrue(a.send("b", request));
+                assertNotNull(received.poll(5, TimeUnit.SECONDS));
+            }
+
+            // Writes to the closed connection fail once the reset arrives; until b is back, sends are dropped
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (a.send("b", request)) {
+                assertTrue(System.nanoTime() < deadline, "Sends to a closed peer should fail");
+                Thread.sleep(10);
+            }
+            assertFalse(a.send("b", request));
+
+            try (TcpReplicationTransport b = new TcpReplicationTransport("b", new InetSocketAddress("127.0.0.1", port), SECRET)) {
+                b.start(received::add);
+                received.clear();
+                deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!a.send("b", request)) {
+                    assertTrue(System.nanoTime() < deadline, "Sends should resume once the peer is back");
+                    Thread.sleep(100);
+                }
+                assertEquals(request, received.poll(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void unresponsivePeer_DoesNotHoldUpTheOthers() throws Exception {
+        BlockingQueue<ReplicationMessage> received = new LinkedBlockingQueue<>();
+        ReplicationMessage request = new ReplicationMessage.Request("a", List.of("ns"));
+        try (ServerSocketChannel blackhole = ServerSocketChannel.open().bind(ANY_PORT);
+             TcpReplicationTransport a = new TcpReplicationTransport("a", ANY_PORT, SECRET);
+             TcpReplicationTransport b = new TcpReplicationTransport("b", ANY_PORT, SECRET)) {
+            a.start(message -> { });
+            b.start(received::add);
+            // Accepts connections but never sends its challenge, so the handshake waits out its timeout
+            a.addPeer("blackhole", (InetSocketAddress) blackhole.getLocalAddress());
+            a.addPeer("b", new InetSocketAddress("127.0.0.1", b.localPort()));
+
+            long start = System.nanoTime();
+            assertEquals(2, a.broadcast(request));
+            assertEquals(request, received.poll(500, TimeUnit.MILLISECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500),
+                    "b is written before the blackholed peer's handshake times out");
+        }
+    }
+
+    @Test
+    void peerThatStopsReading_IsDroppedAfterTheWriteTimeout() throws Exception {
+        ReplicationMessage large = new ReplicationMessage.Writes("a", List.of(new ReplicatedWrite("ns", "x".repeat(1 << 20), 1, "a")));
+        try (ServerSocketChannel stalled = ServerSocketChannel.open().bind(ANY_PORT);
+             TcpReplicationTransport a = new TcpReplicationTransport("a", ANY_PORT, SECRET, 4, 200)) {
+            a.start(message -> { });
+            a.addPeer("stalled", (InetSocketAddress) stalled.getLocalAddress());
+            CompletableFuture<SocketChannel> accepted = CompletableFuture.supplyAsync(() -> {
+                try {
+                    SocketChannel connection = stalled.accept();
+                    connection.write(ByteBuffer.allocate(32)); // A challenge, then never read
+                    return connection;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (a.send("stalled", large)) {
+                assertTrue(System.nanoTime() < deadline, "Writes to a peer that stopped reading should time out");
+                Thread.sleep(20);
+            }
+            accepted.get(5, TimeUnit.SECONDS).close();
+        }
+    }
+
+    @Test
+    void connectionWithoutTheSecret_IsDropped() throws Exception {
+        BlockingQueue<ReplicationMessage> received = new LinkedBlockingQueue<>();
+        ReplicationMessage request = new ReplicationMessage.Request("a", List.of("ns"));
+        try (TcpReplicationTransport a = new TcpReplicationTransport("a", ANY_PORT,
+                "some-other-secret-entirely".getBytes(StandardCharsets.UTF_8));
+             TcpReplicationTransport b = new TcpReplicationTransport("b", ANY_PORT, SECRET)) {
+            a.start(message -> { });
+            b.start(received::add);
+            a.addPeer("b", new InetSocketAddress("127.0.0.1", b.localPort()));
+
+            a.send("b", request);
+
+            assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void unauthenticatedFrames_AreNotRead() throws Exception {
+        BlockingQueue<ReplicationMessage> received = new LinkedBlockingQueue<>();
+        try (TcpReplicationTransport b = new TcpReplicationTransport("b", ANY_PORT, SECRET)) {
+            b.start(received::add);
+            try (SocketChannel raw = SocketChannel.open(new InetSocketAddress("127.0.0.1", b.localPort()))) {
+                byte[] payload = ReplicationCodec.encode(new ReplicationMessage.Request("a", List.of("ns")));
+                ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payload.length).putInt(payload.length).put(payload).flip();
+                raw.write(frame);
+
+                assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+
+    @Test
+    void constructor_RejectsAShortSecret() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TcpReplicationTransport("a", ANY_PORT, "short".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void parsePeers_ReadsIdsAndAddresses() {
+        Map<String, InetSocketAddress> peers = TcpReplicationTransport.parsePeers(" node-b@10.0.0.2:7400, node-c@[::1]:7401 ,");
+
+        assertEquals(List.of("node-b", "node-c"), List.copyOf(peers.keySet()));
+        assertEquals("10.0.0.2", peers.get("node-b").getHostString());
+        assertEquals(7401, peers.get("node-c").getPort());
+        assertTrue(TcpReplicationTransport.parsePeers("").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> TcpReplicationTransport.parsePeers("10.0.0.2:7400"));
+        assertThrows(IllegalArgumentException.class, () -> TcpReplicationTransport.parsePeers("b@host:port"));
+    }
+}
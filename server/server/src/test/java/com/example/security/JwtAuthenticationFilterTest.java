@@ -0,0 +1,64 @@
+package com.example.security;
+
+import com.example.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private JwtAuthenticationFilter filter;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void streamRequest_AcceptsAccessTokenParameter() throws Exception {
+        when(jwtUtil.verify("token")).thenReturn(new JwtUtil.VerifiedToken("user@example.com", Long.MAX_VALUE));
+        when(userService.loadUserByUsername("user@example.com"))
+                .thenReturn(new User("user@example.com", "", List.of()));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/state/orders/stream");
+        request.setParameter("access_token", "token");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals("user@example.com", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    void otherRequests_IgnoreAccessTokenParameter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/state/orders");
+        request.setParameter("access_token", "token");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(jwtUtil, never()).verify(anyString());
+    }
+}
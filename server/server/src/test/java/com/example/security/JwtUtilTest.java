@@ -0,0 +1,67 @@
+package com.example.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+
+    @Test
+    void verify_ReturnsUsernameAndExpiry() {
+        String token = jwtUtil.generateToken("user@example.com");
+
+        JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
+
+        assertNotNull(verified);
+        assertEquals("user@example.com", verified.username());
+        assertTrue(verified.expiresAtMillis() > System.currentTimeMillis());
+        assertTrue(jwtUtil.validateToken(token, "user@example.com"));
+        assertFalse(jwtUtil.validateToken(token, "other@example.com"));
+    }
+
+    @Test
+    void verify_RepeatTokenIsServedFromCache() {
+        String token = jwtUtil.generateToken("user@example.com");
+
+        assertSame(jwtUtil.verify(token), jwtUtil.verify(new String(token)));
+    }
+
+    @Test
+    void verify_RejectsTamperedToken() {
+        String token = jwtUtil.generateToken("user@example.com");
+        jwtUtil.verify(token);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertNull(jwtUtil.verify(tampered));
+        assertNull(jwtUtil.verify("not-a-token"));
+    }
+
+    @Test
+    void verify_RejectsTokenSignedWithAnotherKey() {
+        String forged = Jwts.builder()
+                .subject("user@example.com")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor("aDifferentSecretKeyThatIsAlsoLongEnoughForHS256".getBytes()))
+                .compact();
+
+        assertNull(jwtUtil.verify(forged));
+    }
+
+    @Test
+    void verify_RejectsExpiredToken() {
+        String expired = Jwts.builder()
+                .subject("user@example.com")
+                .expiration(new Date(System.currentTimeMillis() - 1_000))
+                .signWith(Keys.hmacShaKeyFor("mySecretKeyForJwtTokensThatIsLongEnoughForHS256Algorithm".getBytes()))
+                .compact();
+
+        assertNull(jwtUtil.verify(expired));
+        assertFalse(jwtUtil.validateToken(expired, "user@example.com"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ConflatingBroadcasterTest {
+
+    private final SimpMessageSendingOperations template = mock(SimpMessageSendingOperations.class);
+
+    private ConflatingBroadcaster broadcaster;
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+    }
+
+    @Test
+    void burstInsideWindow_IsBroadcastOnceWithLatestState() {
+        // Wide enough that the burst fits in one window on a cold JVM
+        broadcaster = new ConflatingBroadcaster(template, "hot", 500);
+
+        for (int version = 1; version <= 100; version++) {
+            assertTrue(broadcaster.conflate("hot", new VersionedMessageDto("v" + version, "hot", version)));
+        }
+
+        verify(template, timeout(2_000)).convertAndSend(eq("/topic/state/hot"), argThat(content("v100")));
+        verify(template, after(200).times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void eachWindow_BroadcastsItsOwnLatestState() throws InterruptedException {
+        broadcaster = new ConflatingBroadcaster(template, "hot", 30);
+
+        broadcaster.conflate("hot", new MessageDto("first", "hot"));
+        verify(template, timeout(1_000)).convertAndSend(eq("/topic/state/hot"), argThat(content("first")));
+        broadcaster.conflate("hot", new MessageDto("second", "hot"));
+
+        verify(template, timeout(1_000)).convertAndSend(eq("/topic/state/hot"), argThat(content("second")));
+    }
+
+    @Test
+    void racingWriters_NeverEndWindowOnOlderVersion() {
+        broadcaster = new ConflatingBroadcaster(template, "hot", 50);
+
+        broadcaster.conflate("hot", new VersionedMessageDto("v2", "hot", 2));
+        broadcaster.conflate("hot", new VersionedMessageDto("v1", "hot", 1));
+
+        verify(template, timeout(1_000)).convertAndSend(eq("/topic/state/hot"), argThat(content("v2")));
+        verify(template, after(200).times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void closedWindows_AreForgotten() {
+        broadcaster = new ConflatingBroadcaster(template, "ticker-*", 20);
+
+        for (int i = 0; i < 100; i++) {
+            broadcaster.conflate("ticker-" + i, new MessageDto("x", "ticker-" + i));
+        }
+
+        verify(template, timeout(1_000).times(100)).convertAndSend(anyString(), any(Object.class));
+        assertEquals(0, broadcaster.pendingNamespaces());
+    }
+
+    @Test
+    void rules_MatchNamesAndPrefixesWithOwnIntervals() {
+        broadcaster = new ConflatingBroadcaster(template, "prices, ticker-*:250", 100);
+
+        assertEquals(100, broadcaster.intervalMillis("prices"));
+        assertEquals(250, broadcaster.intervalMillis("ticker-eu"));
+        assertEquals(0, broadcaster.intervalMillis("pricesx"));
+        assertFalse(broadcaster.conflate("chat", new MessageDto("hello", "chat")));
+        verifyNoInteractions(template);
+    }
+
+    @Test
+    void malformedRules_AreRejected() {
+        broadcaster = new ConflatingBroadcaster(template, "", 100);
+
+        assertThrows(IllegalArgumentException.class, () -> new ConflatingBroadcaster(template, "hot:fast", 100));
+        assertThrows(IllegalArgumentException.class, () -> new ConflatingBroadcaster(template, "hot:0", 100));
+        assertFalse(broadcaster.conflate("hot", new MessageDto("x", "hot")));
+    }
+
+    private static ArgumentMatcher<Object> content(String content) {
+        return payload -> payload instanceof MessageDto message && content.equals(message.getContent());
+    }
+}
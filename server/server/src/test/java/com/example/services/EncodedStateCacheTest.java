@@ -0,0 +1,82 @@
+package com.example.services;
+
+import com.example.codec.EncodedState;
+import com.example.codec.WireFormat;
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncodedStateCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void getState_ReusesEncodingsUntilTheNextWrite() throws Exception {
+        SystemStateServiceImpl service = new SystemStateServiceImpl();
+        EncodedStateCache cache = new EncodedStateCache(service, objectMapper, 1 << 20);
+        service.sendMessage("ns", new MessageDto("first", null));
+
+        EncodedState first = (EncodedState) cache.getBody("ns");
+        byte[] json = first.encoded(WireFormat.JSON);
+
+        assertSame(first, cache.getBody("ns"));
+        assertSame(json, ((EncodedState) cache.getBody("ns")).encoded(WireFormat.JSON));
+        assertEquals(new VersionedMessageDto("tsrif", "ns", 1).getContent(),
+                objectMapper.readValue(json, VersionedMessageDto.class).getContent());
+        assertEquals(objectMapper.writeValueAsString(new VersionedMessageDto("tsrif", "ns", 1)), new String(json));
+        assertEquals("tsrif", new CBORMapper().readValue(first.encoded(WireFormat.CBOR), VersionedMessageDto.class).getContent());
+
+        service.sendMessage("ns", new MessageDto("second", null));
+        EncodedState second = (EncodedState) cache.getBody("ns");
+
+        assertNotSame(first, second);
+        assertEquals(2, second.getVersion());
+        assertEquals("dnoces", second.getContent());
+        VersionedMessageDto copy = second.toMessageDto();
+        copy.setContent("changed");
+        assertEquals("dnoces", second.getContent(), "Changing a copy leaves the encoded state alone");
+        assertEquals(objectMapper.writeValueAsString(new VersionedMessageDto("dnoces", "ns", 2)),
+                new String(second.encoded(WireFormat.JSON)));
+    }
+
+    @Test
+    void getState_LeavesDefaultStatesUncached() {
+        EncodedStateCache cache = new EncodedStateCache(new SystemStateServiceImpl(), objectMapper, 1 << 20);
+
+        Object state = cache.getBody("untouched");
+
+        assertFalse(state instanceof EncodedState);
+        assertEquals("Default state for untouched", ((MessageDto) state).getContent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getState_DoesNotServeEvictedNamespaces() {
+        AtomicLong nanos = new AtomicLong();
+        SystemStateServiceImpl service = new SystemStateServiceImpl(new StateStoreLimits(0, "", 1000, nanos::get));
+        EncodedStateCache cache = new EncodedStateCache(service, objectMapper, 1 << 20);
+        service.sendMessage("ns", new MessageDto("expiring", null));
+        assertInstanceOf(EncodedState.class, cache.getBody("ns"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals("Default state for ns", ((MessageDto) cache.getBody("ns")).getContent());
+    }
+
+    @Test
+    void disabled_ReadsFromTheService() {
+        SystemStateServiceImpl service = new SystemStateServiceImpl();
+        EncodedStateCache cache = new EncodedStateCache(service, objectMapper, 0);
+        service.sendMessage("ns", new MessageDto("plain", null));
+
+        assertFalse(cache.getBody("ns") instanceof EncodedState);
+        assertThrows(IllegalArgumentException.class, () -> new EncodedStateCache(service, objectMapper, -1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessagePipelineTest {
+
+    private static MessageProcessor append(String suffix) {
+        return (namespace, message) -> new MessageDto(message.getContent() + suffix, message.getNamespace());
+    }
+
+    @Test
+    void process_RunsMatchingStagesInRegistrationOrder() {
+        MessagePipeline pipeline = MessagePipeline.builder()
+                .stage("*", append("-all"))
+                .stage("orders-*", append("-orders"))
+                .stage("orders-eu", append("-eu"))
+                .stage("prices", append("-prices"))
+                .build();
+
+        assertEquals("m-all-orders-eu", pipeline.process("orders-eu", new MessageDto("m", null)).getContent());
+        assertEquals("m-all-orders", pipeline.process("orders-us", new MessageDto("m", null)).getContent());
+        assertEquals("m-all", pipeline.process("other", new MessageDto("m", null)).getContent());
+    }
+
+    @Test
+    void chain_IsCompiledOncePerNamespace() {
+        MessageProcessor only = append("-x");
+        MessagePipeline pipeline = MessagePipeline.builder()
+                .stage("a*", only)
+                .stage("b", append("-y"))
+                .build();
+
+        assertSame(pipeline.chain("a1"), pipeline.chain("a1"));
+        assertSame(only, pipeline.chain("a2"));
+        assertSame(MessageProcessor.IDENTITY, pipeline.chain("c"));
+        MessageDto untouched = new MessageDto("m", null);
+        assertSame(untouched, pipeline.process("c", untouched));
+    }
+
+    @Test
+    void chainCache_IsBounded() {
+        MessagePipeline pipeline = MessagePipeline.builder().stage("*", append("-x")).build();
+
+        for (int i = 0; i < MessagePipeline.CHAIN_CACHE_LIMIT + 1_000; i++) {
+            assertEquals("m-x", pipeline.process("ns" + i, new MessageDto("m", null)).getContent());
+        }
+
+        assertTrue(pipeline.cachedChains() <= MessagePipeline.CHAIN_CACHE_LIMIT);
+    }
+
+    @Test
+    void serialStage_SeesOneMessageAtATime() throws Exception {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        List<Integer> seen = new ArrayList<>(); // Unsynchronized on purpose: the stage is serial
+        MessagePipeline pipeline = MessagePipeline.builder()
+                .serialStage("*", (namespace, message) -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    seen.add(seen.size());
+                    Thread.onSpinWait();
+                    inside.decrementAndGet();
+                    return message;
+                })
+                .build();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int writer = t;
+            writers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    pipeline.process("ns" + writer, new MessageDto("m", null));
+                }
+            });
+            writers[t].start();
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(1, maxInside.get());
+        assertEquals(2000, seen.size());
+    }
+
+    @Test
+    void builder_RejectsBlankPatternAndMissingProcessor() {
+        assertThrows(IllegalArgumentException.class, () -> MessagePipeline.builder().stage(" ", MessageProcessor.IDENTITY));
+        assertThrows(IllegalArgumentException.class, () -> MessagePipeline.builder().stage("*", null));
+        assertThrows(IllegalArgumentException.class, () -> MessagePipeline.builder().serialStage("*", null));
+    }
+}
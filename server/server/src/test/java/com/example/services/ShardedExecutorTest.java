@@ -0,0 +1,111 @@
+package com.example.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedExecutorTest {
+
+    private final ShardedExecutor executor = new ShardedExecutor(4, "test-shard-");
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void tasksForOneKey_RunInSubmissionOrderOnOneThread() {
+        List<Integer> order = new ArrayList<>();
+        List<String> threads = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int task = i;
+            results.add(executor.submit("key", () -> {
+                order.add(task);
+                threads.add(Thread.currentThread().getName());
+                return task;
+            }));
+        }
+        results.forEach(ShardedExecutor::join);
+
+        assertEquals(100, order.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, order.get(i));
+        }
+        assertEquals(1, threads.stream().distinct().count());
+        assertEquals("test-shard-" + executor.shardOf("key"), threads.get(0));
+    }
+
+    @Test
+    void keys_SpreadAcrossShards() {
+        boolean[] used = new boolean[executor.shardCount()];
+        for (int i = 0; i < 100; i++) {
+            used[executor.shardOf("namespace" + i)] = true;
+        }
+
+        for (boolean shardUsed : used) {
+            assertTrue(shardUsed);
+        }
+    }
+
+    @Test
+    void call_RethrowsTaskExceptionUnwrapped() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> executor.call("key", () -> {
+                    throw new IllegalArgumentException("rejected");
+                }));
+
+        assertEquals("rejected", thrown.getMessage());
+        assertEquals(1, executor.call("key", () -> 1));
+    }
+
+    @Test
+    void call_FromOwnShardRunsInline() {
+        assertEquals("nested", executor.call("key", () -> executor.call("key", () -> "nested")));
+    }
+
+    @Test
+    void fullShard_RejectsTasksInsteadOfQueueingThem() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ShardedExecutor bounded = new ShardedExecutor(1, "bounded-shard-", 2)) {
+            CompletableFuture<Boolean> running = bounded.submit("key", () -> await(release));
+            List<CompletableFuture<Integer>> queued = new ArrayList<>();
+            // The first task may still be queued rather than running, so allow for one more rejection
+            assertThrows(RejectedExecutionException.class, () -> {
+                for (int i = 0; i < 3; i++) {
+                    int task = i;
+                    queued.add(bounded.submit("key", () -> task));
+                }
+            });
+            assertTrue(queued.size() >= 1);
+
+            release.countDown();
+            assertTrue(ShardedExecutor.join(running));
+            queued.forEach(ShardedExecutor::join);
+            assertEquals(7, bounded.call("key", () -> 7), "A drained shard accepts tasks again");
+        }
+    }
+
+    @Test
+    void constructor_RejectsNonPositiveShardCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedExecutor(0, "none-"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedExecutor(1, "none-", 0));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.StateDeltaDto;
+import com.example.dto.VersionedMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateDeltaEncoderTest {
+
+    private static final String DOCUMENT = "{\"title\":\"Quarterly report\",\"body\":\"" + "lorem ipsum ".repeat(100) + "\",\"status\":\"draft\"}";
+
+    private final StateDeltaEncoder encoder = new StateDeltaEncoder(64);
+    private final List<Object> frames = new ArrayList<>();
+
+    @Test
+    void firstState_IsSentInFullAndLaterOnesAsDeltas() {
+        encode(1, DOCUMENT);
+        String published = DOCUMENT.replace("draft", "published");
+        encode(2, published);
+
+        assertInstanceOf(VersionedMessageDto.class, frames.get(0));
+        StateDeltaDto delta = assertInstanceOf(StateDeltaDto.class, frames.get(1));
+        assertEquals(1, delta.getBaseVersion());
+        assertEquals(2, delta.getVersion());
+        assertEquals("published", delta.getInsert());
+        assertEquals(published, delta.applyTo(DOCUMENT));
+    }
+
+    @Test
+    void smallStatesAndLargeRewrites_AreSentInFull() {
+        encode(1, "short");
+        encode(2, "shorter");
+        encode(3, DOCUMENT);
+        encode(4, new StringBuilder(DOCUMENT).reverse().toString());
+
+        assertTrue(frames.stream().allMatch(VersionedMessageDto.class::isInstance));
+    }
+
+    @Test
+    void olderVersion_IsSkippedOnceNewerIsSent() {
+        encode(2, DOCUMENT);
+
+        assertFalse(encoder.encode("doc", new VersionedMessageDto(DOCUMENT + "!", "doc", 1), frames::add));
+        assertEquals(1, frames.size());
+        assertEquals(2, encoder.lastEncoded("doc").getVersion());
+    }
+
+    @Test
+    void unversionedState_PassesThrough() {
+        MessageDto state = new MessageDto(DOCUMENT, "doc");
+
+        assertTrue(encoder.encode("doc", state, frames::add));
+        assertSame(state, frames.get(0));
+        assertNull(encoder.lastEncoded("doc"));
+    }
+
+    @Test
+    void splice_NeverSplitsSurrogatePairs() {
+        String padding = "x".repeat(200);
+        encode(1, padding + "😀" + padding);
+        encode(2, padding + "😁" + padding);
+
+        StateDeltaDto delta = assertInstanceOf(StateDeltaDto.class, frames.get(1));
+        assertEquals("😁", delta.getInsert());
+        assertEquals(padding + "😁" + padding, delta.applyTo(padding + "😀" + padding));
+    }
+
+    @Test
+    void randomEdits_ReconstructEveryVersion() {
+        Random random = new Random(42);
+        String client = DOCUMENT;
+        String server = DOCUMENT;
+        encode(1, server);
+        for (int version = 2; version <= 500; version++) {
+            int at = random.nextInt(server.length());
+            int removed = random.nextInt(Math.min(8, server.length() - at) + 1);
+            server = server.substring(0, at) + Integer.toString(random.nextInt(1000), 36) + server.substring(at + removed);
+            encode(version, server);
+            Object frame = frames.get(frames.size() - 1);
+            client = frame instanceof StateDeltaDto delta ? delta.applyTo(client) : ((MessageDto) frame).getContent();
+            assertEquals(server, client, "version " + version);
+        }
+    }
+
+    @Test
+    void forgottenNamespace_StartsAgainWithFullState() {
+        encode(1, DOCUMENT);
+        encoder.forget("doc");
+
+        assertNull(encoder.lastEncoded("doc"));
+        encode(2, DOCUMENT.replace("draft", "published"));
+        assertInstanceOf(VersionedMessageDto.class, frames.get(1));
+    }
+
+    @Test
+    void deltaNotMatchingContent_IsRejected() {
+        StateDeltaDto delta = new StateDeltaDto("doc", 1, 2, 10, 5, "x");
+
+        assertThrows(IllegalArgumentException.class, () -> delta.applyTo("too short"));
+    }
+
+    private void encode(long version, String content) {
+        assertTrue(encoder.encode("doc", new VersionedMessageDto(content, "doc", version), frames::add));
+    }
+}
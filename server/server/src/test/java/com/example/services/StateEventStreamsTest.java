@@ -0,0 +1,117 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateEventStreamsTest {
+
+    private final SystemStateServiceImpl service = new SystemStateServiceImpl();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final RecordingEmitter emitter = new RecordingEmitter();
+    private StateEventStreams streams;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        streams.destroy();
+    }
+
+    @Test
+    void slowStream_IsSentOnlyTheLatestStateQueuedMeanwhile() throws Exception {
+        streams = streams(10_000);
+        streams.open(List.of("slow"), null);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 5; i++) {
+            service.sendMessage("slow", new MessageDto("v" + i, "slow"));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        await(() -> emitter.events.size() == 2);
+        Thread.sleep(100);
+        assertEquals(2, emitter.events.size(), emitter.events.toString());
+        assertTrue(emitter.events.get(0).contains("Default state for slow"));
+        assertTrue(emitter.events.get(1).contains("5v") && emitter.events.get(1).contains(":slow=5"), emitter.events.get(1));
+        assertEquals(1, streams.openStreams());
+    }
+
+    @Test
+    void stalledStream_IsClosedOnceAWriteExceedsTheSendTimeLimit() throws Exception {
+        streams = streams(50);
+        streams.open(List.of("stalled"), null);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        streams.heartbeat();
+
+        await(() -> streams.openStreams() == 0);
+        assertEquals(1, streams.overflowedStreams());
+        service.sendMessage("stalled", new MessageDto("after", "stalled"));
+        release.countDown();
+        await(() -> emitter.failure != null);
+        assertEquals(1, emitter.events.size(), emitter.events.toString());
+    }
+
+    private StateEventStreams streams(long sendTimeLimitMillis) {
+        StateEventStreams streams = new StateEventStreams(service, objectMapper, 1, 16, 2, sendTimeLimitMillis, 100) {
+            @Override
+            SseEmitter newEmitter() {
+                return emitter;
+            }
+        };
+        streams.subscribe();
+        return streams;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records the events written, blocking on the first until released, like a client that has stopped reading.
+     */
+    private final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile Throwable failure;
+
+        @Override
+        public void send(SseEventBuilder event) throws IOException {
+            StringBuilder written = new StringBuilder();
+            event.build().forEach(part -> written.append(part.getData()));
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            events.add(written.toString());
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failure = ex;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.services;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.storage.FsyncPolicy;
+import com.example.storage.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateStoreLimitsTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private SystemStateServiceImpl service(long maxBytes, String ttlNamespaces, long defaultTtlMillis) {
+        return new SystemStateServiceImpl(new StateStoreLimits(maxBytes, ttlNamespaces, defaultTtlMillis, nanos::get));
+    }
+
+    private void advanceMillis(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void ttlMillis_ExactNameThenFirstPrefixThenDefault() {
+        StateStoreLimits limits = new StateStoreLimits(0, "scratch-*:100, scratch-keep:0, scr*:200", 300);
+
+        assertEquals(100, limits.ttlMillis("scratch-1"));
+        assertEquals(0, limits.ttlMillis("scratch-keep"));
+        assertEquals(200, limits.ttlMillis("scribble"));
+        assertEquals(300, limits.ttlMillis("other"));
+        assertTrue(limits.isBounded());
+        assertFalse(StateStoreLimits.NONE.isBounded());
+        assertThrows(IllegalArgumentException.class, () -> new StateStoreLimits(0, "scratch-*", 0));
+        assertThrows(IllegalArgumentException.class, () -> new StateStoreLimits(0, "scratch-*:soon", 0));
+        assertThrows(IllegalArgumentException.class, () -> new StateStoreLimits(-1, "", 0));
+    }
+
+    @Test
+    void expiredNamespace_ReadsAsDefaultAndKeepsVersionsIncreasing() {
+        SystemStateServiceImpl service = service(0, "scratch-*:1000", 0);
+        service.sendMessage("scratch-1", new MessageDto("one", null));
+        VersionedMessageDto before = (VersionedMessageDto) service.sendMessage("scratch-1", new MessageDto("two", null));
+        service.sendMessage("kept", new MessageDto("kept", null));
+
+        advanceMillis(999);
+        assertEquals("owt", service.getState("scratch-1").getContent());
+        advanceMillis(1);
+
+        assertEquals("Default state for scratch-1", service.getState("scratch-1").getContent());
+        assertEquals("tpek", service.getState("kept").getContent());
+        advanceMillis(2000); // Expired entries are hidden at once but removed by a timer wheel with ~1 s buckets
+        StateStoreStats stats = service.getStoreStats();
+        assertEquals(1, stats.namespaces());
+        assertEquals(1, stats.expirations());
+        assertEquals(0, stats.sizeEvictions());
+        assertTrue(service.getHistory("scratch-1", 0, 10).isEmpty());
+
+        VersionedMessageDto after = (VersionedMessageDto) service.sendMessage("scratch-1", new MessageDto("three", null));
+        assertTrue(after.getVersion() > before.getVersion(), "Versions must not be reused after eviction");
+    }
+
+    @Test
+    void evictedNamespace_IsNotRecoveredFromTheLog(@TempDir Path directory) throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl service = new SystemStateServiceImpl(wal, null,
+                    new StateStoreLimits(0, "scratch-*:1000", 0, nanos::get));
+            service.sendMessage("scratch-1", new MessageDto("gone", null));
+            service.sendMessage("scratch-2", new MessageDto("old", null));
+            service.sendMessage("kept", new MessageDto("kept", null));
+            advanceMillis(3000);
+            assertEquals(2, service.getStoreStats().expirations());
+            service.sendMessage("scratch-2", new MessageDto("new", null));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal);
+
+            assertEquals("Default state for scratch-1", restarted.getState("scratch-1").getContent());
+            assertTrue(restarted.getHistory("scratch-1", 0, 10).isEmpty());
+            assertEquals("wen", restarted.getState("scratch-2").getContent(), "A write after the eviction is kept");
+            assertEquals("tpek", restarted.getState("kept").getContent());
+        }
+    }
+
+    @Test
+    void readsDoNotExtendTtl() {
+        SystemStateServiceImpl service = service(0, "", 1000);
+        service.sendMessage("session", new MessageDto("hello", null));
+
+        advanceMillis(600);
+        service.getState("session");
+        advanceMillis(600);
+
+        assertEquals("Default state for session", service.getState("session").getContent());
+    }
+
+    @Test
+    void memoryBudget_BoundsEstimatedBytes() {
+        long maxBytes = 64 * 1024;
+        SystemStateServiceImpl service = service(maxBytes, "", 0);
+        String content = "x".repeat(100);
+
+        for (int i = 0; i < 2_000; i++) {
+            service.sendMessage("ns" + i, new MessageDto(content, null));
+        }
+
+        StateStoreStats stats = service.getStoreStats();
+        assertTrue(stats.estimatedBytes() <= maxBytes, "Estimated " + stats.estimatedBytes() + " bytes");
+        assertTrue(stats.namespaces() > 0 && stats.namespaces() < 2_000);
+        assertEquals(2_000 - stats.namespaces(), stats.sizeEvictions());
+        assertEquals(0, stats.expirations());
+    }
+
+    @Test
+    void evictedNamespaces_AreAnnouncedToListeners() {
+        SystemStateServiceImpl service = service(64 * 1024, "", 0);
+        Set<String> discarded = ConcurrentHashMap.newKeySet();
+        service.addStateListener(new StateListener() {
+            @Override
+            public void stateChanged(VersionedMessageDto state) {
+            }
+
+            @Override
+            public void namespaceDiscarded(String namespace) {
+                discarded.add(namespace);
+            }
+        });
+
+        for (int i = 0; i < 2_000; i++) {
+            service.sendMessage("ns" + i, new MessageDto("x".repeat(100), null));
+        }
+
+        StateStoreStats stats = service.getStoreStats();
+        assertEquals(stats.sizeEvictions(), discarded.size());
+        Set<String> stored = new HashSet<>(discarded);
+        stored.removeIf(namespace -> !service.getState(namespace).getContent().startsWith("Default state"));
+        assertEquals(discarded, stored, "Only evicted namespaces are discarded");
+    }
+
+    @Test
+    void unbounded_ReportsNoEstimate() {
+        SystemStateServiceImpl service = new SystemStateServiceImpl();
+        service.sendMessage("ns", new MessageDto("a", null));
+
+        StateStoreStats stats = service.getStoreStats();
+
+        assertEquals(1, stats.namespaces());
+        assertEquals(-1, stats.estimatedBytes());
+        assertEquals(0, stats.maxBytes());
+    }
+}
@@ -1,8 +1,30 @@
 package com.example.services;
 
 import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import com.example.storage.FsyncPolicy;
+import com.example.storage.OffHeapStateStore;
+import com.example.storage.SnapshotStore;
+import com.example.storage.WriteAheadLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class SystemStateServiceImplTest {
@@ -50,6 +72,23 @@ class SystemStateServiceImplTest {
         assertEquals("egassem tseT", retrieved.getContent());
     }
 
+    @Test
+    void addStateListener_IsToldOfStoredStatesEvenIfAnotherListenerFails() {
+        List<VersionedMessageDto> told = new ArrayList<>();
+        assertTrue(service.addStateListener(state -> {
+            throw new IllegalStateException("listener down");
+        }));
+        service.addStateListener(told::add);
+
+        MessageDto result = service.sendMessage("listened", new MessageDto("one", null));
+        service.sendMessage("listened", new MessageDto("two", null));
+
+        assertEquals("eno", result.getContent());
+        assertEquals(List.of(1L, 2L), told.stream().map(VersionedMessageDto::getVersion).toList());
+        assertEquals("owt", told.get(1).getContent());
+        assertEquals("listened", told.get(1).getNamespace());
+    }
+
     @Test
     void sendMessage_OverwritesPreviousState() {
         MessageDto first = new MessageDto("First message", "test");
@@ -70,4 +109,466 @@ class SystemStateServiceImplTest {
 
         assertEquals("forcedNamespace", result.getNamespace());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getVersion_TracksStoredState() {
+        assertEquals(0, service.getVersion("versioned"));
+
+        service.sendMessage("versioned", new MessageDto("first", null));
+        service.sendMessage("versioned", new MessageDto("second", null));
+
+        assertEquals(2, service.getVersion("versioned"));
+        assertEquals(2, ((VersionedMessageDto) service.getState("versioned")).getVersion());
+    }
+
+    @Test
+    void writeAheadLog_RebuildsStateOnRestart(@TempDir Path directory) throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.ALWAYS, 0)) {
+            SystemStateServiceImpl persistent = new SystemStateServiceImpl(wal);
+            persistent.sendMessage("a", new MessageDto("First message", "a"));
+            persistent.sendMessage("b", new MessageDto("Other message", "b"));
+            persistent.sendMessage("a", new MessageDto("Second message", "a"));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.ALWAYS, 0)) {
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal);
+
+            assertEquals("egassem dnoceS", restarted.getState("a").getContent());
+            assertEquals("egassem rehtO", restarted.getState("b").getContent());
+            assertEquals("Default state for c", restarted.getState("c").getContent());
+        }
+    }
+
+    @Test
+    void snapshot_RecoversFromSnapshotAndLogTail(@TempDir Path directory) throws Exception {
+        SnapshotStore snapshots = new SnapshotStore(directory.resolve("snapshots"), 2);
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 256, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl persistent = new SystemStateServiceImpl(wal, snapshots);
+            for (int i = 0; i < 20; i++) {
+                persistent.sendMessage("ns" + (i % 3), new MessageDto("before " + i, null));
+            }
+            assertEquals(20, persistent.takeSnapshot());
+            assertEquals(-1, persistent.takeSnapshot()); // Nothing new to capture
+            persistent.sendMessage("ns0", new MessageDto("after", null));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 256, FsyncPolicy.OS, 0)) {
+            List<Long> tail = new ArrayList<>();
+            wal.replay(20, (sequence, message) -> tail.add(sequence));
+            assertEquals(List.of(21L), tail);
+
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal, snapshots);
+            assertEquals("retfa", restarted.getState("ns0").getContent());
+            assertEquals("91 erofeb", restarted.getState("ns1").getContent());
+            assertEquals("71 erofeb", restarted.getState("ns2").getContent());
+        }
+    }
+
+    @Test
+    void snapshot_FallsBackToAnOlderSnapshotWithoutLosingWrites(@TempDir Path directory) throws Exception {
+        SnapshotStore snapshots = new SnapshotStore(directory.resolve("snapshots"), 2);
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 256, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl persistent = new SystemStateServiceImpl(wal, snapshots);
+            for (int i = 0; i < 40; i++) {
+                persistent.sendMessage("ns" + (i % 3), new MessageDto("v" + i, null));
+                if (i == 19) {
+                    persistent.takeSnapshot();
+                }
+            }
+            assertEquals(40, persistent.takeSnapshot());
+            assertTrue(wal.firstSequence() <= 21, "The log is kept back to the oldest retained snapshot");
+        }
+        corrupt(newestSnapshot(snapshots));
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 256, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal, snapshots);
+            assertEquals("93v", restarted.getState("ns0").getContent());
+            assertEquals("73v", restarted.getState("ns1").getContent());
+            assertEquals("83v", restarted.getState("ns2").getContent());
+        }
+    }
+
+    @Test
+    void snapshot_RefusesToStartWhenTheLogNoLongerReachesALoadableSnapshot(@TempDir Path directory) throws Exception {
+        SnapshotStore snapshots = new SnapshotStore(directory.resolve("snapshots"), 1);
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 256, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl persistent = new SystemStateServiceImpl(wal, snapshots);
+            for (int i = 0; i < 20; i++) {
+                persistent.sendMessage("ns", new MessageDto("v" + i, null));
+            }
+            persistent.takeSnapshot();
+        }
+        corrupt(newestSnapshot(snapshots));
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 256, FsyncPolicy.OS, 0)) {
+            assertThrows(IllegalStateException.class, () -> new SystemStateServiceImpl(wal, snapshots));
+        }
+    }
+
+    private static Path newestSnapshot(SnapshotStore snapshots) throws IOException {
+        try (Stream<Path> files = Files.list(snapshots.directory())) {
+            return files.max(Comparator.naturalOrder()).orElseThrow();
+        }
+    }
+
+    private static void corrupt(Path file) throws IOException {
+        try (RandomAccessFile access = new RandomAccessFile(file.toFile(), "rw")) {
+            access.seek(20);
+            access.write('!');
+        }
+    }
+
+    @Test
+    void getHistory_ReturnsBoundedVersionsSince() {
+        for (int i = 1; i <= 40; i++) {
+            service.sendMessage("test", new MessageDto("v" + i, null));
+        }
+
+        List<VersionedMessageDto> recent = service.getHistory("test", 35, 3);
+        assertEquals(List.of(36L, 37L, 38L), recent.stream().map(VersionedMessageDto::getVersion).toList());
+        assertEquals("63v", recent.get(0).getContent());
+
+        // Only the newest DEFAULT_HISTORY_CAPACITY versions are retained
+        List<VersionedMessageDto> all = service.getHistory("test", 0, 100);
+        assertEquals(AbstractSystemStateService.DEFAULT_HISTORY_CAPACITY, all.size());
+        assertEquals(40 - AbstractSystemStateService.DEFAULT_HISTORY_CAPACITY + 1, all.get(0).getVersion());
+        assertTrue(service.getHistory("unknown", 0, 10).isEmpty());
+    }
+
+    @Test
+    void sendMessage_AssignsMonotonicVersionsUnderConcurrency() throws Exception {
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    service.sendMessage("hot", new MessageDto("m" + i, null));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(2000, ((VersionedMessageDto) service.getState("hot")).getVersion());
+        List<VersionedMessageDto> history = service.getHistory("hot", 0, 100);
+        assertEquals(AbstractSystemStateService.DEFAULT_HISTORY_CAPACITY, history.size());
+        assertEquals(2000, history.get(history.size() - 1).getVersion());
+    }
+
+    @Test
+    void shardedWrites_ReachStorageInVersionOrderPerNamespace() throws Exception {
+        List<Long> stored = Collections.synchronizedList(new ArrayList<>());
+        SystemStateServiceImpl recording = new SystemStateServiceImpl() {
+            @Override
+            protected void storeMessage(String namespace, MessageDto message) {
+                if (namespace.equals("ordered")) {
+                    stored.add(((VersionedMessageDto) message).getVersion());
+                }
+                super.storeMessage(namespace, message);
+            }
+        };
+        try (ShardedExecutor shards = new ShardedExecutor(4, "test-shard-")) {
+            recording.setShards(shards);
+            Thread[] writers = new Thread[4];
+            for (int t = 0; t < writers.length; t++) {
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        recording.sendMessage("ordered", new MessageDto("m" + i, null));
+                        recording.sendMessage("other" + i, new MessageDto("m" + i, null));
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        assertEquals(LongStream.rangeClosed(1, 1000).boxed().toList(), stored);
+        assertEquals(1000, recording.getVersion("ordered"));
+    }
+
+    @Test
+    void shardedAsyncWrite_ToAFullShard_FailsAtOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ShardedExecutor shards = new ShardedExecutor(1, "test-shard-", 1)) {
+            service.setShards(shards);
+            shards.execute(0, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<MessageDto> last = null;
+            for (int i = 0; i < 3 && (last == null || !last.isCompletedExceptionally()); i++) {
+                last = service.sendMessageAsync("full", new MessageDto("m" + i, null));
+            }
+
+            assertTrue(last.isCompletedExceptionally(), "A shard holding one queued write refuses the next");
+            release.countDown();
+        }
+    }
+
+    @Test
+    void shardedBatch_ReturnsResultsInRequestOrder() {
+        try (ShardedExecutor shards = new ShardedExecutor(4, "test-shard-")) {
+            service.setShards(shards);
+            List<MessageDto> batch = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                batch.add(new MessageDto("m" + i, "batch" + (i % 5)));
+            }
+            List<MessageDto> results = new ArrayList<>();
+
+            service.sendMessages(batch, results::add);
+
+            assertEquals(20, results.size());
+            for (int i = 0; i < 20; i++) {
+                assertEquals("batch" + (i % 5), results.get(i).getNamespace());
+                assertEquals(i / 5 + 1, ((VersionedMessageDto) results.get(i)).getVersion());
+            }
+        }
+    }
+
+    @Test
+    void pipeline_ReplacesDefaultProcessingAndCanRejectMessages() {
+        service.setPipeline(MessagePipeline.builder()
+                .stage("*", (namespace, message) -> {
+                    if (message.getContent().isBlank()) {
+                        throw new IllegalArgumentException("content must not be blank");
+                    }
+                    return message;
+                })
+                .stage("secure-*", (namespace, message) -> new MessageDto(message.getContent().replaceAll("\\d", "#"), null))
+                .build());
+
+        assertEquals("card 1234", service.sendMessage("plain", new MessageDto("card 1234", null)).getContent());
+        assertEquals("card ####", service.sendMessage("secure-1", new MessageDto("card 1234", null)).getContent());
+        assertEquals("secure-1", service.getState("secure-1").getNamespace());
+        assertThrows(IllegalArgumentException.class, () -> service.sendMessage("plain", new MessageDto(" ", null)));
+        assertEquals(1, service.getVersion("plain"));
+    }
+
+    @Test
+    void sendMessageAsync_WithoutShards_CompletesOnCallingThread() {
+        CompletableFuture<MessageDto> result = service.sendMessageAsync("async", new MessageDto("abc", null));
+
+        assertTrue(result.isDone());
+        assertEquals("cba", result.join().getContent());
+        assertTrue(new SystemStateServiceImpl() {
+            @Override
+            protected MessageDto processMessage(String namespace, MessageDto message) {
+                throw new IllegalArgumentException("rejected");
+            }
+        }.sendMessageAsync("async", new MessageDto("abc", null)).isCompletedExceptionally());
+    }
+
+    @Test
+    void sendMessageAsync_WithShards_ReturnsBeforeStorageCompletes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SystemStateServiceImpl slow = new SystemStateServiceImpl() {
+            @Override
+            protected void storeMessage(String namespace, MessageDto message) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.storeMessage(namespace, message);
+            }
+        };
+        try (ShardedExecutor shards = new ShardedExecutor(2, "test-shard-")) {
+            slow.setShards(shards);
+
+            CompletableFuture<MessageDto> result = slow.sendMessageAsync("async", new MessageDto("abc", null));
+
+            assertFalse(result.isDone());
+            release.countDown();
+            assertEquals("cba", result.get(5, TimeUnit.SECONDS).getContent());
+            assertEquals("cba", slow.getState("async").getContent());
+        }
+    }
+
+    @Test
+    void batchedWrites_StoreFewerBatchesInVersionOrderAndSurviveRestart(@TempDir Path directory) throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        List<Long> stored = Collections.synchronizedList(new ArrayList<>());
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 1 << 20, FsyncPolicy.ALWAYS, 0);
+             WriteBatcher batcher = new WriteBatcher(64, 200, "test-batcher")) {
+            SystemStateServiceImpl batched = new SystemStateServiceImpl(wal) {
+                @Override
+                protected void storeMessages(List<VersionedMessageDto> messages) {
+                    batchSizes.add(messages.size());
+                    messages.stream().filter(message -> message.getNamespace().equals("ordered"))
+                            .forEach(message -> stored.add(message.getVersion()));
+                    super.storeMessages(messages);
+                }
+            };
+            batched.setBatcher(batcher);
+            Thread[] writers = new Thread[8];
+            for (int t = 0; t < writers.length; t++) {
+                int writer = t;
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        batched.sendMessage("ordered", new MessageDto("m" + i, null));
+                        batched.sendMessageAsync("own" + writer, new MessageDto("m" + i, null)).join();
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            assertEquals(800, batchSizes.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(batchSizes.size() < 800, "expected coalesced batches, got " + batchSizes.size());
+            assertEquals(LongStream.rangeClosed(1, 400).boxed().toList(), stored);
+            assertEquals(800, wal.durableSequence());
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 1 << 20, FsyncPolicy.ALWAYS, 0)) {
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal);
+            assertEquals(400, restarted.getVersion("ordered"));
+            assertEquals(50, restarted.getVersion("own7"));
+        }
+    }
+
+    @Test
+    void shardedBatchedWrites_DoNotHoldTheShardWhileTheirBatchIsStored() throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        try (ShardedExecutor shards = new ShardedExecutor(1, "test-shard");
+             WriteBatcher batcher = new WriteBatcher(64, 0, "test-batcher")) {
+            SystemStateServiceImpl batched = new SystemStateServiceImpl() {
+                @Override
+                protected void storeMessages(List<VersionedMessageDto> messages) {
+                    batchSizes.add(messages.size());
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.storeMessages(messages);
+                }
+            };
+            batched.setShards(shards);
+            batched.setBatcher(batcher);
+
+            List<CompletableFuture<MessageDto>> results = new ArrayList<>();
+            results.add(batched.sendMessageAsync("hot", new MessageDto("m0", null)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (batchSizes.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            // The first batch is held in storage; the shard keeps queueing the rest behind it
+            for (int i = 1; i < 10; i++) {
+                results.add(batched.sendMessageAsync("hot", new MessageDto("m" + i, null)));
+            }
+            while (batcher.queuedMessages() < 9 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(9, batcher.queuedMessages());
+            release.countDown();
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i + 1, ((VersionedMessageDto) results.get(i).join()).getVersion());
+            }
+            assertEquals(List.of(1, 9), batchSizes);
+            assertEquals(11, ((VersionedMessageDto) batched.sendMessage("hot", new MessageDto("last", null))).getVersion());
+        }
+    }
+
+    @Test
+    void writeAheadLog_RestoresVersionsOnRestart(@TempDir Path directory) throws Exception {
+        SnapshotStore snapshots = new SnapshotStore(directory.resolve("snapshots"), 1);
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 4096, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl persistent = new SystemStateServiceImpl(wal, snapshots);
+            persistent.sendMessage("a", new MessageDto("one", null));
+            persistent.sendMessage("a", new MessageDto("two", null));
+            persistent.takeSnapshot();
+            persistent.sendMessage("a", new MessageDto("three", null));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 4096, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal, snapshots);
+
+            assertEquals(3, ((VersionedMessageDto) restarted.getState("a")).getVersion());
+            assertEquals(4, ((VersionedMessageDto) restarted.sendMessage("a", new MessageDto("four", null))).getVersion());
+            assertEquals(List.of(2L, 3L, 4L), restarted.getHistory("a", 0, 10).stream().map(VersionedMessageDto::getVersion).toList());
+        }
+    }
+
+    @Test
+    void offHeap_StoresLargeContentsOffHeapAndReleasesReplacedOnes() {
+        OffHeapStateStore offHeap = new OffHeapStateStore(1 << 20, 1 << 16, 100, 0);
+        SystemStateServiceImpl offHeapService = new SystemStateServiceImpl(null, null, StateStoreLimits.NONE, offHeap);
+        String large = "x".repeat(5000) + "y";
+
+        offHeapService.sendMessage("big", new MessageDto(large, null));
+        offHeapService.sendMessage("small", new MessageDto("tiny", null));
+        offHeapService.sendMessage("big", new MessageDto(large + "z", null));
+
+        MessageDto state = offHeapService.getState("big");
+        assertEquals(VersionedMessageDto.class, state.getClass(), "Off-heap content leaves the service as a plain DTO");
+        assertEquals("zy" + "x".repeat(5000), state.getContent());
+        assertEquals(2, offHeapService.getVersion("big"));
+        assertEquals("ynit", offHeapService.getState("small").getContent());
+        assertEquals(1, offHeap.storedContents(), "The replaced content should be released");
+        assertTrue(offHeapService.getHistory("big", 0, 10).isEmpty());
+        StateStoreStats stats = offHeapService.getStoreStats();
+        assertEquals(1, stats.offHeapContents());
+        assertEquals(8192, stats.offHeapBytes());
+    }
+
+    @Test
+    void offHeap_ConcurrentReadsNeverSeeReusedBlocks() throws Exception {
+        OffHeapStateStore offHeap = new OffHeapStateStore(1 << 20, 1 << 16, 0, 0);
+        SystemStateServiceImpl offHeapService = new SystemStateServiceImpl(null, null, StateStoreLimits.NONE, offHeap);
+        offHeapService.sendMessage("hot", new MessageDto("a".repeat(2000), null));
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 5_000; i++) {
+                char fill = (char) ('a' + i % 26);
+                offHeapService.sendMessage("hot", new MessageDto(String.valueOf(fill).repeat(2000), null));
+            }
+        });
+
+        while (!writer.isDone()) {
+            String content = offHeapService.getState("hot").getContent();
+            assertEquals(2000, content.length());
+            assertEquals(content.length(), content.chars().filter(c -> c == content.charAt(0)).count(), "Torn read");
+        }
+        writer.get(5, TimeUnit.SECONDS);
+        assertEquals(1, offHeap.storedContents());
+    }
+
+    @Test
+    void offHeap_SnapshotsAndEvictionsRelease(@TempDir Path directory) throws Exception {
+        SnapshotStore snapshots = new SnapshotStore(directory.resolve("snapshots"), 1);
+        OffHeapStateStore offHeap = new OffHeapStateStore(1 << 20, 1 << 16, 100, 0);
+        String large = "l".repeat(1000);
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 1 << 16, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl persistent = new SystemStateServiceImpl(wal, snapshots, StateStoreLimits.NONE, offHeap);
+            persistent.sendMessage("a", new MessageDto(large, null));
+            persistent.sendMessage("b", new MessageDto("small", null));
+            persistent.takeSnapshot();
+        }
+
+        OffHeapStateStore restoredOffHeap = new OffHeapStateStore(1 << 20, 1 << 16, 100, 0);
+        AtomicLong nanos = new AtomicLong();
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 1 << 16, FsyncPolicy.OS, 0)) {
+            SystemStateServiceImpl restarted = new SystemStateServiceImpl(wal, snapshots,
+                    new StateStoreLimits(0, "c:1000", 0, nanos::get), restoredOffHeap);
+
+            assertEquals(large, restarted.getState("a").getContent());
+            assertEquals("llams", restarted.getState("b").getContent());
+            assertEquals(1, restoredOffHeap.storedContents());
+
+            restarted.sendMessage("c", new MessageDto(large, null));
+            assertEquals(2, restoredOffHeap.storedContents());
+            nanos.addAndGet(TimeUnit.SECONDS.toNanos(3));
+            assertEquals(1, restarted.getStoreStats().expirations());
+            assertEquals(1, restoredOffHeap.storedContents(), "Evicted contents should be released");
+        }
+    }
+}
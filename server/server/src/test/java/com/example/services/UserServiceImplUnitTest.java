@@ -2,6 +2,15 @@ package com.example.services;
 
 import com.example.dto.UserDto;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class UserServiceImplUnitTest {
@@ -61,4 +70,96 @@ class UserServiceImplUnitTest {
 
         assertNull(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void loadUserByUsername_ReturnsPrebuiltUserDetails() {
+        assertSame(service.loadUserByUsername("user@example.com"), service.loadUserByUsername("user@example.com"));
+    }
+
+    @Test
+    void loadUserByUsername_AllocatesNothingOnceWarm() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String username = "user@example.com";
+        for (int i = 0; i < 10_000; i++) {
+            service.loadUserByUsername(username);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            service.loadUserByUsername(username);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Allow for the measurement itself; a per-lookup allocation would cost megabytes here
+        assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void usersFile_LoadsAndHotReloads(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("users.json");
+        Files.writeString(file, "[{\"id\": 1, \"username\": \"alice\", \"name\": \"Alice\"}]");
+        UserServiceImpl fileService = new UserServiceImpl(file.toString(), 10);
+
+        assertEquals("Alice", fileService.getUserByUsername("alice").getName());
+        assertNull(fileService.getUserByUsername("user@example.com"));
+
+        Files.writeString(file, "[{\"id\": 2, \"username\": \"bob\", \"name\": \"Bob\"},"
+                + " {\"id\": 3, \"username\": \"carol\", \"name\": \"Carol\"}]");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1_000));
+
+        assertTrue(fileService.reloadIfChanged());
+        assertNull(fileService.getUserByUsername("alice"));
+        assertEquals(2, fileService.size());
+        assertNotNull(fileService.loadUserByUsername("carol"));
+    }
+
+    @Test
+    void usersFile_KeepsPreviousUsersWhenReloadFails(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("users.json");
+        Files.writeString(file, "[{\"id\": 1, \"username\": \"alice\", \"name\": \"Alice\"}]");
+        UserServiceImpl fileService = new UserServiceImpl(file.toString(), 1);
+
+        Files.writeString(file, "[{\"id\": 1, \"username\": \"alice\"");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1_000));
+        assertFalse(fileService.reloadIfChanged());
+
+        Files.writeString(file, "[{\"id\": 2, \"username\": \"bob\"}, {\"id\": 3, \"username\": \"carol\"}]");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2_000));
+        assertFalse(fileService.reloadIfChanged()); // Over the limit of one user
+
+        assertEquals("Alice", fileService.getUserByUsername("alice").getName());
+        assertEquals(1, fileService.size());
+    }
+
+    @Test
+    void usersFile_ReadersNeverSeePartialReload(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("users.json");
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 20_000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append(", \"username\": \"u").append(i).append("\"}");
+        }
+        Files.writeString(file, json.append("]"));
+        UserServiceImpl fileService = new UserServiceImpl(file.toString(), 100_000);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                // Every user present in both the old and the new file must stay visible throughout
+                if (fileService.loadUserByUsername("u0") == null || fileService.loadUserByUsername("u19999") == null) {
+                    failure.set("user missing during reload");
+                }
+            }
+        });
+        reader.start();
+        for (int round = 1; round <= 5; round++) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + round * 1_000L));
+            assertTrue(fileService.reloadIfChanged());
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(20_000, fileService.size());
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.services;
+
+import com.example.dto.VersionedMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBatcherTest {
+
+    private static VersionedMessageDto message(long version) {
+        return new VersionedMessageDto("m" + version, "batch", version);
+    }
+
+    @Test
+    void submit_CoalescesWritesQueuedWhileABatchIsStored() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Long>> batches = Collections.synchronizedList(new ArrayList<>());
+        Consumer<List<VersionedMessageDto>> store = messages -> {
+            batches.add(messages.stream().map(VersionedMessageDto::getVersion).toList());
+            storing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try (WriteBatcher batcher = new WriteBatcher(4, 0, "test-batcher")) {
+            List<CompletableFuture<Void>> stored = new ArrayList<>();
+            stored.add(batcher.submit(message(1), store));
+            assertTrue(storing.await(5, TimeUnit.SECONDS));
+            for (long version = 2; version <= 7; version++) {
+                stored.add(batcher.submit(message(version), store));
+            }
+            assertFalse(stored.get(1).isDone());
+
+            release.countDown();
+            CompletableFuture.allOf(stored.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of(List.of(1L), List.of(2L, 3L, 4L, 5L), List.of(6L, 7L)), batches);
+    }
+
+    @Test
+    void submit_WindowCollectsWritesArrivingAfterTheFirst() throws Exception {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        Consumer<List<VersionedMessageDto>> store = messages -> sizes.add(messages.size());
+        try (WriteBatcher batcher = new WriteBatcher(64, TimeUnit.SECONDS.toMicros(10), "test-batcher")) {
+            List<CompletableFuture<Void>> stored = new ArrayList<>();
+            for (long version = 1; version <= 64; version++) {
+                stored.add(batcher.submit(message(version), store));
+                Thread.sleep(version % 16 == 0 ? 1 : 0);
+            }
+            CompletableFuture.allOf(stored.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of(64), sizes);
+    }
+
+    @Test
+    void submit_StoreFailureFailsOnlyItsBatch() throws Exception {
+        Consumer<List<VersionedMessageDto>> failing = messages -> {
+            throw new IllegalStateException("disk full");
+        };
+        Consumer<List<VersionedMessageDto>> working = messages -> {
+        };
+        try (WriteBatcher batcher = new WriteBatcher(16, 0, "test-batcher")) {
+            CompletableFuture<Void> failed = batcher.submit(message(1), failing);
+            CompletableFuture<Void> stored = batcher.submit(message(2), working);
+
+            CompletionException thrown = assertThrows(CompletionException.class, failed::join);
+            assertInstanceOf(IllegalStateException.class, thrown.getCause());
+            assertNull(stored.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void submit_BlocksWhileTheQueueIsFull() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Consumer<List<VersionedMessageDto>> store = messages -> {
+            storing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try (WriteBatcher batcher = new WriteBatcher(1, 0, 2, "test-batcher")) {
+            batcher.submit(message(1), store);
+            assertTrue(storing.await(5, TimeUnit.SECONDS));
+            batcher.submit(message(2), store);
+            batcher.submit(message(3), store);
+            assertEquals(2, batcher.queuedMessages());
+
+            CompletableFuture<CompletableFuture<Void>> blocked = CompletableFuture.supplyAsync(() -> batcher.submit(message(4), store));
+            Thread.sleep(200);
+            assertFalse(blocked.isDone(), "A writer waits for room rather than growing the queue");
+
+            release.countDown();
+            blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void close_StoresQueuedWritesThenRejectsNewOnes() {
+        List<Long> stored = Collections.synchronizedList(new ArrayList<>());
+        Consumer<List<VersionedMessageDto>> store = messages -> messages.forEach(message -> stored.add(message.getVersion()));
+        WriteBatcher batcher = new WriteBatcher(2, 0, "test-batcher");
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (long version = 1; version <= 5; version++) {
+            pending.add(batcher.submit(message(version), store));
+        }
+
+        batcher.close();
+
+        assertTrue(pending.stream().allMatch(future -> future.isDone() && !future.isCompletedExceptionally()));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), stored);
+        assertThrows(IllegalStateException.class, () -> batcher.submit(message(6), store));
+        assertThrows(IllegalArgumentException.class, () -> new WriteBatcher(0, 0, "test-batcher"));
+        assertThrows(IllegalArgumentException.class, () -> new WriteBatcher(1, -1, "test-batcher"));
+        assertThrows(IllegalArgumentException.class, () -> new WriteBatcher(1, 0, 0, "test-batcher"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStateStoreTest {
+
+    private static VersionedMessageDto message(String content, long version) {
+        return new VersionedMessageDto(content, "big", version);
+    }
+
+    @Test
+    void store_RoundTripsContentWithoutTouchingTheHeapCopy() {
+        OffHeapStateStore store = new OffHeapStateStore(1 << 20, 4096, 10, 0);
+        String content = "Grüße, 世界! ".repeat(50);
+
+        OffHeapStateStore.Handle handle = store.store(message(content, 7));
+
+        assertEquals(content, handle.toMessageDto().getContent());
+        assertArrayEquals(content.getBytes(StandardCharsets.UTF_8), handle.contentBytes());
+        assertEquals(850, handle.length());
+        assertEquals(7, handle.getVersion());
+        assertEquals("big", handle.getNamespace());
+        assertEquals(1, store.storedContents());
+        assertEquals(1024, store.usedBytes()); // 850 UTF-8 bytes rounded up to their size class
+        assertEquals(4096, store.reservedBytes());
+    }
+
+    @Test
+    void accepts_OnlyContentsFromTheMinimumLength() {
+        OffHeapStateStore store = new OffHeapStateStore(1 << 20, 4096, 10, 0);
+
+        assertTrue(store.accepts(new MessageDto("0123456789", "big")));
+        assertFalse(store.accepts(new MessageDto("012345678", "big")));
+        assertFalse(store.accepts(new MessageDto(null, "big")));
+    }
+
+    @Test
+    void release_ReusesTheBlockAndInvalidatesOldHandles() {
+        OffHeapStateStore store = new OffHeapStateStore(4096, 4096, 0, 0);
+        OffHeapStateStore.Handle first = store.store(message("a".repeat(1000), 1));
+
+        store.release(first);
+        store.release(first); // No effect the second time
+        OffHeapStateStore.Handle second = store.store(message("b".repeat(1000), 2));
+
+        assertNull(first.toMessageDto(), "A released handle must not read its block's new content");
+        assertNull(first.contentBytes());
+        assertEquals("b".repeat(1000), second.toMessageDto().getContent());
+        assertEquals(1, store.storedContents());
+        assertEquals(4096, store.reservedBytes());
+    }
+
+    @Test
+    void store_FallsBackToHeapOnceFull() {
+        OffHeapStateStore store = new OffHeapStateStore(8192, 4096, 0, 0);
+        String content = "c".repeat(3000);
+
+        assertNotNull(store.store(message(content, 1)));
+        assertNotNull(store.store(message(content, 2)));
+        assertNull(store.store(message(content, 3)));
+        assertNull(store.store(message("d".repeat(5000), 4)), "Larger than a slab and the budget left");
+
+        assertEquals(2, store.heapFallbacks());
+        assertEquals(8192, store.reservedBytes());
+    }
+
+    @Test
+    void store_SplitsSlabRemaindersIntoSmallerBlocks() {
+        OffHeapStateStore store = new OffHeapStateStore(8192, 4096, 0, 0);
+        store.store(message("e".repeat(3000), 1)); // 4096 block fills the first slab
+        store.store(message("f".repeat(1500), 2)); // 2048 block from the second slab
+        store.store(message("g".repeat(3000), 3)); // No room for 4096: stays on heap, the slab is not full
+
+        // The second slab's remaining 2048 bytes serve smaller contents
+        assertNotNull(store.store(message("h".repeat(1000), 4)));
+        assertNotNull(store.store(message("i".repeat(1000), 5)));
+        assertNull(store.store(message("j".repeat(1000), 6)));
+    }
+
+    @Test
+    void store_GivesContentsLargerThanASlabTheirOwnBuffer() {
+        OffHeapStateStore store = new OffHeapStateStore(1 << 20, 4096, 0, 0);
+        String content = "k".repeat(100_000);
+
+        OffHeapStateStore.Handle handle = store.store(message(content, 1));
+
+        assertEquals(content, handle.toMessageDto().getContent());
+        assertEquals(131_072, store.reservedBytes());
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapStateStore(1 << 20, 3000, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapStateStore(0, 4096, 0, 0));
+    }
+
+    @Test
+    void sizeClass_RoundsUpToAPowerOfTwoOfAtLeastTheMinimumBlock() {
+        assertEquals(6, OffHeapStateStore.sizeClass(0));
+        assertEquals(6, OffHeapStateStore.sizeClass(64));
+        assertEquals(7, OffHeapStateStore.sizeClass(65));
+        assertEquals(10, OffHeapStateStore.sizeClass(1024));
+        assertEquals(11, OffHeapStateStore.sizeClass(1025));
+    }
+}
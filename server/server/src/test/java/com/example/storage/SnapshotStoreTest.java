@@ -0,0 +1,68 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadLatest_ReturnsNewestSnapshot() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(5, List.of(new MessageDto("old", "a")));
+        store.write(9, List.of(new MessageDto("new", "a"), new MessageDto(null, "b")));
+
+        List<MessageDto> loaded = new ArrayList<>();
+        long sequence = store.loadLatest(loaded::add);
+
+        assertEquals(9, sequence);
+        assertEquals(2, loaded.size());
+        assertEquals("new", loaded.get(0).getContent());
+        assertEquals("b", loaded.get(1).getNamespace());
+        assertNull(loaded.get(1).getContent());
+    }
+
+    @Test
+    void loadLatest_FallsBackWhenNewestIsCorrupt() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(5, List.of(new MessageDto("old", "a")));
+        Path newest = store.write(9, List.of(new MessageDto("new", "a")));
+        try (RandomAccessFile file = new RandomAccessFile(newest.toFile(), "rw")) {
+            file.seek(20);
+            file.write('!');
+        }
+
+        List<MessageDto> loaded = new ArrayList<>();
+        assertEquals(5, store.loadLatest(loaded::add));
+        assertEquals("old", loaded.get(0).getContent());
+    }
+
+    @Test
+    void write_PrunesBeyondRetainCount() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        for (long sequence = 1; sequence <= 4; sequence++) {
+            store.write(sequence, List.of(new MessageDto("v" + sequence, "a")));
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        assertEquals(3, store.oldestSequence());
+        SnapshotStore empty = new SnapshotStore(directory.resolve("empty"), 1);
+        assertEquals(0, empty.loadLatest(message -> fail()));
+        assertEquals(0, empty.oldestSequence());
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.storage;
+
+import com.example.dto.MessageDto;
+import com.example.dto.VersionedMessageDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void append_ReplaysInOrderAfterReopen() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            assertEquals(1, wal.append(new MessageDto("first", "a")));
+            assertEquals(2, wal.append(new MessageDto("second", "b")));
+            assertEquals(3, wal.append(new MessageDto(null, "c")));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            List<String> replayed = new ArrayList<>();
+            wal.replay(0, (sequence, message) -> replayed.add(sequence + ":" + message.getNamespace() + ":" + message.getContent()));
+
+            assertEquals(List.of("1:a:first", "2:b:second", "3:c:null"), replayed);
+            assertEquals(4, wal.append(new MessageDto("fourth", "a")));
+        }
+    }
+
+    @Test
+    void appendTombstone_IsReplayedApartFromMessages() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            wal.append(new VersionedMessageDto("first", "a", 1));
+            assertEquals(2, wal.appendTombstone("a", 1));
+            wal.append(new VersionedMessageDto(null, "b", 2));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            List<String> replayed = new ArrayList<>();
+            wal.replay(0, new WriteAheadLog.RecordConsumer() {
+                @Override
+                public void accept(long sequence, VersionedMessageDto message) {
+                    replayed.add(sequence + ":" + message.getNamespace() + ":" + message.getContent());
+                }
+
+                @Override
+                public void discard(long sequence, String namespace, long version) {
+                    replayed.add(sequence + ":" + namespace + " discarded at " + version);
+                }
+            });
+            List<Long> messages = new ArrayList<>();
+            wal.replay(0, (sequence, message) -> messages.add(sequence));
+
+            assertEquals(List.of("1:a:first", "2:a discarded at 1", "3:b:null"), replayed);
+            assertEquals(List.of(1L, 3L), messages, "Consumers that do not override discard skip tombstones");
+        }
+    }
+
+    @Test
+    void appendAll_WritesConsecutiveRecordsAcrossSegmentsWithOneDurabilityWait() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 128, FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(1, wal.append(new MessageDto("single", "a")));
+            List<MessageDto> batch = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                batch.add(new MessageDto("batched " + i, "b"));
+            }
+
+            assertEquals(11, wal.appendAll(batch));
+            assertEquals(11, wal.durableSequence());
+            assertEquals(11, wal.appendAll(List.of()));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 128, FsyncPolicy.OS, 0)) {
+            List<String> replayed = new ArrayList<>();
+            wal.replay(9, (sequence, message) -> replayed.add(sequence + ":" + message.getContent()));
+            assertEquals(List.of("10:batched 8", "11:batched 9"), replayed);
+        }
+    }
+
+    @Test
+    void append_RollsSegmentsWhenFull() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 128, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 0; i < 20; i++) {
+                wal.append(new MessageDto("message " + i, "ns"));
+            }
+            // Records larger than a segment get a dedicated, larger segment
+            wal.append(new MessageDto("x".repeat(500), "ns"));
+            assertEquals(21, wal.durableSequence());
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 128, FsyncPolicy.OS, 0)) {
+            List<Long> sequences = new ArrayList<>();
+            wal.replay(15, (sequence, message) -> sequences.add(sequence));
+            assertEquals(List.of(16L, 17L, 18L, 19L, 20L, 21L), sequences);
+        }
+    }
+
+    @Test
+    void append_OversizedFirstRecordGrowsTheEmptySegmentInPlace() throws IOException {
+        String oversized = "x".repeat(500);
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 128, FsyncPolicy.OS, 0)) {
+            assertEquals(1, wal.append(new MessageDto(oversized, "ns")));
+            assertEquals(2, wal.append(new MessageDto("after", "ns")));
+            // Sequence 1 still needs replaying, so its segment must survive
+            assertEquals(0, wal.truncateThrough(0));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 128, FsyncPolicy.OS, 0)) {
+            List<String> replayed = new ArrayList<>();
+            wal.replay(0, (sequence, message) -> replayed.add(sequence + ":" + message.getContent()));
+            assertEquals(List.of("1:" + oversized, "2:after"), replayed);
+
+            assertEquals(1, wal.truncateThrough(1));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(WalSegment.fileName(2)), files.map(path -> path.getFileName().toString()).toList());
+        }
+    }
+
+    @Test
+    void recover_TruncatesTornTail() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            wal.append(new MessageDto("intact", "a"));
+            wal.append(new MessageDto("torn", "b"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Corrupt the last byte of the second record's payload
+        int secondPayloadEnd = 2 * WriteAheadLog.HEADER_SIZE + MessageDtoCodec.encode(new MessageDto("intact", "a")).length
+                + MessageDtoCodec.encode(new MessageDto("torn", "b")).length;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(secondPayloadEnd - 1);
+            file.write('!');
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, FsyncPolicy.OS, 0)) {
+            List<String> replayed = new ArrayList<>();
+            wal.replay(0, (sequence, message) -> replayed.add(message.getContent()));
+
+            assertEquals(List.of("intact"), replayed);
+            assertEquals(2, wal.append(new MessageDto("replacement", "b")));
+        }
+    }
+
+    @Test
+    void append_GroupCommitsConcurrentWriters() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 1 << 20, FsyncPolicy.ALWAYS, 0)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 2000; i++) {
+                int n = i;
+                executor.submit(() -> wal.append(new MessageDto("m" + n, "ns" + (n % 10))));
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+            assertEquals(2000, wal.lastSequence());
+            assertEquals(2000, wal.durableSequence());
+        }
+    }
+}
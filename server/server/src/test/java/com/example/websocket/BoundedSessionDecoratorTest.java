@@ -0,0 +1,192 @@
+package com.example.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BoundedSessionDecoratorTest {
+
+    private final OutboundSessions sessions = new OutboundSessions();
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Thread writer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (writer != null) {
+            writer.join(5_000);
+        }
+    }
+
+    @Test
+    void fastClient_ReceivesEverythingInOrder() throws Exception {
+        BoundedSessionDecorator session = decorate(SlowConsumerPolicy.DISCONNECT, 4, false);
+        release.countDown();
+
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(broadcast("a", i));
+        }
+
+        assertEquals(List.of("a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7", "a8", "a9"), sent);
+        assertEquals(0, session.getQueueDepth());
+        assertEquals(0, session.getDropped());
+    }
+
+    @Test
+    void dropOldest_KeepsNewestBroadcastsWithinQueueLimit() throws Exception {
+        BoundedSessionDecorator session = decorate(SlowConsumerPolicy.DROP_OLDEST, 4, true);
+        stall(session, broadcast("a", 0));
+
+        for (int i = 1; i <= 10; i++) {
+            session.sendMessage(broadcast("a", i));
+            assertTrue(session.getQueueDepth() <= 4);
+        }
+        assertEquals(6, session.getDropped());
+
+        drain();
+        assertEquals(List.of("a0", "a7", "a8", "a9", "a10"), sent);
+    }
+
+    @Test
+    void conflate_KeepsLatestBroadcastPerDestination() throws Exception {
+        BoundedSessionDecorator session = decorate(SlowConsumerPolicy.CONFLATE, 4, true);
+        stall(session, broadcast("a", 0));
+
+        for (int i = 1; i <= 10; i++) {
+            session.sendMessage(broadcast(i % 2 == 0 ? "a" : "b", i));
+        }
+        assertTrue(session.getConflated() > 0);
+        assertEquals(0, session.getDropped());
+
+        drain();
+        assertEquals(List.of("a0", "b7", "a8", "b9", "a10"), sent);
+    }
+
+    @Test
+    void conflate_DropsOldestWhenDestinationsStillOverflow() throws Exception {
+        BoundedSessionDecorator session = decorate(SlowConsumerPolicy.CONFLATE, 2, true);
+        stall(session, broadcast("a", 0));
+
+        for (int i = 1; i <= 4; i++) {
+            session.sendMessage(broadcast("d" + i, i));
+        }
+
+        assertEquals(2, session.getDropped());
+        drain();
+        assertEquals(List.of("a0", "d33", "d44"), sent);
+    }
+
+    @Test
+    void disconnect_ClosesSessionWhenQueueOverflows() throws Exception {
+        BoundedSessionDecorator session = decorate(SlowConsumerPolicy.DISCONNECT, 2, true);
+        stall(session, broadcast("a", 0));
+        session.sendMessage(broadcast("a", 1));
+        session.sendMessage(broadcast("a", 2));
+
+        assertThrows(SessionLimitExceededException.class, () -> session.sendMessage(broadcast("a", 3)));
+        session.sendMessage(broadcast("a", 4));
+        assertEquals(2, session.getQueueDepth());
+    }
+
+    @Test
+    void controlFrames_AreNeverDropped() throws Exception {
+        BoundedSessionDecorator session = decorate(SlowConsumerPolicy.DROP_OLDEST, 2, true);
+        stall(session, broadcast("a", 0));
+        session.sendMessage(new TextMessage("RECEIPT\nreceipt-id:r1\n\n\0"));
+
+        for (int i = 1; i <= 3; i++) {
+            session.sendMessage(broadcast("a", i));
+        }
+
+        drain();
+        assertEquals(List.of("a0", "RECEIPT", "a3"), sent);
+    }
+
+    @Test
+    void blockedSend_ClosesSessionAfterSendTimeLimit() throws Exception {
+        BoundedSessionDecorator session = new BoundedSessionDecorator(delegate(true),
+                new OutboundLimits(16, 65536, 50, SlowConsumerPolicy.CONFLATE), sessions);
+        stall(session, broadcast("a", 0));
+        Thread.sleep(100);
+
+        assertTrue(session.getTimeSinceSendStarted() >= 50);
+        assertThrows(SessionLimitExceededException.class, () -> session.sendMessage(broadcast("a", 1)));
+    }
+
+    @Test
+    void destination_IsReadFromBroadcastFramesOnly() {
+        assertEquals("/topic/state/ns", BoundedSessionDecorator.destination(broadcast("/topic/state/ns", 1)));
+        assertNull(BoundedSessionDecorator.destination(new TextMessage("CONNECTED\nversion:1.2\n\n\0")));
+        assertNull(BoundedSessionDecorator.destination(new TextMessage("\n")));
+    }
+
+    @Test
+    void registry_ReportsDeepestQueuesFirst() throws Exception {
+        BoundedSessionDecorator session = sessions.register(decorate(SlowConsumerPolicy.DROP_OLDEST, 4, true));
+        stall(session, broadcast("a", 0));
+        session.sendMessage(broadcast("a", 1));
+        session.sendMessage(broadcast("a", 2));
+
+        assertEquals(1, sessions.size());
+        assertEquals(2, sessions.queuedMessages());
+        assertEquals(2, sessions.sessions(10).get(0).queueDepth());
+    }
+
+    private BoundedSessionDecorator decorate(SlowConsumerPolicy policy, int queueLimit, boolean slow) throws Exception {
+        return new BoundedSessionDecorator(delegate(slow), new OutboundLimits(queueLimit, 65536, 10_000, policy), sessions);
+    }
+
+    private WebSocketSession delegate(boolean slow) throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("s" + System.identityHashCode(this));
+        doAnswer(invocation -> {
+            if (slow) {
+                writing.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            }
+            String payload = ((TextMessage) invocation.getArgument(0)).getPayload();
+            String destination = BoundedSessionDecorator.destination(invocation.getArgument(0));
+            sent.add(destination == null ? payload.substring(0, payload.indexOf('\n'))
+                    : destination + payload.substring(payload.indexOf("\n\n") + 2, payload.length() - 1));
+            return null;
+        }).when(delegate).sendMessage(any());
+        return delegate;
+    }
+
+    /** Starts a write of the given message that blocks until {@link #drain()}. */
+    private void stall(BoundedSessionDecorator session, WebSocketMessage<?> first) throws InterruptedException {
+        writer = new Thread(() -> {
+            try {
+                session.sendMessage(first);
+            } catch (Exception ignored) {
+                // the session was closed while the write was blocked
+            }
+        });
+        writer.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+    }
+
+    private void drain() throws InterruptedException {
+        release.countDown();
+        writer.join(5_000);
+    }
+
+    private static TextMessage broadcast(String destination, int sequence) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:0\nmessage-id:" + sequence
+                + "\n\n" + sequence + "\0");
+    }
+}